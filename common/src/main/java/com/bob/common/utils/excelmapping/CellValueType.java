@@ -0,0 +1,133 @@
+package com.bob.common.utils.excelmapping;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 单元格值的目标类型,将单元格原始值转换为属性类型的值
+ * 每列的目标类型在构建映射时确定一次,避免每个单元格都依次做{@link Class#isAssignableFrom(Class)}判断
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-08 10:20
+ */
+enum CellValueType {
+
+    STRING(String.class, "字符串") {
+        @Override
+        Object convert(Object value) {
+            return Excel.stringOf(value, null);
+        }
+    },
+
+    INTEGER(Integer.class, "整型") {
+        @Override
+        Object convert(Object value) {
+            return Excel.integerOf(value, null);
+        }
+    },
+
+    LONG(Long.class, "长整型") {
+        @Override
+        Object convert(Object value) {
+            return Excel.longOf(value, null);
+        }
+    },
+
+    BOOLEAN(Boolean.class, "布尔") {
+        @Override
+        Object convert(Object value) {
+            return Excel.booleanOf(value);
+        }
+    },
+
+    DATE(Date.class, "日期") {
+        @Override
+        Object convert(Object value) {
+            return Excel.dateOf(value);
+        }
+    },
+
+    DECIMAL(BigDecimal.class, "数值") {
+        @Override
+        Object convert(Object value) {
+            return Excel.decimalOf(value);
+        }
+    },
+
+    DOUBLE(Double.class, "Double") {
+        @Override
+        Object convert(Object value) {
+            BigDecimal decimal = Excel.decimalOf(value);
+            return decimal == null ? null : decimal.doubleValue();
+        }
+    };
+
+    private final Class<?> type;
+    private final String description;
+
+    CellValueType(Class<?> type, String description) {
+        this.type = type;
+        this.description = description;
+    }
+
+    /**
+     * 转换单元格原始值,转换失败时返回null
+     *
+     * @param value 单元格原始值,非空
+     * @return
+     */
+    abstract Object convert(Object value);
+
+    /**
+     * 转换单元格原始值,转换失败时抛出异常,只在失败时才将原始值转换为字符串
+     *
+     * @param value
+     * @return
+     */
+    Object resolve(Object value) {
+        Object result = convert(value);
+        if (result == null) {
+            throw new IllegalArgumentException(typeMismatchMsg(value, description));
+        }
+        return result;
+    }
+
+    /**
+     * @param value
+     * @param description 类型描述
+     * @return 类型不匹配的错误信息
+     */
+    static String typeMismatchMsg(Object value, String description) {
+        return "解析{" + Excel.stringOf(value, null) + "}错误，值应为[" + description + "]类型";
+    }
+
+    /**
+     * 是否为{@link Excel#getCellValue(org.apache.poi.ss.usermodel.Cell)}可能返回的原始值类型
+     *
+     * @param value
+     * @return
+     */
+    static boolean isCellValue(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Date || value instanceof Boolean;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * 获取属性类型对应的单元格值类型,判断顺序与原先的逐个判断保持一致
+     *
+     * @param fieldType
+     * @return 不支持时返回null
+     */
+    static CellValueType of(Class<?> fieldType) {
+        for (CellValueType valueType : values()) {
+            if (fieldType.isAssignableFrom(valueType.type)) {
+                return valueType;
+            }
+        }
+        return null;
+    }
+
+}
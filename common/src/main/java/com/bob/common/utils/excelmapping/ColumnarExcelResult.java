@@ -0,0 +1,535 @@
+package com.bob.common.utils.excelmapping;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+/**
+ * Excel按列存储的解析结果,不为每行创建对象
+ * Integer,Long,Double属性分别存储为int[],long[],double[];Date存储为毫秒时间戳long[];
+ * Boolean存储为位图;String使用字典编码,相同的字符串只保留一份;其余类型(包括使用了转换器的属性)按对象存储。
+ * 每列通过{@link Column#isNull(int)}判断空值,空值位置上的原始类型值为0
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-09 09:40
+ */
+public final class ColumnarExcelResult implements Serializable {
+
+    private static final long serialVersionUID = -4476502154912763318L;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int rowCount;
+    private int[] rowIndexes = new int[INITIAL_CAPACITY];
+    private final LinkedHashMap<String, Column> columns = new LinkedHashMap<String, Column>();
+
+    ColumnarExcelResult(RowBinder rowBinder) {
+        for (int i = 0; i < rowBinder.size(); i++) {
+            RowBinder.ColumnBinding binding = rowBinder.get(i);
+            String name = binding.getField().getName();
+            columns.put(name, newColumn(name, binding.getStorageType()));
+        }
+    }
+
+    private static Column newColumn(String name, CellValueType storageType) {
+        if (storageType == null) {
+            return new ObjectColumn(name);
+        }
+        switch (storageType) {
+            case INTEGER:
+                return new IntColumn(name);
+            case LONG:
+                return new LongColumn(name);
+            case DOUBLE:
+                return new DoubleColumn(name);
+            case DATE:
+                return new DateColumn(name);
+            case BOOLEAN:
+                return new BooleanColumn(name);
+            case STRING:
+                return new StringColumn(name);
+            default:
+                return new ObjectColumn(name);
+        }
+    }
+
+    /**
+     * 追加一行,values的顺序与列的映射顺序一致
+     *
+     * @param rowIndex
+     * @param values
+     */
+    void append(int rowIndex, Object[] values) {
+        if (rowCount == rowIndexes.length) {
+            rowIndexes = Arrays.copyOf(rowIndexes, rowCount << 1);
+        }
+        rowIndexes[rowCount++] = rowIndex;
+        int i = 0;
+        for (Column column : columns.values()) {
+            column.append(values[i++]);
+        }
+    }
+
+    /**
+     * @return 行数
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param row 结果集中的行序号,从0开始
+     * @return 该行在Excel中的行号
+     */
+    public int getRowIndex(int row) {
+        checkRow(row, rowCount);
+        return rowIndexes[row];
+    }
+
+    /**
+     * @return 按映射顺序排列的列名,即属性名
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(new ArrayList<String>(columns.keySet()));
+    }
+
+    /**
+     * @param name 属性名
+     * @return
+     */
+    public Column getColumn(String name) {
+        Column column = columns.get(name);
+        Assert.notNull(column, String.format("不存在[%s]列", name));
+        return column;
+    }
+
+    public IntColumn getIntColumn(String name) {
+        return getColumn(name, IntColumn.class);
+    }
+
+    public LongColumn getLongColumn(String name) {
+        return getColumn(name, LongColumn.class);
+    }
+
+    public DoubleColumn getDoubleColumn(String name) {
+        return getColumn(name, DoubleColumn.class);
+    }
+
+    public DateColumn getDateColumn(String name) {
+        return getColumn(name, DateColumn.class);
+    }
+
+    public BooleanColumn getBooleanColumn(String name) {
+        return getColumn(name, BooleanColumn.class);
+    }
+
+    public StringColumn getStringColumn(String name) {
+        return getColumn(name, StringColumn.class);
+    }
+
+    public ObjectColumn getObjectColumn(String name) {
+        return getColumn(name, ObjectColumn.class);
+    }
+
+    private <C extends Column> C getColumn(String name, Class<C> columnType) {
+        Column column = getColumn(name);
+        Assert.isInstanceOf(columnType, column, String.format("[%s]列的存储类型不匹配", name));
+        return columnType.cast(column);
+    }
+
+    private static void checkRow(int row, int size) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+    }
+
+    /**
+     * 列存储
+     */
+    public abstract static class Column implements Serializable {
+
+        private static final long serialVersionUID = 5380582617812917003L;
+
+        private final String name;
+        private final BitSet nulls = new BitSet();
+        int size;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        final void append(Object value) {
+            if (value == null) {
+                nulls.set(size);
+                appendNull();
+            } else {
+                appendValue(value);
+            }
+            size++;
+        }
+
+        abstract void appendNull();
+
+        abstract void appendValue(Object value);
+
+        final void checkRow(int row) {
+            ColumnarExcelResult.checkRow(row, size);
+        }
+
+        /**
+         * @return 属性名
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 行数
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param row
+         * @return 指定行是否为空值
+         */
+        public boolean isNull(int row) {
+            checkRow(row);
+            return nulls.get(row);
+        }
+
+        /**
+         * 获取指定行的值,会产生装箱,批量扫描时请使用各列的原始类型访问方法
+         *
+         * @param row
+         * @return
+         */
+        public abstract Object getValue(int row);
+    }
+
+    public static final class IntColumn extends Column {
+
+        private static final long serialVersionUID = 2024907446003524370L;
+
+        private int[] values = new int[INITIAL_CAPACITY];
+
+        IntColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void appendNull() {
+            ensureCapacity();
+        }
+
+        @Override
+        void appendValue(Object value) {
+            ensureCapacity();
+            values[size] = ((Number)value).intValue();
+        }
+
+        private void ensureCapacity() {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+        }
+
+        public int get(int row) {
+            checkRow(row);
+            return values[row];
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    public static final class LongColumn extends Column {
+
+        private static final long serialVersionUID = -1283402954717213563L;
+
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        LongColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void appendNull() {
+            ensureCapacity();
+        }
+
+        @Override
+        void appendValue(Object value) {
+            ensureCapacity();
+            values[size] = ((Number)value).longValue();
+        }
+
+        private void ensureCapacity() {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+        }
+
+        public long get(int row) {
+            checkRow(row);
+            return values[row];
+        }
+
+        public long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    public static final class DoubleColumn extends Column {
+
+        private static final long serialVersionUID = 6817026470946734128L;
+
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        DoubleColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void appendNull() {
+            ensureCapacity();
+        }
+
+        @Override
+        void appendValue(Object value) {
+            ensureCapacity();
+            values[size] = ((Number)value).doubleValue();
+        }
+
+        private void ensureCapacity() {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+        }
+
+        public double get(int row) {
+            checkRow(row);
+            return values[row];
+        }
+
+        public double[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    /**
+     * 日期列,存储毫秒时间戳
+     */
+    public static final class DateColumn extends Column {
+
+        private static final long serialVersionUID = -2961306484245960226L;
+
+        private long[] millis = new long[INITIAL_CAPACITY];
+
+        DateColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void appendNull() {
+            ensureCapacity();
+        }
+
+        @Override
+        void appendValue(Object value) {
+            ensureCapacity();
+            millis[size] = ((Date)value).getTime();
+        }
+
+        private void ensureCapacity() {
+            if (size == millis.length) {
+                millis = Arrays.copyOf(millis, size << 1);
+            }
+        }
+
+        /**
+         * @param row
+         * @return 毫秒时间戳
+         */
+        public long getMillis(int row) {
+            checkRow(row);
+            return millis[row];
+        }
+
+        public long[] toArray() {
+            return Arrays.copyOf(millis, size);
+        }
+
+        @Override
+        public Date getValue(int row) {
+            return isNull(row) ? null : new Date(millis[row]);
+        }
+    }
+
+    public static final class BooleanColumn extends Column {
+
+        private static final long serialVersionUID = 3309622917424012871L;
+
+        private final BitSet values = new BitSet();
+
+        BooleanColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void appendNull() {
+        }
+
+        @Override
+        void appendValue(Object value) {
+            values.set(size, (Boolean)value);
+        }
+
+        public boolean get(int row) {
+            checkRow(row);
+            return values.get(row);
+        }
+
+        @Override
+        public Object getValue(int row) {
+            return isNull(row) ? null : values.get(row);
+        }
+    }
+
+    /**
+     * 字典编码的字符串列,每行存储字符串在字典中的序号,空值的序号为-1
+     */
+    public static final class StringColumn extends Column {
+
+        private static final long serialVersionUID = -6402452165313318591L;
+
+        private int[] codes = new int[INITIAL_CAPACITY];
+        private final List<String> dictionary = new ArrayList<String>();
+        private final Map<String, Integer> dictionaryIndex = new HashMap<String, Integer>();
+
+        StringColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void appendNull() {
+            ensureCapacity();
+            codes[size] = -1;
+        }
+
+        @Override
+        void appendValue(Object value) {
+            ensureCapacity();
+            String str = (String)value;
+            Integer code = dictionaryIndex.get(str);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(str);
+                dictionaryIndex.put(str, code);
+            }
+            codes[size] = code;
+        }
+
+        private void ensureCapacity() {
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size << 1);
+            }
+        }
+
+        /**
+         * @param row
+         * @return 字符串在字典中的序号,空值时为-1
+         */
+        public int getCode(int row) {
+            checkRow(row);
+            return codes[row];
+        }
+
+        public int[] toCodeArray() {
+            return Arrays.copyOf(codes, size);
+        }
+
+        /**
+         * @return 字典,下标即序号
+         */
+        public List<String> getDictionary() {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        /**
+         * @param str
+         * @return 字符串在字典中的序号,不存在时为-1
+         */
+        public int codeOf(String str) {
+            Integer code = dictionaryIndex.get(str);
+            return code == null ? -1 : code;
+        }
+
+        public String get(int row) {
+            int code = getCode(row);
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        @Override
+        public String getValue(int row) {
+            return get(row);
+        }
+    }
+
+    /**
+     * 对象列,BigDecimal及使用了转换器的属性按对象存储
+     */
+    public static final class ObjectColumn extends Column {
+
+        private static final long serialVersionUID = 1530437960519958734L;
+
+        private final List<Object> values = new ArrayList<Object>(INITIAL_CAPACITY);
+
+        ObjectColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void appendNull() {
+            values.add(null);
+        }
+
+        @Override
+        void appendValue(Object value) {
+            values.add(value);
+        }
+
+        @Override
+        public Object getValue(int row) {
+            checkRow(row);
+            return values.get(row);
+        }
+    }
+
+}
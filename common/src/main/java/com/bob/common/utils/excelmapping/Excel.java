@@ -9,13 +9,14 @@ import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Iterator;
 
 import com.bob.common.utils.excelmapping.exception.ExcelException;
+import com.bob.common.utils.excelmapping.transform.DateTextParser;
 import org.apache.poi.hpsf.ClassID;
 import org.apache.poi.hssf.usermodel.HSSFPalette;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
@@ -52,6 +53,8 @@ public class Excel {
 
     final static Logger logger = LoggerFactory.getLogger(Excel.class);
     private static final ClassID INVALID_CLASS_ID = new ClassID();
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTextParser DATE_TEXT_PARSER = new DateTextParser();
     private final boolean xlsx;
     private final Workbook workbook;
     private CreationHelper creationHelper;
@@ -844,15 +847,21 @@ public class Excel {
      * @return
      */
     public String getCellString(Cell cell, String defaultValue) {
-        Object value = getCellValue(cell);
+        return stringOf(getCellValue(cell), defaultValue);
+    }
+
+    /**
+     * 将单元格的原始值转换为字符串,供不持有{@link Cell}的解析方式复用
+     *
+     * @param value        {@link #getCellValue(Cell)}形式的原始值
+     * @param defaultValue
+     * @return
+     */
+    static String stringOf(Object value, String defaultValue) {
         if (value == null) {
             return null;
         } else if (value instanceof Date) {
-            try {
-                return new SimpleDateFormat("yyyy-MM-dd").format((Date)value);
-            } catch (Exception e) {
-                throw new IllegalArgumentException("坐标为{" + cell.getRowIndex() + "},{" + cell.getColumnIndex() + "}的Cell不符合日期格式", e);
-            }
+            return DATE_FORMATTER.format(((Date)value).toInstant().atZone(ZoneId.systemDefault()));
         } else if (value instanceof Number) {
             return ((Number)value).toString();
         } else if (value instanceof Boolean) {
@@ -926,7 +935,7 @@ public class Excel {
      * @param value
      * @return
      */
-    private boolean isInfiniteOrNaN(Object value) {
+    static boolean isInfiniteOrNaN(Object value) {
         if (value instanceof Double) {
             Double d = (Double)value;
             return (d.isInfinite() || d.isNaN());
@@ -982,44 +991,81 @@ public class Excel {
      * @param defaultValue
      * @return 如果 s 为空值(null)、"null"、空串("")或空白串("   ")，则返回null，存在格式异常则返回 defaultValue
      */
-    private Number numberOf(final Object value, final Number defaultValue) {
+    static Number numberOf(final Object value, final Number defaultValue) {
         if (null != value) {
             if (value instanceof Number) {
-                if (value instanceof Integer || value instanceof Long) {
-                    return (Integer)value;
-                } else if (value instanceof BigDecimal || value instanceof BigInteger) {
-                    return (BigDecimal)value;
-                } else if (value instanceof Double) {
-                    return (Double)value;
-                } else if (value instanceof Float) {
-                    return (Float)value;
-                }
+                return (Number)value;
             } else if (value instanceof String && isNumber((String)value)) {
-                return Double.valueOf((String)value);
+                return parseDouble((String)value);
             }
         }
         return null;
     }
 
     /**
-     * 字符串是否是数字
+     * 10的0~22次方,均可由double精确表示
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * 解析已通过{@link #isNumber(String)}校验的数字串
+     * 有效数字不超过2^53且小数位不超过22位时,尾数与10的幂均可由double精确表示,一次除法即得到正确舍入的结果,
+     * 不创建中间对象;其余情况交由{@link Double#parseDouble(String)}处理
      *
      * @param value
      * @return
      */
-    private boolean isNumber(String value) {
-        char[] chars = value.toCharArray();
+    static double parseDouble(String value) {
+        int length = value.length();
+        boolean negative = value.charAt(0) == '-';
+        long mantissa = 0;
+        int scale = -1;
+        for (int i = negative ? 1 : 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                scale = 0;
+                continue;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            if (mantissa > 1L << 53) {
+                return Double.parseDouble(value);
+            }
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (scale >= EXACT_POWERS_OF_TEN.length) {
+            return Double.parseDouble(value);
+        }
+        double result = scale > 0 ? mantissa / EXACT_POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -result : result;
+    }
+
+    /**
+     * 字符串是否是数字,允许以负号开头及一个小数点,直接按下标扫描,不复制字符数组
+     *
+     * @param value
+     * @return
+     */
+    static boolean isNumber(String value) {
+        int length = value.length();
+        int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
         boolean visitPoint = false;
-        for (char c : chars) {
+        boolean visitDigit = false;
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
             if (!visitPoint && '.' == c) {
                 visitPoint = true;
-                continue;
-            }
-            if (!Character.isDigit(c)) {
+            } else if (c >= '0' && c <= '9') {
+                visitDigit = true;
+            } else {
                 return false;
             }
         }
-        return true;
+        return visitDigit;
     }
 
     /**
@@ -1027,7 +1073,7 @@ public class Excel {
      * @param defaultValue
      * @return 如果 value 为空值(null)、空串("")或"null"，则返回null，存在格式异常则返回 defaultValue
      */
-    private Integer integerOf(Object value, Integer defaultValue) {
+    static Integer integerOf(Object value, Integer defaultValue) {
         Number n = numberOf(value, defaultValue);
         if (null != n) {
             if (n instanceof Integer) {
@@ -1089,7 +1135,7 @@ public class Excel {
      * @param defaultValue
      * @return 如果 value 为空值(null)、空串("")或"null"，则返回null，存在格式异常则返回 defaultValue
      */
-    private Long longOf(Object value, Long defaultValue) {
+    static Long longOf(Object value, Long defaultValue) {
         Number n = numberOf(value, defaultValue);
         if (null != n) {
             if (n instanceof Long) {
@@ -1151,7 +1197,14 @@ public class Excel {
      * @return
      */
     public Date getCellDate(Cell cell) {
-        Object value = getCellValue(cell);
+        return dateOf(getCellValue(cell));
+    }
+
+    /**
+     * @param value {@link #getCellValue(Cell)}形式的原始值
+     * @return
+     */
+    static Date dateOf(Object value) {
         if (null == value) {
             return null;
         } else if (value instanceof Date) {
@@ -1167,13 +1220,12 @@ public class Excel {
      * @param text
      * @return
      */
-    private Date parseDateText(String text) {
-        try {
-            return new SimpleDateFormat(text.length() < 10 ? "yyyy-MM-dd" : "yyyy-MM-dd hh:mm:ss").parse(text);
-        } catch (ParseException e) {
-            logger.error("解析日志字符串{[]}出现异常", text, e);
-            return null;
+    static Date parseDateText(String text) {
+        Date date = DATE_TEXT_PARSER.parse(text);
+        if (date == null) {
+            logger.error("解析日期字符串[{}]出现异常", text);
         }
+        return date;
     }
 
     /**
@@ -1199,7 +1251,14 @@ public class Excel {
      * @return
      */
     public Boolean getCellBoolean(Cell cell) {
-        Object value = getCellValue(cell);
+        return booleanOf(getCellValue(cell));
+    }
+
+    /**
+     * @param value {@link #getCellValue(Cell)}形式的原始值
+     * @return
+     */
+    static Boolean booleanOf(Object value) {
         if (null == value) {
             return null;
         } else if (value instanceof Boolean) {
@@ -1220,7 +1279,7 @@ public class Excel {
      * @param defaultValue
      * @return
      */
-    private Boolean valueOf(String text, Boolean defaultValue) {
+    static Boolean valueOf(String text, Boolean defaultValue) {
         if (null == text || text.isEmpty() || text.trim().isEmpty()) {
             return defaultValue;
         }
@@ -1256,7 +1315,15 @@ public class Excel {
      * @return
      */
     public BigDecimal getCellDecimal(Cell cell) {
-        return toBigDecimal(numberOf(getCellValue(cell), null), BigDecimal.ZERO);
+        return decimalOf(getCellValue(cell));
+    }
+
+    /**
+     * @param value {@link #getCellValue(Cell)}形式的原始值
+     * @return
+     */
+    static BigDecimal decimalOf(Object value) {
+        return toBigDecimal(numberOf(value, null), BigDecimal.ZERO);
     }
 
     /**
@@ -1264,7 +1331,7 @@ public class Excel {
      * @param defaultValue
      * @return
      */
-    private BigDecimal toBigDecimal(Number n, BigDecimal defaultValue) {
+    static BigDecimal toBigDecimal(Number n, BigDecimal defaultValue) {
         if (null == n) {
             return null;
         } else if (n instanceof BigDecimal) {
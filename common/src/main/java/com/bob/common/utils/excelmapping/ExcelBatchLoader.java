@@ -0,0 +1,550 @@
+package com.bob.common.utils.excelmapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.bob.common.entity.base.BaseMapper;
+import com.bob.common.utils.excelmapping.exception.ExcelErrorIndex;
+import com.bob.common.utils.excelmapping.exception.ExcelMappingException;
+import com.bob.common.utils.validate.Group;
+import com.bob.common.utils.validate.ValidateProcessor;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Excel导入数据库的流水线加载器,解析,校验,写入三个阶段并行执行
+ * 解析阶段在调用线程上执行,每满{@link #batchSize}行交给校验线程,校验通过的行再交给写入线程,
+ * 写入线程以{@link ExecutorType#BATCH}批量执行insert,每{@link #commitSize}行提交一次事务;
+ * 阶段之间以有界队列连接,已解析未写入的行数不超过{@link #maxPendingRows},写入跟不上时解析阶段阻塞等待
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-15 10:00
+ */
+public class ExcelBatchLoader<T extends PropertyInitializer<T>, M extends BaseMapper<?, T>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExcelBatchLoader.class);
+
+    /**
+     * 阶段结束的标记
+     */
+    private static final List<?> END_OF_STREAM = Collections.unmodifiableList(new ArrayList<Object>(0));
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final Class<M> mapperClass;
+    private int batchSize = 1000;
+    private int commitSize = 10000;
+    private int maxPendingRows = 10000;
+    private Group validateGroup;
+    private BiConsumer<M, T> insertAction = (mapper, record) -> mapper.insert(record);
+
+    /**
+     * @param sqlSessionFactory
+     * @param mapperClass       已注册到SqlSessionFactory的Mapper接口
+     */
+    public ExcelBatchLoader(SqlSessionFactory sqlSessionFactory, Class<M> mapperClass) {
+        Assert.notNull(sqlSessionFactory, "SqlSessionFactory不能为空");
+        Assert.notNull(mapperClass, "Mapper接口不能为空");
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.mapperClass = mapperClass;
+    }
+
+    /**
+     * 加载流式解析器的结果
+     *
+     * @param processor
+     * @return
+     * @throws InterruptedException
+     */
+    public LoadResult load(StreamingExcelMappingProcessor<T> processor) throws InterruptedException {
+        return load(processor::process);
+    }
+
+    /**
+     * 加载解析器的正确结果,解析器会先完整解析,再以流水线的方式校验及写入
+     *
+     * @param processor
+     * @return
+     * @throws InterruptedException
+     */
+    public LoadResult load(ExcelMappingProcessor<T> processor) throws InterruptedException {
+        return load(consumer -> {
+            boolean success = processor.process();
+            processor.getCorrectResult().forEach(consumer);
+            return success;
+        });
+    }
+
+    /**
+     * 执行流水线加载
+     *
+     * @param source 数据来源,逐行交给消费者
+     * @return 加载结果,包含各阶段的统计信息,出错时不抛出异常
+     * @throws InterruptedException
+     */
+    public LoadResult load(RowSource<T> source) throws InterruptedException {
+        Assert.notNull(source, "数据来源不能为空");
+        int queueCapacity = Math.max(1, maxPendingRows / batchSize);
+        BlockingQueue<List<ExcelInstance<T>>> validateQueue = new ArrayBlockingQueue<List<ExcelInstance<T>>>(queueCapacity);
+        BlockingQueue<List<ExcelInstance<T>>> insertQueue = new ArrayBlockingQueue<List<ExcelInstance<T>>>(queueCapacity);
+        LoadResult result = new LoadResult();
+        CountDownLatch latch = new CountDownLatch(2);
+        long start = System.nanoTime();
+
+        Thread inserter = new Thread(() -> {
+            try {
+                runInsertStage(insertQueue, result);
+            } catch (Throwable ex) {
+                result.fail(ex);
+            } finally {
+                latch.countDown();
+            }
+        }, "excel-loader-insert");
+        Thread validator = new Thread(() -> {
+            try {
+                runValidateStage(validateQueue, insertQueue, inserter, result);
+            } catch (Throwable ex) {
+                result.fail(ex);
+            } finally {
+                latch.countDown();
+            }
+        }, "excel-loader-validate");
+        validator.setDaemon(true);
+        inserter.setDaemon(true);
+        validator.start();
+        inserter.start();
+
+        try {
+            runParseStage(source, validateQueue, result);
+        } catch (Throwable ex) {
+            result.fail(ex);
+        } finally {
+            // 解析异常时仍需通知下游结束,下游检测到失败会自行中止
+            offerEndOfStream(validateQueue, validator);
+        }
+        latch.await();
+        result.elapsedNanos = System.nanoTime() - start;
+        if (result.getFailure() != null) {
+            LOGGER.error(String.format("Excel导入中止,已提交[%d]行", result.getCommittedRows()), result.getFailure());
+        } else {
+            LOGGER.info(String.format("Excel导入完成,解析[%d]行,写入[%d]行,耗时[%d]ms", result.parse.getRows(), result.getCommittedRows(),
+                TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos)));
+        }
+        return result;
+    }
+
+    /**
+     * 解析阶段,按批次交给校验阶段
+     */
+    private void runParseStage(RowSource<T> source, BlockingQueue<List<ExcelInstance<T>>> validateQueue, LoadResult result) throws Exception {
+        PendingBatch<T> batch = new PendingBatch<T>(batchSize);
+        boolean success = source.process(instance -> {
+            batch.rows.add(instance);
+            if (batch.rows.size() >= batchSize) {
+                result.parse.record(batch.rows.size(), System.nanoTime() - batch.startNanos);
+                try {
+                    offer(validateQueue, batch.rows, result);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Excel导入被中断", ex);
+                }
+                batch.reset(batchSize);
+            }
+        });
+        if (!batch.rows.isEmpty()) {
+            result.parse.record(batch.rows.size(), System.nanoTime() - batch.startNanos);
+            offer(validateQueue, batch.rows, result);
+        }
+        result.parseSuccess = success;
+    }
+
+    /**
+     * 校验阶段,校验失败的行记录到错误索引,不写入数据库
+     */
+    private void runValidateStage(BlockingQueue<List<ExcelInstance<T>>> validateQueue, BlockingQueue<List<ExcelInstance<T>>> insertQueue,
+                                  Thread inserter, LoadResult result) throws InterruptedException {
+        try {
+            List<ExcelInstance<T>> batch;
+            while ((batch = take(validateQueue, result.validate)) != END_OF_STREAM) {
+                if (result.getFailure() != null) {
+                    // 继续消费直至结束标记,使上游不会阻塞在已满的队列上
+                    continue;
+                }
+                try {
+                    long start = System.nanoTime();
+                    List<ExcelInstance<T>> passed = validate(batch, result);
+                    result.validate.record(passed.size(), System.nanoTime() - start);
+                    if (!passed.isEmpty()) {
+                        offer(insertQueue, passed, result);
+                    }
+                } catch (RuntimeException ex) {
+                    result.fail(ex);
+                }
+            }
+        } finally {
+            offerEndOfStream(insertQueue, inserter);
+        }
+    }
+
+    private List<ExcelInstance<T>> validate(List<ExcelInstance<T>> batch, LoadResult result) {
+        if (validateGroup == null) {
+            return batch;
+        }
+        List<ExcelInstance<T>> passed = new ArrayList<ExcelInstance<T>>(batch.size());
+        for (ExcelInstance<T> instance : batch) {
+            try {
+                ValidateProcessor.doValidating(instance.getInstance(), validateGroup);
+                passed.add(instance);
+            } catch (IllegalArgumentException | IllegalStateException ex) {
+                result.addValidateError(instance, ex.getMessage());
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * 写入阶段,每批执行一次flushStatements,累计满{@link #commitSize}行提交一次
+     */
+    private void runInsertStage(BlockingQueue<List<ExcelInstance<T>>> insertQueue, LoadResult result) throws InterruptedException {
+        SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false);
+        int uncommitted = 0;
+        try {
+            M mapper = session.getMapper(mapperClass);
+            List<ExcelInstance<T>> batch;
+            while ((batch = take(insertQueue, result.insert)) != END_OF_STREAM) {
+                if (result.getFailure() != null) {
+                    // 继续消费直至结束标记,使上游不会阻塞在已满的队列上
+                    continue;
+                }
+                long start = System.nanoTime();
+                for (ExcelInstance<T> instance : batch) {
+                    insertAction.accept(mapper, instance.getInstance());
+                }
+                session.flushStatements();
+                uncommitted += batch.size();
+                if (uncommitted >= commitSize) {
+                    session.commit();
+                    result.commit(uncommitted);
+                    uncommitted = 0;
+                }
+                result.insert.record(batch.size(), System.nanoTime() - start);
+            }
+            if (result.getFailure() == null && uncommitted > 0) {
+                session.commit();
+                result.commit(uncommitted);
+                uncommitted = 0;
+            }
+        } catch (RuntimeException ex) {
+            result.fail(ex);
+            drain(insertQueue, result);
+        } finally {
+            if (uncommitted > 0) {
+                session.rollback();
+            }
+            session.close();
+        }
+    }
+
+    /**
+     * 写入失败后消费剩余的批次,直至结束标记
+     */
+    private void drain(BlockingQueue<List<ExcelInstance<T>>> queue, LoadResult result) throws InterruptedException {
+        while (take(queue, result.insert) != END_OF_STREAM) {
+        }
+    }
+
+    /**
+     * 放入下一阶段的队列,队列已满时阻塞,即背压;流水线已失败时放弃放入并中止当前阶段
+     *
+     * @param queue
+     * @param batch
+     * @param result
+     * @throws InterruptedException
+     */
+    private void offer(BlockingQueue<List<ExcelInstance<T>>> queue, List<ExcelInstance<T>> batch, LoadResult result)
+        throws InterruptedException {
+        while (!queue.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (result.getFailure() != null) {
+                throw new IllegalStateException("Excel导入已中止", result.getFailure());
+            }
+        }
+    }
+
+    /**
+     * 放入结束标记,即使流水线已失败也必须放入,下游才能结束;
+     * 下游线程已退出(如因Error终止而未消费剩余批次)时队列不会再有空位,放弃放入
+     *
+     * @param queue
+     * @param consumer 消费该队列的线程
+     * @throws InterruptedException
+     */
+    private void offerEndOfStream(BlockingQueue<List<ExcelInstance<T>>> queue, Thread consumer) throws InterruptedException {
+        while (!queue.offer(endOfStream(), OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!consumer.isAlive()) {
+                return;
+            }
+        }
+    }
+
+    private List<ExcelInstance<T>> take(BlockingQueue<List<ExcelInstance<T>>> queue, StageMetrics metrics) throws InterruptedException {
+        long start = System.nanoTime();
+        List<ExcelInstance<T>> batch = queue.take();
+        metrics.waitNanos.addAndGet(System.nanoTime() - start);
+        return batch;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ExcelInstance<T>> endOfStream() {
+        return (List<ExcelInstance<T>>)END_OF_STREAM;
+    }
+
+    /**
+     * 解析阶段正在累积的批次
+     *
+     * @param <T>
+     */
+    private static final class PendingBatch<T> {
+
+        private List<ExcelInstance<T>> rows;
+        private long startNanos;
+
+        PendingBatch(int batchSize) {
+            reset(batchSize);
+        }
+
+        void reset(int batchSize) {
+            this.rows = new ArrayList<ExcelInstance<T>>(batchSize);
+            this.startNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * @param batchSize 每批的行数,即每次flushStatements的行数,默认1000
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "批次大小必须大于0");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param commitSize 每次提交事务的行数,默认10000,小于批次大小时每批提交一次
+     */
+    public void setCommitSize(int commitSize) {
+        Assert.isTrue(commitSize > 0, "提交行数必须大于0");
+        this.commitSize = commitSize;
+    }
+
+    /**
+     * @param maxPendingRows 每个阶段队列中等待的最大行数,默认10000
+     */
+    public void setMaxPendingRows(int maxPendingRows) {
+        Assert.isTrue(maxPendingRows > 0, "最大等待行数必须大于0");
+        this.maxPendingRows = maxPendingRows;
+    }
+
+    /**
+     * @param validateGroup 校验分组,为null时不校验
+     */
+    public void setValidateGroup(Group validateGroup) {
+        this.validateGroup = validateGroup;
+    }
+
+    /**
+     * @param insertAction 写入单行的方式,默认为{@link BaseMapper#insert(Object)}
+     */
+    public void setInsertAction(BiConsumer<M, T> insertAction) {
+        Assert.notNull(insertAction, "写入方式不能为空");
+        this.insertAction = insertAction;
+    }
+
+    /**
+     * 数据来源,与{@link StreamingExcelMappingProcessor#process(Consumer)}的签名一致
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface RowSource<T> {
+
+        /**
+         * @param consumer
+         * @return 解析是否没有错误
+         * @throws Exception
+         */
+        boolean process(Consumer<ExcelInstance<T>> consumer) throws Exception;
+    }
+
+    /**
+     * 单个阶段的统计信息
+     */
+    public static class StageMetrics {
+
+        private final String name;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+
+        StageMetrics(String name) {
+            this.name = name;
+        }
+
+        void record(int rows, long nanos) {
+            this.rows.addAndGet(rows);
+            this.batches.incrementAndGet();
+            this.busyNanos.addAndGet(nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 本阶段输出的行数
+         */
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getBatches() {
+            return batches.get();
+        }
+
+        /**
+         * @return 处理数据的耗时,不含等待上游的时间
+         */
+        public long getBusyMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(busyNanos.get());
+        }
+
+        /**
+         * @return 等待上游数据的时间,解析阶段为0
+         */
+        public long getWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+        }
+
+        /**
+         * @return 每秒处理的行数,按处理耗时计算
+         */
+        public double getRowsPerSecond() {
+            long nanos = busyNanos.get();
+            return nanos == 0 ? 0 : rows.get() * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{rows=%d, batches=%d, busy=%dms, wait=%dms, rows/s=%.0f}", name, getRows(), getBatches(), getBusyMillis(),
+                getWaitMillis(), getRowsPerSecond());
+        }
+    }
+
+    /**
+     * 加载结果
+     */
+    public static class LoadResult {
+
+        private final StageMetrics parse = new StageMetrics("parse");
+        private final StageMetrics validate = new StageMetrics("validate");
+        private final StageMetrics insert = new StageMetrics("insert");
+        private final ExcelErrorIndex errorIndex = new ExcelErrorIndex();
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        private final AtomicLong committedRows = new AtomicLong();
+        private final AtomicLong commits = new AtomicLong();
+        private volatile boolean parseSuccess;
+        private long elapsedNanos;
+
+        void fail(Throwable ex) {
+            failure.compareAndSet(null, ex);
+        }
+
+        void commit(int rows) {
+            committedRows.addAndGet(rows);
+            commits.incrementAndGet();
+        }
+
+        /**
+         * 只有校验线程写入错误索引
+         */
+        void addValidateError(ExcelInstance<?> instance, String msg) {
+            ExcelMappingException ex = new ExcelMappingException(msg, instance.getRowIndex(), -1, null);
+            ex.setSheetIndex(instance.getSheetIndex());
+            errorIndex.addRowError(ex);
+        }
+
+        /**
+         * @return 全部写入且解析无错误
+         */
+        public boolean isSuccess() {
+            return failure.get() == null && parseSuccess && errorIndex.isEmpty();
+        }
+
+        /**
+         * @return 导致流水线中止的异常,正常结束时为null
+         */
+        public Throwable getFailure() {
+            return failure.get();
+        }
+
+        /**
+         * @return 解析器自身是否没有错误,解析错误由解析器的异常处理器记录
+         */
+        public boolean isParseSuccess() {
+            return parseSuccess;
+        }
+
+        /**
+         * @return 校验失败的行,只在流水线结束后读取
+         */
+        public ExcelErrorIndex getValidateErrors() {
+            return errorIndex;
+        }
+
+        /**
+         * @return 已提交的行数,中止时未提交的部分已回滚
+         */
+        public long getCommittedRows() {
+            return committedRows.get();
+        }
+
+        public long getCommits() {
+            return commits.get();
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        public StageMetrics getParseMetrics() {
+            return parse;
+        }
+
+        public StageMetrics getValidateMetrics() {
+            return validate;
+        }
+
+        public StageMetrics getInsertMetrics() {
+            return insert;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("LoadResult{committed=%d, commits=%d, elapsed=%dms, %s, %s, %s}", getCommittedRows(), getCommits(),
+                getElapsedMillis(), parse, validate, insert);
+        }
+    }
+
+}
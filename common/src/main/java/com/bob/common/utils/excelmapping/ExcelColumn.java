@@ -5,6 +5,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import com.bob.common.utils.excelmapping.transform.CellValueParser;
+
 /**
  * @since 2016年5月19日 下午4:54:29
  * @author JiangJibo
@@ -35,6 +37,15 @@ public @interface ExcelColumn {
 	 */
 	boolean notNull() default true;
 
+	/**
+	 * 单元格值解析器,每列一个实例,未指定时按属性类型解析<br>
+	 * 指定了属性转换器时,解析结果作为转换器的输入
+	 *
+	 * @return
+	 */
+	@SuppressWarnings("rawtypes")
+	Class<? extends CellValueParser> parser() default CellValueParser.class;
+
 	/**
 	 * 列信息
 	 */
@@ -0,0 +1,416 @@
+package com.bob.common.utils.excelmapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import com.bob.common.utils.excelmapping.exception.ExcelErrorIndex;
+import com.bob.common.utils.excelmapping.exception.ExcelErrorIndex.RowErrors;
+import com.bob.common.utils.excelmapping.exception.ExcelException;
+import org.apache.poi.hssf.util.HSSFColor.RED;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.Drawing;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * 基于{@link ExcelErrorIndex}生成错误报告,代替编辑模式下在整个Workbook上标记错误再整体写回的方式
+ * 1. 错误附表:新建一个只包含出错行的小Workbook,开销只与出错的行数相关;
+ * 2. 标注副本:以流的形式复制原XLSX文件,只在出错的行的错误栏(映射列之后的第一列)写入错误信息,
+ * 其余的行及文件内容原样复制,内存占用与文件大小无关
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-10 10:20
+ */
+public final class ExcelErrorReportWriter {
+
+    private static final String ERROR_SPLIT_BR = "\n";
+    private static final String SPREADSHEET_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String RELATIONSHIP_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String PACKAGE_RELATIONSHIP_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String STYLES_REL_TYPE = RELATIONSHIP_NS + "/styles";
+    private static final String WORKBOOK_PART = "xl/workbook.xml";
+    private static final String WORKBOOK_RELS_PART = "xl/_rels/workbook.xml.rels";
+
+    private ExcelErrorReportWriter() {
+    }
+
+    /**
+     * 生成错误附表,每个出错行一行:Excel行号,原始单元格值(source不为空时),错误信息;
+     * 出错的单元格标红并添加批注
+     *
+     * @param clazz      映射类
+     * @param source     原Excel,为空时(如流式解析)附表不包含原始值
+     * @param errorIndex
+     * @param output
+     * @throws IOException
+     */
+    public static void writeSidecar(Class<?> clazz, Excel source, ExcelErrorIndex errorIndex, OutputStream output) throws IOException {
+        ExcelMapping excelMapping = getExcelMapping(clazz);
+        int errorColumn = ExcelMappingProcessor.getExcelSchema(clazz).getErrorColumnIndex();
+        int sheetAt = excelMapping.sheetAt();
+        NavigableMap<Integer, RowErrors> rowErrors = errorIndex.getRowErrors(sheetAt);
+        int dataColumns = source == null ? 0 : errorColumn;
+        Sheet sourceSheet = source == null ? null : source.getSheetAt(sheetAt);
+
+        XSSFWorkbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet();
+        CellStyle errorCellStyle = createErrorCellStyle(workbook);
+        CreationHelper creationHelper = workbook.getCreationHelper();
+        Drawing drawing = sheet.createDrawingPatriarch();
+        // 1. 标题行
+        Row title = sheet.createRow(0);
+        title.createCell(0).setCellValue("行号");
+        Row sourceTitle = sourceSheet == null ? null : sourceSheet.getRow(excelMapping.titleRow());
+        for (int i = 0; i < dataColumns; i++) {
+            Cell sourceCell = sourceTitle == null ? null : sourceTitle.getCell(i);
+            title.createCell(i + 1).setCellValue(sourceCell == null ? CellReference.convertNumToColString(i) : source.getCellString(sourceCell));
+        }
+        title.createCell(dataColumns + 1).setCellValue("错误信息");
+        // 2. 出错行
+        int rowIndex = 1;
+        for (RowErrors errors : rowErrors.values()) {
+            Row row = sheet.createRow(rowIndex++);
+            row.createCell(0).setCellValue(errors.getRowIndex() + 1);
+            Row sourceRow = sourceSheet == null ? null : sourceSheet.getRow(errors.getRowIndex());
+            for (int i = 0; i < dataColumns; i++) {
+                Cell cell = row.createCell(i + 1);
+                if (sourceRow != null) {
+                    copyCellValue(source.getCellValue(sourceRow.getCell(i)), cell);
+                }
+                String cellError = errors.getCellErrors().get(i);
+                if (cellError != null) {
+                    cell.setCellStyle(errorCellStyle);
+                    ClientAnchor anchor = creationHelper.createClientAnchor();
+                    anchor.setCol1(i + 1);
+                    anchor.setCol2(i + 4);
+                    anchor.setRow1(row.getRowNum());
+                    anchor.setRow2(row.getRowNum() + 3);
+                    Comment comment = drawing.createCellComment(anchor);
+                    comment.setString(creationHelper.createRichTextString(cellError));
+                    cell.setCellComment(comment);
+                }
+            }
+            Cell msgCell = row.createCell(dataColumns + 1);
+            msgCell.setCellStyle(errorCellStyle);
+            msgCell.setCellValue(errors.getCombinedMsg(ERROR_SPLIT_BR));
+        }
+        workbook.write(output);
+    }
+
+    private static void copyCellValue(Object value, Cell cell) {
+        if (value instanceof Double) {
+            cell.setCellValue((Double)value);
+        } else if (value instanceof Date) {
+            cell.setCellValue(Excel.stringOf(value, null));
+        } else if (value instanceof Boolean) {
+            cell.setCellValue((Boolean)value);
+        } else if (value != null) {
+            cell.setCellValue(value.toString());
+        }
+    }
+
+    private static CellStyle createErrorCellStyle(XSSFWorkbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        Font font = workbook.createFont();
+        font.setFontName("宋体");
+        font.setFontHeightInPoints((short)10);
+        font.setColor(RED.index);
+        font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+        style.setFont(font);
+        style.setWrapText(true);
+        return style;
+    }
+
+    /**
+     * 以流的形式复制XLSX文件,在出错行的错误栏写入错误信息,同时清除其它数据行上一次校验遗留的错误信息
+     * 需要随机读取压缩包内的Workbook描述以定位Sheet,所以原文件以{@link File}形式传入
+     *
+     * @param clazz      映射类
+     * @param source     原XLSX文件
+     * @param errorIndex
+     * @param output
+     * @throws IOException
+     */
+    public static void writeAnnotatedCopy(Class<?> clazz, File source, ExcelErrorIndex errorIndex, OutputStream output) throws IOException {
+        ExcelMapping excelMapping = getExcelMapping(clazz);
+        int errorColumn = ExcelMappingProcessor.getExcelSchema(clazz).getErrorColumnIndex();
+        NavigableMap<Integer, RowErrors> rowErrors = errorIndex.getRowErrors(excelMapping.sheetAt());
+        try (ZipFile zipFile = new ZipFile(source)) {
+            Map<String, String> workbookRels = readRelationships(zipFile, WORKBOOK_RELS_PART);
+            String sheetPart = resolveSheetPart(zipFile, workbookRels, excelMapping.sheetAt());
+            String stylesPart = null;
+            for (Entry<String, String> entry : workbookRels.entrySet()) {
+                if (entry.getKey().startsWith(STYLES_REL_TYPE + "#")) {
+                    stylesPart = entry.getValue();
+                }
+            }
+            ZipOutputStream zipOutput = new ZipOutputStream(output);
+            int errorStyle = -1;
+            // 样式表先于Sheet写出时需要先确定错误样式的序号
+            if (stylesPart != null) {
+                errorStyle = countCellXfs(zipFile, stylesPart);
+            }
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                zipOutput.putNextEntry(new ZipEntry(entry.getName()));
+                try (InputStream input = zipFile.getInputStream(entry)) {
+                    if (entry.getName().equals(sheetPart)) {
+                        annotateSheet(input, zipOutput, rowErrors, excelMapping.dataRow(), errorColumn, errorStyle);
+                    } else if (entry.getName().equals(stylesPart)) {
+                        appendErrorStyle(input, zipOutput);
+                    } else {
+                        StreamUtils.copy(input, zipOutput);
+                    }
+                }
+                zipOutput.closeEntry();
+            }
+            zipOutput.finish();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ExcelException("生成Excel错误标注副本失败", e);
+        }
+    }
+
+    /**
+     * 流式复制Sheet,只改动出错行及遗留了错误信息的行
+     */
+    private static void annotateSheet(InputStream input, OutputStream output, NavigableMap<Integer, RowErrors> rowErrors,
+                                      int dataRow, int errorColumn, int errorStyle) throws Exception {
+        XMLEventReader reader = newInputFactory().createXMLEventReader(input);
+        XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(output, "UTF-8");
+        XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+        int rowIndex = -1;
+        int columnIndex = -1;
+        RowErrors errors = null;
+        boolean written = false;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.getEventType() == XMLStreamConstants.DTD) {
+                // 不处理DTD,也不将其复制到副本中
+                continue;
+            }
+            if (event.isStartElement()) {
+                StartElement element = event.asStartElement();
+                String name = element.getName().getLocalPart();
+                if ("row".equals(name)) {
+                    Attribute ref = element.getAttributeByName(new QName("r"));
+                    rowIndex = ref == null ? rowIndex + 1 : Integer.parseInt(ref.getValue()) - 1;
+                    columnIndex = -1;
+                    errors = rowErrors.get(rowIndex);
+                    written = false;
+                } else if ("c".equals(name) && rowIndex >= dataRow) {
+                    Attribute ref = element.getAttributeByName(new QName("r"));
+                    columnIndex = ref == null ? columnIndex + 1 : new CellReference(ref.getValue()).getCol();
+                    if (columnIndex == errorColumn) {
+                        // 略过原有的错误栏
+                        skipElement(reader);
+                        continue;
+                    }
+                    if (columnIndex > errorColumn && errors != null && !written) {
+                        writeErrorCell(writer, eventFactory, element.getName(), rowIndex, errorColumn, errorStyle, errors);
+                        written = true;
+                    }
+                }
+            } else if (event.isEndElement() && "row".equals(event.asEndElement().getName().getLocalPart())) {
+                if (errors != null && !written) {
+                    QName cellName = new QName(event.asEndElement().getName().getNamespaceURI(), "c",
+                        event.asEndElement().getName().getPrefix());
+                    writeErrorCell(writer, eventFactory, cellName, rowIndex, errorColumn, errorStyle, errors);
+                    written = true;
+                }
+            }
+            writer.add(event);
+        }
+        writer.flush();
+    }
+
+    /**
+     * 不支持DTD及外部实体的StAX工厂,防止XXE
+     *
+     * @return
+     */
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static void skipElement(XMLEventReader reader) throws Exception {
+        int depth = 1;
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+        }
+    }
+
+    private static void writeErrorCell(XMLEventWriter writer, XMLEventFactory eventFactory, QName cellName, int rowIndex,
+                                       int errorColumn, int errorStyle, RowErrors errors) throws Exception {
+        String prefix = cellName.getPrefix();
+        String namespace = cellName.getNamespaceURI();
+        String ref = CellReference.convertNumToColString(errorColumn) + (rowIndex + 1);
+        writer.add(eventFactory.createStartElement(prefix, namespace, "c"));
+        writer.add(eventFactory.createAttribute("r", ref));
+        writer.add(eventFactory.createAttribute("t", "inlineStr"));
+        if (errorStyle >= 0) {
+            writer.add(eventFactory.createAttribute("s", String.valueOf(errorStyle)));
+        }
+        writer.add(eventFactory.createStartElement(prefix, namespace, "is"));
+        writer.add(eventFactory.createStartElement(prefix, namespace, "t"));
+        writer.add(eventFactory.createCharacters(errors.getCombinedMsg(ERROR_SPLIT_BR)));
+        writer.add(eventFactory.createEndElement(prefix, namespace, "t"));
+        writer.add(eventFactory.createEndElement(prefix, namespace, "is"));
+        writer.add(eventFactory.createEndElement(prefix, namespace, "c"));
+    }
+
+    /**
+     * 在样式表末尾追加错误样式:红色加粗字体,自动换行
+     */
+    private static void appendErrorStyle(InputStream input, OutputStream output) throws Exception {
+        Document document = parse(input);
+        Element fonts = (Element)document.getElementsByTagNameNS(SPREADSHEET_NS, "fonts").item(0);
+        Element cellXfs = (Element)document.getElementsByTagNameNS(SPREADSHEET_NS, "cellXfs").item(0);
+        int fontId = countChildren(fonts, "font");
+        Element font = document.createElementNS(SPREADSHEET_NS, "font");
+        appendChild(font, "b", null);
+        appendChild(font, "sz", "10");
+        appendChild(font, "color", null).setAttribute("rgb", "FFFF0000");
+        appendChild(font, "name", "宋体");
+        fonts.appendChild(font);
+        fonts.setAttribute("count", String.valueOf(fontId + 1));
+
+        int xfCount = countChildren(cellXfs, "xf");
+        Element xf = document.createElementNS(SPREADSHEET_NS, "xf");
+        xf.setAttribute("numFmtId", "0");
+        xf.setAttribute("fontId", String.valueOf(fontId));
+        xf.setAttribute("fillId", "0");
+        xf.setAttribute("borderId", "0");
+        xf.setAttribute("applyFont", "1");
+        xf.setAttribute("applyAlignment", "1");
+        appendChild(xf, "alignment", null).setAttribute("wrapText", "1");
+        cellXfs.appendChild(xf);
+        cellXfs.setAttribute("count", String.valueOf(xfCount + 1));
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(output));
+    }
+
+    private static Element appendChild(Element parent, String name, String val) {
+        Element child = parent.getOwnerDocument().createElementNS(SPREADSHEET_NS, name);
+        if (val != null) {
+            child.setAttribute("val", val);
+        }
+        parent.appendChild(child);
+        return child;
+    }
+
+    private static int countChildren(Element parent, String name) {
+        int count = 0;
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && name.equals(node.getLocalName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countCellXfs(ZipFile zipFile, String stylesPart) throws Exception {
+        try (InputStream input = zipFile.getInputStream(zipFile.getEntry(stylesPart))) {
+            Element cellXfs = (Element)parse(input).getElementsByTagNameNS(SPREADSHEET_NS, "cellXfs").item(0);
+            return countChildren(cellXfs, "xf");
+        }
+    }
+
+    /**
+     * 读取关系描述
+     *
+     * @return "Type#Id" >> 压缩包内的路径
+     */
+    private static Map<String, String> readRelationships(ZipFile zipFile, String relsPart) throws Exception {
+        ZipEntry entry = zipFile.getEntry(relsPart);
+        Assert.notNull(entry, "不是有效的XLSX文件,缺少" + relsPart);
+        Map<String, String> rels = new HashMap<String, String>();
+        try (InputStream input = zipFile.getInputStream(entry)) {
+            NodeList relationships = parse(input).getElementsByTagNameNS(PACKAGE_RELATIONSHIP_NS, "Relationship");
+            for (int i = 0; i < relationships.getLength(); i++) {
+                Element relationship = (Element)relationships.item(i);
+                String target = relationship.getAttribute("Target");
+                target = target.startsWith("/") ? target.substring(1) : "xl/" + target;
+                rels.put(relationship.getAttribute("Type") + "#" + relationship.getAttribute("Id"), target);
+            }
+        }
+        return rels;
+    }
+
+    private static String resolveSheetPart(ZipFile zipFile, Map<String, String> workbookRels, int sheetAt) throws Exception {
+        try (InputStream input = zipFile.getInputStream(zipFile.getEntry(WORKBOOK_PART))) {
+            NodeList sheets = parse(input).getElementsByTagNameNS(SPREADSHEET_NS, "sheet");
+            Assert.isTrue(sheetAt < sheets.getLength(), String.format("解析Excel错误，不存在第%d页", sheetAt));
+            String id = ((Element)sheets.item(sheetAt)).getAttributeNS(RELATIONSHIP_NS, "id");
+            for (Entry<String, String> entry : workbookRels.entrySet()) {
+                if (entry.getKey().endsWith("#" + id)) {
+                    return entry.getValue();
+                }
+            }
+        }
+        throw new ExcelException(String.format("解析Excel错误，未找到第%d页的数据", sheetAt));
+    }
+
+    private static Document parse(InputStream input) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setExpandEntityReferences(false);
+        return factory.newDocumentBuilder().parse(input);
+    }
+
+    private static ExcelMapping getExcelMapping(Class<?> clazz) {
+        ExcelMapping excelMapping = clazz.getAnnotation(ExcelMapping.class);
+        Assert.notNull(excelMapping, "解析Excel对象{" + clazz.getSimpleName() + "}未标识ExcelMapping注解，请联系系统维护人员！");
+        return excelMapping;
+    }
+
+}
@@ -12,6 +12,7 @@ import java.io.Serializable;
 public class ExcelInstance<T> implements Serializable {
 	private static final long serialVersionUID = 4183046707691570188L;
 
+	private int sheetIndex;
 	private int rowIndex;
 	private T instance;
 
@@ -21,6 +22,28 @@ public class ExcelInstance<T> implements Serializable {
 		this.instance = instance;
 	}
 
+	public ExcelInstance(int sheetIndex, int rowIndex, T instance) {
+		this(rowIndex, instance);
+		this.sheetIndex = sheetIndex;
+	}
+
+	/**
+	 * 页码
+	 *
+	 * @return the sheetIndex
+	 */
+	public int getSheetIndex() {
+		return sheetIndex;
+	}
+
+	/**
+	 * @param sheetIndex
+	 *            the sheetIndex to set
+	 */
+	public void setSheetIndex(int sheetIndex) {
+		this.sheetIndex = sheetIndex;
+	}
+
 	/**
 	 * 行号
 	 * 
@@ -1,5 +1,7 @@
 package com.bob.common.utils.excelmapping;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -8,15 +10,18 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
 
 import com.bob.common.utils.excelmapping.exception.ExcelMappingException;
 import com.bob.common.utils.excelmapping.exception.MappingExceptionResolver;
@@ -33,7 +38,9 @@ import org.apache.poi.ss.usermodel.Drawing;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
@@ -56,7 +63,6 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ExcelMappingProcessor.class);
 
     private boolean hasError = false;
-    private ExcelColumn lastExcelColumn;
     private final static String ERROR_SPLIT_BR = "\n";
 
     //private final Excel excel;
@@ -70,16 +76,20 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
     private final CellStyle errorCellStyle;
     private final Drawing drawingPatriarch;
     private final ClientAnchor clientAnchor;
-    private static final Map<Class<?>, LinkedHashMap<Field, ExcelColumn>> EXCEL_MAPPINGS = new ConcurrentHashMap<Class<?>, LinkedHashMap<Field, ExcelColumn>>();
+    private static final ConcurrentHashMap<Class<?>, ExcelSchema> EXCEL_SCHEMAS = new ConcurrentHashMap<Class<?>, ExcelSchema>();
     private static final Map<Field, FieldConverter<?, ?>> FIELD_CONVERTERS = new ConcurrentHashMap<>();
-    private final LinkedHashMap<String, ExcelColumn> fieldColumns;
-    private final LinkedHashMap<String, ExcelColumn> keyFieldColumns;
     private final LinkedHashMap<String, ExcelInstance<T>> correctResult;
+    private ColumnarExcelResult columnarResult;
 
     private final MappingExceptionResolver exceptionResolver;
 
     private static final String EXCELCOLUMN_ANN_NAME = ExcelColumn.class.getSimpleName();
 
+    /**
+     * 并行解析时每个区间的默认行数
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
     /**
      * 构建Excel解析器<br>
      * Default promptAuthor is {@linkplain ExcelPromptAuthor}
@@ -111,8 +121,6 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
         // 2.初始化参数
         this.promptAuthor = promptAuthor.getAuthor();
         this.version = new SimpleDateFormat("HHmmss").format(new Date());
-        this.fieldColumns = new LinkedHashMap<String, ExcelColumn>();
-        this.keyFieldColumns = new LinkedHashMap<String, ExcelColumn>();
         this.correctResult = new LinkedHashMap<String, ExcelInstance<T>>();
         // 3. 创建批注框
         if (excel.isXLSX()) {
@@ -157,13 +165,13 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      * @return the fieldColumns
      */
     public LinkedHashMap<String, ExcelColumn> getFieldColumns() {
-        return fieldColumns;
+        return new LinkedHashMap<String, ExcelColumn>(getExcelSchema().getFieldColumns());
     }
 
     /**
-     * 创建Excel到Model的映射
+     * 创建Excel到Model的映射,按列序号排序
      */
-    private static void buildExcelMapping(Class<?> clazz) {
+    private static LinkedHashMap<Field, ExcelColumn> buildExcelMapping(Class<?> clazz) {
         Map<Field, ExcelColumn> fieldColumns = new HashMap<Field, ExcelColumn>();
         //解析标识了@ExcelColumn注解的属性
         ReflectionUtils.doWithFields(clazz, (field) -> {
@@ -201,19 +209,13 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
             fieldColumns.put(field, column);
         });
         //对属性集合映射做排序
+        List<Entry<Field, ExcelColumn>> entries = new ArrayList<Entry<Field, ExcelColumn>>(fieldColumns.entrySet());
+        entries.sort(Comparator.comparingInt(entry -> entry.getValue().value().value));
         LinkedHashMap<Field, ExcelColumn> fieldMappings = new LinkedHashMap<Field, ExcelColumn>();
-        List<ExcelColumn> values = new ArrayList<ExcelColumn>(fieldColumns.values());
-        Collections.sort(values, Comparator.comparingInt(o -> o.value().value));
-        for (ExcelColumn excelColumn : values) {
-            for (Entry<Field, ExcelColumn> entry : fieldColumns.entrySet()) {
-                if (entry.getValue() == excelColumn) {
-                    fieldMappings.put(entry.getKey(), entry.getValue());
-                    fieldColumns.remove(entry.getKey());
-                    break;
-                }
-            }
+        for (Entry<Field, ExcelColumn> entry : entries) {
+            fieldMappings.put(entry.getKey(), entry.getValue());
         }
-        EXCEL_MAPPINGS.put(clazz, fieldMappings);
+        return fieldMappings;
     }
 
     /**
@@ -245,29 +247,53 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
     }
 
     /**
-     * 获取当前类的映射集合
+     * 获取当前类的映射元数据
      *
      * @return
      */
-    private LinkedHashMap<Field, ExcelColumn> getExcelMapping() {
-        return getExcelMapping(clazz);
+    private ExcelSchema getExcelSchema() {
+        return getExcelSchema(clazz);
     }
 
     /**
-     * 获取当前类的映射集合
+     * 获取指定类的映射元数据,首次获取时构建,之后无锁读取
      *
      * @param clazz
      * @return
      */
-    public static LinkedHashMap<Field, ExcelColumn> getExcelMapping(Class<?> clazz) {
-        if (EXCEL_MAPPINGS.get(clazz) == null) {
-            synchronized (clazz) {
-                if (EXCEL_MAPPINGS.get(clazz) == null) {
-                    buildExcelMapping(clazz);
-                }
-            }
+    public static ExcelSchema getExcelSchema(Class<?> clazz) {
+        ExcelSchema schema = EXCEL_SCHEMAS.get(clazz);
+        if (schema == null) {
+            schema = EXCEL_SCHEMAS.computeIfAbsent(clazz, key -> new ExcelSchema(key, buildExcelMapping(key), ExcelMappingProcessor::getConverter));
         }
-        return EXCEL_MAPPINGS.get(clazz);
+        return schema;
+    }
+
+    /**
+     * 获取指定类的映射集合的副本
+     *
+     * @param clazz
+     * @return
+     */
+    public static LinkedHashMap<Field, ExcelColumn> getExcelMapping(Class<?> clazz) {
+        return new LinkedHashMap<Field, ExcelColumn>(getExcelSchema(clazz).getFieldMappings());
+    }
+
+    /**
+     * 获取指定类的行绑定器
+     *
+     * @param clazz
+     * @return
+     */
+    static RowBinder getRowBinder(Class<?> clazz) {
+        return getExcelSchema(clazz).getRowBinder();
+    }
+
+    /**
+     * 属性转换器变更后,以新的元数据替换当前类的元数据
+     */
+    private void rebuildExcelSchema() {
+        EXCEL_SCHEMAS.computeIfPresent(clazz, (key, schema) -> schema.withConverters(ExcelMappingProcessor::getConverter));
     }
 
     /**
@@ -279,7 +305,8 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
         // 循环每一行 循环每一列，获取每一个单元格的数值，通过注解设置到指定属性中
         final int physRow = excel.getSheetAt(sheetAt).getPhysicalNumberOfRows();
         Assert.isTrue(physRow > dataRow, String.format("解析Excel错误，Excel实际可读取的物理行数%d小于指定的数据行数%d", physRow, dataRow));
-        LinkedHashMap<Field, ExcelColumn> fieldColumns = this.getExcelMapping();
+        ExcelSchema schema = getExcelSchema();
+        RowBinder rowBinder = schema.getRowBinder();
         for (int i = dataRow; i < physRow; i++) {
             final int rowIndex = i;
             if (exceptionResolver.excelEditorMode()) {
@@ -289,12 +316,10 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
             final StringBuilder keyBuilder = new StringBuilder();
             boolean hasRowError = false;
             //遍历Key Column
-            for (Entry<Field, ExcelColumn> entry : fieldColumns.entrySet()) {
-                Field field = entry.getKey();
-                ExcelColumn excelColumn = entry.getValue();
-                if (excelColumn.value().value + 1 == fieldColumns.size() && null == lastExcelColumn) {
-                    lastExcelColumn = excelColumn;
-                }
+            for (int j = 0; j < rowBinder.size(); j++) {
+                RowBinder.ColumnBinding binding = rowBinder.get(j);
+                Field field = binding.getField();
+                ExcelColumn excelColumn = binding.getExcelColumn();
                 ExcelColumn.Column column = excelColumn.value();
                 Cell cell = excel.getCell(rowIndex, column.value);
                 if (excelColumn.notNull()) {
@@ -302,24 +327,19 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
                 }
                 Object value;
                 try {
-                    value = getCellValue(cell, field, excelColumn);
+                    value = binding.resolve(excel.getCellValue(cell));
                 } catch (Exception e) {
                     hasRowError = true;
-                    if (!exceptionResolver.handleCellTypeMismatch(new ExcelMappingException(e.getMessage(), rowIndex, column.value, this))) {
+                    if (!exceptionResolver.handleCellTypeMismatch(mappingException(e.getMessage(), rowIndex, column.value))) {
                         LOGGER.warn("因类型不匹配中止解析解析Excel，当前解析到第[{}]行第[{}]列", rowIndex, column.value);
                         return false;
                     }
                     continue;
                 }
-                boolean isKey = excelColumn.key();
-                if (rowIndex == dataRow && isKey) {
-                    keyFieldColumns.put(field.getName(), excelColumn);
-                }
-                if (isKey) {
+                if (excelColumn.key()) {
                     keyBuilder.append("[").append(field.getName()).append(":").append(value).append("]");
                 }
-                field.setAccessible(true);
-                ReflectionUtils.setField(field, newInstance, value);
+                binding.bind(newInstance, value);
 
                 if (exceptionResolver.excelEditorMode()) {
                     removeErrorPrompt(cell);
@@ -331,8 +351,8 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
                 continue;
             }
 
-            if (keyFieldColumns.isEmpty()) {
-                correctResult.put(String.valueOf(rowIndex), new ExcelInstance<T>(rowIndex, newInstance));
+            if (!schema.hasKeyColumns()) {
+                correctResult.put(String.valueOf(rowIndex), new ExcelInstance<T>(sheetAt, rowIndex, newInstance));
                 continue;
             }
 
@@ -342,13 +362,13 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
                 this.setError();
                 int dupRowIndex = correctResult.get(key).getRowIndex() + 1;
                 String errorMsg = "此行与第" + dupRowIndex + "行的数据存在重复情况";
-                if (!exceptionResolver.handleRowUniqueConflict(new ExcelMappingException(errorMsg, rowIndex, 0, this))) {
+                if (!exceptionResolver.handleRowUniqueConflict(mappingException(errorMsg, rowIndex, 0))) {
                     LOGGER.warn("因行唯一性冲突中止解析解析Excel，当前解析到第[{}]行", rowIndex);
                     return false;
                 }
                 continue;
             }
-            correctResult.put(keyBuilder.toString(), new ExcelInstance<T>(rowIndex, newInstance));
+            correctResult.put(keyBuilder.toString(), new ExcelInstance<T>(sheetAt, rowIndex, newInstance));
         }
         // 在标题行中标记唯一键
         if (exceptionResolver.excelEditorMode()) {
@@ -358,6 +378,302 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
         return !hasError;
     }
 
+    /**
+     * 按列解析Excel,不为每行创建对象,解析正确的数据存放在{@link #getColumnarResult()}内
+     * 单元格的校验,异常处理及唯一性校验与{@link #process()}一致
+     *
+     * @return hasError ? false : true;
+     * @throws Exception
+     */
+    public boolean processColumnar() throws Exception {
+        final int physRow = excel.getSheetAt(sheetAt).getPhysicalNumberOfRows();
+        Assert.isTrue(physRow > dataRow, String.format("解析Excel错误，Excel实际可读取的物理行数%d小于指定的数据行数%d", physRow, dataRow));
+        RowBinder rowBinder = getRowBinder(clazz);
+        columnarResult = new ColumnarExcelResult(rowBinder);
+        // 唯一键 >> 行号
+        Map<String, Integer> keyRowMappings = new HashMap<String, Integer>();
+        Object[] values = new Object[rowBinder.size()];
+        for (int rowIndex = dataRow; rowIndex < physRow; rowIndex++) {
+            if (exceptionResolver.excelEditorMode()) {
+                this.removeErrorMsg(rowIndex);
+            }
+            StringBuilder keyBuilder = rowBinder.isKeyed() ? new StringBuilder() : null;
+            boolean hasRowError = false;
+            for (int j = 0; j < rowBinder.size(); j++) {
+                RowBinder.ColumnBinding binding = rowBinder.get(j);
+                ExcelColumn excelColumn = binding.getExcelColumn();
+                Cell cell = excel.getCell(rowIndex, binding.getColumn());
+                if (excelColumn.notNull()) {
+                    Assert.notNull(cell, String.format("获取Excel单元格%d行%s列为空", rowIndex + 1, excelColumn.value().name));
+                }
+                try {
+                    values[j] = binding.resolve(excel.getCellValue(cell));
+                } catch (Exception e) {
+                    hasRowError = true;
+                    if (!exceptionResolver.handleCellTypeMismatch(mappingException(e.getMessage(), rowIndex, binding.getColumn()))) {
+                        LOGGER.warn("因类型不匹配中止解析解析Excel，当前解析到第[{}]行第[{}]列", rowIndex, binding.getColumn());
+                        return false;
+                    }
+                    continue;
+                }
+                if (excelColumn.key()) {
+                    keyBuilder.append("[").append(binding.getField().getName()).append(":").append(values[j]).append("]");
+                }
+                if (exceptionResolver.excelEditorMode()) {
+                    removeErrorPrompt(cell);
+                }
+            }
+            if (hasRowError) {
+                this.setError();
+                continue;
+            }
+            if (keyBuilder != null) {
+                Integer dupRowIndex = keyRowMappings.putIfAbsent(keyBuilder.toString(), rowIndex);
+                if (dupRowIndex != null) {
+                    this.setError();
+                    String errorMsg = "此行与第" + (dupRowIndex + 1) + "行的数据存在重复情况";
+                    if (!exceptionResolver.handleRowUniqueConflict(mappingException(errorMsg, rowIndex, 0))) {
+                        LOGGER.warn("因行唯一性冲突中止解析解析Excel，当前解析到第[{}]行", rowIndex);
+                        return false;
+                    }
+                    continue;
+                }
+            }
+            columnarResult.append(rowIndex, values);
+        }
+        if (exceptionResolver.excelEditorMode()) {
+            markKeyColumnsPrompt();
+        }
+        return !hasError;
+    }
+
+    /**
+     * 获取按列解析的结果,仅在通过{@link #processColumnar()}解析后有值
+     *
+     * @return
+     */
+    public ColumnarExcelResult getColumnarResult() {
+        return columnarResult;
+    }
+
+    /**
+     * 并行解析{@link ExcelMapping#sheetAt()}指定的页,使用公共ForkJoin线程池
+     *
+     * @return hasError ? false : true;
+     * @throws Exception
+     * @see #processParallel(ForkJoinPool, int, int...)
+     */
+    public boolean processParallel() throws Exception {
+        return processParallel(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 并行解析Excel
+     * 每页按行拆分为不超过chunkSize行的区间,在ForkJoin线程池内并行读取及转换,多页同时解析;
+     * 异常处理器的回调及唯一性校验在合并阶段按页序,行号顺序执行,所以解析结果与{@link #process()}一致。
+     * 并行读取时不能修改Workbook,所以不支持在Excel上编辑错误信息。
+     * XSSF单元格的读取依赖XmlBeans,其内部存在同步,XLSX的并行收益主要来自于数据转换部分
+     *
+     * @param pool         线程池
+     * @param chunkSize    每个区间的最大行数
+     * @param sheetIndexes 待解析的页,为空时解析{@link ExcelMapping#sheetAt()}指定的页
+     * @return hasError ? false : true;
+     * @throws Exception
+     */
+    public boolean processParallel(ForkJoinPool pool, int chunkSize, int... sheetIndexes) throws Exception {
+        Assert.notNull(pool, "线程池不能为空");
+        Assert.isTrue(chunkSize > 0, "区间行数必须大于0");
+        Assert.isTrue(!exceptionResolver.excelEditorMode(), "并行解析不支持在Excel上编辑错误信息");
+        if (ObjectUtils.isEmpty(sheetIndexes)) {
+            sheetIndexes = new int[] {sheetAt};
+        }
+        RowBinder rowBinder = getRowBinder(clazz);
+        // 1. 各页同时提交
+        List<RowRangeTask> tasks = new ArrayList<RowRangeTask>(sheetIndexes.length);
+        for (int sheetIndex : sheetIndexes) {
+            Sheet sheet = excel.getSheetAt(sheetIndex);
+            int physRow = sheet.getPhysicalNumberOfRows();
+            Assert.isTrue(physRow > dataRow, String.format("解析Excel错误，第%d页实际可读取的物理行数%d小于指定的数据行数%d", sheetIndex, physRow, dataRow));
+            RowRangeTask task = new RowRangeTask(sheetIndex, sheet, rowBinder, dataRow, physRow, chunkSize);
+            tasks.add(task);
+            pool.execute(task);
+        }
+        // 2. 按页序,行号顺序合并
+        boolean multiSheet = sheetIndexes.length > 1;
+        for (RowRangeTask task : tasks) {
+            for (RowResult<T> result : task.join()) {
+                if (!mergeRowResult(result, multiSheet)) {
+                    return false;
+                }
+            }
+        }
+        return !hasError;
+    }
+
+    /**
+     * 合并一行的并行解析结果
+     *
+     * @param result
+     * @param multiSheet
+     * @return 是否继续合并
+     * @throws Exception
+     */
+    private boolean mergeRowResult(RowResult<T> result, boolean multiSheet) throws Exception {
+        int rowIndex = result.rowIndex;
+        if (result.errors != null) {
+            this.setError();
+            for (ExcelMappingException ex : result.errors) {
+                if (!exceptionResolver.handleCellTypeMismatch(ex)) {
+                    LOGGER.warn("因类型不匹配中止解析解析Excel，当前解析到第[{}]页第[{}]行第[{}]列", result.sheetIndex, rowIndex, ex.getColumnIndex());
+                    return false;
+                }
+            }
+            return true;
+        }
+        String key = result.key;
+        if (key == null) {
+            key = multiSheet ? result.sheetIndex + ":" + rowIndex : String.valueOf(rowIndex);
+        } else if (correctResult.containsKey(key)) {
+            this.setError();
+            ExcelInstance<T> duplicate = correctResult.get(key);
+            String errorMsg = "此行与第" + (duplicate.getRowIndex() + 1) + "行的数据存在重复情况";
+            if (duplicate.getSheetIndex() != result.sheetIndex) {
+                errorMsg = "此行与" + excel.getWorkbook().getSheetName(duplicate.getSheetIndex()) + "页第" + (duplicate.getRowIndex() + 1) + "行的数据存在重复情况";
+            }
+            ExcelMappingException ex = new ExcelMappingException(errorMsg, rowIndex, 0, this);
+            ex.setSheetIndex(result.sheetIndex);
+            if (!exceptionResolver.handleRowUniqueConflict(ex)) {
+                LOGGER.warn("因行唯一性冲突中止解析解析Excel，当前解析到第[{}]页第[{}]行", result.sheetIndex, rowIndex);
+                return false;
+            }
+            return true;
+        }
+        correctResult.put(key, new ExcelInstance<T>(result.sheetIndex, rowIndex, result.instance));
+        return true;
+    }
+
+    /**
+     * 转换一行数据,只读取单元格,不修改Workbook
+     *
+     * @param sheetIndex
+     * @param sheet
+     * @param rowIndex
+     * @param rowBinder
+     * @return
+     */
+    private RowResult<T> convertRow(int sheetIndex, Sheet sheet, int rowIndex, RowBinder rowBinder) {
+        RowResult<T> result = new RowResult<T>(sheetIndex, rowIndex);
+        T newInstance = BeanUtils.instantiate(clazz).initProperties();
+        StringBuilder keyBuilder = null;
+        Row row = sheet.getRow(rowIndex);
+        for (int i = 0; i < rowBinder.size(); i++) {
+            RowBinder.ColumnBinding binding = rowBinder.get(i);
+            ExcelColumn excelColumn = binding.getExcelColumn();
+            int column = binding.getColumn();
+            Cell cell = row == null ? null : row.getCell(column);
+            if (excelColumn.notNull()) {
+                Assert.notNull(cell, String.format("获取Excel单元格%d行%s列为空", rowIndex + 1, excelColumn.value().name));
+            }
+            Object value;
+            try {
+                value = binding.resolve(cell == null ? null : excel.getCellValue(cell));
+            } catch (Exception e) {
+                ExcelMappingException ex = new ExcelMappingException(e.getMessage(), rowIndex, column, this);
+                ex.setSheetIndex(sheetIndex);
+                result.addError(ex);
+                continue;
+            }
+            if (excelColumn.key()) {
+                keyBuilder = keyBuilder == null ? new StringBuilder() : keyBuilder;
+                keyBuilder.append("[").append(binding.getField().getName()).append(":").append(value).append("]");
+            }
+            binding.bind(newInstance, value);
+        }
+        result.instance = newInstance;
+        result.key = keyBuilder == null ? null : keyBuilder.toString();
+        return result;
+    }
+
+    /**
+     * 按行区间拆分的解析任务,区间超过chunkSize时对半拆分
+     */
+    private class RowRangeTask extends RecursiveTask<List<RowResult<T>>> {
+
+        private static final long serialVersionUID = -6279370815231582409L;
+
+        private final int sheetIndex;
+        private final Sheet sheet;
+        private final RowBinder rowBinder;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        RowRangeTask(int sheetIndex, Sheet sheet, RowBinder rowBinder, int from, int to, int chunkSize) {
+            this.sheetIndex = sheetIndex;
+            this.sheet = sheet;
+            this.rowBinder = rowBinder;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected List<RowResult<T>> compute() {
+            if (to - from <= chunkSize) {
+                List<RowResult<T>> results = new ArrayList<RowResult<T>>(to - from);
+                for (int i = from; i < to; i++) {
+                    results.add(convertRow(sheetIndex, sheet, i, rowBinder));
+                }
+                return results;
+            }
+            int middle = (from + to) >>> 1;
+            RowRangeTask left = new RowRangeTask(sheetIndex, sheet, rowBinder, from, middle, chunkSize);
+            RowRangeTask right = new RowRangeTask(sheetIndex, sheet, rowBinder, middle, to, chunkSize);
+            right.fork();
+            List<RowResult<T>> results = left.compute();
+            results.addAll(right.join());
+            return results;
+        }
+    }
+
+    /**
+     * 并行解析时一行的转换结果
+     */
+    private static class RowResult<T> {
+
+        private final int sheetIndex;
+        private final int rowIndex;
+        private T instance;
+        private String key;
+        private List<ExcelMappingException> errors;
+
+        RowResult(int sheetIndex, int rowIndex) {
+            this.sheetIndex = sheetIndex;
+            this.rowIndex = rowIndex;
+        }
+
+        void addError(ExcelMappingException ex) {
+            if (errors == null) {
+                errors = new ArrayList<ExcelMappingException>(2);
+            }
+            errors.add(ex);
+        }
+    }
+
+    /**
+     * 构建当前页的映射异常
+     *
+     * @param msg
+     * @param rowIndex
+     * @param colIndex
+     * @return
+     */
+    private ExcelMappingException mappingException(String msg, int rowIndex, int colIndex) {
+        ExcelMappingException ex = new ExcelMappingException(msg, rowIndex, colIndex, this);
+        ex.setSheetIndex(sheetAt);
+        return ex;
+    }
+
     /**
      * 统一在当前行最后一列增加错误信息,默认添加一条错误信息
      *
@@ -366,7 +682,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      */
     public void markErrorMsg(int rowIndex, String errorMsg) {
         // 1.set style
-        int lastColumnIndex = this.getExcelMapping().size();
+        int lastColumnIndex = getExcelSchema().getErrorColumnIndex();
         Cell cell = excel.getCell(rowIndex, lastColumnIndex);
         cell.setCellStyle(errorCellStyle);
         // 2.set message
@@ -399,7 +715,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      * @param rowIndex
      */
     private void removeErrorMsg(int rowIndex) {
-        int lastColumnIndex = this.getExcelMapping().size();
+        int lastColumnIndex = getExcelSchema().getErrorColumnIndex();
         Cell cell = excel.getCell(rowIndex, lastColumnIndex);
         cell.setCellValue("");
     }
@@ -417,7 +733,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
         }
         for (FieldError fieldError : bindingResult.getFieldErrors()) {
             String errorMsg = fieldError.getDefaultMessage();
-            ExcelColumn excelColumn = fieldColumns.get(fieldError.getField());
+            ExcelColumn excelColumn = getExcelSchema().getFieldColumns().get(fieldError.getField());
             if (null == excelColumn) {
                 this.markErrorMsg(rowIndex, errorMsg);
                 continue;
@@ -523,10 +839,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      * @return
      */
     private void markKeyColumnsPrompt() {
-        if (keyFieldColumns.isEmpty()) {
-            return;
-        }
-        for (ExcelColumn excelColumn : keyFieldColumns.values()) {
+        for (ExcelColumn excelColumn : getExcelSchema().getKeyColumns().values()) {
             Cell cell = excel.getCell(titleRow, excelColumn.value().value);
             if (isMarkByPromptAuthor(cell)) {
                 break;
@@ -614,16 +927,8 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
         for (int i = dataRow; i < objs.size() + dataRow; i++) {
             j++;
             excel.getCell(i, 0).setCellValue(j);
-            for (Entry<Field, ExcelColumn> entry : getExcelMapping(clazz).entrySet()) {
-                Object value = ReflectionUtils.getField(entry.getKey(), objs.get(i - dataRow));
-                //如果含有相应的属性值格式化器
-                if (!ObjectUtils.isEmpty(formatters)) {
-                    for (FieldFormatter formatter : formatters) {
-                        if (formatter.support(entry.getKey(), value)) {
-                            value = formatter.format(value);
-                        }
-                    }
-                }
+            for (Entry<Field, ExcelColumn> entry : getExcelSchema(clazz).getFieldMappings().entrySet()) {
+                Object value = formatValue(entry.getKey(), ReflectionUtils.getField(entry.getKey(), objs.get(i - dataRow)), formatters);
                 if (null != value) {
                     int column = entry.getValue().value().value;
                     excel.getCell(i, column).setCellValue(value.toString());
@@ -633,6 +938,113 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
         return excel;
     }
 
+    /**
+     * 以流的形式将数据填充到XLSX文件中并直接输出,使用默认的行窗口大小
+     *
+     * @param template   模板,可为空,不为空时必须是XLSX格式
+     * @param objs
+     * @param dataRow
+     * @param output     输出流,不会被关闭
+     * @param formatters
+     * @return 填充的数据行数
+     * @throws IOException
+     * @see #populateData(Excel, Iterator, Integer, int, OutputStream, FieldFormatter...)
+     */
+    public static long populateData(Excel template, Stream<?> objs, Integer dataRow, OutputStream output, FieldFormatter... formatters)
+        throws IOException {
+        return populateData(template, objs.iterator(), dataRow, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, output, formatters);
+    }
+
+    /**
+     * 以流的形式将数据填充到XLSX文件中并直接输出,如HttpServletResponse的输出流
+     * 基于{@link SXSSFWorkbook},内存中只保留最近的windowSize行,其余行刷新到临时文件,
+     * 数据由迭代器逐条提供,不需要将全部数据及整个Workbook同时加载到内存。
+     * 模板已存在的行不可再写入,所以dataRow需位于模板的最后一行之后
+     *
+     * @param template   模板,可为空,不为空时必须是XLSX格式
+     * @param objs
+     * @param dataRow
+     * @param windowSize 内存中保留的行数
+     * @param output     输出流,不会被关闭
+     * @param formatters
+     * @return 填充的数据行数
+     * @throws IOException
+     */
+    public static long populateData(Excel template, Iterator<?> objs, Integer dataRow, int windowSize, OutputStream output,
+                                    FieldFormatter... formatters) throws IOException {
+        Assert.isTrue(template == null || template.isXLSX(), "流式导出只支持XLSX格式的模板");
+        Assert.isTrue(windowSize > 0, "行窗口大小必须大于0");
+        Assert.isTrue(dataRow != null && dataRow >= 0, "数据起始行不能为空且不能小于0");
+        Assert.notNull(output, "输出流不能为空");
+        SXSSFWorkbook workbook;
+        Sheet sheet;
+        if (template == null) {
+            workbook = new SXSSFWorkbook(windowSize);
+            sheet = workbook.createSheet();
+        } else {
+            Sheet templateSheet = template.getSheetAt(template.getActiveSheetIndex());
+            int templateLastRow = templateSheet.getPhysicalNumberOfRows() == 0 ? -1 : templateSheet.getLastRowNum();
+            Assert.isTrue(dataRow > templateLastRow, String.format("数据起始行[%d]与模板已存在的行重叠,模板最后一行为[%d]", dataRow, templateLastRow));
+            workbook = new SXSSFWorkbook((XSSFWorkbook)template.getWorkbook(), windowSize);
+            sheet = workbook.getSheetAt(template.getActiveSheetIndex());
+        }
+        workbook.setCompressTempFiles(true);
+        try {
+            Class<?> clazz = null;
+            Field[] fields = null;
+            int[] columns = null;
+            long count = 0;
+            int rowIndex = dataRow;
+            while (objs.hasNext()) {
+                Object obj = objs.next();
+                // 列布局只在对象类型变化时解析一次
+                if (obj.getClass() != clazz) {
+                    clazz = obj.getClass();
+                    Map<Field, ExcelColumn> mappings = getExcelSchema(clazz).getFieldMappings();
+                    fields = mappings.keySet().toArray(new Field[0]);
+                    columns = new int[fields.length];
+                    int i = 0;
+                    for (ExcelColumn excelColumn : mappings.values()) {
+                        columns[i++] = excelColumn.value().value;
+                    }
+                }
+                Row row = sheet.createRow(rowIndex++);
+                row.createCell(0).setCellValue(++count);
+                for (int i = 0; i < fields.length; i++) {
+                    Object value = formatValue(fields[i], ReflectionUtils.getField(fields[i], obj), formatters);
+                    if (null != value) {
+                        row.createCell(columns[i]).setCellValue(value.toString());
+                    }
+                }
+            }
+            workbook.write(output);
+            return count;
+        } finally {
+            // 删除刷新行时产生的临时文件
+            workbook.dispose();
+        }
+    }
+
+    /**
+     * 使用属性值格式化器格式化属性值
+     *
+     * @param field
+     * @param value
+     * @param formatters
+     * @return
+     */
+    private static Object formatValue(Field field, Object value, FieldFormatter... formatters) {
+        //如果含有相应的属性值格式化器
+        if (!ObjectUtils.isEmpty(formatters)) {
+            for (FieldFormatter formatter : formatters) {
+                if (formatter.support(field, value)) {
+                    value = formatter.format(value);
+                }
+            }
+        }
+        return value;
+    }
+
     /**
      * 删除行
      *
@@ -710,58 +1122,6 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
         }
     }
 
-    /**
-     * 根据对象属性类型解析ExcelColumn值
-     *
-     * @param cell
-     * @param field
-     * @param excelColumn
-     * @return
-     */
-    private Object getCellValue(Cell cell, Field field, ExcelColumn excelColumn) {
-        // 1.
-        Class<?> fieldType = field.getType();
-        if (this.containsConverter(field)) {
-            //使用转换器的源类型当做属性类型去获取单元格的值
-            fieldType = this.getSourceClass(field);
-        }
-        Object value = excel.getCellValue(cell);
-        Object strValue = excel.getCellString(cell);
-        if (null == value || null == strValue) {
-            Assert.state(!excelColumn.key() && !excelColumn.notNull(), "解析{" + excelColumn.value().name + "}列错误，值为空");
-            return value;
-        }
-        // 2.
-        if (fieldType.isAssignableFrom(String.class)) {
-            value = strValue;
-        } else if (fieldType.isAssignableFrom(Integer.class)) {
-            value = excel.getCellInteger(cell, null);
-            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[整型]类型");
-        } else if (fieldType.isAssignableFrom(Long.class)) {
-            value = excel.getCellLong(cell, null);
-            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[长整型]类型");
-        } else if (fieldType.isAssignableFrom(Boolean.class)) {
-            value = excel.getCellBoolean(cell);
-            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[布尔]类型");
-        } else if (fieldType.isAssignableFrom(Date.class)) {
-            value = excel.getCellDate(cell);
-            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[日期]类型");
-        } else if (fieldType.isAssignableFrom(BigDecimal.class)) {
-            value = excel.getCellDecimal(cell);
-            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[数值]类型");
-        } else if (fieldType.isAssignableFrom(Double.class)) {
-            value = excel.getCellDecimal(cell);
-            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[Double]类型");
-            value = ((BigDecimal)value).doubleValue();
-        } else {
-            throw new IllegalArgumentException("解析{" + strValue + "}错误，暂不支持[" + field.getType().getName() + "]类型");
-        }
-        if (this.containsConverter(field)) {
-            value = this.getConverter(field).convert(value);
-        }
-        return value;
-    }
-
     /**
      * 注册指定类的指定属性转换器
      * 注册转换器时，请不要使用lambda表达式，这可能会造成泛型类型丢失
@@ -771,7 +1131,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
     public void registerFieldConverter(FieldConverter<?, ?> converter) {
         Assert.notNull(converter, "属性转换器不能为空");
         boolean applicable = false;
-        for (Field field : this.getExcelMapping().keySet()) {
+        for (Field field : getExcelSchema().getFieldMappings().keySet()) {
             if (converter.support(field)) {
                 applicable = true;
                 Assert.isTrue(!containsConverter(field), String.format("[%s]属性已存在转换器", field.toString()));
@@ -780,6 +1140,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
             }
         }
         Assert.state(applicable, String.format("当前环境下没有一个属性与转换器[%s]匹配", converter.getClass().getName()));
+        this.rebuildExcelSchema();
     }
 
     /**
@@ -792,6 +1153,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
                 FIELD_CONVERTERS.remove(entry.getKey());
             }
         }
+        this.rebuildExcelSchema();
     }
 
     /**
@@ -800,7 +1162,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      * @param field
      * @return
      */
-    private FieldConverter getConverter(Field field) {
+    private static FieldConverter getConverter(Field field) {
         return FIELD_CONVERTERS.get(field);
     }
 
@@ -810,8 +1172,8 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      * @param converter
      * @return
      */
-    private Class<?> getTargetClass(FieldConverter<?, ?> converter) {
-        return this.getGenericType(converter, 1);
+    private static Class<?> getTargetClass(FieldConverter<?, ?> converter) {
+        return getGenericType(converter, 1);
     }
 
     /**
@@ -820,19 +1182,8 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      * @param converter
      * @return
      */
-    private Class<?> getSourceClass(FieldConverter<?, ?> converter) {
-        return this.getGenericType(converter, 0);
-    }
-
-    /**
-     * 获取源类型
-     *
-     * @param field
-     * @return
-     */
-    private Class<?> getSourceClass(Field field) {
-        FieldConverter<?, ?> converter = this.getConverter(field);
-        return converter == null ? null : getGenericType(converter, 0);
+    static Class<?> getSourceClass(FieldConverter<?, ?> converter) {
+        return getGenericType(converter, 0);
     }
 
     /**
@@ -842,7 +1193,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      * @param index
      * @return
      */
-    private Class<?> getGenericType(FieldConverter<?, ?> converter, int index) {
+    private static Class<?> getGenericType(FieldConverter<?, ?> converter, int index) {
         return ResolvableType.forClass(FieldConverter.class, converter.getClass()).resolveGeneric(index);
         //return GenericTypeResolver.resolveTypeArguments(convert.getClass(), Converter.class)[index];
     }
@@ -853,7 +1204,7 @@ public final class ExcelMappingProcessor<T extends PropertyInitializer<T>> {
      * @param field
      * @return
      */
-    private boolean containsConverter(Field field) {
+    private static boolean containsConverter(Field field) {
         return FIELD_CONVERTERS.containsKey(field);
     }
 
@@ -0,0 +1,122 @@
+package com.bob.common.utils.excelmapping;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+import com.bob.common.utils.excelmapping.transform.FieldConverter;
+
+/**
+ * Excel映射类的不可变元数据,每个映射类构建一次,多个解析器并发共享,无需加锁
+ * 包含已排序的属性映射,唯一键列,最后一列的序号及绑定了转换器的{@link RowBinder};
+ * 属性转换器变更时整体替换为新的实例,而不是修改原实例
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-13 10:10
+ */
+public final class ExcelSchema {
+
+    private final Class<?> mappingClass;
+    private final Map<Field, ExcelColumn> fieldMappings;
+    private final Map<String, ExcelColumn> fieldColumns;
+    private final Map<String, ExcelColumn> keyColumns;
+    private final int lastColumnIndex;
+    private final RowBinder rowBinder;
+
+    /**
+     * @param mappingClass
+     * @param fieldMappings 按列序号排序的属性映射
+     * @param converters    属性转换器的获取方式
+     */
+    ExcelSchema(Class<?> mappingClass, LinkedHashMap<Field, ExcelColumn> fieldMappings, Function<Field, FieldConverter<?, ?>> converters) {
+        this.mappingClass = mappingClass;
+        this.fieldMappings = Collections.unmodifiableMap(fieldMappings);
+        LinkedHashMap<String, ExcelColumn> fieldColumns = new LinkedHashMap<String, ExcelColumn>();
+        LinkedHashMap<String, ExcelColumn> keyColumns = new LinkedHashMap<String, ExcelColumn>();
+        int lastColumnIndex = -1;
+        for (Entry<Field, ExcelColumn> entry : fieldMappings.entrySet()) {
+            ExcelColumn excelColumn = entry.getValue();
+            fieldColumns.put(entry.getKey().getName(), excelColumn);
+            if (excelColumn.key()) {
+                keyColumns.put(entry.getKey().getName(), excelColumn);
+            }
+            lastColumnIndex = Math.max(lastColumnIndex, excelColumn.value().value);
+        }
+        this.fieldColumns = Collections.unmodifiableMap(fieldColumns);
+        this.keyColumns = Collections.unmodifiableMap(keyColumns);
+        this.lastColumnIndex = lastColumnIndex;
+        this.rowBinder = RowBinder.build(fieldMappings, converters);
+    }
+
+    private ExcelSchema(ExcelSchema origin, RowBinder rowBinder) {
+        this.mappingClass = origin.mappingClass;
+        this.fieldMappings = origin.fieldMappings;
+        this.fieldColumns = origin.fieldColumns;
+        this.keyColumns = origin.keyColumns;
+        this.lastColumnIndex = origin.lastColumnIndex;
+        this.rowBinder = rowBinder;
+    }
+
+    /**
+     * 以新的属性转换器重建行绑定器,返回新的实例
+     *
+     * @param converters
+     * @return
+     */
+    ExcelSchema withConverters(Function<Field, FieldConverter<?, ?>> converters) {
+        return new ExcelSchema(this, RowBinder.build(fieldMappings, converters));
+    }
+
+    public Class<?> getMappingClass() {
+        return mappingClass;
+    }
+
+    /**
+     * @return 按列序号排序的属性映射,不可修改
+     */
+    public Map<Field, ExcelColumn> getFieldMappings() {
+        return fieldMappings;
+    }
+
+    /**
+     * @return 属性名 >> 列,不可修改
+     */
+    public Map<String, ExcelColumn> getFieldColumns() {
+        return fieldColumns;
+    }
+
+    /**
+     * @return 唯一键的属性名 >> 列,不可修改
+     */
+    public Map<String, ExcelColumn> getKeyColumns() {
+        return keyColumns;
+    }
+
+    public boolean hasKeyColumns() {
+        return !keyColumns.isEmpty();
+    }
+
+    /**
+     * @return 映射的最大列序号,没有映射时为-1
+     */
+    public int getLastColumnIndex() {
+        return lastColumnIndex;
+    }
+
+    /**
+     * 错误信息栏的列序号,与映射的列数一致
+     *
+     * @return
+     */
+    public int getErrorColumnIndex() {
+        return fieldMappings.size();
+    }
+
+    RowBinder getRowBinder() {
+        return rowBinder;
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.bob.common.utils.excelmapping;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+import com.bob.common.utils.excelmapping.transform.CellValueParser;
+import com.bob.common.utils.excelmapping.transform.DateTextParser;
+import com.bob.common.utils.excelmapping.transform.FieldConverter;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Excel行绑定器,每个映射类构建一次
+ * 每列预先确定属性的{@link MethodHandle}写入器,单元格值类型及转换器,解析单元格时不再做反射及类型判断
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-08 10:45
+ */
+final class RowBinder {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final ColumnBinding[] bindings;
+    private final boolean keyed;
+
+    private RowBinder(ColumnBinding[] bindings) {
+        this.bindings = bindings;
+        boolean keyed = false;
+        for (ColumnBinding binding : bindings) {
+            keyed = keyed || binding.excelColumn.key();
+        }
+        this.keyed = keyed;
+    }
+
+    /**
+     * 构建行绑定器
+     *
+     * @param fieldMappings 已排序的属性映射
+     * @param converters    属性转换器的获取方式
+     * @return
+     */
+    static RowBinder build(Map<Field, ExcelColumn> fieldMappings, Function<Field, FieldConverter<?, ?>> converters) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        ColumnBinding[] bindings = new ColumnBinding[fieldMappings.size()];
+        int i = 0;
+        for (Entry<Field, ExcelColumn> entry : fieldMappings.entrySet()) {
+            bindings[i++] = new ColumnBinding(lookup, entry.getKey(), entry.getValue(), converters.apply(entry.getKey()));
+        }
+        return new RowBinder(bindings);
+    }
+
+    /**
+     * @return 列数
+     */
+    int size() {
+        return bindings.length;
+    }
+
+    /**
+     * @param index
+     * @return 第index个映射列
+     */
+    ColumnBinding get(int index) {
+        return bindings[index];
+    }
+
+    /**
+     * @return 是否含有唯一键列
+     */
+    boolean isKeyed() {
+        return keyed;
+    }
+
+    /**
+     * 单列的绑定信息
+     */
+    static final class ColumnBinding {
+
+        private final Field field;
+        private final ExcelColumn excelColumn;
+        private final int column;
+        private final MethodHandle setter;
+        private final CellValueType valueType;
+        private final FieldConverter<Object, ?> converter;
+        private final Class<?> fieldType;
+        /**
+         * 列的解析器,未指定时日期列使用各自的{@link DateTextParser}以便每列单独识别日期格式
+         */
+        private final CellValueParser<?> parser;
+
+        private ColumnBinding(MethodHandles.Lookup lookup, Field field, ExcelColumn excelColumn, FieldConverter<?, ?> converter) {
+            this.field = field;
+            this.excelColumn = excelColumn;
+            this.column = excelColumn.value().value;
+            this.converter = objectConverter(converter);
+            //使用转换器的源类型当做属性类型去获取单元格的值
+            this.fieldType = converter == null ? field.getType() : ExcelMappingProcessor.getSourceClass(converter);
+            this.valueType = CellValueType.of(fieldType);
+            this.parser = createParser(excelColumn, valueType);
+            ReflectionUtils.makeAccessible(field);
+            try {
+                this.setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(String.format("无法访问[%s]属性", field.toString()), e);
+            }
+        }
+
+        /**
+         * 转换器的源类型即单元格值解析后的类型,构建时已保证一致,此处放宽为Object
+         *
+         * @param converter
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        private static FieldConverter<Object, ?> objectConverter(FieldConverter<?, ?> converter) {
+            return (FieldConverter<Object, ?>)converter;
+        }
+
+        private static CellValueParser<?> createParser(ExcelColumn excelColumn, CellValueType valueType) {
+            if (excelColumn.parser() != CellValueParser.class) {
+                return BeanUtils.instantiateClass(excelColumn.parser());
+            }
+            return valueType == CellValueType.DATE ? new DateTextParser() : null;
+        }
+
+        Field getField() {
+            return field;
+        }
+
+        ExcelColumn getExcelColumn() {
+            return excelColumn;
+        }
+
+        /**
+         * @return 列序号
+         */
+        int getColumn() {
+            return column;
+        }
+
+        /**
+         * 按列存储时的值类型,使用了转换器的属性转换后的类型不确定,返回null
+         *
+         * @return
+         */
+        CellValueType getStorageType() {
+            return converter == null ? valueType : null;
+        }
+
+        /**
+         * 转换单元格原始值,单元格值为空时校验唯一键及非空约束
+         *
+         * @param value 单元格原始值,形式同{@link Excel#getCellValue(org.apache.poi.ss.usermodel.Cell)}
+         * @return
+         */
+        Object resolve(Object value) {
+            if (!CellValueType.isCellValue(value)) {
+                Assert.state(!excelColumn.key() && !excelColumn.notNull(), "解析{" + excelColumn.value().name + "}列错误，值为空");
+                return value;
+            }
+            if (parser != null) {
+                Object parsed = parser.parse(value);
+                if (parsed == null) {
+                    String description = valueType == null ? fieldType.getSimpleName() : valueType.getDescription();
+                    throw new IllegalArgumentException(CellValueType.typeMismatchMsg(value, description));
+                }
+                value = parsed;
+            } else if (valueType == null) {
+                throw new IllegalArgumentException("解析{" + Excel.stringOf(value, null) + "}错误，暂不支持[" + field.getType().getName() + "]类型");
+            } else {
+                value = valueType.resolve(value);
+            }
+            return converter == null ? value : converter.convert(value);
+        }
+
+        /**
+         * 将值写入对象属性
+         *
+         * @param target
+         * @param value
+         */
+        void bind(Object target, Object value) {
+            try {
+                setter.invokeExact(target, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(String.format("设置[%s]属性失败", field.toString()), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+package com.bob.common.utils.excelmapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.bob.common.utils.excelmapping.exception.ExcelException;
+import com.bob.common.utils.excelmapping.exception.ExcelMappingException;
+import com.bob.common.utils.excelmapping.exception.MappingExceptionResolver;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.Assert;
+
+/**
+ * 基于SAX的流式Excel解析器,只支持XLSX格式
+ * 不将整个Workbook加载到内存,逐行读取单元格并映射为标识了{@link ExcelMapping}的对象,
+ * 通过{@link #process(Consumer)}逐行消费解析结果时,内存占用与Excel的行数无关(唯一键的校验除外)。
+ * 由于不持有Workbook,不支持在Excel上编辑错误信息的异常处理器
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-06 10:05
+ */
+public final class StreamingExcelMappingProcessor<T extends PropertyInitializer<T>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingExcelMappingProcessor.class);
+
+    private boolean hasError = false;
+
+    private final OPCPackage opcPackage;
+    private final Class<T> clazz;
+    private final Integer sheetAt;
+    private final Integer dataRow;
+    private final MappingExceptionResolver exceptionResolver;
+    /**
+     * 唯一键 >> 行号的映射,用于行唯一性校验
+     */
+    private final Map<String, Integer> keyRowMappings = new HashMap<String, Integer>();
+    private final List<ExcelInstance<T>> correctResult = new ArrayList<ExcelInstance<T>>();
+
+    /**
+     * 构建流式Excel解析器,以只读形式打开文件
+     *
+     * @param file
+     * @param clazz
+     * @param exceptionResolver
+     */
+    public StreamingExcelMappingProcessor(File file, Class<T> clazz, MappingExceptionResolver exceptionResolver) {
+        this(openPackage(file), clazz, exceptionResolver);
+    }
+
+    /**
+     * 构建流式Excel解析器
+     *
+     * @param istream
+     * @param clazz
+     * @param exceptionResolver
+     */
+    public StreamingExcelMappingProcessor(InputStream istream, Class<T> clazz, MappingExceptionResolver exceptionResolver) {
+        this(openPackage(istream), clazz, exceptionResolver);
+    }
+
+    private StreamingExcelMappingProcessor(OPCPackage opcPackage, Class<T> clazz, MappingExceptionResolver exceptionResolver) {
+        ExcelMapping excelMapping = clazz.getAnnotation(ExcelMapping.class);
+        Assert.notNull(excelMapping, "解析Excel对象{" + clazz.getSimpleName() + "}未标识ExcelMapping注解，请联系系统维护人员！");
+        Assert.isTrue(!exceptionResolver.excelEditorMode(), "流式解析不支持在Excel上编辑错误信息");
+        this.opcPackage = opcPackage;
+        this.clazz = clazz;
+        this.exceptionResolver = exceptionResolver;
+        this.sheetAt = excelMapping.sheetAt();
+        this.dataRow = excelMapping.dataRow();
+    }
+
+    private static OPCPackage openPackage(File file) {
+        try {
+            return OPCPackage.open(file, PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new ExcelException("试图打开无效的Excel格式(XLSX)文件！", e);
+        }
+    }
+
+    private static OPCPackage openPackage(InputStream istream) {
+        try {
+            return OPCPackage.open(istream);
+        } catch (InvalidFormatException | IOException e) {
+            throw new ExcelException("试图读取无效的Excel格式(XLSX)数据！", e);
+        }
+    }
+
+    /**
+     * 获取解析正确的结果集,仅在通过{@link #process()}解析时有值
+     *
+     * @return
+     */
+    public Collection<ExcelInstance<T>> getCorrectResult() {
+        return correctResult;
+    }
+
+    /**
+     * Excel解析,解析正确的结果存放在{@link #getCorrectResult()}内
+     *
+     * @return hasError ? false : true;
+     * @throws Exception
+     */
+    public boolean process() throws Exception {
+        return process(correctResult::add);
+    }
+
+    /**
+     * Excel解析,每解析正确一行即回调一次,解析器本身不持有解析结果
+     *
+     * @param consumer 解析正确的行的消费者
+     * @return hasError ? false : true;
+     * @throws Exception
+     */
+    public boolean process(Consumer<ExcelInstance<T>> consumer) throws Exception {
+        Assert.notNull(consumer, "解析结果的消费者不能为空");
+        RowBinder rowBinder = ExcelMappingProcessor.getRowBinder(clazz);
+        int columnCount = 0;
+        for (int i = 0; i < rowBinder.size(); i++) {
+            columnCount = Math.max(columnCount, rowBinder.get(i).getColumn() + 1);
+        }
+        try {
+            XSSFReader reader = new XSSFReader(opcPackage);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(opcPackage);
+            StreamingSheetHandler handler = new StreamingSheetHandler(sharedStrings, reader.getStylesTable(), columnCount,
+                (rowIndex, values) -> rowIndex < dataRow || processRow(rowIndex, values, rowBinder, consumer));
+            try (InputStream sheet = getSheetData(reader)) {
+                if (!handler.parse(sheet)) {
+                    return false;
+                }
+            }
+        } finally {
+            opcPackage.revert();
+        }
+        return !hasError;
+    }
+
+    /**
+     * 解析一行数据
+     *
+     * @param rowIndex
+     * @param values
+     * @param rowBinder
+     * @param consumer
+     * @return 是否继续解析
+     * @throws Exception
+     */
+    private boolean processRow(int rowIndex, Object[] values, RowBinder rowBinder, Consumer<ExcelInstance<T>> consumer) throws Exception {
+        final T newInstance = BeanUtils.instantiate(clazz).initProperties();
+        final boolean keyed = rowBinder.isKeyed();
+        final StringBuilder keyBuilder = keyed ? new StringBuilder() : null;
+        boolean hasRowError = false;
+        for (int i = 0; i < rowBinder.size(); i++) {
+            RowBinder.ColumnBinding binding = rowBinder.get(i);
+            ExcelColumn.Column column = binding.getExcelColumn().value();
+            Object value;
+            try {
+                value = binding.resolve(values[column.value]);
+            } catch (Exception e) {
+                hasRowError = true;
+                if (!exceptionResolver.handleCellTypeMismatch(mappingException(e.getMessage(), rowIndex, column.value))) {
+                    LOGGER.warn("因类型不匹配中止解析解析Excel，当前解析到第[{}]行第[{}]列", rowIndex, column.value);
+                    return false;
+                }
+                continue;
+            }
+            if (binding.getExcelColumn().key()) {
+                keyBuilder.append("[").append(binding.getField().getName()).append(":").append(value).append("]");
+            }
+            binding.bind(newInstance, value);
+        }
+
+        if (hasRowError) {
+            hasError = true;
+            return true;
+        }
+
+        // 唯一性校验
+        if (keyed) {
+            Integer dupRowIndex = keyRowMappings.putIfAbsent(keyBuilder.toString(), rowIndex);
+            if (dupRowIndex != null) {
+                hasError = true;
+                String errorMsg = "此行与第" + (dupRowIndex + 1) + "行的数据存在重复情况";
+                if (!exceptionResolver.handleRowUniqueConflict(mappingException(errorMsg, rowIndex, 0))) {
+                    LOGGER.warn("因行唯一性冲突中止解析解析Excel，当前解析到第[{}]行", rowIndex);
+                    return false;
+                }
+                return true;
+            }
+        }
+        consumer.accept(new ExcelInstance<T>(sheetAt, rowIndex, newInstance));
+        return true;
+    }
+
+    /**
+     * 构建当前页的映射异常
+     *
+     * @param msg
+     * @param rowIndex
+     * @param colIndex
+     * @return
+     */
+    private ExcelMappingException mappingException(String msg, int rowIndex, int colIndex) {
+        ExcelMappingException ex = new ExcelMappingException(msg, rowIndex, colIndex, null);
+        ex.setSheetIndex(sheetAt);
+        return ex;
+    }
+
+    /**
+     * 获取{@link ExcelMapping#sheetAt()}指定页的数据流
+     *
+     * @param reader
+     * @return
+     * @throws Exception
+     */
+    private InputStream getSheetData(XSSFReader reader) throws Exception {
+        Iterator<InputStream> sheets = reader.getSheetsData();
+        for (int i = 0; sheets.hasNext(); i++) {
+            InputStream sheet = sheets.next();
+            if (i == sheetAt) {
+                return sheet;
+            }
+            sheet.close();
+        }
+        throw new ExcelException(String.format("解析Excel错误，不存在第%d页", sheetAt));
+    }
+
+}
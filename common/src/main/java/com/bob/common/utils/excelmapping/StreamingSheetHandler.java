@@ -0,0 +1,234 @@
+package com.bob.common.utils.excelmapping;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * 基于SAX的XLSX Sheet解析器,逐行回调单元格的原始值,不构建任何usermodel对象
+ * 回调的原始值形式与{@link Excel#getCellValue(Cell)}一致:Double,String,Boolean,Date
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-06 10:12
+ */
+class StreamingSheetHandler extends DefaultHandler {
+
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final StylesTable stylesTable;
+    private final RowCallback callback;
+    private final Object[] values;
+    /**
+     * 样式序号 >> 是否日期格式,同一样式只判断一次
+     */
+    private final Map<Integer, Boolean> dateStyles = new HashMap<Integer, Boolean>();
+    private final StringBuilder text = new StringBuilder();
+
+    private int rowIndex = -1;
+    private int columnIndex = -1;
+    private int styleIndex = -1;
+    private String cellType;
+    private boolean textCaptured;
+
+    /**
+     * @param sharedStrings 共享字符串表
+     * @param stylesTable   样式表,可能为空
+     * @param columnCount   需要读取的列数,超出的列直接忽略
+     * @param callback      行回调
+     */
+    StreamingSheetHandler(ReadOnlySharedStringsTable sharedStrings, StylesTable stylesTable, int columnCount, RowCallback callback) {
+        this.sharedStrings = sharedStrings;
+        this.stylesTable = stylesTable;
+        this.callback = callback;
+        this.values = new Object[columnCount];
+    }
+
+    /**
+     * 解析Sheet数据流,当回调返回false时中止解析
+     *
+     * @param sheet
+     * @return 是否完整解析了整个Sheet
+     * @throws Exception 回调过程中抛出的原始异常
+     */
+    boolean parse(InputStream sheet) throws Exception {
+        XMLReader xmlReader = newSecureXmlReader();
+        xmlReader.setContentHandler(this);
+        try {
+            xmlReader.parse(new InputSource(sheet));
+        } catch (StopParsingException e) {
+            return false;
+        } catch (SAXException e) {
+            throw e.getException() != null ? e.getException() : e;
+        }
+        return true;
+    }
+
+    /**
+     * Sheet数据通常来自用户上传的文件,禁止DOCTYPE及外部实体,防止XXE
+     *
+     * @return
+     * @throws Exception
+     */
+    static XMLReader newSecureXmlReader() throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setXIncludeAware(false);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        return factory.newSAXParser().getXMLReader();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        if ("row".equals(localName)) {
+            String ref = attributes.getValue("r");
+            rowIndex = ref == null ? rowIndex + 1 : Integer.parseInt(ref) - 1;
+            columnIndex = -1;
+            Arrays.fill(values, null);
+        } else if ("c".equals(localName)) {
+            String ref = attributes.getValue("r");
+            columnIndex = ref == null ? columnIndex + 1 : columnIndexOf(ref);
+            String style = attributes.getValue("s");
+            styleIndex = style == null ? -1 : Integer.parseInt(style);
+            cellType = attributes.getValue("t");
+            text.setLength(0);
+        } else if ("v".equals(localName) || "t".equals(localName)) {
+            textCaptured = true;
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if ("v".equals(localName) || "t".equals(localName)) {
+            textCaptured = false;
+        } else if ("c".equals(localName)) {
+            if (columnIndex < values.length) {
+                values[columnIndex] = resolveValue();
+            }
+        } else if ("row".equals(localName)) {
+            boolean proceed;
+            try {
+                proceed = callback.onRow(rowIndex, values);
+            } catch (SAXException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SAXException(e);
+            }
+            if (!proceed) {
+                throw new StopParsingException();
+            }
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (textCaptured) {
+            text.append(ch, start, length);
+        }
+    }
+
+    /**
+     * 依据单元格类型转换原始文本
+     *
+     * @return
+     */
+    private Object resolveValue() {
+        String raw = text.toString();
+        if ("s".equals(cellType)) {
+            return raw.isEmpty() ? null : sharedStrings.getEntryAt(Integer.parseInt(raw));
+        }
+        if ("inlineStr".equals(cellType) || "str".equals(cellType)) {
+            return raw;
+        }
+        if ("b".equals(cellType)) {
+            return raw.isEmpty() ? null : Boolean.valueOf("1".equals(raw));
+        }
+        if ("e".equals(cellType) || raw.isEmpty()) {
+            return null;
+        }
+        double number = Double.parseDouble(raw);
+        if (isDateStyle(styleIndex) && DateUtil.isValidExcelDate(number)) {
+            return DateUtil.getJavaDate(number);
+        }
+        return Double.valueOf(number);
+    }
+
+    /**
+     * 判断指定样式是否为日期格式
+     *
+     * @param styleIndex
+     * @return
+     */
+    private boolean isDateStyle(int styleIndex) {
+        if (styleIndex < 0 || stylesTable == null) {
+            return false;
+        }
+        Boolean date = dateStyles.get(styleIndex);
+        if (date == null) {
+            XSSFCellStyle style = stylesTable.getStyleAt(styleIndex);
+            date = style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+            dateStyles.put(styleIndex, date);
+        }
+        return date;
+    }
+
+    /**
+     * 将单元格坐标(如:AB12)转换为列序号,从0开始
+     *
+     * @param ref
+     * @return
+     */
+    private static int columnIndexOf(String ref) {
+        int column = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char ch = ref.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+                break;
+            }
+            column = column * 26 + (ch - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /**
+     * 行回调
+     */
+    interface RowCallback {
+
+        /**
+         * 读取完一行数据时回调,values数组会被下一行复用,不可持有
+         *
+         * @param rowIndex 行号,从0开始
+         * @param values   以列序号为下标的单元格原始值
+         * @return 是否继续解析
+         * @throws Exception
+         */
+        boolean onRow(int rowIndex, Object[] values) throws Exception;
+    }
+
+    /**
+     * 中止解析信号
+     */
+    private static class StopParsingException extends SAXException {
+
+        private static final long serialVersionUID = 3473271920582166563L;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.bob.common.utils.excelmapping.exception;
+
+/**
+ * 将异常记录到{@link ExcelErrorIndex}的处理器,不修改Excel
+ * 适用于流式,并行解析,解析完成后通过ExcelErrorReportWriter生成错误报告
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-10 09:55
+ */
+public class ErrorIndexExceptionResolver implements MappingExceptionResolver {
+
+    private final ExcelErrorIndex errorIndex = new ExcelErrorIndex();
+    private Integer maxErrorSize = Integer.MAX_VALUE;
+
+    public ErrorIndexExceptionResolver() {
+    }
+
+    /**
+     * @param maxErrorSize 出错行数达到此值时中止解析
+     */
+    public ErrorIndexExceptionResolver(Integer maxErrorSize) {
+        this.maxErrorSize = maxErrorSize;
+    }
+
+    @Override
+    public boolean handleCellTypeMismatch(ExcelMappingException ex) throws Exception {
+        errorIndex.addCellError(ex);
+        return errorIndex.getRowCount() < maxErrorSize;
+    }
+
+    @Override
+    public boolean handleRowUniqueConflict(ExcelMappingException ex) throws Exception {
+        errorIndex.addRowError(ex);
+        return errorIndex.getRowCount() < maxErrorSize;
+    }
+
+    public ExcelErrorIndex getErrorIndex() {
+        return errorIndex;
+    }
+}
@@ -0,0 +1,152 @@
+package com.bob.common.utils.excelmapping.exception;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Excel解析错误索引,按页,行号有序存储,只记录出错的行
+ * 用于在解析完成后生成错误报告,而不是在解析过程中修改Workbook
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-10 09:30
+ */
+public class ExcelErrorIndex implements Serializable {
+
+    private static final long serialVersionUID = -6071353522370493911L;
+
+    private static final String ERROR_SPLIT = ";";
+
+    /**
+     * 页序号 >> 行号 >> 行错误
+     */
+    private final Map<Integer, NavigableMap<Integer, RowErrors>> sheetErrors = new HashMap<Integer, NavigableMap<Integer, RowErrors>>(4);
+    private int rowCount;
+
+    /**
+     * 记录单元格错误
+     *
+     * @param ex
+     */
+    public void addCellError(ExcelMappingException ex) {
+        getOrCreate(ex.getSheetIndex(), ex.getRowIndex()).addCellError(ex.getColumnIndex(), ex.getMessage());
+    }
+
+    /**
+     * 记录行错误,如唯一性冲突
+     *
+     * @param ex
+     */
+    public void addRowError(ExcelMappingException ex) {
+        getOrCreate(ex.getSheetIndex(), ex.getRowIndex()).addRowError(ex.getMessage());
+    }
+
+    private RowErrors getOrCreate(int sheetIndex, int rowIndex) {
+        NavigableMap<Integer, RowErrors> rowErrors = sheetErrors.computeIfAbsent(sheetIndex, key -> new TreeMap<Integer, RowErrors>());
+        RowErrors errors = rowErrors.get(rowIndex);
+        if (errors == null) {
+            errors = new RowErrors(rowIndex);
+            rowErrors.put(rowIndex, errors);
+            rowCount++;
+        }
+        return errors;
+    }
+
+    /**
+     * 获取指定页的错误行,按行号排序
+     *
+     * @param sheetIndex
+     * @return
+     */
+    public NavigableMap<Integer, RowErrors> getRowErrors(int sheetIndex) {
+        NavigableMap<Integer, RowErrors> rowErrors = sheetErrors.get(sheetIndex);
+        return rowErrors == null ? Collections.emptyNavigableMap() : Collections.unmodifiableNavigableMap(rowErrors);
+    }
+
+    /**
+     * @return 出错的行数
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    /**
+     * 单行的错误信息
+     */
+    public static class RowErrors implements Serializable {
+
+        private static final long serialVersionUID = 3825934151066384126L;
+
+        private final int rowIndex;
+        /**
+         * 列序号 >> 错误信息
+         */
+        private final NavigableMap<Integer, String> cellErrors = new TreeMap<Integer, String>();
+        private final List<String> rowErrors = new ArrayList<String>(1);
+
+        RowErrors(int rowIndex) {
+            this.rowIndex = rowIndex;
+        }
+
+        void addCellError(int columnIndex, String msg) {
+            cellErrors.merge(columnIndex, msg, (origin, added) -> origin + ERROR_SPLIT + added);
+        }
+
+        void addRowError(String msg) {
+            rowErrors.add(msg);
+        }
+
+        public int getRowIndex() {
+            return rowIndex;
+        }
+
+        public NavigableMap<Integer, String> getCellErrors() {
+            return Collections.unmodifiableNavigableMap(cellErrors);
+        }
+
+        public List<String> getRowErrors() {
+            return Collections.unmodifiableList(rowErrors);
+        }
+
+        /**
+         * 组合本行所有的错误信息,单元格错误以"[列名]"开头
+         *
+         * @param separator
+         * @return
+         */
+        public String getCombinedMsg(String separator) {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<Integer, String> entry : cellErrors.entrySet()) {
+                if (builder.length() > 0) {
+                    builder.append(separator);
+                }
+                builder.append("[").append(columnName(entry.getKey())).append("列]").append(entry.getValue());
+            }
+            for (String rowError : rowErrors) {
+                if (builder.length() > 0) {
+                    builder.append(separator);
+                }
+                builder.append(rowError);
+            }
+            return builder.toString();
+        }
+
+        private static String columnName(int columnIndex) {
+            StringBuilder name = new StringBuilder();
+            for (int i = columnIndex + 1; i > 0; i = (i - 1) / 26) {
+                name.insert(0, (char)('A' + (i - 1) % 26));
+            }
+            return name.toString();
+        }
+    }
+
+}
@@ -14,6 +14,7 @@ public final class ExcelMappingException extends RuntimeException implements Ser
 
     private static final long serialVersionUID = -1582949558953456846L;
 
+    private int sheetIndex;
     private int rowIndex;
     private int columnIndex;
     private Exception original;
@@ -34,6 +35,14 @@ public final class ExcelMappingException extends RuntimeException implements Ser
         this.excelMappingProcessor = excelMappingProcessor;
     }
 
+    public int getSheetIndex() {
+        return sheetIndex;
+    }
+
+    public void setSheetIndex(int sheetIndex) {
+        this.sheetIndex = sheetIndex;
+    }
+
     public int getRowIndex() {
         return rowIndex;
     }
@@ -0,0 +1,21 @@
+package com.bob.common.utils.excelmapping.transform;
+
+/**
+ * 单元格值解析器,将单元格原始值解析为属性值,通过ExcelColumn#parser()按列指定
+ * 每列使用一个实例,可在实例内缓存解析状态(如已识别的日期格式),实现类需保证线程安全
+ * T: 属性值
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 09:30
+ */
+public interface CellValueParser<T> {
+
+    /**
+     * 解析单元格原始值
+     *
+     * @param value 单元格原始值,非空,可能类型为Double,String,Boolean,Date
+     * @return 无法解析时返回null
+     */
+    T parse(Object value);
+
+}
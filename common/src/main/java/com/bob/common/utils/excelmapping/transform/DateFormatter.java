@@ -1,8 +1,8 @@
 package com.bob.common.utils.excelmapping.transform;
 
 import java.lang.reflect.Field;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
 /**
@@ -13,7 +13,10 @@ import java.util.Date;
  */
 public class DateFormatter implements FieldFormatter<Date, String> {
 
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    /**
+     * DateTimeFormatter线程安全,可在并发导出时共享
+     */
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     @Override
     public boolean support(Field field, Object value) {
@@ -22,6 +25,6 @@ public class DateFormatter implements FieldFormatter<Date, String> {
 
     @Override
     public String format(Date date) {
-        return date != null ? DATE_FORMAT.format(date) : null;
+        return date != null ? DATE_FORMAT.format(date.toInstant().atZone(ZoneId.systemDefault())) : null;
     }
 }
@@ -0,0 +1,99 @@
+package com.bob.common.utils.excelmapping.transform;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+
+/**
+ * 日期文本解析器,依次尝试候选格式,解析成功后记住该格式,之后优先使用
+ * 每列一个实例时,同一列的格式只需识别一次,之后每个单元格只解析一次;{@link DateTimeFormatter}线程安全,可在多个线程间共享
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 09:40
+ */
+public class DateTextParser implements CellValueParser<Date> {
+
+    /**
+     * 默认的候选格式,月,日,时,分,秒支持一位或两位数字
+     */
+    private static final DateTimeFormatter[] DEFAULT_FORMATTERS = {
+        DateTimeFormatter.ofPattern("yyyy-M-d H:m:s"),
+        DateTimeFormatter.ofPattern("yyyy-M-d"),
+        DateTimeFormatter.ofPattern("yyyy-M-d H:m"),
+        DateTimeFormatter.ofPattern("yyyy/M/d H:m:s"),
+        DateTimeFormatter.ofPattern("yyyy/M/d"),
+        DateTimeFormatter.ofPattern("yyyy/M/d H:m"),
+        DateTimeFormatter.ofPattern("yyyyMMdd")
+    };
+
+    private final DateTimeFormatter[] formatters;
+    private final ZoneId zoneId;
+    /**
+     * 最近一次解析成功的格式序号
+     */
+    private volatile int learned = 0;
+
+    public DateTextParser() {
+        this(DEFAULT_FORMATTERS);
+    }
+
+    /**
+     * @param patterns 候选格式,按顺序尝试
+     */
+    public DateTextParser(String... patterns) {
+        this(toFormatters(patterns));
+    }
+
+    private DateTextParser(DateTimeFormatter[] formatters) {
+        this.formatters = formatters;
+        this.zoneId = ZoneId.systemDefault();
+    }
+
+    private static DateTimeFormatter[] toFormatters(String... patterns) {
+        DateTimeFormatter[] formatters = new DateTimeFormatter[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            formatters[i] = DateTimeFormatter.ofPattern(patterns[i]);
+        }
+        return formatters;
+    }
+
+    @Override
+    public Date parse(Object value) {
+        if (value instanceof Date) {
+            return (Date)value;
+        }
+        if (!(value instanceof String)) {
+            return null;
+        }
+        String text = ((String)value).trim();
+        int current = learned;
+        Date date = parse(text, current);
+        if (date != null) {
+            return date;
+        }
+        for (int i = 0; i < formatters.length; i++) {
+            if (i != current && (date = parse(text, i)) != null) {
+                learned = i;
+                return date;
+            }
+        }
+        return null;
+    }
+
+    private Date parse(String text, int index) {
+        try {
+            TemporalAccessor temporal = formatters[index].parse(text);
+            LocalDateTime dateTime = temporal.isSupported(ChronoField.HOUR_OF_DAY)
+                ? LocalDateTime.from(temporal) : LocalDate.from(temporal).atStartOfDay();
+            return Date.from(dateTime.atZone(zoneId).toInstant());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+}
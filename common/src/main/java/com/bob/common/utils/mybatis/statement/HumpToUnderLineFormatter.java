@@ -2,7 +2,7 @@ package com.bob.common.utils.mybatis.statement;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -24,47 +24,46 @@ public class HumpToUnderLineFormatter implements TableFormatter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HumpToUnderLineFormatter.class);
 
-    private static final Map<Class<?>, Map<Field, String>> FIELD_TO_COLUMN_MAPPINGS = new HashMap<Class<?>, Map<Field, String>>();
-
-    private static final Map<Class, String> CLASS_TO_TABLE_MAPPING = new HashMap<Class, String>();
-
-    private static final StringBuilder SB = new StringBuilder();
+    /**
+     * 每个类的元数据只构建一次,构建后不可变,读取无需加锁
+     */
+    private static final ClassValue<TableMetadata> TABLE_METADATA = new ClassValue<TableMetadata>() {
+        @Override
+        protected TableMetadata computeValue(Class<?> type) {
+            return buildMetadata(type);
+        }
+    };
 
-    private static final Object LOCK = new Object();
+    @Override
+    public TableMetadata getTableMetadata(Class<?> clazz) {
+        Assert.isTrue(clazz != null && clazz.isAnnotationPresent(Table.class), "与Table对应的Class不能为空且必须标识@Table注解");
+        return TABLE_METADATA.get(clazz);
+    }
 
     @Override
     public String getColumnName(Field field) {
         Assert.notNull(field, "属性不能为空");
-        Map<Field, String> mappings = FIELD_TO_COLUMN_MAPPINGS.get(field.getDeclaringClass());
-        if (mappings == null) {
-            synchronized (LOCK) {
-                mappings = FIELD_TO_COLUMN_MAPPINGS.get(field.getDeclaringClass());
-                if (mappings == null) {
-                    mappings = buildMapping(field.getDeclaringClass());
-                }
-            }
-        }
-        return mappings.get(field);
+        return getTableMetadata(field.getDeclaringClass()).getColumnName(field);
     }
 
     @Override
     public String getKeyColumnName(Class<?> clazz) {
-        Table table = checkClass(clazz);
-        return getColumnName(ReflectionUtils.findField(clazz,table.key()));
+        checkClass(clazz);
+        return getTableMetadata(clazz).getKeyColumnName();
     }
 
     @Override
     public String getKeyFiledName(Class<?> clazz) {
-        Table table = checkClass(clazz);
-        Field field = ReflectionUtils.findField(clazz,table.key());
-        Assert.state(field != null,"@Table的key()指定的属性必须存在");
-        return field.getName();
+        checkClass(clazz);
+        String keyFieldName = getTableMetadata(clazz).getKeyFieldName();
+        Assert.state(keyFieldName != null, "@Table的key()指定的属性必须存在");
+        return keyFieldName;
     }
 
-    private Table checkClass(Class<?> clazz){
-        Assert.isTrue(clazz != null , "与Table对应的Class不能为空");
+    private Table checkClass(Class<?> clazz) {
+        Assert.isTrue(clazz != null, "与Table对应的Class不能为空");
         Table table = clazz.getAnnotation(Table.class);
-        Assert.isTrue(table != null && StringUtils.hasText(table.key()),"["+clazz.getName()+"]必须标识@Table注解且key()不能为空");
+        Assert.isTrue(table != null && StringUtils.hasText(table.key()), "[" + clazz.getName() + "]必须标识@Table注解且key()不能为空");
         return table;
     }
 
@@ -72,56 +71,29 @@ public class HumpToUnderLineFormatter implements TableFormatter {
     public String getTableName(Class<?> clazz) {
         Assert.notNull(clazz, "类不能为空");
         Assert.isTrue(clazz.isAnnotationPresent(Table.class), "[" + clazz.getName() + "]类上必须含有@Table注解");
-        String name = CLASS_TO_TABLE_MAPPING.get(clazz);
-        if (name == null) {
-            synchronized (LOCK) {
-                name = CLASS_TO_TABLE_MAPPING.get(clazz);
-                if (name == null) {
-                    buildMapping(clazz);
-                }
-            }
-        }
-        return CLASS_TO_TABLE_MAPPING.get(clazz);
+        return TABLE_METADATA.get(clazz).getTableName();
     }
 
     @Override
     public Map<Field, String> getFieldMappings(Class<?> clazz) {
-        Assert.isTrue(clazz != null && clazz.isAnnotationPresent(Table.class), "与Table对应的Class不能为空且必须标识@Table注解");
-        Map<Field, String> mappings = FIELD_TO_COLUMN_MAPPINGS.get(clazz);
-        if (mappings == null) {
-            synchronized (LOCK) {
-                mappings = FIELD_TO_COLUMN_MAPPINGS.get(clazz);
-                if (mappings == null) {
-                    mappings = buildMapping(clazz);
-                }
-            }
-        }
-        return FIELD_TO_COLUMN_MAPPINGS.get(clazz);
-    }
-
-    /**
-     * 创建实体到表映射
-     *
-     * @param clazz
-     */
-    private Map<Field, String> buildMapping(Class<?> clazz) {
-        buildClassToTableMapping(clazz);
-        Map<Field, String> mappings = new HashMap<Field, String>();
-        FIELD_TO_COLUMN_MAPPINGS.put(clazz, mappings);
-        buildFiledToColumnMapping(clazz, mappings);
-        buildFiledToColumnMappingWithGetter(clazz, mappings);
-        return mappings;
+        return getTableMetadata(clazz).getFieldMappings();
     }
 
     /**
-     * 创建类名到表名的名称映射
+     * 创建实体到表的元数据,先按声明顺序加入标识了@Column的属性,再加入标识了@Column的getter方法对应的属性
      *
      * @param clazz
+     * @return
      */
-    private void buildClassToTableMapping(Class<?> clazz) {
+    private static TableMetadata buildMetadata(Class<?> clazz) {
         Table table = clazz.getAnnotation(Table.class);
         Assert.notNull(table, "[" + clazz.getName() + "]类上必须有@Table注解");
-        CLASS_TO_TABLE_MAPPING.put(clazz, StringUtils.hasText(table.value()) ? table.value() : doFormatWithHunmRule(clazz.getSimpleName()));
+        String tableName = StringUtils.hasText(table.value()) ? table.value() : doFormatWithHunmRule(clazz.getSimpleName());
+        LinkedHashMap<Field, String> mappings = new LinkedHashMap<Field, String>();
+        buildFiledToColumnMapping(clazz, mappings);
+        buildFiledToColumnMappingWithGetter(clazz, mappings);
+        Field keyField = StringUtils.hasText(table.key()) ? ReflectionUtils.findField(clazz, table.key()) : null;
+        return new TableMetadata(clazz, tableName, keyField, mappings);
     }
 
     /**
@@ -130,7 +102,7 @@ public class HumpToUnderLineFormatter implements TableFormatter {
      * @param clazz
      * @param mappings
      */
-    private void buildFiledToColumnMapping(Class<?> clazz, Map<Field, String> mappings) {
+    private static void buildFiledToColumnMapping(Class<?> clazz, Map<Field, String> mappings) {
         ReflectionUtils.doWithLocalFields(clazz, (field) -> {
                 Column column = field.getAnnotation(Column.class);
                 if (column != null) {
@@ -150,7 +122,7 @@ public class HumpToUnderLineFormatter implements TableFormatter {
      * @param clazz
      * @param mappings
      */
-    private void buildFiledToColumnMappingWithGetter(Class<?> clazz, Map<Field, String> mappings) {
+    private static void buildFiledToColumnMappingWithGetter(Class<?> clazz, Map<Field, String> mappings) {
 
         ReflectionUtils.doWithLocalMethods(clazz, (method) -> {
                 Column column = method.getAnnotation(Column.class);
@@ -180,15 +152,15 @@ public class HumpToUnderLineFormatter implements TableFormatter {
      */
     private static String doFormatWithHunmRule(String name) {
         Assert.hasText(name, "属性或者类名称不能为空");
-        SB.delete(0, SB.length());
-        SB.append(toUpperCase(name.charAt(0)));
+        StringBuilder sb = new StringBuilder(name.length() + 4);
+        sb.append(toUpperCase(name.charAt(0)));
         for (int i = 1; i < name.length(); i++) {
             if (isUpperCase(name.charAt(i))) {
-                SB.append("_");
+                sb.append("_");
             }
-            SB.append(toUpperCase(name.charAt(i)));
+            sb.append(toUpperCase(name.charAt(i)));
         }
-        return SB.toString();
+        return sb.toString();
     }
 
     /**
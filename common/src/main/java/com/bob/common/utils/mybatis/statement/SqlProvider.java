@@ -1,9 +1,7 @@
 package com.bob.common.utils.mybatis.statement;
 
-import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +16,8 @@ public class SqlProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SqlProvider.class);
 
+    private static final ConcurrentMap<Class<?>, SqlTemplate> SQL_TEMPLATES = new ConcurrentHashMap<Class<?>, SqlTemplate>();
+
     private TableFormatter tableFormat = new HumpToUnderLineFormatter();
 
     /**
@@ -27,34 +27,7 @@ public class SqlProvider {
      * @return
      */
     public String insert(Object bean) {
-        Class<?> beanClass = bean.getClass();
-        String tableName = tableFormat.getTableName(beanClass);
-        StringBuilder insertSql = new StringBuilder();
-        List<String> columns = new ArrayList<String>();
-        List<String> values = new ArrayList<String>();
-        insertSql.append("INSERT INTO ").append(tableName).append("(");
-        try {
-            for (Entry<Field, String> entry : tableFormat.getFieldMappings(beanClass).entrySet()) {
-                Field field = entry.getKey();
-                field.setAccessible(true);
-                if (field.get(bean) != null) {
-                    columns.add(entry.getValue());
-                    values.add("#{" + field.getName() + "}");
-                }
-            }
-        } catch (Exception e) {
-            new RuntimeException("get insert sql has exceptoin:" + e);
-        }
-        int columnSize = columns.size();
-        for (int i = 0; i < columnSize; i++) {
-            insertSql.append(columns.get(i));
-            insertSql.append(i != columnSize - 1 ? "," : ") VALUES(");
-        }
-        for (int i = 0; i < columnSize; i++) {
-            insertSql.append(values.get(i));
-            insertSql.append(i != columnSize - 1 ? "," : ")");
-        }
-        return insertSql.toString();
+        return getSqlTemplate(bean.getClass()).insert(bean);
     }
 
     /**
@@ -64,24 +37,7 @@ public class SqlProvider {
      * @return
      */
     public String update(Object bean) {
-        Class<?> beanClass = bean.getClass();
-        String tableName = tableFormat.getTableName(beanClass);
-        StringBuilder updateSql = new StringBuilder();
-        updateSql.append(" UPDATE ").append(tableName).append(" SET ");
-        try {
-            for (Entry<Field, String> entry : tableFormat.getFieldMappings(beanClass).entrySet()) {
-                Field field = entry.getKey();
-                field.setAccessible(true);
-                if (field.get(bean) != null) {
-                    updateSql.append(entry.getValue()).append("=#{").append(field.getName()).append("},");
-                }
-            }
-            updateSql.deleteCharAt(updateSql.length() - 1);
-        } catch (Exception e) {
-            new RuntimeException("get update sql is exceptoin:" + e);
-        }
-        updateSql.append(" WHERE ").append(tableFormat.getKeyColumnName(beanClass) + " =#{" + tableFormat.getKeyFiledName(beanClass) + "}");
-        return updateSql.toString();
+        return getSqlTemplate(bean.getClass()).update(bean);
     }
 
     /**
@@ -91,23 +47,7 @@ public class SqlProvider {
      * @return
      */
     public String delete(Object bean) {
-        Class<?> beanClass = bean.getClass();
-        String tableName = tableFormat.getTableName(beanClass);
-        StringBuilder deleteSql = new StringBuilder();
-        deleteSql.append(" DELETE FROM ").append(tableName).append(" WHERE  ");
-        try {
-            for (Entry<Field, String> entry : tableFormat.getFieldMappings(beanClass).entrySet()) {
-                Field field = entry.getKey();
-                field.setAccessible(true);
-                if (field.get(bean) != null) {
-                    deleteSql.append(entry.getValue()).append("=#{").append(field.getName()).append("} AND ");
-                }
-            }
-            deleteSql.delete(deleteSql.length() - 5, deleteSql.length() - 1);
-        } catch (Exception e) {
-            new RuntimeException("get delete sql is exceptoin:" + e);
-        }
-        return deleteSql.toString();
+        return getSqlTemplate(bean.getClass()).delete(bean);
     }
 
     /**
@@ -117,33 +57,23 @@ public class SqlProvider {
      * @return
      */
     public String select(Object bean) {
-        Class<?> beanClass = bean.getClass();
-        String tableName = tableFormat.getTableName(beanClass);
-        StringBuilder selectSql = new StringBuilder();
-        List<String> columns = new ArrayList<String>();
-        List<String> values = new ArrayList<String>();
-        selectSql.append("SELECT ");
-        try {
-            for (Entry<Field, String> entry : tableFormat.getFieldMappings(beanClass).entrySet()) {
-                Field field = entry.getKey();
-                field.setAccessible(true);
-                selectSql.append(entry.getValue() + ",");
-                if (field.get(bean) != null) {
-                    columns.add(entry.getValue());
-                    values.add("#{" + field.getName() + "}");
-                }
-            }
-            selectSql.deleteCharAt(selectSql.length() - 1);
-        } catch (Exception e) {
-            new RuntimeException("get select sql is exceptoin:" + e);
-        }
-        selectSql.append(" FROM ").append(tableName).append(" WHERE ");
-        int columnSize = columns.size();
-        for (int i = 0; i < columnSize; i++) {
-            selectSql.append(columns.get(i)).append("=").append(values.get(i)).append(" AND ");
+        return getSqlTemplate(bean.getClass()).select(bean);
+    }
+
+    /**
+     * 获取实体类的SQL模板,Mybatis每次调用都会创建新的SqlProvider实例,因此模板缓存为静态的
+     *
+     * @param beanClass
+     * @return
+     */
+    private SqlTemplate getSqlTemplate(Class<?> beanClass) {
+        SqlTemplate template = SQL_TEMPLATES.get(beanClass);
+        if (template == null) {
+            template = new SqlTemplate(tableFormat.getTableMetadata(beanClass));
+            SqlTemplate existed = SQL_TEMPLATES.putIfAbsent(beanClass, template);
+            template = existed != null ? existed : template;
         }
-        selectSql.delete(selectSql.length() - 5, selectSql.length() - 1);
-        return selectSql.toString();
+        return template;
     }
 
 }
@@ -0,0 +1,160 @@
+package com.bob.common.utils.mybatis.statement;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.util.Assert;
+
+/**
+ * 实体类的SQL模板,每个实体类构建一次
+ * 表名,列名取自{@link TableMetadata},属性的读取方式在构建时确定,生成SQL时只计算非null属性的掩码,相同掩码的SQL语句只拼接一次;
+ * 属性不超过64个时掩码为long,否则为BitSet
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-18 14:00
+ */
+final class SqlTemplate {
+
+    private final TableMetadata metadata;
+    private final String tableName;
+    private final String[] fieldNames;
+    private final String[] columnNames;
+    private final MethodHandle[] getters;
+    /**
+     * 查询语句中与掩码无关的部分
+     */
+    private final String selectPrefix;
+
+    private final Map<Object, String> insertSqls = new ConcurrentHashMap<Object, String>();
+    private final Map<Object, String> updateSqls = new ConcurrentHashMap<Object, String>();
+    private final Map<Object, String> deleteSqls = new ConcurrentHashMap<Object, String>();
+    private final Map<Object, String> selectSqls = new ConcurrentHashMap<Object, String>();
+
+    SqlTemplate(TableMetadata metadata) {
+        this.metadata = metadata;
+        this.tableName = metadata.getTableName();
+        this.fieldNames = metadata.getFieldNames().toArray(new String[0]);
+        this.columnNames = metadata.getColumnNames().toArray(new String[0]);
+        this.getters = new MethodHandle[fieldNames.length];
+        this.selectPrefix = "SELECT " + metadata.getColumnList() + " FROM " + tableName + " WHERE ";
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        int i = 0;
+        for (Field field : metadata.getFieldMappings().keySet()) {
+            field.setAccessible(true);
+            try {
+                getters[i++] = lookup.unreflectGetter(field);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("无法读取[" + metadata.getBeanClass().getName() + "]的属性[" + field.getName() + "]", e);
+            }
+        }
+    }
+
+    String insert(Object bean) {
+        return getOrBuild(insertSqls, bean, this::buildInsert);
+    }
+
+    String update(Object bean) {
+        return getOrBuild(updateSqls, bean, this::buildUpdate);
+    }
+
+    String delete(Object bean) {
+        return getOrBuild(deleteSqls, bean, this::buildDelete);
+    }
+
+    String select(Object bean) {
+        return getOrBuild(selectSqls, bean, this::buildSelect);
+    }
+
+    private String getOrBuild(Map<Object, String> sqls, Object bean, Function<BitSet, String> builder) {
+        Object mask = computeMask(bean);
+        String sql = sqls.get(mask);
+        if (sql == null) {
+            sql = builder.apply(mask instanceof BitSet ? (BitSet)mask : BitSet.valueOf(new long[] {(Long)mask}));
+            sqls.put(mask, sql);
+        }
+        return sql;
+    }
+
+    /**
+     * 计算非null属性的掩码
+     *
+     * @param bean
+     * @return
+     */
+    private Object computeMask(Object bean) {
+        if (getters.length <= Long.SIZE) {
+            long mask = 0;
+            for (int i = 0; i < getters.length; i++) {
+                if (read(bean, i) != null) {
+                    mask |= 1L << i;
+                }
+            }
+            return mask;
+        }
+        BitSet mask = new BitSet(getters.length);
+        for (int i = 0; i < getters.length; i++) {
+            if (read(bean, i) != null) {
+                mask.set(i);
+            }
+        }
+        return mask;
+    }
+
+    private Object read(Object bean, int index) {
+        try {
+            return getters[index].invoke(bean);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("读取[" + metadata.getBeanClass().getName() + "]的属性[" + fieldNames[index] + "]失败", ex);
+        }
+    }
+
+    private String buildInsert(BitSet mask) {
+        StringBuilder insertSql = new StringBuilder();
+        insertSql.append("INSERT INTO ").append(tableName).append("(");
+        StringBuilder values = new StringBuilder();
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            boolean last = mask.nextSetBit(i + 1) < 0;
+            insertSql.append(columnNames[i]).append(last ? ") VALUES(" : ",");
+            values.append("#{").append(fieldNames[i]).append("}").append(last ? ")" : ",");
+        }
+        return insertSql.append(values).toString();
+    }
+
+    private String buildUpdate(BitSet mask) {
+        StringBuilder updateSql = new StringBuilder();
+        updateSql.append(" UPDATE ").append(tableName).append(" SET ");
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            updateSql.append(columnNames[i]).append("=#{").append(fieldNames[i]).append("},");
+        }
+        updateSql.deleteCharAt(updateSql.length() - 1);
+        Assert.state(metadata.getKeyFieldName() != null,
+            "[" + metadata.getBeanClass().getName() + "]必须标识@Table注解且key()指定的属性必须存在");
+        updateSql.append(" WHERE ").append(metadata.getKeyColumnName() + " =#{" + metadata.getKeyFieldName() + "}");
+        return updateSql.toString();
+    }
+
+    private String buildDelete(BitSet mask) {
+        StringBuilder deleteSql = new StringBuilder();
+        deleteSql.append(" DELETE FROM ").append(tableName).append(" WHERE  ");
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            deleteSql.append(columnNames[i]).append("=#{").append(fieldNames[i]).append("} AND ");
+        }
+        deleteSql.delete(deleteSql.length() - 5, deleteSql.length() - 1);
+        return deleteSql.toString();
+    }
+
+    private String buildSelect(BitSet mask) {
+        StringBuilder selectSql = new StringBuilder(selectPrefix);
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            selectSql.append(columnNames[i]).append("=#{").append(fieldNames[i]).append("} AND ");
+        }
+        selectSql.delete(selectSql.length() - 5, selectSql.length() - 1);
+        return selectSql.toString();
+    }
+
+}
@@ -50,4 +50,12 @@ public interface TableFormatter {
      */
     public Map<Field, String> getFieldMappings(Class<?> clazz);
 
-}
\ No newline at end of file
+    /**
+     * 获取一个类的不可变元数据,可被多线程并发读取
+     *
+     * @param clazz
+     * @return
+     */
+    public TableMetadata getTableMetadata(Class<?> clazz);
+
+}
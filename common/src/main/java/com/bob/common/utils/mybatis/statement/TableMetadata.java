@@ -0,0 +1,112 @@
+package com.bob.common.utils.mybatis.statement;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * 实体类到表的不可变元数据,每个实体类构建一次,多线程并发读取无需加锁
+ * 包含表名,主键属性及列名,按声明顺序排列的属性到列的映射及预先拼接的列名列表
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-18 16:00
+ */
+public final class TableMetadata {
+
+    private final Class<?> beanClass;
+    private final String tableName;
+    private final String keyFieldName;
+    private final String keyColumnName;
+    private final Map<Field, String> fieldMappings;
+    private final List<String> fieldNames;
+    private final List<String> columnNames;
+    private final String columnList;
+
+    /**
+     * @param beanClass
+     * @param tableName
+     * @param keyField      主键属性,未指定时为null
+     * @param fieldMappings 按声明顺序排列的属性到列的映射
+     */
+    TableMetadata(Class<?> beanClass, String tableName, Field keyField, LinkedHashMap<Field, String> fieldMappings) {
+        this.beanClass = beanClass;
+        this.tableName = tableName;
+        this.keyFieldName = keyField == null ? null : keyField.getName();
+        this.keyColumnName = keyField == null ? null : fieldMappings.get(keyField);
+        this.fieldMappings = Collections.unmodifiableMap(fieldMappings);
+        List<String> fieldNames = new ArrayList<String>(fieldMappings.size());
+        List<String> columnNames = new ArrayList<String>(fieldMappings.size());
+        for (Entry<Field, String> entry : fieldMappings.entrySet()) {
+            fieldNames.add(entry.getKey().getName());
+            columnNames.add(entry.getValue());
+        }
+        this.fieldNames = Collections.unmodifiableList(fieldNames);
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.columnList = StringUtils.collectionToDelimitedString(columnNames, ",");
+    }
+
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return 主键的属性名称,@Table未指定key()时为null
+     */
+    public String getKeyFieldName() {
+        return keyFieldName;
+    }
+
+    /**
+     * @return 主键的列名,@Table未指定key()或主键属性未映射为列时为null
+     */
+    public String getKeyColumnName() {
+        return keyColumnName;
+    }
+
+    /**
+     * @return 按声明顺序排列的属性 >> 列名,不可修改
+     */
+    public Map<Field, String> getFieldMappings() {
+        return fieldMappings;
+    }
+
+    /**
+     * @param field
+     * @return 属性对应的列名,未映射时为null
+     */
+    public String getColumnName(Field field) {
+        return fieldMappings.get(field);
+    }
+
+    /**
+     * @return 与{@link #getColumnNames()}顺序一致的属性名称,不可修改
+     */
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * @return 列名,不可修改
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return 以逗号分隔的所有列名,如"ID,USER_NAME"
+     */
+    public String getColumnList() {
+        return columnList;
+    }
+
+}
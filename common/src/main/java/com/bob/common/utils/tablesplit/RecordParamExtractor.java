@@ -0,0 +1,243 @@
+package com.bob.common.utils.tablesplit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import org.json.JSONObject;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * 分表SQL参数的提取器,每个记录类型构建一次
+ * 每个属性的取值方式及加引号,布尔转数值等处理在构建时确定,提取时直接读取属性值,不再经过JSON序列化及解析;
+ * 结果与原先Gson序列化再以JSONObject解析的方式保持一致:忽略static,transient属性及null值,日期按指定格式格式化
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-17 14:00
+ */
+final class RecordParamExtractor {
+
+    private final String[] names;
+    private final MethodHandle[] getters;
+    private final ParamKind[] kinds;
+    /**
+     * 是否为可直接写入列的单值属性,集合,数组及嵌套对象不是
+     */
+    private final boolean[] columns;
+    private final DateTimeFormatter dateFormatter;
+    private final Gson gson;
+
+    /**
+     * @param clazz
+     * @param datePattern 日期格式,与Gson的日期格式一致
+     * @param gson        无法直接提取的属性仍以Gson转换
+     */
+    RecordParamExtractor(Class<?> clazz, String datePattern, Gson gson) {
+        this.dateFormatter = DateTimeFormatter.ofPattern(datePattern, Locale.US).withZone(ZoneId.systemDefault());
+        this.gson = gson;
+        List<Field> fields = new ArrayList<Field>();
+        ReflectionUtils.doWithFields(clazz, fields::add,
+            field -> !Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic());
+        this.names = new String[fields.size()];
+        this.getters = new MethodHandle[fields.size()];
+        this.kinds = new ParamKind[fields.size()];
+        this.columns = new boolean[fields.size()];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            field.setAccessible(true);
+            names[i] = field.getName();
+            kinds[i] = ParamKind.of(field);
+            columns[i] = kinds[i] != ParamKind.OBJECT && kinds[i] != ParamKind.STRING_ELEMENTS
+                && !Collection.class.isAssignableFrom(field.getType()) && !field.getType().isArray();
+            try {
+                getters[i] = lookup.unreflectGetter(field);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("无法读取[" + clazz.getName() + "]的属性[" + field.getName() + "]", e);
+            }
+        }
+    }
+
+    /**
+     * 提取记录的参数
+     *
+     * @param record
+     * @param extraCapacity 调用方还需放入的参数数量,用于预估Map容量
+     * @return
+     */
+    Map<String, Object> extract(Object record, int extraCapacity) {
+        Map<String, Object> paramMap = new HashMap<String, Object>((int)((names.length + extraCapacity) / 0.75f) + 1);
+        for (int i = 0; i < names.length; i++) {
+            Object value = read(record, i);
+            if (value != null) {
+                paramMap.put(names[i], convert(kinds[i], value));
+            }
+        }
+        return paramMap;
+    }
+
+    /**
+     * @return 属性数量
+     */
+    int size() {
+        return names.length;
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    ParamKind getKind(int index) {
+        return kinds[index];
+    }
+
+    boolean isColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * 读取属性的原始值
+     *
+     * @param record
+     * @param index
+     * @return
+     */
+    Object read(Object record, int index) {
+        try {
+            return getters[index].invoke(record);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("读取属性[" + names[index] + "]失败", ex);
+        }
+    }
+
+    private Object convert(ParamKind kind, Object value) {
+        switch (kind) {
+            case QUOTED_STRING:
+                return "\'" + value + "\'";
+            case QUOTED_DATE:
+                return "\'" + dateFormatter.format(((Date)value).toInstant()) + "\'";
+            case DATE:
+                return dateFormatter.format(((Date)value).toInstant());
+            case BOOLEAN:
+                return (Boolean)value ? 1 : 0;
+            case STRING_ELEMENTS:
+                return quoteElements(value);
+            case TEXT:
+                return value instanceof Enum ? ((Enum<?>)value).name() : value.toString();
+            case RAW:
+                return value;
+            default:
+                // 嵌套对象等,仍以JSON转换,与原先的结果一致
+                return new JSONObject("{\"value\":" + gson.toJson(value) + "}").toMap().get("value");
+        }
+    }
+
+    /**
+     * 将String集合，数组内的值前后追加引号
+     *
+     * @param values
+     * @return
+     */
+    private static Object quoteElements(Object values) {
+        if (values.getClass().isArray()) {
+            String[] raw = (String[])values;
+            String[] strings = new String[raw.length];
+            for (int i = 0; i < raw.length; i++) {
+                strings[i] = "\'" + raw[i] + "\'";
+            }
+            return strings;
+        }
+        Collection<?> raw = (Collection<?>)values;
+        List<String> strings = new ArrayList<String>(raw.size());
+        for (Object value : raw) {
+            strings.add("\'" + value + "\'");
+        }
+        return strings;
+    }
+
+    /**
+     * 属性值的处理方式
+     */
+    enum ParamKind {
+
+        /**
+         * 字符串,首尾加引号
+         */
+        QUOTED_STRING,
+
+        /**
+         * {@link Date}类型,格式化后首尾加引号
+         */
+        QUOTED_DATE,
+
+        /**
+         * Date的子类,如Timestamp,只格式化
+         */
+        DATE,
+
+        /**
+         * Boolean包装类型,转换为1,0
+         */
+        BOOLEAN,
+
+        /**
+         * 字符串集合,数组,每个元素首尾加引号
+         */
+        STRING_ELEMENTS,
+
+        /**
+         * 枚举,字符,序列化后为字符串但不加引号
+         */
+        TEXT,
+
+        /**
+         * 数值,基本类型及其余集合,数组,直接使用属性值
+         */
+        RAW,
+
+        /**
+         * 其他对象
+         */
+        OBJECT;
+
+        static ParamKind of(Field field) {
+            Class<?> type = field.getType();
+            if (type == String.class) {
+                return QUOTED_STRING;
+            }
+            if (type == Date.class) {
+                return QUOTED_DATE;
+            }
+            if (Date.class.isAssignableFrom(type)) {
+                return DATE;
+            }
+            if (type == Boolean.class) {
+                return BOOLEAN;
+            }
+            if (Collection.class.isAssignableFrom(type) || type.isArray()) {
+                // 只对字符串的集合，数组做处理,忽略日期
+                return String.class == ResolvableType.forField(field).resolveGeneric(0) ? STRING_ELEMENTS : RAW;
+            }
+            if (type.isEnum() || type == Character.class || type == char.class) {
+                return TEXT;
+            }
+            if (type.isPrimitive() || Number.class.isAssignableFrom(type)) {
+                return RAW;
+            }
+            return OBJECT;
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.bob.common.utils.tablesplit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * 分表查询执行器,在有界线程池上并发查询每张分表,再将各分表的有序结果归并
+ * 每张分表只查询前startRow+limit行(limit下推),归并时取满一页即停止,不需要数据库物化所有分表的UNION结果;
+ * 查询参数沿用{@link TableSplittingManager#buildQueryParamMap(Object)}的结构,单表查询时以table存放表名
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-16 14:00
+ */
+public class ShardQueryExecutor implements DisposableBean {
+
+    private static final String TABLES = "tables";
+    private static final String TABLE = "table";
+    private static final String LIMIT = "limit";
+    private static final String START_ROW = "startRow";
+
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private long timeoutMillis = 30000;
+
+    /**
+     * @param parallelism 并发查询的线程数,任务队列已满时由调用线程执行
+     */
+    public ShardQueryExecutor(int parallelism) {
+        Assert.isTrue(parallelism > 0, "并发数必须大于0");
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(parallelism * 4), runnable -> {
+            Thread thread = new Thread(runnable, "shard-query-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new CallerRunsPolicy());
+        ((ThreadPoolExecutor)executor).allowCoreThreadTimeOut(true);
+        this.ownExecutor = true;
+    }
+
+    /**
+     * @param executor 外部提供的线程池,由外部负责关闭
+     */
+    public ShardQueryExecutor(ExecutorService executor) {
+        Assert.notNull(executor, "线程池不能为空");
+        this.executor = executor;
+        this.ownExecutor = false;
+    }
+
+    /**
+     * 并发查询分表并归并为一页数据
+     *
+     * @param queryParamMap {@link TableSplittingManager#buildQueryParamMap(Object)}生成的参数,
+     *                      startRow,limit不存在时查询所有数据
+     * @param comparator    与单表查询ORDER BY一致的排序
+     * @param tableQuery    单表查询,如Mapper的selectFromTable方法,返回结果须按comparator有序
+     * @param <T>
+     * @return
+     * @throws InterruptedException
+     */
+    public <T> List<T> query(Map<String, Object> queryParamMap, Comparator<? super T> comparator,
+                             Function<Map<String, Object>, List<T>> tableQuery) throws InterruptedException {
+        Assert.notNull(comparator, "排序方式不能为空");
+        Assert.notNull(tableQuery, "单表查询不能为空");
+        List<?> tables = (List<?>)queryParamMap.get(TABLES);
+        if (tables == null || tables.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int startRow = intValue(queryParamMap.get(START_ROW), 0);
+        int limit = intValue(queryParamMap.get(LIMIT), -1);
+        if (limit == 0) {
+            return Collections.emptyList();
+        }
+        Map<String, Object> pushdown = new HashMap<String, Object>(queryParamMap);
+        pushdown.remove(TABLES);
+        if (limit > 0) {
+            // 每张分表只需返回前startRow+limit行
+            pushdown.put(START_ROW, 0);
+            pushdown.put(LIMIT, startRow + limit);
+        }
+        if (tables.size() == 1) {
+            return page(Collections.singletonList(tableQuery.apply(withTable(pushdown, (String)tables.get(0)))).iterator(), comparator,
+                startRow, limit);
+        }
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(tables.size());
+        try {
+            for (Object table : tables) {
+                Map<String, Object> paramMap = withTable(pushdown, (String)table);
+                futures.add(executor.submit(() -> tableQuery.apply(paramMap)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            List<List<T>> results = new ArrayList<List<T>>(futures.size());
+            for (Future<List<T>> future : futures) {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return page(results.iterator(), comparator, startRow, limit);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IllegalStateException("分表查询失败", cause);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("分表查询超时,超过" + timeoutMillis + "ms", e);
+        } finally {
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * k路归并,跳过startRow行后取limit行,取满即停止
+     *
+     * @param results    每张分表的有序结果
+     * @param comparator
+     * @param startRow
+     * @param limit      小于0时不限制
+     * @param <T>
+     * @return
+     */
+    static <T> List<T> page(Iterator<List<T>> results, Comparator<? super T> comparator, int startRow, int limit) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<Cursor<T>>((a, b) -> comparator.compare(a.head, b.head));
+        int total = 0;
+        while (results.hasNext()) {
+            List<T> result = results.next();
+            if (result != null && !result.isEmpty()) {
+                heads.add(new Cursor<T>(result.iterator()));
+                total += result.size();
+            }
+        }
+        int size = Math.max(0, limit < 0 ? total - startRow : Math.min(limit, total - startRow));
+        List<T> page = new ArrayList<T>(size);
+        int skipped = 0;
+        while (page.size() < size && !heads.isEmpty()) {
+            Cursor<T> cursor = heads.poll();
+            if (skipped < startRow) {
+                skipped++;
+            } else {
+                page.add(cursor.head);
+            }
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return page;
+    }
+
+    private static Map<String, Object> withTable(Map<String, Object> pushdown, String table) {
+        Map<String, Object> paramMap = new HashMap<String, Object>(pushdown);
+        paramMap.put(TABLE, table);
+        return paramMap;
+    }
+
+    private static int intValue(Object value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Number ? ((Number)value).intValue() : Integer.parseInt(value.toString());
+    }
+
+    /**
+     * @param timeoutMillis 等待所有分表返回的超时时间,默认30秒
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        Assert.isTrue(timeoutMillis > 0, "超时时间必须大于0");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void destroy() {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 单张分表结果的游标
+     */
+    private static class Cursor<T> {
+
+        private final Iterator<T> iterator;
+        private T head;
+
+        Cursor(Iterator<T> iterator) {
+            this.iterator = iterator;
+            this.head = iterator.next();
+        }
+
+        boolean advance() {
+            if (iterator.hasNext()) {
+                head = iterator.next();
+                return true;
+            }
+            return false;
+        }
+    }
+
+}
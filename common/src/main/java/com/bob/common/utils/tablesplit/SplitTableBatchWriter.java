@@ -0,0 +1,325 @@
+package com.bob.common.utils.tablesplit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.bob.common.utils.mybatis.statement.Column;
+import com.bob.common.utils.mybatis.statement.HumpToUnderLineFormatter;
+import com.bob.common.utils.mybatis.statement.Table;
+import com.bob.common.utils.mybatis.statement.TableFormatter;
+import com.bob.common.utils.tablesplit.RecordParamExtractor.ParamKind;
+import org.apache.ibatis.session.SqlSession;
+import org.springframework.util.Assert;
+
+/**
+ * 分表的批量写入器
+ * 按{@link TableSplittingService#extractInsertBasis(Object)}将记录分组到各分表,同一分表内非null属性相同的记录使用同一条
+ * PreparedStatement批量执行,与insertSelective一样只写入非null的列,参数以占位符绑定,不再拼接加引号的字符串;
+ * 只写入显式映射的列:通过{@link #registerColumns(Class, Map)}注册的属性,或标识了{@link Table}的记录类中标识了{@link Column}的属性,
+ * 其余属性一律忽略;不提交事务也不关闭连接,由调用方管理
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-18 10:00
+ */
+public class SplitTableBatchWriter {
+
+    private final TableSplittingManager splittingManager;
+    private int batchSize = 500;
+    private int rowsPerStatement = 1;
+    private TableFormatter tableFormatter = new HumpToUnderLineFormatter();
+    /**
+     * 记录类型 >> 属性名 >> 列名,显式注册的映射
+     */
+    private final Map<Class<?>, Map<String, String>> registeredColumns = new ConcurrentHashMap<Class<?>, Map<String, String>>();
+    /**
+     * 记录类型 >> 与{@link RecordParamExtractor}属性下标对应的列名,未映射的属性为null
+     */
+    private final Map<Class<?>, String[]> columnNames = new ConcurrentHashMap<Class<?>, String[]>();
+
+    public SplitTableBatchWriter(TableSplittingManager splittingManager) {
+        Assert.notNull(splittingManager, "分表管理器不能为空");
+        this.splittingManager = splittingManager;
+    }
+
+    /**
+     * 使用SqlSession的连接写入,可参与Spring管理的事务
+     *
+     * @param session
+     * @param records
+     * @return 写入的行数
+     * @throws SQLException
+     */
+    public int write(SqlSession session, Collection<?> records) throws SQLException {
+        return write(session.getConnection(), records);
+    }
+
+    /**
+     * 批量写入记录
+     *
+     * @param connection
+     * @param records
+     * @return 写入的行数
+     * @throws SQLException
+     * @throws IllegalArgumentException 存在映射的列全部为null的记录,此时不写入任何记录
+     */
+    public int write(Connection connection, Collection<?> records) throws SQLException {
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        // 全部记录校验通过后再写入,避免写入部分记录
+        Map<String, Map<Shape, List<Object[]>>> tables = new LinkedHashMap<String, Map<Shape, List<Object[]>>>();
+        for (Entry<String, ? extends List<?>> group : splittingManager.groupByInsertTable(records).entrySet()) {
+            tables.put(group.getKey(), groupByShape(group.getValue()));
+        }
+        int count = 0;
+        for (Entry<String, Map<Shape, List<Object[]>>> table : tables.entrySet()) {
+            for (Entry<Shape, List<Object[]>> shape : table.getValue().entrySet()) {
+                count += writeShape(connection, table.getKey(), shape.getKey(), shape.getValue());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按记录类型及非null的列分组,每行只保留非null列的值
+     *
+     * @param records
+     * @return
+     */
+    private Map<Shape, List<Object[]>> groupByShape(List<?> records) {
+        Map<Shape, List<Object[]>> shapes = new LinkedHashMap<Shape, List<Object[]>>();
+        for (Object record : records) {
+            RecordParamExtractor extractor = splittingManager.getParamExtractor(record.getClass());
+            String[] columns = getColumnNames(record.getClass(), extractor);
+            BitSet mask = new BitSet(extractor.size());
+            Object[] values = new Object[extractor.size()];
+            int size = 0;
+            for (int i = 0; i < extractor.size(); i++) {
+                if (columns[i] == null) {
+                    continue;
+                }
+                Object value = extractor.read(record, i);
+                if (value != null) {
+                    mask.set(i);
+                    values[size++] = toJdbcValue(extractor.getKind(i), value);
+                }
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException(String.format("[%s]记录映射的列全部为null,无法写入", record.getClass().getName()));
+            }
+            Object[] row = new Object[size];
+            System.arraycopy(values, 0, row, 0, size);
+            shapes.computeIfAbsent(new Shape(columns, mask), key -> new ArrayList<Object[]>()).add(row);
+        }
+        return shapes;
+    }
+
+    /**
+     * 获取记录类型各属性对应的列名,每个类型解析一次
+     *
+     * @param clazz
+     * @param extractor
+     * @return 与属性下标对应的列名,不写入的属性为null
+     */
+    private String[] getColumnNames(Class<?> clazz, RecordParamExtractor extractor) {
+        String[] columns = columnNames.get(clazz);
+        if (columns == null) {
+            columns = resolveColumnNames(clazz, extractor);
+            columnNames.putIfAbsent(clazz, columns);
+        }
+        return columns;
+    }
+
+    private String[] resolveColumnNames(Class<?> clazz, RecordParamExtractor extractor) {
+        Map<String, String> mappings = getColumnMappings(clazz);
+        Map<String, Integer> indexes = new HashMap<String, Integer>(extractor.size() * 2);
+        for (int i = 0; i < extractor.size(); i++) {
+            indexes.put(extractor.getName(i), i);
+        }
+        String[] columns = new String[extractor.size()];
+        for (Entry<String, String> entry : mappings.entrySet()) {
+            Integer index = indexes.get(entry.getKey());
+            Assert.isTrue(index != null, String.format("[%s]不存在可写入的属性[%s]", clazz.getName(), entry.getKey()));
+            Assert.isTrue(extractor.isColumn(index), String.format("[%s]的属性[%s]不是单值属性,无法写入列", clazz.getName(), entry.getKey()));
+            columns[index] = entry.getValue();
+        }
+        return columns;
+    }
+
+    /**
+     * 显式注册的映射优先,其次为{@link Table}及{@link Column}标识的映射
+     *
+     * @param clazz
+     * @return 属性名 >> 列名
+     */
+    private Map<String, String> getColumnMappings(Class<?> clazz) {
+        Map<String, String> mappings = registeredColumns.get(clazz);
+        if (mappings != null) {
+            return mappings;
+        }
+        Assert.state(clazz.isAnnotationPresent(Table.class),
+            String.format("[%s]未注册列映射也未标识@Table注解,无法确定写入的列", clazz.getName()));
+        mappings = new LinkedHashMap<String, String>();
+        for (Entry<Field, String> entry : tableFormatter.getTableMetadata(clazz).getFieldMappings().entrySet()) {
+            mappings.put(entry.getKey().getName(), entry.getValue());
+        }
+        Assert.state(!mappings.isEmpty(), String.format("[%s]没有标识@Column的属性", clazz.getName()));
+        return mappings;
+    }
+
+    /**
+     * 写入同一分表内同一形状的记录,满{@link #rowsPerStatement}行的部分以多行VALUES批量执行,剩余的行单独执行一次
+     */
+    private int writeShape(Connection connection, String table, Shape shape, List<Object[]> rows) throws SQLException {
+        int rowsPerStatement = Math.max(1, Math.min(this.rowsPerStatement, rows.size()));
+        int fullRows = rows.size() / rowsPerStatement * rowsPerStatement;
+        int statementsPerBatch = Math.max(1, batchSize / rowsPerStatement);
+        try (PreparedStatement statement = connection.prepareStatement(shape.buildInsertSql(table, rowsPerStatement))) {
+            int pending = 0;
+            for (int from = 0; from < fullRows; from += rowsPerStatement) {
+                bind(statement, rows, from, rowsPerStatement);
+                statement.addBatch();
+                if (++pending >= statementsPerBatch) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+        if (fullRows < rows.size()) {
+            try (PreparedStatement statement = connection.prepareStatement(shape.buildInsertSql(table, rows.size() - fullRows))) {
+                bind(statement, rows, fullRows, rows.size() - fullRows);
+                statement.executeUpdate();
+            }
+        }
+        return rows.size();
+    }
+
+    private static void bind(PreparedStatement statement, List<Object[]> rows, int from, int count) throws SQLException {
+        int index = 1;
+        for (int i = from; i < from + count; i++) {
+            for (Object value : rows.get(i)) {
+                statement.setObject(index++, value);
+            }
+        }
+    }
+
+    /**
+     * 与{@link RecordParamExtractor}的处理方式对应:日期以Timestamp绑定,Boolean仍转换为1,0,枚举及字符以字符串绑定
+     */
+    private static Object toJdbcValue(ParamKind kind, Object value) {
+        switch (kind) {
+            case QUOTED_DATE:
+            case DATE:
+                return value instanceof Timestamp ? value : new Timestamp(((Date)value).getTime());
+            case BOOLEAN:
+                return (Boolean)value ? 1 : 0;
+            case TEXT:
+                return value instanceof Enum ? ((Enum<?>)value).name() : value.toString();
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * @param batchSize 每次executeBatch写入的行数,默认500
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "批次大小必须大于0");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param rowsPerStatement 每条INSERT语句VALUES的行数,默认1,即纯JDBC批量;
+     *                         驱动不会改写批量语句时(如未开启rewriteBatchedStatements的MySQL)可调大以减少往返
+     */
+    public void setRowsPerStatement(int rowsPerStatement) {
+        Assert.isTrue(rowsPerStatement > 0, "每条语句的行数必须大于0");
+        this.rowsPerStatement = rowsPerStatement;
+    }
+
+    /**
+     * 注册记录类型写入的列,未注册的属性不写入;须在写入该类型的记录之前注册
+     *
+     * @param recordClass
+     * @param columns     属性名 >> 列名
+     */
+    public void registerColumns(Class<?> recordClass, Map<String, String> columns) {
+        Assert.notNull(recordClass, "记录类型不能为空");
+        Assert.notEmpty(columns, "列映射不能为空");
+        registeredColumns.put(recordClass, new LinkedHashMap<String, String>(columns));
+        columnNames.remove(recordClass);
+    }
+
+    /**
+     * @param tableFormatter 未注册列映射时,解析{@link Table}记录类的列映射,默认为{@link HumpToUnderLineFormatter}
+     */
+    public void setTableFormatter(TableFormatter tableFormatter) {
+        Assert.notNull(tableFormatter, "表格式化器不能为空");
+        this.tableFormatter = tableFormatter;
+        columnNames.clear();
+    }
+
+    /**
+     * 记录的形状,即记录类型的列及其中非null的列
+     */
+    private static class Shape {
+
+        private final String[] columns;
+        private final BitSet mask;
+
+        Shape(String[] columns, BitSet mask) {
+            this.columns = columns;
+            this.mask = mask;
+        }
+
+        String buildInsertSql(String table, int rows) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+            StringBuilder placeholders = new StringBuilder("(");
+            for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+                if (placeholders.length() > 1) {
+                    sql.append(", ");
+                    placeholders.append(", ");
+                }
+                sql.append(columns[i]);
+                placeholders.append('?');
+            }
+            sql.append(") VALUES ").append(placeholders).append(')');
+            for (int i = 1; i < rows; i++) {
+                sql.append(", ").append(placeholders).append(')');
+            }
+            return sql.toString();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Shape)) {
+                return false;
+            }
+            Shape other = (Shape)obj;
+            return columns == other.columns && mask.equals(other.mask);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(columns), mask);
+        }
+    }
+
+}
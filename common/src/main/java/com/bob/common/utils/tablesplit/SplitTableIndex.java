@@ -0,0 +1,204 @@
+package com.bob.common.utils.tablesplit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.bob.common.utils.tablesplit.TableSplittingManager.SplitTable;
+
+/**
+ * 分表时间区间的不可变索引,按起始时间排序,以epoch毫秒存储区间端点,表名预先生成
+ * 新增分表时复制出新的索引整体替换,读取方无需加锁
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-16 10:00
+ */
+final class SplitTableIndex {
+
+    static final SplitTableIndex EMPTY = new SplitTableIndex(new SplitTable[0]);
+
+    private final SplitTable[] tables;
+    private final long[] startTimes;
+    private final long[] endTimes;
+    /**
+     * 前i个分表结束时间的最大值,单调递增,用于二分查找区间查询的起点;
+     * 分表的结束时间会按表内实际数据调整,因此结束时间本身不一定有序
+     */
+    private final long[] maxEndTimes;
+    private final SplitTable latest;
+
+    private SplitTableIndex(SplitTable[] tables) {
+        Arrays.sort(tables, Comparator.comparingLong(SplitTable::getStartMillis)
+            .thenComparingInt(SplitTable::getOrder));
+        this.tables = tables;
+        this.startTimes = new long[tables.length];
+        this.endTimes = new long[tables.length];
+        this.maxEndTimes = new long[tables.length];
+        SplitTable latest = null;
+        long maxEnd = Long.MIN_VALUE;
+        for (int i = 0; i < tables.length; i++) {
+            startTimes[i] = tables[i].getStartMillis();
+            endTimes[i] = tables[i].getEndMillis();
+            maxEnd = Math.max(maxEnd, endTimes[i]);
+            maxEndTimes[i] = maxEnd;
+            if (latest == null || tables[i].getOrder() > latest.getOrder()) {
+                latest = tables[i];
+            }
+        }
+        this.latest = latest;
+    }
+
+    /**
+     * @param tables 任意顺序的分表
+     * @return
+     */
+    static SplitTableIndex of(List<SplitTable> tables) {
+        return tables.isEmpty() ? EMPTY : new SplitTableIndex(tables.toArray(new SplitTable[0]));
+    }
+
+    /**
+     * 复制当前索引并加入新的分表
+     *
+     * @param table
+     * @return 新的索引,当前索引不变
+     */
+    SplitTableIndex append(SplitTable table) {
+        SplitTable[] copy = Arrays.copyOf(tables, tables.length + 1);
+        copy[tables.length] = table;
+        return new SplitTableIndex(copy);
+    }
+
+    /**
+     * @return 序号最大的分表,没有分表时为null
+     */
+    SplitTable getLatest() {
+        return latest;
+    }
+
+    /**
+     * @return 最大的分表序号,没有分表时为-1
+     */
+    int getLatestOrder() {
+        return latest == null ? -1 : latest.getOrder();
+    }
+
+    int size() {
+        return tables.length;
+    }
+
+    /**
+     * 二分查找时间所在的分表,即起始时间不晚于time且结束时间晚于time的分表中起始时间最晚的一个
+     *
+     * @param time epoch毫秒
+     * @return 不在任何分表的区间内时返回null
+     */
+    SplitTable find(long time) {
+        for (int i = upperBound(startTimes, time) - 1; i >= 0 && maxEndTimes[i] > time; i--) {
+            if (endTimes[i] > time) {
+                return tables[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param time epoch毫秒
+     * @return 起始时间不晚于time的分表中起始时间最晚的一个,不存在时返回null
+     */
+    SplitTable floor(long time) {
+        int i = upperBound(startTimes, time) - 1;
+        return i < 0 ? null : tables[i];
+    }
+
+    /**
+     * @param time epoch毫秒
+     * @return 起始时间晚于time的分表数量,即尚未开始的分表数量
+     */
+    int countStartingAfter(long time) {
+        return tables.length - upperBound(startTimes, time);
+    }
+
+    /**
+     * 查询与时间区间相交的分表,区间两端均为闭区间
+     *
+     * @param startTime 起始时间,为null时不限制
+     * @param endTime   结束时间,为null时不限制
+     * @return 按起始时间排序的分表
+     */
+    List<SplitTable> findTables(Long startTime, Long endTime) {
+        // 起始时间晚于endTime的分表都不相交
+        int to = endTime == null ? tables.length : upperBound(startTimes, endTime);
+        // 结束时间早于startTime的分表都不相交,maxEndTimes有序,可二分定位第一个可能相交的分表
+        int from = startTime == null ? 0 : lowerBound(maxEndTimes, startTime, to);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        List<SplitTable> result = new ArrayList<SplitTable>(to - from);
+        for (int i = from; i < to; i++) {
+            if (startTime == null || endTimes[i] >= startTime) {
+                result.add(tables[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查询与时间区间相交的分表名称
+     *
+     * @param startTime 起始时间,为null时不限制
+     * @param endTime   结束时间,为null时不限制
+     * @return
+     */
+    List<String> findTableNames(Long startTime, Long endTime) {
+        List<SplitTable> found = findTables(startTime, endTime);
+        List<String> tableNames = new ArrayList<String>(found.size());
+        for (SplitTable table : found) {
+            tableNames.add(table.getTableName());
+        }
+        return tableNames;
+    }
+
+    /**
+     * @return 按起始时间排序的所有分表
+     */
+    List<SplitTable> getTables() {
+        return Collections.unmodifiableList(Arrays.asList(tables));
+    }
+
+    /**
+     * @return 第一个大于key的下标
+     */
+    private static int upperBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return [0, to)内第一个不小于key的下标
+     */
+    private static int lowerBound(long[] values, long key, int to) {
+        int low = 0;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -1,30 +1,26 @@
 package com.bob.common.utils.tablesplit;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
-import org.springframework.core.ResolvableType;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
-import org.springframework.util.ReflectionUtils;
 
 /**
  * 分表业务实现抽象
@@ -33,23 +29,44 @@ import org.springframework.util.ReflectionUtils;
  * @create 2018-04-16 9:48
  */
 @Component
-public class TableSplittingManager implements InitializingBean {
+public class TableSplittingManager implements InitializingBean, DisposableBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TableSplittingManager.class);
 
     private Gson gson;
 
+    private String datePattern;
+
     private int splitInterval;
 
     private TableSplittingService splittingService;
 
-    private volatile int latestOrder = 0;
+    /**
+     * 分表区间索引,新增分表时整体替换,查询时无需加锁
+     */
+    private volatile SplitTableIndex tableIndex = SplitTableIndex.EMPTY;
+
+    /**
+     * 创建分表时持有的锁,与读取分表索引无关,写入方只在预创建落后时才会等待
+     */
+    private final Object createLock = new Object();
 
-    private static final ConcurrentMap<Integer, SplitTable> ORDER_TO_TABLE_MAPPINGS = new ConcurrentHashMap<Integer, SplitTable>();
     /**
-     * 插入数据的属性名称 >> 属性类型的映射,目的是为了方便对字符串字段值前后加引号
+     * 预先创建的未开始分表的数量,为0时不预创建
      */
-    private static final ConcurrentMap<Class, Map<String, Class<?>>> FIELD_TO_TYPE_MAPPINGS = new ConcurrentHashMap<Class, Map<String, Class<?>>>();
+    private int preCreateCount = 1;
+
+    /**
+     * 检查是否需要预创建分表的间隔
+     */
+    private long rolloverCheckIntervalMillis = TimeUnit.MINUTES.toMillis(10);
+
+    private ScheduledExecutorService rolloverScheduler;
+
+    /**
+     * 记录类型 >> 参数提取器,提取器与日期格式相关,因此不在多个实例间共享
+     */
+    private final ConcurrentMap<Class<?>, RecordParamExtractor> paramExtractors = new ConcurrentHashMap<Class<?>, RecordParamExtractor>();
 
     /**
      * 查询所有分表,记录表名和数据起始,结束时间的映射
@@ -59,18 +76,58 @@ public class TableSplittingManager implements InitializingBean {
         Assert.notNull(splittingService, "[splittingService] 属性不能为空");
 
         splitInterval = splittingService.getSplitIntervalInMonth();
-        gson = new GsonBuilder().setDateFormat(splittingService.getDateFormatPattern()).create();
+        datePattern = splittingService.getDateFormatPattern();
+        gson = new GsonBuilder().setDateFormat(datePattern).create();
 
+        List<SplitTable> tables = new ArrayList<SplitTable>();
         do {
             try {
-                List<Date> endpoint = splittingService.selectTimeEndpoint(latestOrder);
-                String tableName = splittingService.generateTableNameByOrder(latestOrder);
-                ORDER_TO_TABLE_MAPPINGS.put(latestOrder++, buildSplitTable(tableName, endpoint));
+                int order = tables.size();
+                List<Date> endpoint = splittingService.selectTimeEndpoint(order);
+                String tableName = splittingService.generateTableNameByOrder(order);
+                tables.add(buildSplitTable(order, tableName, endpoint, order == 0 ? null : tables.get(order - 1)));
             } catch (Exception e) {
-                latestOrder--;
                 break;
             }
         } while (true);
+        tableIndex = SplitTableIndex.of(tables);
+
+        if (preCreateCount > 0 && !tables.isEmpty()) {
+            rolloverScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "table-split-rollover");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rolloverScheduler.scheduleWithFixedDelay(this::rollover, 0, rolloverCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (rolloverScheduler != null) {
+            rolloverScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 在后台预先创建分表,保证始终有{@link #preCreateCount}张尚未开始的分表已注册到索引中
+     * 后台线程不在业务事务内,直接创建分表
+     */
+    void rollover() {
+        try {
+            long now = System.currentTimeMillis();
+            SplitTableIndex index;
+            while ((index = tableIndex).countStartingAfter(now) < preCreateCount) {
+                synchronized (createLock) {
+                    if (index == tableIndex) {
+                        tableIndex = index.append(createSplitTable(index));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 异常不能抛出,否则定时任务不再执行
+            LOGGER.error("预创建分表失败,写入时将同步创建", e);
+        }
     }
 
     /**
@@ -100,6 +157,21 @@ public class TableSplittingManager implements InitializingBean {
         return paramMap;
     }
 
+    /**
+     * 按待插入的分表对记录分组,分表及组内记录均保持原有顺序
+     *
+     * @param records
+     * @param <T>
+     * @return 表名 >> 记录
+     */
+    public <T> Map<String, List<T>> groupByInsertTable(Collection<T> records) {
+        Map<String, List<T>> groups = new LinkedHashMap<String, List<T>>();
+        for (T record : records) {
+            groups.computeIfAbsent(getInsertTable(record), table -> new ArrayList<T>()).add(record);
+        }
+        return groups;
+    }
+
     /**
      * 获取当前待插入数据的表名
      *
@@ -107,21 +179,25 @@ public class TableSplittingManager implements InitializingBean {
      * @return
      */
     private String getInsertTable(Object record) {
-        int order = latestOrder;
-        Date basisTime = splittingService.extractInsertBasis(record);
-        SplitTable latest = ORDER_TO_TABLE_MAPPINGS.get(order);
-        if (basisTime.before(latest.getEndTime())) {
-            return latest.getTableName();
-        }
-        // 创建新的分表
-        if (order == latestOrder) {
-            synchronized (this) {
-                if (order == latestOrder) {
-                    createNewTable(latest.getEndTime());
+        long basisTime = splittingService.extractInsertBasis(record).getTime();
+        SplitTableIndex index = tableIndex;
+        Assert.state(index.getLatest() != null, "不存在可插入数据的分表");
+        while (basisTime >= index.getLatest().getEndMillis()) {
+            // 预创建落后时同步创建新的分表
+            synchronized (createLock) {
+                if (index == tableIndex) {
+                    LOGGER.warn("分表预创建落后,同步创建分表[" + (index.getLatestOrder() + 1) + "]");
+                    createNewTable(index);
                 }
+                index = tableIndex;
             }
         }
-        return getInsertTable(record);
+        // 落在已有分表区间内的数据写入对应分表,其余数据写入当前时间所在的分表
+        SplitTable table = index.find(basisTime);
+        if (table == null) {
+            table = index.floor(System.currentTimeMillis());
+        }
+        return table == null ? index.getLatest().getTableName() : table.getTableName();
     }
 
     /**
@@ -135,48 +211,67 @@ public class TableSplittingManager implements InitializingBean {
         List<Date> timeEndpoint = splittingService.getQueryTimeInterval(query);
         Date startDate = timeEndpoint.get(0);
         Date endDate = timeEndpoint.get(1);
-        List<String> tables = new ArrayList<String>(ORDER_TO_TABLE_MAPPINGS.size());
-        for (Entry<Integer, SplitTable> entry : ORDER_TO_TABLE_MAPPINGS.entrySet()) {
-            SplitTable table = entry.getValue();
-            boolean tooLater = startDate != null && startDate.after(table.getEndTime());
-            boolean tooEarly = endDate != null && endDate.before(table.getStartTime());
-            if (!tooEarly && !tooLater) {
-                tables.add(splittingService.generateTableNameByOrder(entry.getKey()));
-            }
-        }
-        return tables;
+        return tableIndex.findTableNames(startDate == null ? null : startDate.getTime(), endDate == null ? null : endDate.getTime());
     }
 
     /**
-     * 创建新的分表
+     * 在写入线程上同步创建新的分表,在持有{@link #createLock}时调用
      *
-     * @param start 起始时间
+     * @param index 当前的分表索引
      */
-    private void createNewTable(Date start) {
-
+    private void createNewTable(SplitTableIndex index) {
         // 当Service层环绕事务时,在Service方法内创建表,事务未提交,新表还未实际生成。
         // 所以以异步形式跳出当前事务,非事务状态下创建表及设置索引等操作。
-        Thread thread = new Thread(() -> splittingService.createSplitTable(++latestOrder));
+        SplitTable[] created = new SplitTable[1];
+        RuntimeException[] error = new RuntimeException[1];
+        Thread thread = new Thread(() -> {
+            try {
+                created[0] = createSplitTable(index);
+            } catch (RuntimeException e) {
+                error[0] = e;
+            }
+        });
         thread.start();
         try {
             thread.join();
-            SplitTable splitTable = new SplitTable(splittingService.generateTableNameByOrder(latestOrder), start, computeEndTime(start));
-            ORDER_TO_TABLE_MAPPINGS.put(latestOrder, splitTable);
         } catch (InterruptedException e) {
-
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待创建分表[" + (index.getLatestOrder() + 1) + "]时被中断", e);
         }
+        if (error[0] != null) {
+            throw error[0];
+        }
+        tableIndex = index.append(created[0]);
+    }
+
+    /**
+     * 创建最新分表的下一张分表,以最新分表的结束时间作为起始时间
+     *
+     * @param index 当前的分表索引
+     * @return
+     */
+    private SplitTable createSplitTable(SplitTableIndex index) {
+        int order = index.getLatestOrder() + 1;
+        Date start = index.getLatest().getEndTime();
+        splittingService.createSplitTable(order);
+        return new SplitTable(order, splittingService.generateTableNameByOrder(order), start, computeEndTime(start));
     }
 
     /**
      * 生成分表内置对象
+     * 没有数据的分表(通常是预创建的分表)紧接上一张分表,以上一张分表的结束时间作为起始时间,
+     * 保证重启前后分表的时间区间一致;不存在上一张分表时从当前时间开始
      *
+     * @param order
      * @param tableName
      * @param endpoint
+     * @param previous  上一张分表,order为0时为null
      * @return
      */
-    private SplitTable buildSplitTable(String tableName, List<Date> endpoint) {
+    private SplitTable buildSplitTable(int order, String tableName, List<Date> endpoint, SplitTable previous) {
         if (endpoint.isEmpty()) {
-            return new SplitTable(tableName, new Date(), computeEndTime(new Date()));
+            Date start = previous == null ? new Date() : previous.getEndTime();
+            return new SplitTable(order, tableName, start, computeEndTime(start));
         } else {
             Date expectEnd = computeEndTime(endpoint.get(0));
             Date actualEnd = endpoint.get(1);
@@ -184,7 +279,7 @@ public class TableSplittingManager implements InitializingBean {
             if (actualEnd.before(expectEnd)) {
                 actualEnd = expectEnd;
             }
-            return new SplitTable(tableName, endpoint.get(0), actualEnd);
+            return new SplitTable(order, tableName, endpoint.get(0), actualEnd);
         }
     }
 
@@ -208,125 +303,72 @@ public class TableSplittingManager implements InitializingBean {
      * @return
      */
     private Map<String, Object> buildParamMap(Object object) {
-        Map<String, Object> paramMap = new JSONObject(gson.toJson(object)).toMap();
-        Class<?> clazz = object.getClass();
-        Map<String, Class<?>> name2TypeTable = FIELD_TO_TYPE_MAPPINGS.get(clazz);
-        if (name2TypeTable == null) {
-            name2TypeTable = buildFieldTypeMapping(clazz);
-            FIELD_TO_TYPE_MAPPINGS.putIfAbsent(clazz, name2TypeTable);
-        }
-        for (Entry<String, Object> entry : paramMap.entrySet()) {
-            String fieldName = entry.getKey();
-            Class<?> fieldType = name2TypeTable.get(fieldName);
-            // 对String和Date格式化后的字符串,在首尾两端添加引号
-            if (String.class == fieldType || Date.class == fieldType) {
-                entry.setValue("\'" + entry.getValue() + "\'");
-            }
-            //对Boolean类型转换为数值
-            if (Boolean.class == fieldType) {
-                entry.setValue((Boolean)entry.getValue() ? 1 : 0);
-            }
-            //如果当前属性是集合或者数组,取回属性值,因为此属性可能需要在XML内做forEach操作
-            if (Collection.class.isAssignableFrom(fieldType) || fieldType.isArray()) {
-                try {
-                    Field field = ReflectionUtils.findField(clazz, fieldName);
-                    field.setAccessible(true);
-                    Object value = field.get(object);
-                    // 只对字符串的集合，数组做处理,忽略日期
-                    if (String.class == ResolvableType.forField(field).resolveGeneric(0)) {
-                        value = processStringValues(value);
-                    }
-                    entry.setValue(value);
-                } catch (Exception e) {
+        return getParamExtractor(object.getClass()).extract(object, 1);
+    }
 
-                }
-            }
-        }
-        return paramMap;
+    RecordParamExtractor getParamExtractor(Class<?> clazz) {
+        return paramExtractors.computeIfAbsent(clazz, key -> new RecordParamExtractor(key, datePattern, gson));
     }
 
-    /**
-     * 将String集合，数组属性内的值前后追加引号
-     *
-     * @param values
-     * @return
-     */
-    private Object processStringValues(Object values) {
-        if (values.getClass().isArray()) {
-            String[] raw = (String[])values;
-            String[] strings = new String[raw.length];
-            for (int i = 0; i < raw.length; i++) {
-                strings[i] = "\'" + raw[i] + "\'";
-            }
-            return strings;
-        }
-        List<String> strings = new ArrayList<>();
-        for (String value : (Collection<String>)values) {
-            strings.add("\'" + value + "\'");
-        }
-        return strings;
+    public void setSplittingService(TableSplittingService splittingService) {
+        this.splittingService = splittingService;
     }
 
     /**
-     * 构建指定类型的属性名称和属性类型的映射
-     *
-     * @param clazz
-     * @return
+     * @param preCreateCount 预先创建的未开始分表的数量,默认1,为0时不预创建
      */
-    private Map<String, Class<?>> buildFieldTypeMapping(Class<?> clazz) {
-        Set<Field> fields = new HashSet<Field>();
-        do {
-            fields.addAll(new HashSet<Field>(Arrays.asList(clazz.getDeclaredFields())));
-            clazz = clazz.getSuperclass();
-        } while (clazz != Object.class);
-        Map<String, Class<?>> name2TypeTable = new HashMap<String, Class<?>>();
-        for (Field field : fields) {
-            name2TypeTable.put(field.getName(), field.getType());
-        }
-        return name2TypeTable;
+    public void setPreCreateCount(int preCreateCount) {
+        Assert.isTrue(preCreateCount >= 0, "预创建分表数量不能小于0");
+        this.preCreateCount = preCreateCount;
     }
 
-    public void setSplittingService(TableSplittingService splittingService) {
-        this.splittingService = splittingService;
+    /**
+     * @param rolloverCheckIntervalMillis 检查是否需要预创建分表的间隔,默认10分钟
+     */
+    public void setRolloverCheckIntervalMillis(long rolloverCheckIntervalMillis) {
+        Assert.isTrue(rolloverCheckIntervalMillis > 0, "检查间隔必须大于0");
+        this.rolloverCheckIntervalMillis = rolloverCheckIntervalMillis;
     }
 
     /**
-     * 分表的基础数据信息
+     * 分表的基础数据信息,创建后不可修改
      */
     static class SplitTable {
 
-        private String tableName;
-        private Date startTime;
-        private Date endTime;
+        private final int order;
+        private final String tableName;
+        private final Date startTime;
+        private final Date endTime;
 
-        public SplitTable(String tableName, Date startTime, Date endTime) {
+        public SplitTable(int order, String tableName, Date startTime, Date endTime) {
+            this.order = order;
             this.tableName = tableName;
-            this.startTime = startTime;
-            this.endTime = endTime;
+            this.startTime = new Date(startTime.getTime());
+            this.endTime = new Date(endTime.getTime());
         }
 
-        public String getTableName() {
-            return tableName;
+        public int getOrder() {
+            return order;
         }
 
-        public void setTableName(String tableName) {
-            this.tableName = tableName;
+        public String getTableName() {
+            return tableName;
         }
 
         public Date getStartTime() {
-            return startTime;
+            return new Date(startTime.getTime());
         }
 
-        public void setStartTime(Date startTime) {
-            this.startTime = startTime;
+        public Date getEndTime() {
+            return new Date(endTime.getTime());
         }
 
-        public Date getEndTime() {
-            return endTime;
+        long getStartMillis() {
+            return startTime.getTime();
         }
 
-        public void setEndTime(Date endTime) {
-            this.endTime = endTime;
+        long getEndMillis() {
+            return endTime.getTime();
         }
     }
 
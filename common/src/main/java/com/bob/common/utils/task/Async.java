@@ -38,6 +38,13 @@ public @interface Async {
      */
     int timeout() default 6000;
 
+    /**
+     * 同一任务类型内的优先级,越大越先执行
+     *
+     * @return
+     */
+    int priority() default 0;
+
     /**
      * 流程处理器的Bean名称
      *
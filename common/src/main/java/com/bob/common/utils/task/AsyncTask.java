@@ -24,6 +24,11 @@ public class AsyncTask {
      */
     private ProceedingJoinPoint joinPoint;
 
+    /**
+     * 同一任务类型内的优先级,越大越先执行
+     */
+    private int priority;
+
     public AsyncTask() {
     }
 
@@ -73,6 +78,14 @@ public class AsyncTask {
         this.joinPoint = joinPoint;
     }
 
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
     public Object process() throws Throwable {
         return joinPoint.proceed();
     }
@@ -39,7 +39,9 @@ public class AsyncTaskDispatcher {
         if (StringUtils.hasText(async.processBeanName())) {
             processes = beanFactory.getBean(async.processBeanName(), AsyncTaskProcesses.class);
         }
-        taskManager.submit(new AsyncTask(record, processes, joinPoint), true);
+        AsyncTask task = new AsyncTask(record, processes, joinPoint);
+        task.setPriority(async.priority());
+        taskManager.submit(task, true);
     }
 
 }
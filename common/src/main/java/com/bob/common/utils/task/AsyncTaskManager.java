@@ -21,4 +21,11 @@ public interface AsyncTaskManager {
      */
     void submit(AsyncTask task, boolean abortIfExists);
 
+    /**
+     * 任务的等待,执行时长及结果统计
+     *
+     * @return
+     */
+    AsyncTaskMetrics getMetrics();
+
 }
\ No newline at end of file
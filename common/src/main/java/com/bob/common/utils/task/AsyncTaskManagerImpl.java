@@ -1,17 +1,25 @@
 package com.bob.common.utils.task;
 
-import java.util.ArrayList;
-import java.util.Date;
+import java.io.File;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 /**
  * 异步任务管理器
@@ -21,23 +29,99 @@ import org.springframework.util.Assert;
  */
 public class AsyncTaskManagerImpl implements AsyncTaskManager {
 
-    //@Autowired
-    //private TaskRecordDAO taskRecordDAO;
+    /**
+     * 未配置时使用临时目录下的文件日志
+     */
+    @Autowired(required = false)
+    private TaskRecordStore taskRecordStore;
 
     @Autowired
     private ThreadPoolTaskExecutor executor;
 
-    @Autowired
-    private ThreadPoolTaskScheduler scheduler;
+    /**
+     * 未配置时按JDK版本选择执行后端,见{@link TaskExecutionBackends#detect()},各任务类型使用默认的权重及并发上限
+     */
+    @Autowired(required = false)
+    private TaskTypeFairExecutor taskExecutor;
+
+    /**
+     * 未配置时使用刻度100ms,512个槽位的时间轮,到期的超时在任务线程池中处理
+     */
+    @Autowired(required = false)
+    private TimeoutWheel timeoutWheel;
 
     private static final String TIMEOUT_ERROR_MESSAGE = "任务超时,被强制结束";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncTaskManagerImpl.class);
 
     /**
-     * 启动后5S执行一次,最后每隔半小时扫描一次
+     * 等待同种任务结束的后续任务,同一任务类型及名称只保留最新提交的一个
      */
-    @Scheduled(initialDelay = 5000, fixedDelay = 5000)
+    private final ConcurrentMap<String, AsyncTask> followUpTasks = new ConcurrentHashMap<String, AsyncTask>();
+
+    private final AsyncTaskMetrics metrics = new AsyncTaskMetrics();
+
+    /**
+     * 是否为自行创建的任务记录存储,时间轮及执行器,销毁时需要停止
+     */
+    private boolean ownTaskRecordStore;
+    private boolean ownTimeoutWheel;
+    private boolean ownTaskExecutor;
+
+    @PostConstruct
+    public void initTaskRecordStore() {
+        if (taskRecordStore == null) {
+            taskRecordStore = new FileTaskRecordStore(defaultJournal());
+            ownTaskRecordStore = true;
+        }
+        if (timeoutWheel == null) {
+            timeoutWheel = new TimeoutWheel(100, 512, executor);
+            ownTimeoutWheel = true;
+        }
+        if (taskExecutor == null) {
+            taskExecutor = new TaskTypeFairExecutor(TaskExecutionBackends.detect());
+            ownTaskExecutor = true;
+        }
+        metrics.registerMBean();
+    }
+
+    /**
+     * 默认的任务日志文件,优先取系统属性async.task.journal;
+     * 未设置时按工作目录及启动的主类(或jar)区分,同一目录下启动的不同应用使用不同的文件,
+     * 同一应用在同一目录下启动多个实例时须通过系统属性分别指定
+     *
+     * @return
+     */
+    private static File defaultJournal() {
+        String path = System.getProperty("async.task.journal");
+        if (StringUtils.hasText(path)) {
+            return new File(path);
+        }
+        String command = System.getProperty("sun.java.command", "");
+        String application = command.trim().split("\\s+")[0];
+        String instance = Integer.toHexString((System.getProperty("user.dir") + "|" + application).hashCode());
+        return new File(System.getProperty("java.io.tmpdir"), "async-task-record-" + instance + ".journal");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        metrics.unregisterMBean();
+        if (ownTimeoutWheel) {
+            timeoutWheel.stop();
+        }
+        if (ownTaskExecutor) {
+            taskExecutor.destroy();
+        }
+        if (ownTaskRecordStore) {
+            ((FileTaskRecordStore)taskRecordStore).destroy();
+        }
+    }
+
+    /**
+     * 本实例提交的任务由时间轮监控超时,扫描只处理应用异常退出或其他实例遗留的任务,
+     * 启动后5S执行一次,之后每隔1分钟扫描一次
+     */
+    @Scheduled(initialDelay = 5000, fixedDelay = 60000)
     public void scheduleTimeoutTaskScanning() {
         LOGGER.debug("*****************启动异步任务超时扫描*****************");
         init();
@@ -48,8 +132,7 @@ public class AsyncTaskManagerImpl implements AsyncTaskManager {
      */
     @Override
     public void init() {
-        //List<TaskRecord> unfinishedTasks = taskRecordDAO.selectUnfinishedTasks();
-        List<TaskRecord> unfinishedTasks = new ArrayList<>();
+        List<TaskRecord> unfinishedTasks = taskRecordStore.selectUnfinishedTasks();
         for (final TaskRecord task : unfinishedTasks) {
             long timeDiff = task.getGmtCreate().getTime() + task.getTimeout() - System.currentTimeMillis();
             // 如果任务已超时
@@ -62,6 +145,7 @@ public class AsyncTaskManagerImpl implements AsyncTaskManager {
     @Override
     public void submit(final AsyncTask task, final boolean abortIfExists) {
         checkTaskData(task);
+        metrics.onSubmitted(task);
         if (!start(task)) {
             // 如果已存在同种任务
             processAborting(task, abortIfExists);
@@ -70,6 +154,32 @@ public class AsyncTaskManagerImpl implements AsyncTaskManager {
         }
     }
 
+    @Override
+    public AsyncTaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param taskRecordStore 任务记录的存储
+     */
+    public void setTaskRecordStore(TaskRecordStore taskRecordStore) {
+        this.taskRecordStore = taskRecordStore;
+    }
+
+    /**
+     * @param taskExecutor 按任务类型公平调度的执行器
+     */
+    public void setTaskExecutor(TaskTypeFairExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * @param timeoutWheel 监控任务超时的时间轮
+     */
+    public void setTimeoutWheel(TimeoutWheel timeoutWheel) {
+        this.timeoutWheel = timeoutWheel;
+    }
+
     /**
      * 校验异步任务数据
      *
@@ -86,6 +196,8 @@ public class AsyncTaskManagerImpl implements AsyncTaskManager {
 
     /**
      * 处理中止的任务
+     * 不中止时放入后续任务,已有等待中的同种任务时合并为一个,只执行最新提交的任务,被合并的任务视为放弃执行;
+     * 同种任务结束时立即执行后续任务,同时以超时时间兜底,避免同种任务在其他实例执行或异常退出时后续任务一直等待
      *
      * @param task
      * @param abortIfExists
@@ -94,75 +206,122 @@ public class AsyncTaskManagerImpl implements AsyncTaskManager {
         // 当前任务放弃执行
         if (abortIfExists) {
             finish(task, false);
+            return;
+        }
+        LOGGER.debug(String.format("异步任务Type:[%s],Name:[%s] 因存在执行中的同种任务而延迟执行", task.getTaskType(), task.getTaskName()));
+        metrics.onDelayed(task);
+        String key = TaskRecordStore.buildRunningKey(task.getTaskType(), task.getTaskName());
+        AsyncTask merged = followUpTasks.put(key, task);
+        if (merged != null) {
+            LOGGER.debug(String.format("异步任务Type:[%s],Name:[%s] 合并了等待中的同种任务", task.getTaskType(), task.getTaskName()));
+            metrics.onAborted(merged);
+            merged.onFinished(false);
         } else {
-            // 当前任务延迟执行,延迟时间为任务过期时间
-            LOGGER.debug(String.format("异步任务Type:[%s],Name:[%s] 因存在执行中的同种任务而延迟执行", task.getTaskType(), task.getTaskName()));
-            scheduler.schedule(new Runnable() {
-                @Override
-                public void run() {
-                    submit(task, abortIfExists);
-                }
-            }, new Date(System.currentTimeMillis() + task.getTimeout()));
+            timeoutWheel.newTimeout(() -> runFollowUp(key), task.getTimeout(), TimeUnit.MILLISECONDS);
+        }
+        // 同种任务可能在放入后续任务之前已经结束
+        if (!taskRecordStore.checkHavingUnfinishedTask(task.getTaskType(), task.getTaskName())) {
+            runFollowUp(key);
+        }
+    }
+
+    /**
+     * 执行等待中的后续任务,同种任务仍在执行时会重新等待
+     *
+     * @param key
+     */
+    private void runFollowUp(String key) {
+        AsyncTask followUp = followUpTasks.remove(key);
+        if (followUp != null) {
+            submit(followUp, false);
         }
     }
 
     /**
      * 处理任务正常开启
+     * 超时登记在时间轮中,任务结束时立即取消;任务结束与超时只有先发生的一方生效,
+     * 超时后中断任务并以超时错误结束,即使任务不响应中断也不会再次回调
      *
      * @param asyncTask
      */
     private void processStarting(final AsyncTask asyncTask) {
+        metrics.onQueued(asyncTask);
+        final AtomicBoolean completed = new AtomicBoolean();
+        final AtomicReference<Future<?>> futureRef = new AtomicReference<Future<?>>();
+        // 在超时时间之后, 如果任务还未结束, 则中断任务
+        final TimeoutWheel.Timeout timeout = timeoutWheel.newTimeout(() -> {
+            if (completed.compareAndSet(false, true)) {
+                Future<?> future = futureRef.get();
+                if (future != null) {
+                    future.cancel(true);
+                }
+                metrics.onFailed(asyncTask, true);
+                processError(asyncTask, new InterruptedException(TIMEOUT_ERROR_MESSAGE));
+            }
+        }, asyncTask.getTimeout(), TimeUnit.MILLISECONDS);
         Runnable task = new Runnable() {
             @Override
             public void run() {
+                // 排队期间已超时
+                if (completed.get()) {
+                    return;
+                }
+                metrics.onRunning(asyncTask);
                 try {
                     asyncTask.process();
-                    finish(asyncTask, true);
+                    if (completed.compareAndSet(false, true)) {
+                        timeout.cancel();
+                        finish(asyncTask, true);
+                    }
                 } catch (InterruptedException e) {
                     Thread.interrupted();
-                    error(asyncTask, new InterruptedException(TIMEOUT_ERROR_MESSAGE));
-                } catch (Exception e) {
-                    error(asyncTask, e);
+                    if (completed.compareAndSet(false, true)) {
+                        timeout.cancel();
+                        error(asyncTask, new InterruptedException(TIMEOUT_ERROR_MESSAGE));
+                    }
                 } catch (Throwable throwable) {
-                    throwable.printStackTrace();
+                    if (completed.compareAndSet(false, true)) {
+                        timeout.cancel();
+                        error(asyncTask, throwable);
+                    }
                 }
             }
         };
-        // 提交异步任务
-        final Future future = executor.submit(task);
-        // 在超时时间之后检查, 如果任务还未结束, 则中断任务
-        scheduler.schedule(new Runnable() {
-            @Override
-            public void run() {
-                if (!future.isDone()) {
-                    future.cancel(true);
-                }
+        // 提交异步任务, 该类型等待的任务过多时以失败结束
+        try {
+            futureRef.set(taskExecutor.submit(asyncTask.getTaskType(), asyncTask.getPriority(), task));
+        } catch (RejectedExecutionException e) {
+            if (completed.compareAndSet(false, true)) {
+                timeout.cancel();
+                metrics.onRejected(asyncTask);
+                processError(asyncTask, e);
             }
-        }, new Date(System.currentTimeMillis() + asyncTask.getTimeout()));
+        }
     }
 
     public boolean start(AsyncTask asyncTask) {
-        //boolean exists = taskRecordDAO.checkHavingUnfinishedTask(asyncTask.getTaskType(), asyncTask.getTaskName());
         // 如果存在同种任务,启动失败
-        if (true) {
+        if (!taskRecordStore.tryStart(asyncTask.getTaskRecord())) {
             return false;
         }
-        TaskRecord record = asyncTask.getTaskRecord();
-        record.setGmtCreate(new Date());
-        record.setGmtModified(new Date());
-        record.setStatus(0L);
-        //taskRecordDAO.insertSelective(record);
         asyncTask.onStart();
         return true;
     }
 
     public void finish(AsyncTask asyncTask, boolean success) {
         if (success) {
-            TaskRecord update = new TaskRecord();
-            update.setId(asyncTask.getTaskId());
-            update.setGmtModified(new Date());
-            //taskRecordDAO.updateWithSuccess(update);
+            metrics.onSucceeded(asyncTask);
+            try {
+                taskRecordStore.updateWithSuccess(asyncTask.getTaskId());
+            } catch (RuntimeException e) {
+                // 记录未能结束时由超时扫描兜底,不影响后续任务及回调
+                LOGGER.error(String.format("异步任务Type:[%s],Name:[%s],ID:[%d] 更新执行成功记录失败",
+                    asyncTask.getTaskType(), asyncTask.getTaskName(), asyncTask.getTaskId()), e);
+            } finally {
+                runFollowUp(TaskRecordStore.buildRunningKey(asyncTask.getTaskType(), asyncTask.getTaskName()));
+            }
         } else {
+            metrics.onAborted(asyncTask);
             LOGGER.warn(String.format("异步任务Type:[%s],Name:[%s],ID:[%d] 因存在执行中的同种任务而放弃执行",
                 asyncTask.getTaskType(), asyncTask.getTaskName(), asyncTask.getTaskId()));
         }
@@ -170,13 +329,22 @@ public class AsyncTaskManagerImpl implements AsyncTaskManager {
     }
 
     public void error(AsyncTask asyncTask, Throwable ex) {
+        metrics.onFailed(asyncTask, false);
+        processError(asyncTask, ex);
+    }
+
+    private void processError(AsyncTask asyncTask, Throwable ex) {
         LOGGER.error(
             String.format("异步任务Type:[%s],Name:[%s],ID:[%d] 执行失败", asyncTask.getTaskType(), asyncTask.getTaskName(), asyncTask.getTaskId()), ex);
-        TaskRecord update = new TaskRecord();
-        update.setId(asyncTask.getTaskId());
-        update.setGmtModified(new Date());
-        update.setExecuteInfo(ex.getMessage());
-        //taskRecordDAO.updateWithError(update);
+        try {
+            taskRecordStore.updateWithError(asyncTask.getTaskId(), ex.getMessage());
+        } catch (RuntimeException e) {
+            // 记录未能结束时由超时扫描兜底,不影响后续任务及回调
+            LOGGER.error(String.format("异步任务Type:[%s],Name:[%s],ID:[%d] 更新执行失败记录失败",
+                asyncTask.getTaskType(), asyncTask.getTaskName(), asyncTask.getTaskId()), e);
+        } finally {
+            runFollowUp(TaskRecordStore.buildRunningKey(asyncTask.getTaskType(), asyncTask.getTaskName()));
+        }
         asyncTask.onError(ex);
     }
 
@@ -186,9 +354,9 @@ public class AsyncTaskManagerImpl implements AsyncTaskManager {
      * @param task
      */
     private void terminateTimeoutTask(TaskRecord task) {
-        /*int num = taskRecordDAO.terminateTimeoutTaskIfApplicable(task.getId(), TIMEOUT_ERROR_MESSAGE);
-        if (num == 1) {
-            AdminMapLogUtils.error(String.format("ID:[%d]对应的数据同步任务超时,被强制结束", task.getId()));
-        }*/
+        if (taskRecordStore.terminateTimeoutTaskIfApplicable(task.getId(), TIMEOUT_ERROR_MESSAGE)) {
+            LOGGER.error(String.format("ID:[%d]对应的异步任务超时,被强制结束", task.getId()));
+            runFollowUp(TaskRecordStore.buildRunningKey(task.getTaskType(), task.getTaskName()));
+        }
     }
 }
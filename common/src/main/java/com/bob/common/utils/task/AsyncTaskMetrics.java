@@ -0,0 +1,432 @@
+package com.bob.common.utils.task;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.bob.common.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 异步任务指标
+ * 按任务类型统计从提交到开始执行的等待时长,执行时长,以及放弃,延迟,超时,失败,拒绝的次数,并记录未结束的任务;
+ * 计数使用LongAdder,耗时使用{@link LatencyHistogram},记录时无锁;可以注册为JMX的MXBean
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-25 10:10
+ */
+public class AsyncTaskMetrics implements AsyncTaskMetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncTaskMetrics.class);
+
+    public static final String OBJECT_NAME = "com.bob.common.utils.task:type=AsyncTaskMetrics";
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, TaskTypeMetrics> taskTypeMetrics = new ConcurrentHashMap<String, TaskTypeMetrics>();
+
+    /**
+     * 未结束的任务,以任务对象的标识为键,延迟执行的后续任务重新提交时保留最初的提交时间
+     */
+    private final ConcurrentMap<AsyncTask, InFlightEntry> inFlightTasks = new ConcurrentHashMap<AsyncTask, InFlightEntry>();
+
+    private ObjectName registeredName;
+
+    /**
+     * 任务提交
+     *
+     * @param task
+     */
+    void onSubmitted(AsyncTask task) {
+        if (inFlightTasks.putIfAbsent(task, new InFlightEntry()) == null) {
+            getTaskTypeMetrics(task).submitted.increment();
+        }
+    }
+
+    /**
+     * 因存在同种任务而延迟执行
+     *
+     * @param task
+     */
+    void onDelayed(AsyncTask task) {
+        getTaskTypeMetrics(task).delayed.increment();
+        InFlightEntry entry = inFlightTasks.get(task);
+        if (entry != null) {
+            entry.state = InFlightState.DELAYED;
+        }
+    }
+
+    /**
+     * 已开启,进入执行队列
+     *
+     * @param task
+     */
+    void onQueued(AsyncTask task) {
+        InFlightEntry entry = inFlightTasks.get(task);
+        if (entry != null) {
+            entry.state = InFlightState.QUEUED;
+        }
+    }
+
+    /**
+     * 开始执行
+     *
+     * @param task
+     */
+    void onRunning(AsyncTask task) {
+        InFlightEntry entry = inFlightTasks.get(task);
+        if (entry != null) {
+            entry.startNanos = System.nanoTime();
+            entry.state = InFlightState.RUNNING;
+            getTaskTypeMetrics(task).waitTime.record(entry.startNanos - entry.submitNanos);
+        }
+    }
+
+    /**
+     * 因存在同种任务而放弃执行,包括被合并的后续任务
+     *
+     * @param task
+     */
+    void onAborted(AsyncTask task) {
+        getTaskTypeMetrics(task).aborted.increment();
+        inFlightTasks.remove(task);
+    }
+
+    void onSucceeded(AsyncTask task) {
+        TaskTypeMetrics metrics = getTaskTypeMetrics(task);
+        metrics.succeeded.increment();
+        recordRunTime(metrics, inFlightTasks.remove(task));
+    }
+
+    /**
+     * @param task
+     * @param timeout 是否因超时而结束
+     */
+    void onFailed(AsyncTask task, boolean timeout) {
+        TaskTypeMetrics metrics = getTaskTypeMetrics(task);
+        (timeout ? metrics.timeouts : metrics.errors).increment();
+        recordRunTime(metrics, inFlightTasks.remove(task));
+    }
+
+    /**
+     * 执行队列已满而被拒绝
+     *
+     * @param task
+     */
+    void onRejected(AsyncTask task) {
+        getTaskTypeMetrics(task).rejected.increment();
+        inFlightTasks.remove(task);
+    }
+
+    @Override
+    public List<TaskTypeSnapshot> getTaskTypes() {
+        Map<String, Integer> inFlightCounts = new HashMap<String, Integer>();
+        for (AsyncTask task : inFlightTasks.keySet()) {
+            inFlightCounts.merge(task.getTaskType(), 1, Integer::sum);
+        }
+        List<TaskTypeSnapshot> snapshots = new ArrayList<TaskTypeSnapshot>(taskTypeMetrics.size());
+        for (Map.Entry<String, TaskTypeMetrics> entry : taskTypeMetrics.entrySet()) {
+            snapshots.add(new TaskTypeSnapshot(entry.getKey(), entry.getValue(), inFlightCounts.getOrDefault(entry.getKey(), 0)));
+        }
+        return snapshots;
+    }
+
+    @Override
+    public List<InFlightTask> getInFlightTasks() {
+        long now = System.nanoTime();
+        List<InFlightTask> tasks = new ArrayList<InFlightTask>(inFlightTasks.size());
+        for (Map.Entry<AsyncTask, InFlightEntry> entry : inFlightTasks.entrySet()) {
+            tasks.add(new InFlightTask(entry.getKey(), entry.getValue(), now));
+        }
+        return tasks;
+    }
+
+    @Override
+    public int getInFlightCount() {
+        return inFlightTasks.size();
+    }
+
+    /**
+     * 注册到平台MBeanServer,已有同名MBean时放弃注册
+     */
+    public void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                LOGGER.warn(String.format("MBean[%s]已存在,异步任务指标未注册到JMX", OBJECT_NAME));
+                return;
+            }
+            server.registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            LOGGER.warn("注册异步任务指标MBean失败", e);
+        }
+    }
+
+    public void unregisterMBean() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            LOGGER.warn("注销异步任务指标MBean失败", e);
+        }
+        registeredName = null;
+    }
+
+    private TaskTypeMetrics getTaskTypeMetrics(AsyncTask task) {
+        return taskTypeMetrics.computeIfAbsent(task.getTaskType(), taskType -> new TaskTypeMetrics());
+    }
+
+    private static void recordRunTime(TaskTypeMetrics metrics, InFlightEntry entry) {
+        // 排队期间超时的任务没有执行时长
+        if (entry != null && entry.startNanos != 0) {
+            metrics.runTime.record(System.nanoTime() - entry.startNanos);
+        }
+    }
+
+    /**
+     * 任务类型的计数及耗时
+     */
+    private static final class TaskTypeMetrics {
+
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder delayed = new LongAdder();
+        private final LongAdder aborted = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LatencyHistogram waitTime = new LatencyHistogram();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+    }
+
+    /**
+     * 未结束任务的状态
+     */
+    public enum InFlightState {
+
+        /**
+         * 等待同种任务结束
+         */
+        DELAYED,
+
+        /**
+         * 已开启,等待执行
+         */
+        QUEUED,
+
+        /**
+         * 执行中
+         */
+        RUNNING
+    }
+
+    private static final class InFlightEntry {
+
+        private final long submitTime = System.currentTimeMillis();
+        private final long submitNanos = System.nanoTime();
+        private volatile long startNanos;
+        private volatile InFlightState state = InFlightState.QUEUED;
+    }
+
+    /**
+     * 任务类型的统计快照
+     */
+    public static final class TaskTypeSnapshot {
+
+        private final String taskType;
+        private final long submitted;
+        private final long delayed;
+        private final long aborted;
+        private final long succeeded;
+        private final long errors;
+        private final long timeouts;
+        private final long rejected;
+        private final int inFlight;
+        private final double waitMeanMillis;
+        private final double waitP99Millis;
+        private final double waitMaxMillis;
+        private final double runMeanMillis;
+        private final double runP50Millis;
+        private final double runP99Millis;
+        private final double runMaxMillis;
+
+        private TaskTypeSnapshot(String taskType, TaskTypeMetrics metrics, int inFlight) {
+            this.taskType = taskType;
+            this.submitted = metrics.submitted.sum();
+            this.delayed = metrics.delayed.sum();
+            this.aborted = metrics.aborted.sum();
+            this.succeeded = metrics.succeeded.sum();
+            this.errors = metrics.errors.sum();
+            this.timeouts = metrics.timeouts.sum();
+            this.rejected = metrics.rejected.sum();
+            this.inFlight = inFlight;
+            this.waitMeanMillis = metrics.waitTime.getMeanMillis();
+            this.waitP99Millis = metrics.waitTime.getPercentileMillis(0.99);
+            this.waitMaxMillis = metrics.waitTime.getMaxMillis();
+            this.runMeanMillis = metrics.runTime.getMeanMillis();
+            this.runP50Millis = metrics.runTime.getPercentileMillis(0.5);
+            this.runP99Millis = metrics.runTime.getPercentileMillis(0.99);
+            this.runMaxMillis = metrics.runTime.getMaxMillis();
+        }
+
+        public String getTaskType() {
+            return taskType;
+        }
+
+        /**
+         * @return 提交次数,延迟执行的任务重新提交时不重复计数
+         */
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getDelayed() {
+            return delayed;
+        }
+
+        public long getAborted() {
+            return aborted;
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return 从提交到开始执行的平均时长,包括等待同种任务结束的时间
+         */
+        public double getWaitMeanMillis() {
+            return waitMeanMillis;
+        }
+
+        public double getWaitP99Millis() {
+            return waitP99Millis;
+        }
+
+        public double getWaitMaxMillis() {
+            return waitMaxMillis;
+        }
+
+        public double getRunMeanMillis() {
+            return runMeanMillis;
+        }
+
+        public double getRunP50Millis() {
+            return runP50Millis;
+        }
+
+        public double getRunP99Millis() {
+            return runP99Millis;
+        }
+
+        public double getRunMaxMillis() {
+            return runMaxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[submitted=%d, delayed=%d, aborted=%d, succeeded=%d, errors=%d, timeouts=%d, rejected=%d, "
+                    + "inFlight=%d, wait(mean=%.2fms, p99=%.2fms), run(mean=%.2fms, p50=%.2fms, p99=%.2fms, max=%.2fms)]",
+                taskType, submitted, delayed, aborted, succeeded, errors, timeouts, rejected, inFlight, waitMeanMillis, waitP99Millis,
+                runMeanMillis, runP50Millis, runP99Millis, runMaxMillis);
+        }
+    }
+
+    /**
+     * 未结束任务的快照
+     */
+    public static final class InFlightTask {
+
+        private final String taskType;
+        private final String taskName;
+        private final Long taskId;
+        private final String state;
+        private final Date submitTime;
+        private final double elapsedMillis;
+        private final double runningMillis;
+
+        private InFlightTask(AsyncTask task, InFlightEntry entry, long now) {
+            this.taskType = task.getTaskType();
+            this.taskName = task.getTaskName();
+            this.taskId = task.getTaskId();
+            this.state = entry.state.name();
+            this.submitTime = new Date(entry.submitTime);
+            this.elapsedMillis = (now - entry.submitNanos) / NANOS_PER_MILLI;
+            long startNanos = entry.startNanos;
+            this.runningMillis = startNanos == 0 ? 0 : (now - startNanos) / NANOS_PER_MILLI;
+        }
+
+        public String getTaskType() {
+            return taskType;
+        }
+
+        public String getTaskName() {
+            return taskName;
+        }
+
+        /**
+         * @return 任务记录ID,延迟执行的任务开启前为null
+         */
+        public Long getTaskId() {
+            return taskId;
+        }
+
+        /**
+         * @return {@link InFlightState}
+         */
+        public String getState() {
+            return state;
+        }
+
+        public Date getSubmitTime() {
+            return submitTime;
+        }
+
+        /**
+         * @return 提交至今的时长
+         */
+        public double getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return 开始执行至今的时长,未开始执行时为0
+         */
+        public double getRunningMillis() {
+            return runningMillis;
+        }
+    }
+
+}
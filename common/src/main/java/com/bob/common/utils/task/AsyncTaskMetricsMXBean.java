@@ -0,0 +1,34 @@
+package com.bob.common.utils.task;
+
+import java.util.List;
+
+/**
+ * 异步任务指标的JMX接口
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-25 10:00
+ */
+public interface AsyncTaskMetricsMXBean {
+
+    /**
+     * 各任务类型的统计
+     *
+     * @return
+     */
+    List<AsyncTaskMetrics.TaskTypeSnapshot> getTaskTypes();
+
+    /**
+     * 已提交但未结束的任务,包括等待同种任务结束,排队及执行中的任务
+     *
+     * @return
+     */
+    List<AsyncTaskMetrics.InFlightTask> getInFlightTasks();
+
+    /**
+     * 未结束的任务数
+     *
+     * @return
+     */
+    int getInFlightCount();
+
+}
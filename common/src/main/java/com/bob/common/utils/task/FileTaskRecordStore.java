@@ -0,0 +1,375 @@
+package com.bob.common.utils.task;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * 基于本地文件日志的任务记录存储,不依赖数据库,适用于单实例部署
+ * 每次状态变更以一行JSON追加到日志文件,启动时重放日志恢复执行中的任务;已结束的任务不保留在内存中,
+ * 日志行数过多时只保留执行中的任务重写日志。日志最后一行写入不完整时(如进程被杀)忽略该行。
+ * 日志文件由一个实例独占,创建时对"日志文件.lock"加排他锁,已被其他进程使用时直接失败;
+ * 刷盘采用组提交:写入在对象锁内完成,刷盘在对象锁外进行,一次刷盘覆盖此前所有已写入的记录,并发的写入只等待同一次刷盘
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-21 10:20
+ */
+public class FileTaskRecordStore implements TaskRecordStore, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTaskRecordStore.class);
+
+    private static final Gson GSON = new GsonBuilder().setDateFormat("yyyy-MM-dd HH:mm:ss.SSS").create();
+
+    private final File journal;
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+    /**
+     * 刷盘锁,持有时不会再获取对象锁;重写日志时先持有对象锁再持有刷盘锁
+     */
+    private final Object syncLock = new Object();
+    /**
+     * 已写入及已刷盘的记录序号,写入序号在对象锁内递增,刷盘序号在刷盘锁内更新
+     */
+    private volatile long writtenSeq;
+    private long syncedSeq;
+    private final Map<Long, TaskRecord> unfinishedTasks = new LinkedHashMap<Long, TaskRecord>();
+    private final Map<String, Long> runningKeys = new HashMap<String, Long>();
+    private long nextId = 1;
+    private int journalLines;
+    private FileOutputStream output;
+    private BufferedWriter writer;
+    private boolean syncOnWrite = true;
+    private int compactThreshold = 10000;
+
+    /**
+     * @param journal 日志文件,不存在时创建,每个实例须使用不同的文件
+     * @throws IllegalStateException 日志文件已被其他实例使用
+     */
+    public FileTaskRecordStore(File journal) {
+        Assert.notNull(journal, "日志文件不能为空");
+        this.journal = journal;
+        File parent = journal.getAbsoluteFile().getParentFile();
+        Assert.state(parent.isDirectory() || parent.mkdirs(), "无法创建日志目录[" + parent + "]");
+        File lockPath = new File(journal.getPath() + ".lock");
+        try {
+            this.lockFile = new RandomAccessFile(lockPath, "rw");
+        } catch (IOException e) {
+            throw new IllegalStateException("无法创建任务日志锁文件[" + lockPath + "]", e);
+        }
+        this.lock = tryLock(lockFile.getChannel());
+        if (lock == null) {
+            closeLockFile();
+            throw new IllegalStateException("任务日志[" + journal + "]已被其他实例使用,每个实例须配置不同的日志文件");
+        }
+        try {
+            synchronized (this) {
+                replay();
+                compact();
+            }
+        } catch (RuntimeException e) {
+            destroy();
+            throw e;
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // 同一进程内已有实例持有该锁
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("锁定任务日志失败", e);
+        }
+    }
+
+    @Override
+    public boolean tryStart(TaskRecord record) {
+        long seq;
+        synchronized (this) {
+            String key = TaskRecordStore.buildRunningKey(record.getTaskType(), record.getTaskName());
+            if (runningKeys.containsKey(key)) {
+                return false;
+            }
+            Date now = new Date();
+            record.setId(nextId++);
+            record.setGmtCreate(now);
+            record.setGmtModified(now);
+            record.setStatus(STATUS_RUNNING);
+            TaskRecord stored = copy(record);
+            seq = append(stored);
+            unfinishedTasks.put(stored.getId(), stored);
+            runningKeys.put(key, stored.getId());
+        }
+        awaitSync(seq);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean checkHavingUnfinishedTask(String taskType, String taskName) {
+        return runningKeys.containsKey(TaskRecordStore.buildRunningKey(taskType, taskName));
+    }
+
+    @Override
+    public void updateWithSuccess(Long id) {
+        finish(id, STATUS_SUCCESS, null);
+    }
+
+    @Override
+    public void updateWithError(Long id, String executeInfo) {
+        finish(id, STATUS_ERROR, executeInfo);
+    }
+
+    @Override
+    public synchronized List<TaskRecord> selectUnfinishedTasks() {
+        List<TaskRecord> records = new ArrayList<TaskRecord>(unfinishedTasks.size());
+        for (TaskRecord record : unfinishedTasks.values()) {
+            records.add(copy(record));
+        }
+        return records;
+    }
+
+    @Override
+    public boolean terminateTimeoutTaskIfApplicable(Long id, String executeInfo) {
+        return finish(id, STATUS_ERROR, executeInfo);
+    }
+
+    private boolean finish(Long id, long status, String executeInfo) {
+        long seq;
+        synchronized (this) {
+            TaskRecord record = unfinishedTasks.remove(id);
+            if (record == null) {
+                return false;
+            }
+            runningKeys.remove(TaskRecordStore.buildRunningKey(record.getTaskType(), record.getTaskName()));
+            record.setStatus(status);
+            record.setExecuteInfo(executeInfo);
+            record.setGmtModified(new Date());
+            seq = append(record);
+            if (journalLines > compactThreshold && journalLines > unfinishedTasks.size() * 2) {
+                try {
+                    compact();
+                } catch (IllegalStateException e) {
+                    // 记录已写入原日志,重写失败只影响日志大小,下次结束任务时重试
+                    LOGGER.warn("重写任务日志[{}]失败", journal, e);
+                }
+            }
+        }
+        awaitSync(seq);
+        return true;
+    }
+
+    /**
+     * 重放日志,同一ID以最后一行为准
+     */
+    private void replay() {
+        if (!journal.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                TaskRecord record;
+                try {
+                    record = GSON.fromJson(line, TaskRecord.class);
+                } catch (JsonParseException e) {
+                    LOGGER.warn("忽略不完整的任务日志:[{}]", line);
+                    continue;
+                }
+                if (record == null || record.getId() == null) {
+                    continue;
+                }
+                nextId = Math.max(nextId, record.getId() + 1);
+                TaskRecord previous = unfinishedTasks.remove(record.getId());
+                if (previous != null) {
+                    runningKeys.remove(TaskRecordStore.buildRunningKey(previous.getTaskType(), previous.getTaskName()));
+                }
+                if (record.getStatus() != null && record.getStatus() == STATUS_RUNNING) {
+                    unfinishedTasks.put(record.getId(), record);
+                    runningKeys.put(TaskRecordStore.buildRunningKey(record.getTaskType(), record.getTaskName()), record.getId());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("读取任务日志[" + journal + "]失败", e);
+        }
+    }
+
+    /**
+     * 只保留执行中的任务重写日志,并写入一行序号标记,保证重启后任务ID不重复
+     */
+    private void compact() {
+        synchronized (syncLock) {
+            rewrite();
+            // 重写的日志已刷盘,包含此前所有写入的记录
+            syncedSeq = writtenSeq;
+        }
+    }
+
+    private void rewrite() {
+        closeQuietly();
+        File temp = new File(journal.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp);
+                 BufferedWriter tempWriter = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                TaskRecord marker = new TaskRecord();
+                marker.setId(nextId - 1);
+                marker.setStatus(STATUS_SUCCESS);
+                tempWriter.write(GSON.toJson(marker));
+                tempWriter.newLine();
+                for (TaskRecord record : unfinishedTasks.values()) {
+                    tempWriter.write(GSON.toJson(record));
+                    tempWriter.newLine();
+                }
+                tempWriter.flush();
+                out.getFD().sync();
+            }
+            Files.move(temp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalLines = unfinishedTasks.size() + 1;
+        } catch (IOException e) {
+            temp.delete();
+            throw new IllegalStateException("重写任务日志[" + journal + "]失败", e);
+        } finally {
+            // 重写失败时原日志完整,继续追加到原日志
+            open();
+        }
+    }
+
+    private void open() {
+        try {
+            output = new FileOutputStream(journal, true);
+            writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("打开任务日志[" + journal + "]失败", e);
+        }
+    }
+
+    /**
+     * 在对象锁内写入一行并交给操作系统,不刷盘
+     *
+     * @param record
+     * @return 本次写入的序号
+     */
+    private long append(TaskRecord record) {
+        Assert.state(writer != null, "任务日志[" + journal + "]未打开");
+        try {
+            writer.write(GSON.toJson(record));
+            writer.newLine();
+            writer.flush();
+            journalLines++;
+            return ++writtenSeq;
+        } catch (IOException e) {
+            throw new IllegalStateException("写入任务日志[" + journal + "]失败", e);
+        }
+    }
+
+    /**
+     * 在对象锁外等待序号为seq的记录刷盘,已被其他线程的刷盘覆盖时直接返回
+     *
+     * @param seq
+     */
+    private void awaitSync(long seq) {
+        if (!syncOnWrite) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) {
+                return;
+            }
+            // 刷盘前读取,此后写入的记录由下一次刷盘覆盖
+            long target = writtenSeq;
+            try {
+                output.getChannel().force(false);
+            } catch (IOException e) {
+                throw new IllegalStateException("任务日志[" + journal + "]刷盘失败", e);
+            }
+            syncedSeq = target;
+        }
+    }
+
+    private void closeQuietly() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.warn("关闭任务日志[{}]失败", journal, e);
+            }
+            writer = null;
+            output = null;
+        }
+    }
+
+    private static TaskRecord copy(TaskRecord record) {
+        TaskRecord copy = new TaskRecord(record.getTaskType(), record.getTaskName(), record.getTimeout());
+        copy.setId(record.getId());
+        copy.setGmtCreate(record.getGmtCreate());
+        copy.setGmtModified(record.getGmtModified());
+        copy.setStatus(record.getStatus());
+        copy.setExecuteInfo(record.getExecuteInfo());
+        return copy;
+    }
+
+    /**
+     * @param syncOnWrite 写入后是否等待刷盘再返回,默认true,并发的写入以组提交的方式共享刷盘;
+     *                    关闭后进程崩溃不丢数据,但机器掉电可能丢失最近的记录
+     */
+    public void setSyncOnWrite(boolean syncOnWrite) {
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * @param compactThreshold 日志超过多少行时重写,默认10000
+     */
+    public void setCompactThreshold(int compactThreshold) {
+        Assert.isTrue(compactThreshold > 0, "重写阈值必须大于0");
+        this.compactThreshold = compactThreshold;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        synchronized (syncLock) {
+            closeQuietly();
+        }
+        if (!lock.isValid()) {
+            return;
+        }
+        try {
+            lock.release();
+        } catch (IOException e) {
+            LOGGER.warn("释放任务日志[{}]的锁失败", journal, e);
+        }
+        closeLockFile();
+    }
+
+    private void closeLockFile() {
+        try {
+            lockFile.close();
+        } catch (IOException e) {
+            LOGGER.warn("关闭任务日志[{}]的锁文件失败", journal, e);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.bob.common.utils.task;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.util.Assert;
+
+/**
+ * 基于数据库的任务记录存储,适用于多实例部署
+ * 执行中的任务在running_key列保存"taskType:taskName",依靠其唯一索引原子地去重,任务结束时置为null;表结构如下:
+ * <pre>
+ * CREATE TABLE task_record (
+ *   id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *   gmt_create   DATETIME,
+ *   gmt_modified DATETIME,
+ *   task_name    VARCHAR(128),
+ *   task_type    VARCHAR(64),
+ *   status       BIGINT,
+ *   execute_info VARCHAR(1024),
+ *   timeout      INT,
+ *   running_key  VARCHAR(200),
+ *   UNIQUE KEY uk_running_key (running_key)
+ * )
+ * </pre>
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-21 11:00
+ */
+public class JdbcTaskRecordStore implements TaskRecordStore {
+
+    private static final String COLUMNS = "id, gmt_create, gmt_modified, task_name, task_type, status, execute_info, timeout";
+
+    private final DataSource dataSource;
+    private final String tableName;
+    /**
+     * 执行信息的最大长度,与execute_info列的长度一致
+     */
+    private int maxExecuteInfoLength = 1024;
+
+    public JdbcTaskRecordStore(DataSource dataSource) {
+        this(dataSource, "task_record");
+    }
+
+    public JdbcTaskRecordStore(DataSource dataSource, String tableName) {
+        Assert.notNull(dataSource, "数据源不能为空");
+        Assert.hasText(tableName, "表名不能为空");
+        this.dataSource = dataSource;
+        this.tableName = tableName;
+    }
+
+    @Override
+    public boolean tryStart(TaskRecord record) {
+        Date now = new Date();
+        String sql = "INSERT INTO " + tableName
+            + " (gmt_create, gmt_modified, task_name, task_type, status, timeout, running_key) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setTimestamp(1, new Timestamp(now.getTime()));
+            statement.setTimestamp(2, new Timestamp(now.getTime()));
+            statement.setString(3, record.getTaskName());
+            statement.setString(4, record.getTaskType());
+            statement.setLong(5, STATUS_RUNNING);
+            statement.setObject(6, record.getTimeout());
+            statement.setString(7, TaskRecordStore.buildRunningKey(record.getTaskType(), record.getTaskName()));
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (keys.next()) {
+                    record.setId(keys.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            // 违反唯一索引,已存在执行中的同种任务
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                return false;
+            }
+            throw new IllegalStateException("保存任务记录失败", e);
+        }
+        record.setGmtCreate(now);
+        record.setGmtModified(now);
+        record.setStatus(STATUS_RUNNING);
+        return true;
+    }
+
+    @Override
+    public boolean checkHavingUnfinishedTask(String taskType, String taskName) {
+        String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE running_key = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, TaskRecordStore.buildRunningKey(taskType, taskName));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) > 0;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("查询任务记录失败", e);
+        }
+    }
+
+    @Override
+    public void updateWithSuccess(Long id) {
+        finish(id, STATUS_SUCCESS, null);
+    }
+
+    @Override
+    public void updateWithError(Long id, String executeInfo) {
+        finish(id, STATUS_ERROR, executeInfo);
+    }
+
+    @Override
+    public List<TaskRecord> selectUnfinishedTasks() {
+        String sql = "SELECT " + COLUMNS + " FROM " + tableName + " WHERE status = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, STATUS_RUNNING);
+            List<TaskRecord> records = new ArrayList<TaskRecord>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    TaskRecord record = new TaskRecord(resultSet.getString("task_type"), resultSet.getString("task_name"),
+                        (Integer)resultSet.getObject("timeout"));
+                    record.setId(resultSet.getLong("id"));
+                    record.setGmtCreate(resultSet.getTimestamp("gmt_create"));
+                    record.setGmtModified(resultSet.getTimestamp("gmt_modified"));
+                    record.setStatus(resultSet.getLong("status"));
+                    record.setExecuteInfo(resultSet.getString("execute_info"));
+                    records.add(record);
+                }
+            }
+            return records;
+        } catch (SQLException e) {
+            throw new IllegalStateException("查询执行中的任务失败", e);
+        }
+    }
+
+    @Override
+    public boolean terminateTimeoutTaskIfApplicable(Long id, String executeInfo) {
+        return finish(id, STATUS_ERROR, executeInfo);
+    }
+
+    /**
+     * 只更新执行中的任务,多个实例同时结束同一任务时只有一个成功
+     */
+    private boolean finish(Long id, long status, String executeInfo) {
+        String sql = "UPDATE " + tableName + " SET status = ?, execute_info = ?, gmt_modified = ?, running_key = NULL WHERE id = ? AND status = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, status);
+            statement.setString(2, truncate(executeInfo));
+            statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            statement.setLong(4, id);
+            statement.setLong(5, STATUS_RUNNING);
+            return statement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            throw new IllegalStateException("更新任务记录[" + id + "]失败", e);
+        }
+    }
+
+    private String truncate(String executeInfo) {
+        if (executeInfo == null || executeInfo.length() <= maxExecuteInfoLength) {
+            return executeInfo;
+        }
+        return executeInfo.substring(0, maxExecuteInfoLength);
+    }
+
+    /**
+     * @param maxExecuteInfoLength 执行信息的最大长度,超出部分截断,默认1024,修改execute_info列的长度时同步设置
+     */
+    public void setMaxExecuteInfoLength(int maxExecuteInfoLength) {
+        Assert.isTrue(maxExecuteInfoLength > 0, "执行信息的最大长度必须大于0");
+        this.maxExecuteInfoLength = maxExecuteInfoLength;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.bob.common.utils.task;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 异步任务的执行后端,负责提供执行任务的线程
+ * 同时执行的任务数由{@link TaskTypeFairExecutor}按{@link #getMaxConcurrency()}控制,后端不需要排队
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-24 9:30
+ */
+public interface TaskExecutionBackend extends Executor {
+
+    /**
+     * 后端名称
+     *
+     * @return
+     */
+    String getName();
+
+    /**
+     * 后端能同时执行的任务数
+     *
+     * @return
+     */
+    int getMaxConcurrency();
+
+    /**
+     * 停止后端,中断执行中的任务
+     */
+    void shutdown();
+
+}
@@ -0,0 +1,153 @@
+package com.bob.common.utils.task;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * 异步任务执行后端的创建
+ * JDK21及以上使用虚拟线程,任务阻塞在JDBC,RPC上时不占用平台线程;更早的JDK使用有上限的弹性线程池,
+ * 线程按需创建,空闲后回收;可以通过系统属性{@value #BACKEND_PROPERTY}=virtual|elastic指定
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-24 9:40
+ */
+public final class TaskExecutionBackends {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutionBackends.class);
+
+    public static final String BACKEND_PROPERTY = "async.task.backend";
+
+    public static final String VIRTUAL = "virtual";
+    public static final String ELASTIC = "elastic";
+
+    /**
+     * 虚拟线程的默认并发数,虚拟线程很廉价,实际限制的是下游的连接数
+     */
+    public static final int DEFAULT_VIRTUAL_CONCURRENCY = 1000;
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(),JDK21以下为null
+     */
+    private static final MethodHandle NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private TaskExecutionBackends() {
+    }
+
+    /**
+     * @return 当前JDK是否支持虚拟线程
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * 按系统属性或JDK版本选择后端
+     *
+     * @return
+     */
+    public static TaskExecutionBackend detect() {
+        String backend = System.getProperty(BACKEND_PROPERTY);
+        if (ELASTIC.equals(backend) || !StringUtils.hasText(backend) && !isVirtualThreadSupported()) {
+            return elastic(8 * (Runtime.getRuntime().availableProcessors() + 1));
+        }
+        Assert.isTrue(!StringUtils.hasText(backend) || VIRTUAL.equals(backend), String.format("未知的异步任务执行后端[%s]", backend));
+        return virtual(DEFAULT_VIRTUAL_CONCURRENCY);
+    }
+
+    /**
+     * 每个任务一个虚拟线程
+     *
+     * @param maxConcurrency 同时执行的任务数
+     * @return
+     */
+    public static TaskExecutionBackend virtual(int maxConcurrency) {
+        Assert.state(isVirtualThreadSupported(), "当前JDK不支持虚拟线程");
+        ExecutorService executorService;
+        try {
+            executorService = (ExecutorService)NEW_VIRTUAL_THREAD_EXECUTOR.invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("创建虚拟线程执行器失败", e);
+        }
+        return new ExecutorServiceBackend(VIRTUAL, maxConcurrency, executorService);
+    }
+
+    /**
+     * 有上限的弹性线程池,线程按需创建,空闲60S后回收
+     * 并发数已由调用方控制,队列只用于任务结束的线程把下一个任务交给线程池的瞬间,不会积压
+     *
+     * @param maxThreads 最大线程数,即同时执行的任务数
+     * @return
+     */
+    public static TaskExecutionBackend elastic(int maxThreads) {
+        Assert.isTrue(maxThreads > 0, "最大线程数必须大于0");
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread thread = new Thread(r, "async-task-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return new ExecutorServiceBackend(ELASTIC, maxThreads, executor);
+    }
+
+    private static MethodHandle findVirtualThreadExecutorFactory() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 基于ExecutorService的后端
+     */
+    private static final class ExecutorServiceBackend implements TaskExecutionBackend {
+
+        private final String name;
+        private final int maxConcurrency;
+        private final ExecutorService executorService;
+
+        ExecutorServiceBackend(String name, int maxConcurrency, ExecutorService executorService) {
+            Assert.isTrue(maxConcurrency > 0, "并发数必须大于0");
+            this.name = name;
+            this.maxConcurrency = maxConcurrency;
+            this.executorService = executorService;
+            LOGGER.info(String.format("异步任务执行后端:[%s],并发数:[%d]", name, maxConcurrency));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executorService.execute(command);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        @Override
+        public void shutdown() {
+            executorService.shutdownNow();
+        }
+    }
+
+}
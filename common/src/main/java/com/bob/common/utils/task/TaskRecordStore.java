@@ -0,0 +1,88 @@
+package com.bob.common.utils.task;
+
+import java.util.List;
+
+/**
+ * 异步任务记录的存储
+ * 同一任务类型及名称(taskType, taskName)同时只能有一个执行中的任务,由{@link #tryStart(TaskRecord)}原子地保证
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-21 10:00
+ */
+public interface TaskRecordStore {
+
+    /**
+     * 执行中的任务状态
+     */
+    long STATUS_RUNNING = 0L;
+
+    /**
+     * 正常结束的任务状态
+     */
+    long STATUS_SUCCESS = 1L;
+
+    /**
+     * 异常结束的任务状态
+     */
+    long STATUS_ERROR = 2L;
+
+    /**
+     * 不存在同类型同名称的执行中任务时,保存任务记录并标记为执行中,设置记录的ID及创建时间
+     *
+     * @param record
+     * @return 存在执行中的同种任务时返回false, 记录不保存
+     */
+    boolean tryStart(TaskRecord record);
+
+    /**
+     * 是否存在同类型同名称的执行中任务
+     *
+     * @param taskType
+     * @param taskName
+     * @return
+     */
+    boolean checkHavingUnfinishedTask(String taskType, String taskName);
+
+    /**
+     * 标记任务正常结束
+     *
+     * @param id
+     */
+    void updateWithSuccess(Long id);
+
+    /**
+     * 标记任务异常结束
+     *
+     * @param id
+     * @param executeInfo 错误信息
+     */
+    void updateWithError(Long id, String executeInfo);
+
+    /**
+     * 查询执行中的任务
+     *
+     * @return
+     */
+    List<TaskRecord> selectUnfinishedTasks();
+
+    /**
+     * 任务仍在执行中时将其标记为超时结束
+     *
+     * @param id
+     * @param executeInfo 错误信息
+     * @return 任务是否由本次调用结束, 已结束的任务返回false
+     */
+    boolean terminateTimeoutTaskIfApplicable(Long id, String executeInfo);
+
+    /**
+     * 生成去重的键
+     *
+     * @param taskType
+     * @param taskName
+     * @return
+     */
+    static String buildRunningKey(String taskType, String taskName) {
+        return taskType + ":" + taskName;
+    }
+
+}
@@ -0,0 +1,393 @@
+package com.bob.common.utils.task;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * 按任务类型公平调度的执行器
+ * 每种任务类型一个队列,类型内按优先级(大者优先)及提交顺序排列;类型之间按权重做加权公平排队,
+ * 每次从可执行的类型中选择虚拟时间最小的,执行一个任务后该类型的虚拟时间增加 1/权重,
+ * 新变为活跃的类型从当前虚拟时间开始,不能借空闲期间积累的份额插队;
+ * 同时执行的任务数受总并发数及类型并发上限限制,类型队列满时拒绝该类型的新任务,不影响其他类型,也不会阻塞提交线程
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-23 9:30
+ */
+public class TaskTypeFairExecutor implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskTypeFairExecutor.class);
+
+    private static final Comparator<TaskFuture> TASK_ORDER = (a, b) -> a.priority != b.priority
+        ? Integer.compare(b.priority, a.priority) : Long.compare(a.sequence, b.sequence);
+
+    private final int maxConcurrency;
+    private final Executor workerExecutor;
+    private final TaskExecutionBackend ownBackend;
+
+    private final Map<String, Integer> typeWeights = new ConcurrentHashMap<String, Integer>();
+    private final Map<String, Integer> typeConcurrencyLimits = new ConcurrentHashMap<String, Integer>();
+    private volatile int queueCapacity = 1000;
+
+    /**
+     * 以下属性由lock保护
+     */
+    private final Object lock = new Object();
+    private final Map<String, TypeQueue> typeQueues = new LinkedHashMap<String, TypeQueue>();
+    private int runningCount;
+    private double virtualTime;
+    private long sequence;
+
+    /**
+     * 使用自行创建的弹性线程池执行任务
+     *
+     * @param maxConcurrency 最大并发数
+     */
+    public TaskTypeFairExecutor(int maxConcurrency) {
+        this(TaskExecutionBackends.elastic(maxConcurrency));
+    }
+
+    /**
+     * 使用执行后端的并发数,销毁时停止后端
+     *
+     * @param backend 执行后端
+     */
+    public TaskTypeFairExecutor(TaskExecutionBackend backend) {
+        Assert.notNull(backend, "执行后端不能为空");
+        this.ownBackend = backend;
+        this.workerExecutor = backend;
+        this.maxConcurrency = backend.getMaxConcurrency();
+    }
+
+    /**
+     * @param maxConcurrency 最大并发数
+     * @param workerExecutor 实际执行任务的执行器,需要能够同时执行maxConcurrency个任务
+     */
+    public TaskTypeFairExecutor(int maxConcurrency, Executor workerExecutor) {
+        Assert.isTrue(maxConcurrency > 0, "最大并发数必须大于0");
+        Assert.notNull(workerExecutor, "执行器不能为空");
+        this.ownBackend = null;
+        this.workerExecutor = workerExecutor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param taskType 任务类型
+     * @param priority 类型内的优先级,越大越先执行
+     * @param task
+     * @return 可用于取消任务
+     * @throws RejectedExecutionException 该类型的等待队列已满
+     */
+    public Future<?> submit(String taskType, int priority, Runnable task) {
+        Assert.hasText(taskType, "任务类型不能为空");
+        Assert.notNull(task, "任务不能为空");
+        TaskFuture future = new TaskFuture(task, priority);
+        synchronized (lock) {
+            TypeQueue typeQueue = typeQueues.computeIfAbsent(taskType, TypeQueue::new);
+            if (typeQueue.tasks.size() >= queueCapacity) {
+                typeQueue.rejected++;
+                throw new RejectedExecutionException(String.format("任务类型[%s]等待中的任务已达到上限[%d]", taskType, queueCapacity));
+            }
+            if (typeQueue.tasks.isEmpty() && typeQueue.running == 0) {
+                typeQueue.virtualTime = Math.max(typeQueue.virtualTime, virtualTime);
+            }
+            future.typeQueue = typeQueue;
+            future.sequence = sequence++;
+            future.enqueueNanos = System.nanoTime();
+            typeQueue.tasks.add(future);
+            typeQueue.submitted++;
+        }
+        dispatch();
+        return future;
+    }
+
+    /**
+     * @param taskType
+     * @param weight   权重,越大分到的执行份额越多,默认为1
+     */
+    public void setTypeWeight(String taskType, int weight) {
+        Assert.isTrue(weight > 0, "权重必须大于0");
+        typeWeights.put(taskType, weight);
+    }
+
+    /**
+     * @param taskWeights 任务类型的权重
+     */
+    public void setTypeWeights(Map<String, Integer> taskWeights) {
+        taskWeights.forEach(this::setTypeWeight);
+    }
+
+    /**
+     * @param taskType
+     * @param limit    该类型同时执行的任务数上限,默认为最大并发数
+     */
+    public void setTypeConcurrencyLimit(String taskType, int limit) {
+        Assert.isTrue(limit > 0, "并发上限必须大于0");
+        typeConcurrencyLimits.put(taskType, limit);
+        dispatch();
+    }
+
+    /**
+     * @param limits 任务类型的并发上限
+     */
+    public void setTypeConcurrencyLimits(Map<String, Integer> limits) {
+        limits.forEach(this::setTypeConcurrencyLimit);
+    }
+
+    /**
+     * @param queueCapacity 每种任务类型的等待队列容量,默认1000
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        Assert.isTrue(queueCapacity > 0, "队列容量必须大于0");
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return 各任务类型的统计快照
+     */
+    public List<TaskTypeStats> getTaskTypeStats() {
+        synchronized (lock) {
+            List<TaskTypeStats> stats = new ArrayList<TaskTypeStats>(typeQueues.size());
+            for (TypeQueue typeQueue : typeQueues.values()) {
+                stats.add(new TaskTypeStats(typeQueue));
+            }
+            return stats;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (ownBackend != null) {
+            ownBackend.shutdown();
+        }
+    }
+
+    /**
+     * 在并发数允许的范围内取出任务交给执行器,在锁外提交避免执行器阻塞时持有锁
+     */
+    private void dispatch() {
+        List<TaskFuture> ready = new ArrayList<TaskFuture>();
+        synchronized (lock) {
+            TaskFuture next;
+            while (runningCount < maxConcurrency && (next = pollNext()) != null) {
+                ready.add(next);
+            }
+        }
+        for (TaskFuture future : ready) {
+            try {
+                workerExecutor.execute(() -> execute(future));
+            } catch (RejectedExecutionException e) {
+                LOGGER.error(String.format("任务类型[%s]的任务被执行器拒绝", future.typeQueue.taskType), e);
+                synchronized (lock) {
+                    runningCount--;
+                    future.typeQueue.running--;
+                    future.typeQueue.rejected++;
+                }
+                future.reject(e);
+            }
+        }
+    }
+
+    /**
+     * 选择虚拟时间最小且未达到并发上限的类型,取出其优先级最高的任务
+     *
+     * @return 没有可执行的任务时返回null
+     */
+    private TaskFuture pollNext() {
+        while (true) {
+            TypeQueue selected = null;
+            for (TypeQueue typeQueue : typeQueues.values()) {
+                if (typeQueue.tasks.isEmpty() || typeQueue.running >= getConcurrencyLimit(typeQueue.taskType)) {
+                    continue;
+                }
+                if (selected == null || typeQueue.virtualTime < selected.virtualTime) {
+                    selected = typeQueue;
+                }
+            }
+            if (selected == null) {
+                return null;
+            }
+            TaskFuture future = selected.tasks.poll();
+            // 取消与移出队列之间被取出的任务不占用份额
+            if (future.isCancelled()) {
+                continue;
+            }
+            virtualTime = selected.virtualTime;
+            selected.virtualTime += 1.0 / typeWeights.getOrDefault(selected.taskType, 1);
+            long waitNanos = System.nanoTime() - future.enqueueNanos;
+            selected.totalWaitNanos += waitNanos;
+            selected.maxWaitNanos = Math.max(selected.maxWaitNanos, waitNanos);
+            selected.started++;
+            selected.running++;
+            runningCount++;
+            return future;
+        }
+    }
+
+    private int getConcurrencyLimit(String taskType) {
+        return typeConcurrencyLimits.getOrDefault(taskType, maxConcurrency);
+    }
+
+    private void execute(TaskFuture future) {
+        try {
+            future.run();
+        } finally {
+            synchronized (lock) {
+                runningCount--;
+                future.typeQueue.running--;
+                future.typeQueue.completed++;
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * 任务类型的等待队列及统计
+     */
+    private static final class TypeQueue {
+
+        private final String taskType;
+        private final PriorityQueue<TaskFuture> tasks = new PriorityQueue<TaskFuture>(TASK_ORDER);
+        private double virtualTime;
+        private int running;
+        private long submitted;
+        private long started;
+        private long completed;
+        private long rejected;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        TypeQueue(String taskType) {
+            this.taskType = taskType;
+        }
+    }
+
+    /**
+     * 排队中的任务,排队期间取消时立即移出队列,不再占用队列容量
+     */
+    private final class TaskFuture extends FutureTask<Object> {
+
+        private final int priority;
+        private TypeQueue typeQueue;
+        private long sequence;
+        private long enqueueNanos;
+
+        TaskFuture(Runnable task, int priority) {
+            super(task, null);
+            this.priority = priority;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                synchronized (lock) {
+                    typeQueue.tasks.remove(this);
+                }
+            }
+            return cancelled;
+        }
+
+        void reject(Throwable ex) {
+            setException(ex);
+        }
+    }
+
+    /**
+     * 任务类型的统计快照
+     */
+    public static final class TaskTypeStats {
+
+        private final String taskType;
+        private final int queueDepth;
+        private final int running;
+        private final long submitted;
+        private final long completed;
+        private final long rejected;
+        private final double avgWaitMillis;
+        private final double maxWaitMillis;
+
+        private TaskTypeStats(TypeQueue typeQueue) {
+            this.taskType = typeQueue.taskType;
+            this.queueDepth = typeQueue.tasks.size();
+            this.running = typeQueue.running;
+            this.submitted = typeQueue.submitted;
+            this.completed = typeQueue.completed;
+            this.rejected = typeQueue.rejected;
+            double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+            this.avgWaitMillis = typeQueue.started == 0 ? 0 : typeQueue.totalWaitNanos / nanosPerMilli / typeQueue.started;
+            this.maxWaitMillis = typeQueue.maxWaitNanos / nanosPerMilli;
+        }
+
+        public String getTaskType() {
+            return taskType;
+        }
+
+        /**
+         * @return 等待中的任务数
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        /**
+         * @return 执行中的任务数
+         */
+        public int getRunning() {
+            return running;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return 因队列已满或执行器拒绝而未执行的任务数
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return 从提交到开始执行的平均等待时长
+         */
+        public double getAvgWaitMillis() {
+            return avgWaitMillis;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[queued=%d, running=%d, submitted=%d, completed=%d, rejected=%d, avgWait=%.2fms, maxWait=%.2fms]",
+                taskType, queueDepth, running, submitted, completed, rejected, avgWaitMillis, maxWaitMillis);
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.bob.common.utils.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * 哈希时间轮,用于大量短任务的超时监控
+ * 注册及取消都是O(1)的入队操作,由单个工作线程每个刻度将新注册的超时放入槽位,移除已取消的超时,
+ * 并将当前槽位中到期的超时作为一批交给执行器处理;超时的精度为一个刻度
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-22 10:00
+ */
+public class TimeoutWheel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimeoutWheel.class);
+
+    /**
+     * 每个刻度最多转移的新注册超时,避免注册过快时工作线程一直无法推进刻度
+     */
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor expirationExecutor;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final Thread worker;
+    private final long startTime;
+    private volatile boolean running = true;
+    private long tick;
+
+    /**
+     * @param tickMillis         刻度时长
+     * @param wheelSize          槽位数,向上取整为2的幂
+     * @param expirationExecutor 处理到期超时的执行器,为null时在工作线程中处理
+     */
+    public TimeoutWheel(long tickMillis, int wheelSize, Executor expirationExecutor) {
+        Assert.isTrue(tickMillis > 0, "刻度时长必须大于0");
+        Assert.isTrue(wheelSize > 0 && wheelSize <= 1 << 20, "槽位数必须在(0, 2^20]之间");
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        size = size == 0 ? 1 : size;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.expirationExecutor = expirationExecutor;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::work, "async-task-timeout-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 注册超时
+     *
+     * @param task  到期时执行
+     * @param delay
+     * @param unit
+     * @return 可取消的超时
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Assert.notNull(task, "超时任务不能为空");
+        Assert.state(running, "时间轮已停止");
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay)));
+        activeCount.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return 未到期且未取消的超时数量
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return 累计到期的超时数量
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * 停止时间轮,未到期的超时不再处理
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void work() {
+        while (running) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                continue;
+            }
+            removeCancelled();
+            transferPending();
+            List<Timeout> expired = wheel[(int)(tick & mask)].expire(deadline);
+            tick++;
+            if (!expired.isEmpty()) {
+                activeCount.addAndGet(-expired.size());
+                expiredCount.addAndGet(expired.size());
+                dispatch(expired);
+            }
+        }
+    }
+
+    /**
+     * @return 当前刻度的截止时间,被中断时返回-1
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        long sleepNanos = deadline - (System.nanoTime() - startTime);
+        if (sleepNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                return -1;
+            }
+        }
+        return deadline;
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != Timeout.ST_INIT) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的放入当前槽位
+            long ticks = Math.max(calculated, tick);
+            wheel[(int)(ticks & mask)].add(timeout);
+        }
+    }
+
+    private void dispatch(List<Timeout> expired) {
+        if (expirationExecutor == null) {
+            runAll(expired);
+            return;
+        }
+        try {
+            expirationExecutor.execute(() -> runAll(expired));
+        } catch (RuntimeException e) {
+            LOGGER.warn("提交到期的超时任务失败,在时间轮线程中执行", e);
+            runAll(expired);
+        }
+    }
+
+    private static void runAll(List<Timeout> expired) {
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (Throwable ex) {
+                LOGGER.error("执行超时任务失败", ex);
+            }
+        }
+    }
+
+    /**
+     * 时间轮中的超时
+     */
+    public static final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final TimeoutWheel timeoutWheel;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+        /**
+         * 以下属性只由工作线程访问
+         */
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimeoutWheel timeoutWheel, Runnable task, long deadline) {
+            this.timeoutWheel = timeoutWheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消超时,已到期的无法取消
+         *
+         * @return 是否由本次调用取消
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timeoutWheel.activeCount.decrementAndGet();
+            timeoutWheel.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+    }
+
+    /**
+     * 槽位,双向链表,只由工作线程访问
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * @param deadline 当前刻度的截止时间
+         * @return 到期的超时
+         */
+        List<Timeout> expire(long deadline) {
+            List<Timeout> expired = new ArrayList<Timeout>();
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.deadline <= deadline && timeout.state.compareAndSet(Timeout.ST_INIT, Timeout.ST_EXPIRED)) {
+                        expired.add(timeout);
+                    }
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            return expired;
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.bob.common.excelmapping;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import com.bob.common.utils.excelmapping.transform.DateTextParser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 日期文本解析测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 11:05
+ */
+public class DateTextParserTest {
+
+    @Test
+    public void testParse() {
+        DateTextParser parser = new DateTextParser();
+        assertEquals(date(2018, 8, 1, 0, 0, 0), parser.parse("2018-08-01"));
+        assertEquals(date(2018, 8, 1, 0, 0, 0), parser.parse("2018-8-1"));
+        assertEquals(date(2018, 8, 1, 13, 5, 9), parser.parse("2018-08-01 13:05:09"));
+        assertEquals(date(2018, 8, 1, 0, 0, 0), parser.parse("2018/8/1"));
+        assertEquals(date(2018, 8, 1, 0, 0, 0), parser.parse("20180801"));
+        assertNull(parser.parse("2018-13-01"));
+        assertNull(parser.parse("abc"));
+        assertNull(parser.parse(1.0));
+    }
+
+    @Test
+    public void testCustomPattern() {
+        DateTextParser parser = new DateTextParser("dd.MM.yyyy");
+        assertEquals(date(2018, 8, 1, 0, 0, 0), parser.parse("01.08.2018"));
+        assertNull(parser.parse("2018-08-01"));
+    }
+
+    private static Date date(int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTime();
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.bob.common.excelmapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Calendar;
+
+import com.bob.common.entity.base.BaseMapper;
+import com.bob.common.utils.excelmapping.Excel;
+import com.bob.common.utils.excelmapping.ExcelBatchLoader;
+import com.bob.common.utils.excelmapping.ExcelBatchLoader.LoadResult;
+import com.bob.common.utils.excelmapping.StreamingExcelMappingProcessor;
+import com.bob.common.utils.excelmapping.exception.ErrorIndexExceptionResolver;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Excel流水线导入数据库测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-15 14:00
+ */
+public class ExcelBatchLoaderTest {
+
+    private UnpooledDataSource dataSource;
+    private SqlSessionFactory sqlSessionFactory;
+    private byte[] content;
+
+    public interface ExcelDataModelMapper extends BaseMapper<Integer, ExcelDataModel> {
+
+        @Override
+        @Insert("INSERT INTO excel_data (id, user_name, age, salary, birthday, telephone) "
+            + "VALUES (#{id}, #{userName}, #{age}, #{salary}, #{birthday}, #{telephone})")
+        int insert(ExcelDataModel record);
+    }
+
+    @Before
+    public void doBefore() throws Exception {
+        dataSource = new UnpooledDataSource("org.h2.Driver", "jdbc:h2:mem:excel_loader;DB_CLOSE_DELAY=-1", "sa", "");
+        execute("CREATE TABLE excel_data (id INT PRIMARY KEY, user_name VARCHAR(32), age INT, salary DOUBLE, birthday TIMESTAMP, "
+            + "telephone VARCHAR(32))");
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(ExcelDataModelMapper.class);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        content = newExcel(1000);
+    }
+
+    /**
+     * 生成ID从1开始的数据,每100行中有一行年龄非数字
+     *
+     * @param rows
+     * @return
+     * @throws Exception
+     */
+    private static byte[] newExcel(int rows) throws Exception {
+        Excel excel = new Excel(true);
+        String[] titles = {"ID", "用户名", "年龄", "薪水", "生日", "电话"};
+        for (int i = 0; i < titles.length; i++) {
+            excel.setCell(0, i, titles[i]);
+        }
+        Calendar birthday = Calendar.getInstance();
+        birthday.clear();
+        birthday.set(1990, Calendar.MAY, 20);
+        CellStyle dateStyle = excel.createCellStyle();
+        dateStyle.setDataFormat(excel.createDataFormat().getFormat("yyyy-mm-dd"));
+        for (int i = 1; i <= rows; i++) {
+            excel.setCell(i, 0, i);
+            excel.setCell(i, 1, "user" + i);
+            if (i % 100 == 0) {
+                excel.setCell(i, 2, "abc");
+            } else {
+                excel.setCell(i, 2, 20 + i % 40);
+            }
+            excel.setCell(i, 3, 1000.5 * i);
+            excel.setCell(i, 4, birthday).setCellStyle(dateStyle);
+            excel.setCell(i, 5, "1875810776" + i % 10);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        excel.write(output);
+        return output.toByteArray();
+    }
+
+    @After
+    public void doAfter() throws Exception {
+        execute("DROP TABLE excel_data");
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        ExcelBatchLoader<ExcelDataModel, ExcelDataModelMapper> loader = newLoader();
+        LoadResult result = loader.load(new StreamingExcelMappingProcessor<ExcelDataModel>(new ByteArrayInputStream(content),
+            ExcelDataModel.class, new ErrorIndexExceptionResolver()));
+        // 每100行中有一行年龄非数字
+        assertFalse(result.isParseSuccess());
+        assertEquals(990, result.getCommittedRows());
+        assertEquals(4, result.getCommits());
+        assertEquals(990, result.getInsertMetrics().getRows());
+        assertEquals(990, count());
+    }
+
+    @Test
+    public void testAbortOnInsertFailure() throws Exception {
+        execute("INSERT INTO excel_data (id) VALUES (450)");
+        ExcelBatchLoader<ExcelDataModel, ExcelDataModelMapper> loader = newLoader();
+        LoadResult result = loader.load(new StreamingExcelMappingProcessor<ExcelDataModel>(new ByteArrayInputStream(content),
+            ExcelDataModel.class, new ErrorIndexExceptionResolver()));
+        assertNotNull(result.getFailure());
+        assertFalse(result.isSuccess());
+        // 只保留已提交的部分,出错的事务整体回滚
+        assertEquals(300, result.getCommittedRows());
+        assertEquals(301, count());
+        assertTrue(result.getParseMetrics().getRows() <= 1000);
+    }
+
+    @Test(timeout = 30000)
+    public void testAbortOnInsertError() throws Exception {
+        ExcelBatchLoader<ExcelDataModel, ExcelDataModelMapper> loader = newLoader();
+        // 等待校验阶段填满写入队列后,写入线程因Error退出,不再消费队列,上游放入结束标记时不能一直等待
+        loader.setInsertAction((mapper, model) -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new AssertionError("insert failed");
+        });
+        LoadResult result = loader.load(new StreamingExcelMappingProcessor<ExcelDataModel>(new ByteArrayInputStream(content),
+            ExcelDataModel.class, new ErrorIndexExceptionResolver()));
+        assertTrue(result.getFailure() instanceof AssertionError);
+        assertEquals(0, result.getCommittedRows());
+        assertEquals(0, count());
+    }
+
+    private ExcelBatchLoader<ExcelDataModel, ExcelDataModelMapper> newLoader() {
+        ExcelBatchLoader<ExcelDataModel, ExcelDataModelMapper> loader = new ExcelBatchLoader<>(sqlSessionFactory, ExcelDataModelMapper.class);
+        loader.setBatchSize(100);
+        loader.setCommitSize(300);
+        loader.setMaxPendingRows(200);
+        return loader;
+    }
+
+    private void execute(String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private int count() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM excel_data")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+}
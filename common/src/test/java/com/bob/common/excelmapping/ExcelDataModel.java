@@ -0,0 +1,92 @@
+package com.bob.common.excelmapping;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import com.bob.common.utils.excelmapping.ExcelColumn;
+import com.bob.common.utils.excelmapping.ExcelColumn.Column;
+import com.bob.common.utils.excelmapping.ExcelMapping;
+import com.bob.common.utils.excelmapping.PropertyInitializer;
+
+/**
+ * 包含多种属性类型的Excel映射Model
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-06 14:02
+ */
+@ExcelMapping(titleRow = 0, dataRow = 1)
+public class ExcelDataModel implements Serializable, PropertyInitializer<ExcelDataModel> {
+
+    private static final long serialVersionUID = 2917375386124311860L;
+
+    @ExcelColumn(value = Column.A, key = true)
+    private Integer id;
+
+    @ExcelColumn(value = Column.B)
+    private String userName;
+
+    @ExcelColumn(value = Column.C)
+    private Integer age;
+
+    @ExcelColumn(value = Column.D, notNull = false)
+    private Double salary;
+
+    @ExcelColumn(value = Column.E, notNull = false)
+    private Date birthday;
+
+    @ExcelColumn(value = Column.F, notNull = false)
+    private String telephone;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public void setAge(Integer age) {
+        this.age = age;
+    }
+
+    public Double getSalary() {
+        return salary;
+    }
+
+    public void setSalary(Double salary) {
+        this.salary = salary;
+    }
+
+    public Date getBirthday() {
+        return birthday;
+    }
+
+    public void setBirthday(Date birthday) {
+        this.birthday = birthday;
+    }
+
+    public String getTelephone() {
+        return telephone;
+    }
+
+    public void setTelephone(String telephone) {
+        this.telephone = telephone;
+    }
+
+    @Override
+    public ExcelDataModel initProperties() {
+        return new ExcelDataModel();
+    }
+}
@@ -0,0 +1,404 @@
+package com.bob.common.excelmapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import javax.xml.stream.XMLStreamException;
+
+import com.bob.common.utils.excelmapping.ColumnarExcelResult;
+import com.bob.common.utils.excelmapping.ColumnarExcelResult.IntColumn;
+import com.bob.common.utils.excelmapping.ColumnarExcelResult.StringColumn;
+import com.bob.common.utils.excelmapping.Excel;
+import com.bob.common.utils.excelmapping.ExcelColumn;
+import com.bob.common.utils.excelmapping.ExcelColumn.Column;
+import com.bob.common.utils.excelmapping.ExcelErrorReportWriter;
+import com.bob.common.utils.excelmapping.ExcelInstance;
+import com.bob.common.utils.excelmapping.ExcelMapping;
+import com.bob.common.utils.excelmapping.ExcelMappingProcessor;
+import com.bob.common.utils.excelmapping.PropertyInitializer;
+import com.bob.common.utils.excelmapping.StreamingExcelMappingProcessor;
+import com.bob.common.utils.excelmapping.exception.ErrorCollectingExceptionResolver;
+import com.bob.common.utils.excelmapping.exception.ErrorIndexExceptionResolver;
+import com.bob.common.utils.excelmapping.exception.ExcelErrorIndex;
+import com.bob.common.utils.excelmapping.exception.ExcelException;
+import com.bob.common.utils.excelmapping.transform.FieldFormatter;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 流式Excel解析测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-06 14:20
+ */
+public class StreamingExcelMappingTest {
+
+    private byte[] content;
+
+    @Before
+    public void doBefore() throws Exception {
+        Excel excel = new Excel(true);
+        String[] titles = {"ID", "用户名", "年龄", "薪水", "生日", "电话"};
+        for (int i = 0; i < titles.length; i++) {
+            excel.setCell(0, i, titles[i]);
+        }
+        Calendar birthday = Calendar.getInstance();
+        birthday.clear();
+        birthday.set(1990, Calendar.MAY, 20);
+        CellStyle dateStyle = excel.createCellStyle();
+        dateStyle.setDataFormat(excel.createDataFormat().getFormat("yyyy-mm-dd"));
+        for (int i = 1; i <= 5; i++) {
+            // 第4行与第1行ID重复
+            excel.setCell(i, 0, i == 4 ? 1 : i);
+            excel.setCell(i, 1, "user" + i);
+            // 第5行年龄非数字
+            if (i == 5) {
+                excel.setCell(i, 2, "abc");
+            } else {
+                excel.setCell(i, 2, 20 + i);
+            }
+            excel.setCell(i, 3, 1000.5 * i);
+            excel.setCell(i, 4, birthday).setCellStyle(dateStyle);
+            excel.setCell(i, 5, "1875810776" + i);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        excel.write(output);
+        content = output.toByteArray();
+    }
+
+    @Test
+    public void testStreamingProcess() throws Exception {
+        ErrorCollectingExceptionResolver resolver = new ErrorCollectingExceptionResolver();
+        StreamingExcelMappingProcessor<ExcelDataModel> processor = new StreamingExcelMappingProcessor<ExcelDataModel>(
+            new ByteArrayInputStream(content), ExcelDataModel.class, resolver);
+        List<ExcelInstance<ExcelDataModel>> results = new ArrayList<>();
+        assertFalse(processor.process(results::add));
+        assertEquals(3, results.size());
+        ExcelDataModel first = results.get(0).getInstance();
+        assertEquals(Integer.valueOf(1), first.getId());
+        assertEquals("user1", first.getUserName());
+        assertEquals(Integer.valueOf(21), first.getAge());
+        assertEquals(Double.valueOf(1000.5), first.getSalary());
+        Calendar birthday = Calendar.getInstance();
+        birthday.setTime(first.getBirthday());
+        assertEquals(1990, birthday.get(Calendar.YEAR));
+        assertEquals(20, birthday.get(Calendar.DAY_OF_MONTH));
+        assertTrue(resolver.getRowErrorMappings().containsKey(4));
+        assertTrue(resolver.getRowErrorMappings().containsKey(5));
+    }
+
+    @Test
+    public void testSameResultAsUserModel() throws Exception {
+        ExcelMappingProcessor<ExcelDataModel> processor = new ExcelMappingProcessor<ExcelDataModel>(
+            new Excel(new ByteArrayInputStream(content)), ExcelDataModel.class, new ErrorCollectingExceptionResolver());
+        processor.process();
+        StreamingExcelMappingProcessor<ExcelDataModel> streaming = new StreamingExcelMappingProcessor<ExcelDataModel>(
+            new ByteArrayInputStream(content), ExcelDataModel.class, new ErrorCollectingExceptionResolver());
+        streaming.process();
+        Collection<ExcelInstance<ExcelDataModel>> expected = processor.getCorrectResult();
+        List<ExcelInstance<ExcelDataModel>> actual = new ArrayList<>(streaming.getCorrectResult());
+        assertEquals(expected.size(), actual.size());
+        int i = 0;
+        for (ExcelInstance<ExcelDataModel> instance : expected) {
+            ExcelInstance<ExcelDataModel> other = actual.get(i++);
+            assertEquals(instance.getRowIndex(), other.getRowIndex());
+            assertEquals(instance.getInstance().getId(), other.getInstance().getId());
+            assertEquals(instance.getInstance().getSalary(), other.getInstance().getSalary());
+            assertEquals(instance.getInstance().getBirthday(), other.getInstance().getBirthday());
+            assertEquals(instance.getInstance().getTelephone(), other.getInstance().getTelephone());
+        }
+    }
+
+    @Test
+    public void testParallelSameResult() throws Exception {
+        ExcelMappingProcessor<ExcelDataModel> processor = new ExcelMappingProcessor<ExcelDataModel>(
+            new Excel(new ByteArrayInputStream(content)), ExcelDataModel.class, new ErrorCollectingExceptionResolver());
+        processor.process();
+        ErrorCollectingExceptionResolver resolver = new ErrorCollectingExceptionResolver();
+        ExcelMappingProcessor<ExcelDataModel> parallel = new ExcelMappingProcessor<ExcelDataModel>(
+            new Excel(new ByteArrayInputStream(content)), ExcelDataModel.class, resolver);
+        assertFalse(parallel.processParallel(new ForkJoinPool(4), 1));
+        List<ExcelInstance<ExcelDataModel>> expected = new ArrayList<>(processor.getCorrectResult());
+        List<ExcelInstance<ExcelDataModel>> actual = new ArrayList<>(parallel.getCorrectResult());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getRowIndex(), actual.get(i).getRowIndex());
+            assertEquals(expected.get(i).getInstance().getId(), actual.get(i).getInstance().getId());
+        }
+        assertTrue(resolver.getRowErrorMappings().containsKey(4));
+        assertTrue(resolver.getRowErrorMappings().containsKey(5));
+    }
+
+    @Test
+    public void testColumnarProcess() throws Exception {
+        ErrorCollectingExceptionResolver resolver = new ErrorCollectingExceptionResolver();
+        ExcelMappingProcessor<ExcelDataModel> processor = new ExcelMappingProcessor<ExcelDataModel>(
+            new Excel(new ByteArrayInputStream(content)), ExcelDataModel.class, resolver);
+        assertFalse(processor.processColumnar());
+        ColumnarExcelResult result = processor.getColumnarResult();
+        assertEquals(3, result.getRowCount());
+        assertEquals(3, result.getRowIndex(2));
+        IntColumn ids = result.getIntColumn("id");
+        assertEquals(1, ids.get(0));
+        assertEquals(3, ids.get(2));
+        assertEquals(1000.5, result.getDoubleColumn("salary").get(0), 0);
+        StringColumn userNames = result.getStringColumn("userName");
+        assertEquals("user2", userNames.get(1));
+        assertEquals(3, userNames.getDictionary().size());
+        Calendar birthday = Calendar.getInstance();
+        birthday.clear();
+        birthday.set(1990, Calendar.MAY, 20);
+        assertEquals(birthday.getTimeInMillis(), result.getDateColumn("birthday").getMillis(0));
+        assertTrue(resolver.getRowErrorMappings().containsKey(4));
+        assertTrue(resolver.getRowErrorMappings().containsKey(5));
+    }
+
+    @Test
+    public void testErrorReport() throws Exception {
+        ErrorIndexExceptionResolver resolver = new ErrorIndexExceptionResolver();
+        Excel source = new Excel(new ByteArrayInputStream(content));
+        new ExcelMappingProcessor<ExcelDataModel>(source, ExcelDataModel.class, resolver).process();
+        ExcelErrorIndex errorIndex = resolver.getErrorIndex();
+        assertEquals(2, errorIndex.getRowCount());
+        // 错误附表只包含出错的行
+        ByteArrayOutputStream sidecar = new ByteArrayOutputStream();
+        ExcelErrorReportWriter.writeSidecar(ExcelDataModel.class, source, errorIndex, sidecar);
+        Excel sidecarExcel = new Excel(new ByteArrayInputStream(sidecar.toByteArray()));
+        assertEquals(3, sidecarExcel.getSheetAt(0).getPhysicalNumberOfRows());
+        assertEquals("user5", sidecarExcel.getCellString(2, 2));
+        assertTrue(sidecarExcel.getCellString(2, 7).contains("[C列]"));
+        // 标注副本只在出错行的错误栏写入错误信息
+        File file = File.createTempFile("excel-error-report", ".xlsx");
+        try {
+            Files.write(file.toPath(), content);
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            ExcelErrorReportWriter.writeAnnotatedCopy(ExcelDataModel.class, file, errorIndex, copy);
+            Excel copyExcel = new Excel(new ByteArrayInputStream(copy.toByteArray()));
+            assertEquals(null, copyExcel.getCellString(1, 6));
+            assertTrue(copyExcel.getCellString(4, 6).contains("重复"));
+            assertTrue(copyExcel.getCellString(5, 6).contains("[C列]"));
+            assertEquals("user3", copyExcel.getCellString(3, 1));
+            assertEquals("abc", copyExcel.getCellString(5, 2));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRejectDoctype() throws Exception {
+        File secret = File.createTempFile("excel-xxe", ".txt");
+        try {
+            Files.write(secret.toPath(), "secret".getBytes(StandardCharsets.UTF_8));
+            String doctype = "<!DOCTYPE worksheet [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>";
+            byte[] crafted = rewriteSheet(content, "xl/worksheets/sheet1.xml", xml -> xml.replaceFirst("\\?>", "?>" + doctype));
+            StreamingExcelMappingProcessor<ExcelDataModel> processor = new StreamingExcelMappingProcessor<ExcelDataModel>(
+                new ByteArrayInputStream(crafted), ExcelDataModel.class, new ErrorCollectingExceptionResolver());
+            try {
+                processor.process();
+                fail();
+            } catch (SAXParseException e) {
+                assertTrue(e.getMessage().contains("DOCTYPE"));
+            }
+        } finally {
+            secret.delete();
+        }
+    }
+
+    @Test
+    public void testErrorReportRejectEntity() throws Exception {
+        ErrorIndexExceptionResolver resolver = new ErrorIndexExceptionResolver();
+        new ExcelMappingProcessor<ExcelDataModel>(new Excel(new ByteArrayInputStream(content)), ExcelDataModel.class, resolver).process();
+        File secret = File.createTempFile("excel-xxe", ".txt");
+        File file = File.createTempFile("excel-error-report", ".xlsx");
+        try {
+            Files.write(secret.toPath(), "secret".getBytes(StandardCharsets.UTF_8));
+            String doctype = "<!DOCTYPE worksheet [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>";
+            Files.write(file.toPath(), rewriteSheet(content, "xl/worksheets/sheet1.xml",
+                xml -> xml.replaceFirst("\\?>", "?>" + doctype).replaceFirst("<v>1</v>", "<v>&xxe;</v>")));
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            try {
+                ExcelErrorReportWriter.writeAnnotatedCopy(ExcelDataModel.class, file, resolver.getErrorIndex(), copy);
+                fail();
+            } catch (ExcelException e) {
+                assertTrue(e.getCause() instanceof XMLStreamException);
+            }
+            assertFalse(new String(copy.toByteArray(), StandardCharsets.ISO_8859_1).contains("secret"));
+        } finally {
+            secret.delete();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSheetIndex() throws Exception {
+        Excel excel = new Excel(true);
+        excel.setCell(0, 0, "ignored");
+        excel.createSheet();
+        excel.setCell(0, 0, "ID");
+        excel.setCell(0, 1, "用户名");
+        excel.setCell(1, 0, 1);
+        excel.setCell(1, 1, "user1");
+        excel.setCell(2, 0, "abc");
+        excel.setCell(2, 1, "user2");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        excel.write(output);
+        ErrorIndexExceptionResolver resolver = new ErrorIndexExceptionResolver();
+        StreamingExcelMappingProcessor<SecondSheetModel> processor = new StreamingExcelMappingProcessor<SecondSheetModel>(
+            new ByteArrayInputStream(output.toByteArray()), SecondSheetModel.class, resolver);
+        assertFalse(processor.process());
+        ExcelInstance<SecondSheetModel> instance = processor.getCorrectResult().iterator().next();
+        assertEquals(1, instance.getSheetIndex());
+        assertEquals("user1", instance.getInstance().getUserName());
+        assertTrue(resolver.getErrorIndex().getRowErrors(1).containsKey(2));
+    }
+
+    @Test
+    public void testStreamingExport() throws Exception {
+        List<ExcelDataModel> models = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            ExcelDataModel model = new ExcelDataModel();
+            model.setId(i);
+            model.setUserName("user" + i);
+            model.setAge(20 + i % 30);
+            models.add(model);
+        }
+        // 格式化器按顺序作用于同一属性值
+        FieldFormatter<String, String> upperCase = new FieldFormatter<String, String>() {
+            @Override
+            public boolean support(Field field, Object value) {
+                return field.getName().equals("userName");
+            }
+
+            @Override
+            public String format(String s) {
+                return s.toUpperCase();
+            }
+        };
+        FieldFormatter<String, String> prefix = new FieldFormatter<String, String>() {
+            @Override
+            public boolean support(Field field, Object value) {
+                return value instanceof String && ((String)value).startsWith("USER");
+            }
+
+            @Override
+            public String format(String s) {
+                return "#" + s;
+            }
+        };
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long count = ExcelMappingProcessor.populateData(newTemplate(), models.iterator(), 2, 50, output, upperCase, prefix);
+        assertEquals(300, count);
+
+        Excel excel = new Excel(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(302, excel.getPhysicalNumberOfRows());
+        assertEquals("用户信息", excel.getCellString(0, 0));
+        assertEquals("用户名", excel.getCellString(1, 1));
+        assertEquals(1, excel.getCellInt(2, 0));
+        assertEquals("#USER1", excel.getCellString(2, 1));
+        assertEquals(300, excel.getCellInt(301, 0));
+        assertEquals("#USER300", excel.getCellString(301, 1));
+        assertEquals("20", excel.getCellString(301, 2));
+    }
+
+    @Test
+    public void testStreamingExportOverlapTemplate() throws Exception {
+        List<ExcelDataModel> models = new ArrayList<>();
+        models.add(new ExcelDataModel());
+        try {
+            ExcelMappingProcessor.populateData(newTemplate(), models.iterator(), 1, 50, new ByteArrayOutputStream());
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("重叠"));
+        }
+    }
+
+    /**
+     * 两行标题的XLSX模板
+     *
+     * @return
+     */
+    private static Excel newTemplate() {
+        Excel template = new Excel(true);
+        template.setCell(0, 0, "用户信息");
+        String[] titles = {"ID", "用户名", "年龄"};
+        for (int i = 0; i < titles.length; i++) {
+            template.setCell(1, i, titles[i]);
+        }
+        return template;
+    }
+
+    private static byte[] rewriteSheet(byte[] xlsx, String entryName, UnaryOperator<String> rewriter) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(xlsx));
+             ZipOutputStream zout = new ZipOutputStream(output)) {
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = zin.read(buffer)) > 0) {
+                    data.write(buffer, 0, n);
+                }
+                byte[] bytes = data.toByteArray();
+                if (entry.getName().equals(entryName)) {
+                    bytes = rewriter.apply(new String(bytes, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+                }
+                zout.putNextEntry(new ZipEntry(entry.getName()));
+                zout.write(bytes);
+                zout.closeEntry();
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @ExcelMapping(sheetAt = 1, titleRow = 0, dataRow = 1)
+    public static class SecondSheetModel implements PropertyInitializer<SecondSheetModel> {
+
+        @ExcelColumn(value = Column.A, key = true)
+        private Integer id;
+
+        @ExcelColumn(value = Column.B)
+        private String userName;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+
+        @Override
+        public SecondSheetModel initProperties() {
+            return new SecondSheetModel();
+        }
+    }
+
+}
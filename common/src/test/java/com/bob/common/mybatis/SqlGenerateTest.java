@@ -2,11 +2,16 @@ package com.bob.common.mybatis;
 
 import java.time.LocalDate;
 
+import com.bob.common.utils.mybatis.statement.HumpToUnderLineFormatter;
 import com.bob.common.utils.mybatis.statement.MybatisEntity;
 import com.bob.common.utils.mybatis.statement.SqlProvider;
+import com.bob.common.utils.mybatis.statement.TableMetadata;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
 /**
  * Mysql基于注解形式的sql语句生成测试
  *
@@ -53,4 +58,25 @@ public class SqlGenerateTest {
         System.out.println(sql);
     }
 
+    @Test
+    public void testCachedByNullMask() {
+        String sql = sqlProvider.insert(mybatisEntity);
+        assertSame(sql, new SqlProvider().insert(mybatisEntity));
+        mybatisEntity.setAge(null);
+        mybatisEntity.setDate(null);
+        mybatisEntity.setUserAdressNumber(null);
+        assertEquals(" DELETE FROM MYBATIS_ENTITY WHERE  ID=#{id} AND USER_NAME=#{name} ", sqlProvider.delete(mybatisEntity));
+        assertEquals(" UPDATE MYBATIS_ENTITY SET ID=#{id},USER_NAME=#{name} WHERE ID =#{id}", sqlProvider.update(mybatisEntity));
+    }
+
+    @Test
+    public void testTableMetadata() {
+        TableMetadata metadata = new HumpToUnderLineFormatter().getTableMetadata(MybatisEntity.class);
+        assertEquals("MYBATIS_ENTITY", metadata.getTableName());
+        assertEquals("ID", metadata.getKeyColumnName());
+        // 先属性后getter,按声明顺序
+        assertEquals("ID,USER_NAME,AGE,ADRESS_NUMBER,CUR_DATE", metadata.getColumnList());
+        assertSame(metadata, new HumpToUnderLineFormatter().getTableMetadata(MybatisEntity.class));
+    }
+
 }
@@ -0,0 +1,42 @@
+package com.bob.common.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 耗时直方图测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-25 11:00
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long micros : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, 1L << 40}) {
+            int index = LatencyHistogram.indexOf(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(index));
+            // 相对误差不超过1/16
+            assertTrue(LatencyHistogram.upperBoundOf(index) - micros <= micros / 16);
+            assertTrue(index == 0 || micros > LatencyHistogram.upperBoundOf(index - 1));
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getPercentileMillis(0.5), 500 / 16.0);
+        assertEquals(990, histogram.getPercentileMillis(0.99), 990 / 16.0);
+        assertEquals(1000, histogram.getPercentileMillis(1), 0.001);
+        assertEquals(500.5, histogram.getMeanMillis(), 0.001);
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.bob.common.utils.excelmapping;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import com.bob.common.excelmapping.ExcelDataModel;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Excel基准测试的数据夹具,按{@link ExcelDataModel}的列布局生成XLS,XLSX文件
+ * 生成的文件缓存在临时目录,同一夹具只生成一次;每{@link #ERROR_INTERVAL}行中有一行年龄非数字,用于覆盖错误标记路径
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 10:00
+ */
+public final class ExcelBenchmarkFixtures {
+
+    /**
+     * 出错行的间隔
+     */
+    public static final int ERROR_INTERVAL = 100;
+
+    private static final String[] TITLES = {"ID", "用户名", "年龄", "薪水", "生日", "电话"};
+
+    private ExcelBenchmarkFixtures() {
+    }
+
+    /**
+     * 基准测试的数据规模,XLS单页最多65536行,因此XLS只提供到6万行
+     */
+    public enum Fixture {
+
+        XLS_1K(false, 1000),
+
+        XLS_60K(false, 60000),
+
+        XLSX_1K(true, 1000),
+
+        XLSX_100K(true, 100000),
+
+        XLSX_1M(true, 1000000);
+
+        private final boolean xlsx;
+        private final int rows;
+
+        Fixture(boolean xlsx, int rows) {
+            this.xlsx = xlsx;
+            this.rows = rows;
+        }
+
+        public boolean isXlsx() {
+            return xlsx;
+        }
+
+        /**
+         * @return 数据行数,不含标题行
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * 获取夹具文件,不存在时生成
+         *
+         * @return
+         * @throws IOException
+         */
+        public synchronized File getFile() throws IOException {
+            File file = new File(System.getProperty("java.io.tmpdir"), "excel-benchmark-" + name().toLowerCase() + (xlsx ? ".xlsx" : ".xls"));
+            if (!file.exists()) {
+                File temp = new File(file.getPath() + ".tmp");
+                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(temp))) {
+                    writeFixture(xlsx, rows, output);
+                }
+                if (!temp.renameTo(file)) {
+                    throw new IOException("生成基准测试夹具[" + file + "]失败");
+                }
+            }
+            return file;
+        }
+    }
+
+    /**
+     * 写入夹具数据,XLSX以SXSSF流式写入,百万行也不会占满内存
+     *
+     * @param xlsx
+     * @param rows
+     * @param output
+     * @throws IOException
+     */
+    private static void writeFixture(boolean xlsx, int rows, OutputStream output) throws IOException {
+        Workbook workbook = xlsx ? new SXSSFWorkbook(SXSSFWorkbook.DEFAULT_WINDOW_SIZE) : new HSSFWorkbook();
+        try {
+            Sheet sheet = workbook.createSheet();
+            Row titleRow = sheet.createRow(0);
+            for (int i = 0; i < TITLES.length; i++) {
+                titleRow.createCell(i).setCellValue(TITLES[i]);
+            }
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+            Date birthday = birthday();
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i);
+                row.createCell(1).setCellValue("user" + i);
+                if (i % ERROR_INTERVAL == 0) {
+                    row.createCell(2).setCellValue("abc");
+                } else {
+                    row.createCell(2).setCellValue(20 + i % 40);
+                }
+                row.createCell(3).setCellValue(1000.5 * (i % 1000));
+                Cell cell = row.createCell(4);
+                cell.setCellValue(birthday);
+                cell.setCellStyle(dateStyle);
+                row.createCell(5).setCellValue("1875810776" + i % 10);
+            }
+            workbook.write(output);
+        } finally {
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook)workbook).dispose();
+            }
+        }
+    }
+
+    /**
+     * 生成待导出的Model
+     *
+     * @param rows
+     * @return
+     */
+    public static List<ExcelDataModel> createModels(int rows) {
+        Date birthday = birthday();
+        List<ExcelDataModel> models = new ArrayList<ExcelDataModel>(rows);
+        for (int i = 1; i <= rows; i++) {
+            ExcelDataModel model = new ExcelDataModel();
+            model.setId(i);
+            model.setUserName("user" + i);
+            model.setAge(20 + i % 40);
+            model.setSalary(1000.5 * (i % 1000));
+            model.setBirthday(birthday);
+            model.setTelephone("1875810776" + i % 10);
+            models.add(model);
+        }
+        return models;
+    }
+
+    private static Date birthday() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(1990, Calendar.MAY, 20);
+        return calendar.getTime();
+    }
+
+    /**
+     * 只统计字节数的输出流,避免导出基准测试中混入磁盘IO
+     */
+    public static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+}
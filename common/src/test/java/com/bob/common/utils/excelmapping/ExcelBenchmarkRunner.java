@@ -0,0 +1,26 @@
+package com.bob.common.utils.excelmapping;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行excelmapping下所有的基准测试,并开启GC分析器
+ * 每行分配的字节数 = gc.alloc.rate.norm(每次操作分配的字节数) / 夹具行数;
+ * 命令行参数与JMH一致,如"-p fixture=XLSX_1K -wi 1 -i 1"可只跑小数据量
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 12:00
+ */
+public class ExcelBenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(ExcelBenchmarkRunner.class.getPackage().getName() + ".Excel.*Benchmark")
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.bob.common.utils.excelmapping;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link Excel#getCellValue(Cell)}按单元格类型的基准测试,同时给出XLS与XLSX的差异
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 11:20
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExcelCellReadBenchmark {
+
+    private static final int CELL_COUNT = 1000;
+
+    /**
+     * 单元格类型
+     */
+    public enum CellKind {
+        NUMERIC, STRING, DATE, BOOLEAN, FORMULA, BLANK
+    }
+
+    @Param({"NUMERIC", "STRING", "DATE", "BOOLEAN", "FORMULA", "BLANK"})
+    private CellKind cellKind;
+
+    @Param({"true", "false"})
+    private boolean xlsx;
+
+    private Excel excel;
+    private Cell[] cells;
+
+    @Setup
+    public void setup() {
+        excel = new Excel(xlsx);
+        CellStyle dateStyle = excel.createCellStyle();
+        dateStyle.setDataFormat(excel.createDataFormat().getFormat("yyyy-mm-dd"));
+        FormulaEvaluator evaluator = excel.getWorkbook().getCreationHelper().createFormulaEvaluator();
+        Calendar calendar = Calendar.getInstance();
+        cells = new Cell[CELL_COUNT];
+        for (int i = 0; i < CELL_COUNT; i++) {
+            switch (cellKind) {
+                case NUMERIC:
+                    cells[i] = excel.setCell(i, 0, 1000.5 * i);
+                    break;
+                case STRING:
+                    cells[i] = excel.setCell(i, 0, "user" + i);
+                    break;
+                case DATE:
+                    cells[i] = excel.setCell(i, 0, calendar);
+                    cells[i].setCellStyle(dateStyle);
+                    break;
+                case BOOLEAN:
+                    cells[i] = excel.setCell(i, 0, i % 2 == 0);
+                    break;
+                case FORMULA:
+                    cells[i] = excel.setCellBlank(i, 0);
+                    cells[i].setCellFormula(i + "*2");
+                    evaluator.evaluateFormulaCell(cells[i]);
+                    break;
+                default:
+                    cells[i] = excel.setCellBlank(i, 0);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELL_COUNT)
+    public void getCellValue(Blackhole blackhole) {
+        for (Cell cell : cells) {
+            blackhole.consume(excel.getCellValue(cell));
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.bob.common.utils.excelmapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import com.bob.common.excelmapping.ExcelDataModel;
+import com.bob.common.utils.excelmapping.ExcelBenchmarkFixtures.CountingOutputStream;
+import com.bob.common.utils.excelmapping.ExcelBenchmarkFixtures.Fixture;
+import com.bob.common.utils.excelmapping.ExcelImportBenchmark.RowCounter;
+import com.bob.common.utils.excelmapping.exception.ErrorIndexExceptionResolver;
+import com.bob.common.utils.excelmapping.exception.ExcelEditorExceptionResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 错误标记路径的基准测试,夹具中每{@link ExcelBenchmarkFixtures#ERROR_INTERVAL}行有一行出错
+ * 对比编辑模式下直接修改Workbook,与记录{@link com.bob.common.utils.excelmapping.exception.ExcelErrorIndex}后生成错误报告的方式,
+ * 每次操作都包含载入,解析及输出错误文件的完整开销
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 11:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExcelErrorMarkingBenchmark {
+
+    @Param({"XLSX_1K", "XLSX_100K"})
+    private Fixture fixture;
+
+    private File file;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = fixture.getFile();
+        content = Files.readAllBytes(file.toPath());
+    }
+
+    /**
+     * 编辑模式,出错单元格添加批注,出错行写入错误信息后输出整个Workbook
+     */
+    @Benchmark
+    public long editorMode(RowCounter counter) throws Exception {
+        Excel excel = new Excel(new ByteArrayInputStream(content));
+        ExcelMappingProcessor<ExcelDataModel> processor = new ExcelMappingProcessor<ExcelDataModel>(excel, ExcelDataModel.class,
+            new ExcelEditorExceptionResolver());
+        processor.process();
+        CountingOutputStream output = new CountingOutputStream();
+        excel.write(output);
+        counter.rows += fixture.getRows();
+        return output.getCount();
+    }
+
+    /**
+     * 记录错误索引,只输出出错行组成的错误文件
+     */
+    @Benchmark
+    public long errorIndexSidecar(RowCounter counter) throws Exception {
+        Excel excel = new Excel(new ByteArrayInputStream(content));
+        ErrorIndexExceptionResolver resolver = new ErrorIndexExceptionResolver();
+        ExcelMappingProcessor<ExcelDataModel> processor = new ExcelMappingProcessor<ExcelDataModel>(excel, ExcelDataModel.class, resolver);
+        processor.process();
+        CountingOutputStream output = new CountingOutputStream();
+        ExcelErrorReportWriter.writeSidecar(ExcelDataModel.class, excel, resolver.getErrorIndex(), output);
+        counter.rows += fixture.getRows();
+        return output.getCount();
+    }
+
+    /**
+     * 流式解析记录错误索引,再以流式拷贝的方式输出带错误信息栏的原文件
+     */
+    @Benchmark
+    public long errorIndexAnnotatedCopy(RowCounter counter) throws Exception {
+        ErrorIndexExceptionResolver resolver = new ErrorIndexExceptionResolver();
+        StreamingExcelMappingProcessor<ExcelDataModel> processor = new StreamingExcelMappingProcessor<ExcelDataModel>(file,
+            ExcelDataModel.class, resolver);
+        processor.process(instance -> {
+        });
+        CountingOutputStream output = new CountingOutputStream();
+        ExcelErrorReportWriter.writeAnnotatedCopy(ExcelDataModel.class, file, resolver.getErrorIndex(), output);
+        counter.rows += fixture.getRows();
+        return output.getCount();
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.bob.common.utils.excelmapping;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.bob.common.excelmapping.ExcelDataModel;
+import com.bob.common.utils.excelmapping.ExcelBenchmarkFixtures.CountingOutputStream;
+import com.bob.common.utils.excelmapping.ExcelBenchmarkFixtures.Fixture;
+import com.bob.common.utils.excelmapping.ExcelImportBenchmark.RowCounter;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Excel导出的基准测试,对比{@link ExcelMappingProcessor#populateData(Excel, List, Integer, FieldFormatter...)}
+ * 与基于SXSSF的流式导出,导出结果只统计字节数,不写磁盘
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 11:00
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExcelExportBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class UserModelOutput {
+
+        @Param({"XLS_1K", "XLS_60K", "XLSX_1K", "XLSX_100K"})
+        private Fixture fixture;
+
+        private List<ExcelDataModel> models;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            models = ExcelBenchmarkFixtures.createModels(fixture.getRows());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StreamingOutput {
+
+        @Param({"XLSX_1K", "XLSX_100K", "XLSX_1M"})
+        private Fixture streamingFixture;
+
+        private List<ExcelDataModel> models;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            models = ExcelBenchmarkFixtures.createModels(streamingFixture.getRows());
+        }
+    }
+
+    @Benchmark
+    public long populateData(UserModelOutput output, RowCounter counter) throws Exception {
+        Excel excel = ExcelMappingProcessor.populateData(new Excel(output.fixture.isXlsx()), output.models, 1);
+        CountingOutputStream ostream = new CountingOutputStream();
+        excel.write(ostream);
+        counter.rows += output.models.size();
+        return ostream.getCount();
+    }
+
+    @Benchmark
+    public long populateDataStreaming(StreamingOutput output, RowCounter counter) throws Exception {
+        CountingOutputStream ostream = new CountingOutputStream();
+        ExcelMappingProcessor.populateData(null, output.models.iterator(), 1, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, ostream);
+        counter.rows += output.models.size();
+        return ostream.getCount();
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.bob.common.utils.excelmapping;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import com.bob.common.excelmapping.ExcelDataModel;
+import com.bob.common.utils.excelmapping.ExcelBenchmarkFixtures.Fixture;
+import com.bob.common.utils.excelmapping.exception.ErrorIndexExceptionResolver;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Excel导入的基准测试,覆盖{@link ExcelMappingProcessor#process()},列式解析及{@link StreamingExcelMappingProcessor}
+ * 吞吐量以每秒处理的行数(rows)给出,每行分配的字节数为gc.alloc.rate.norm除以夹具行数,见{@link ExcelBenchmarkRunner}
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-14 10:30
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExcelImportBenchmark {
+
+    /**
+     * 整个Workbook载入内存的解析方式,百万行的XLSX需要的内存过大,默认不参与
+     */
+    @State(Scope.Benchmark)
+    public static class UserModelInput {
+
+        @Param({"XLS_1K", "XLS_60K", "XLSX_1K", "XLSX_100K"})
+        private Fixture fixture;
+
+        private byte[] content;
+        private Excel excel;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            content = Files.readAllBytes(fixture.getFile().toPath());
+            excel = new Excel(new ByteArrayInputStream(content));
+        }
+    }
+
+    /**
+     * 基于SAX的流式解析,只支持XLSX
+     */
+    @State(Scope.Benchmark)
+    public static class StreamingInput {
+
+        @Param({"XLSX_1K", "XLSX_100K", "XLSX_1M"})
+        private Fixture streamingFixture;
+
+        private File file;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            file = streamingFixture.getFile();
+        }
+    }
+
+    /**
+     * 以行数作为辅助计数器,JMH按时间归一化后即为每秒处理的行数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RowCounter {
+
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+    /**
+     * 只包含映射的开销,Workbook已预先载入
+     */
+    @Benchmark
+    public Object process(UserModelInput input, RowCounter counter) throws Exception {
+        ExcelMappingProcessor<ExcelDataModel> processor = new ExcelMappingProcessor<ExcelDataModel>(input.excel, ExcelDataModel.class,
+            new ErrorIndexExceptionResolver());
+        processor.process();
+        counter.rows += input.fixture.getRows();
+        return processor.getCorrectResult();
+    }
+
+    /**
+     * 包含Workbook载入及映射的开销
+     */
+    @Benchmark
+    public Object loadAndProcess(UserModelInput input, RowCounter counter) throws Exception {
+        Excel excel = new Excel(new ByteArrayInputStream(input.content));
+        ExcelMappingProcessor<ExcelDataModel> processor = new ExcelMappingProcessor<ExcelDataModel>(excel, ExcelDataModel.class,
+            new ErrorIndexExceptionResolver());
+        processor.process();
+        counter.rows += input.fixture.getRows();
+        return processor.getCorrectResult();
+    }
+
+    @Benchmark
+    public Object processColumnar(UserModelInput input, RowCounter counter) throws Exception {
+        ExcelMappingProcessor<ExcelDataModel> processor = new ExcelMappingProcessor<ExcelDataModel>(input.excel, ExcelDataModel.class,
+            new ErrorIndexExceptionResolver());
+        processor.processColumnar();
+        counter.rows += input.fixture.getRows();
+        return processor.getColumnarResult();
+    }
+
+    /**
+     * 流式解析,解析结果逐行交给消费者,不在内存中保留
+     */
+    @Benchmark
+    public void processStreaming(StreamingInput input, RowCounter counter, Blackhole blackhole) throws Exception {
+        StreamingExcelMappingProcessor<ExcelDataModel> processor = new StreamingExcelMappingProcessor<ExcelDataModel>(input.file,
+            ExcelDataModel.class, new ErrorIndexExceptionResolver());
+        processor.process(blackhole::consume);
+        counter.rows += input.streamingFixture.getRows();
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.bob.common.utils.excelmapping;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import com.bob.common.excelmapping.ExcelDataModel;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * 逐行映射的基准测试,对比反射逐个判断类型的方式与{@link RowBinder}预先绑定的方式
+ * 反射方式保留了引入{@link RowBinder}之前逐个单元格判断属性类型的实现,见{@link #getCellValue(Excel, Cell, Field, ExcelColumn)}
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-08 14:30
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExcelRowBindingBenchmark {
+
+    @Param({"1000"})
+    private int rows;
+
+    private Excel excel;
+    private Field[] fields;
+    private ExcelColumn[] excelColumns;
+    private RowBinder rowBinder;
+
+    @Setup
+    public void setup() {
+        LinkedHashMap<Field, ExcelColumn> mappings = ExcelMappingProcessor.getExcelMapping(ExcelDataModel.class);
+        fields = new Field[mappings.size()];
+        excelColumns = new ExcelColumn[mappings.size()];
+        int i = 0;
+        for (Entry<Field, ExcelColumn> entry : mappings.entrySet()) {
+            fields[i] = entry.getKey();
+            excelColumns[i++] = entry.getValue();
+        }
+        rowBinder = ExcelMappingProcessor.getRowBinder(ExcelDataModel.class);
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(1990, Calendar.MAY, 20);
+        Date birthday = calendar.getTime();
+        excel = new Excel(true);
+        for (int row = 0; row < rows; row++) {
+            excel.setCell(row, 0, row);
+            excel.setCell(row, 1, "user" + row);
+            excel.setCell(row, 2, 20 + row % 40);
+            excel.setCell(row, 3, 1000.5 * row);
+            excel.setCell(row, 4, birthday);
+            excel.setCell(row, 5, "1875810776" + row);
+        }
+    }
+
+    @Benchmark
+    public void reflective(Blackhole blackhole) {
+        for (Row row : excel.getSheet()) {
+            ExcelDataModel model = new ExcelDataModel();
+            for (int i = 0; i < fields.length; i++) {
+                Object value = getCellValue(excel, excel.getCell(row, excelColumns[i].value().value), fields[i], excelColumns[i]);
+                fields[i].setAccessible(true);
+                ReflectionUtils.setField(fields[i], model, value);
+            }
+            blackhole.consume(model);
+        }
+    }
+
+    @Benchmark
+    public void rowBinder(Blackhole blackhole) {
+        for (Row row : excel.getSheet()) {
+            ExcelDataModel model = new ExcelDataModel();
+            for (int i = 0; i < rowBinder.size(); i++) {
+                RowBinder.ColumnBinding binding = rowBinder.get(i);
+                binding.bind(model, binding.resolve(excel.getCellValue(excel.getCell(row, binding.getColumn()))));
+            }
+            blackhole.consume(model);
+        }
+    }
+
+    /**
+     * 根据对象属性类型解析ExcelColumn值,即引入{@link RowBinder}之前ExcelMappingProcessor的实现
+     * 基准测试的映射类不含属性转换器,省略了转换器的查找及转换
+     *
+     * @param excel
+     * @param cell
+     * @param field
+     * @param excelColumn
+     * @return
+     */
+    private static Object getCellValue(Excel excel, Cell cell, Field field, ExcelColumn excelColumn) {
+        // 1.
+        Class<?> fieldType = field.getType();
+        Object value = excel.getCellValue(cell);
+        Object strValue = excel.getCellString(cell);
+        if (null == value || null == strValue) {
+            Assert.state(!excelColumn.key() && !excelColumn.notNull(), "解析{" + excelColumn.value().name + "}列错误，值为空");
+            return value;
+        }
+        // 2.
+        if (fieldType.isAssignableFrom(String.class)) {
+            value = strValue;
+        } else if (fieldType.isAssignableFrom(Integer.class)) {
+            value = excel.getCellInteger(cell, null);
+            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[整型]类型");
+        } else if (fieldType.isAssignableFrom(Long.class)) {
+            value = excel.getCellLong(cell, null);
+            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[长整型]类型");
+        } else if (fieldType.isAssignableFrom(Boolean.class)) {
+            value = excel.getCellBoolean(cell);
+            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[布尔]类型");
+        } else if (fieldType.isAssignableFrom(Date.class)) {
+            value = excel.getCellDate(cell);
+            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[日期]类型");
+        } else if (fieldType.isAssignableFrom(BigDecimal.class)) {
+            value = excel.getCellDecimal(cell);
+            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[数值]类型");
+        } else if (fieldType.isAssignableFrom(Double.class)) {
+            value = excel.getCellDecimal(cell);
+            Assert.notNull(value, "解析{" + strValue + "}错误，值应为[Double]类型");
+            value = ((BigDecimal)value).doubleValue();
+        } else {
+            throw new IllegalArgumentException("解析{" + strValue + "}错误，暂不支持[" + field.getType().getName() + "]类型");
+        }
+        return value;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ExcelRowBindingBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
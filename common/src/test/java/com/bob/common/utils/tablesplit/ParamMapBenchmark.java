@@ -0,0 +1,160 @@
+package com.bob.common.utils.tablesplit;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * 分表写入参数构建的基准测试,对比原先Gson序列化再以JSONObject解析的方式与{@link RecordParamExtractor}
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-17 15:00
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParamMapBenchmark {
+
+    static final String DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    private static final ConcurrentMap<Class<?>, Map<String, Class<?>>> FIELD_TO_TYPE_MAPPINGS = new ConcurrentHashMap<Class<?>, Map<String, Class<?>>>();
+
+    private Gson gson;
+    private RecordParamExtractor extractor;
+    private HistoryRecord record;
+
+    @Setup
+    public void setup() {
+        gson = new GsonBuilder().setDateFormat(DATE_PATTERN).create();
+        extractor = new RecordParamExtractor(HistoryRecord.class, DATE_PATTERN, gson);
+        record = HistoryRecord.sample();
+    }
+
+    @Benchmark
+    public Map<String, Object> jsonRoundTrip() {
+        return legacyParamMap(gson, record);
+    }
+
+    @Benchmark
+    public Map<String, Object> extractor() {
+        return extractor.extract(record, 1);
+    }
+
+    /**
+     * 原先的参数构建方式,属性类型映射同样按类型缓存
+     */
+    static Map<String, Object> legacyParamMap(Gson gson, Object object) {
+        Map<String, Object> paramMap = new JSONObject(gson.toJson(object)).toMap();
+        Class<?> clazz = object.getClass();
+        Map<String, Class<?>> name2TypeTable = FIELD_TO_TYPE_MAPPINGS.computeIfAbsent(clazz, key -> {
+            Map<String, Class<?>> mapping = new HashMap<String, Class<?>>();
+            Set<Field> fields = new HashSet<Field>();
+            for (Class<?> current = key; current != Object.class; current = current.getSuperclass()) {
+                fields.addAll(Arrays.asList(current.getDeclaredFields()));
+            }
+            for (Field field : fields) {
+                mapping.put(field.getName(), field.getType());
+            }
+            return mapping;
+        });
+        for (Entry<String, Object> entry : paramMap.entrySet()) {
+            String fieldName = entry.getKey();
+            Class<?> fieldType = name2TypeTable.get(fieldName);
+            if (String.class == fieldType || Date.class == fieldType) {
+                entry.setValue("\'" + entry.getValue() + "\'");
+            }
+            if (Boolean.class == fieldType) {
+                entry.setValue((Boolean)entry.getValue() ? 1 : 0);
+            }
+            if (Collection.class.isAssignableFrom(fieldType) || fieldType.isArray()) {
+                Field field = ReflectionUtils.findField(clazz, fieldName);
+                field.setAccessible(true);
+                Object value = ReflectionUtils.getField(field, object);
+                if (String.class == ResolvableType.forField(field).resolveGeneric(0)) {
+                    List<String> strings = new ArrayList<>();
+                    for (Object item : (Collection<?>)value) {
+                        strings.add("\'" + String.valueOf(item) + "\'");
+                    }
+                    value = strings;
+                }
+                entry.setValue(value);
+            }
+        }
+        return paramMap;
+    }
+
+    /**
+     * 审计历史记录
+     */
+    static class HistoryRecord {
+
+        private Long id;
+        private Date gmtModified;
+        private String modifier;
+        private String appCode;
+        private Long instanceId;
+        private Long spaceId;
+        private String attrName;
+        private String oldValue;
+        private String newValue;
+        private Integer category;
+        private Boolean isDelete;
+        private List<String> attrCodes;
+        private String messageId;
+
+        static HistoryRecord sample() {
+            HistoryRecord record = new HistoryRecord();
+            record.id = 10086L;
+            record.gmtModified = new Date(1533000000000L);
+            record.modifier = "wb-jjb318191";
+            record.appCode = "adminmap";
+            record.instanceId = 2048L;
+            record.spaceId = 4096L;
+            record.attrName = "面积";
+            record.oldValue = "100";
+            record.newValue = "120";
+            record.category = 1;
+            record.isDelete = false;
+            record.attrCodes = Arrays.asList("area", "size");
+            return record;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ParamMapBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+    }
+
+}
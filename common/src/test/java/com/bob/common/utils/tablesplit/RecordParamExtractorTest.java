@@ -0,0 +1,36 @@
+package com.bob.common.utils.tablesplit;
+
+import java.util.Map;
+
+import com.bob.common.utils.tablesplit.ParamMapBenchmark.HistoryRecord;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 分表参数提取测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-17 15:30
+ */
+public class RecordParamExtractorTest {
+
+    private final Gson gson = new GsonBuilder().setDateFormat(ParamMapBenchmark.DATE_PATTERN).create();
+
+    @Test
+    public void testSameAsJsonRoundTrip() {
+        HistoryRecord record = HistoryRecord.sample();
+        Map<String, Object> expected = ParamMapBenchmark.legacyParamMap(gson, record);
+        Map<String, Object> actual = new RecordParamExtractor(HistoryRecord.class, ParamMapBenchmark.DATE_PATTERN, gson).extract(record, 1);
+        // 数值按字符串拼入SQL,比较字符串形式
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String key : expected.keySet()) {
+            assertEquals(key, String.valueOf(expected.get(key)), String.valueOf(actual.get(key)));
+        }
+        assertFalse(actual.containsKey("messageId"));
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.bob.common.utils.tablesplit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分表并发查询测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-16 15:00
+ */
+public class ShardQueryExecutorTest {
+
+    private final ShardQueryExecutor executor = new ShardQueryExecutor(2);
+
+    /**
+     * 模拟三张分表,数据按值升序
+     */
+    private final Map<String, List<Integer>> tableData = new HashMap<String, List<Integer>>();
+
+    {
+        tableData.put("t_0", Arrays.asList(1, 4, 7, 10));
+        tableData.put("t_1", Arrays.asList(2, 5, 8));
+        tableData.put("t_2", Arrays.asList(3, 6, 9, 11, 12));
+    }
+
+    @After
+    public void doAfter() {
+        executor.destroy();
+    }
+
+    @Test
+    public void testQueryPage() throws Exception {
+        List<Integer> limits = new ArrayList<Integer>();
+        List<Integer> page = executor.query(paramMap(3, 4), Comparator.naturalOrder(), paramMap -> {
+            synchronized (limits) {
+                limits.add((Integer)paramMap.get("limit"));
+            }
+            assertEquals(0, paramMap.get("startRow"));
+            List<Integer> rows = tableData.get(paramMap.get("table"));
+            return rows.subList(0, Math.min(rows.size(), (Integer)paramMap.get("limit")));
+        });
+        assertEquals(Arrays.asList(4, 5, 6, 7), page);
+        // 每张分表只查询startRow+limit行
+        assertEquals(Arrays.asList(7, 7, 7), limits);
+    }
+
+    @Test
+    public void testQueryAll() throws Exception {
+        Map<String, Object> paramMap = paramMap(0, 0);
+        paramMap.remove("startRow");
+        paramMap.remove("limit");
+        List<Integer> all = executor.query(paramMap, Comparator.naturalOrder(), map -> tableData.get(map.get("table")));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12), all);
+        assertTrue(executor.query(paramMap(20, 5), Comparator.<Integer>naturalOrder(), map -> tableData.get(map.get("table"))).isEmpty());
+    }
+
+    private Map<String, Object> paramMap(int startRow, int limit) {
+        Map<String, Object> paramMap = new HashMap<String, Object>();
+        paramMap.put("tables", Arrays.asList("t_0", "t_1", "t_2"));
+        paramMap.put("startRow", startRow);
+        paramMap.put("limit", limit);
+        return paramMap;
+    }
+
+}
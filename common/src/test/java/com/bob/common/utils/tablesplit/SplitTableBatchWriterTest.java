@@ -0,0 +1,201 @@
+package com.bob.common.utils.tablesplit;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.bob.common.utils.mybatis.statement.Column;
+import com.bob.common.utils.mybatis.statement.Table;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 分表批量写入测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-18 11:00
+ */
+public class SplitTableBatchWriterTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final long now = System.currentTimeMillis();
+    private Connection connection;
+    private TableSplittingManager manager;
+
+    @Before
+    public void doBefore() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:split_writer;DB_CLOSE_DELAY=-1");
+        createTable(0);
+        manager = new TableSplittingManager();
+        manager.setSplittingService(new SplittingService());
+        manager.setPreCreateCount(0);
+        manager.afterPropertiesSet();
+    }
+
+    @After
+    public void doAfter() throws SQLException {
+        manager.destroy();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        List<Record> records = new ArrayList<Record>();
+        for (int i = 0; i < 25; i++) {
+            records.add(new Record(new Date(now + (i % 2 == 0 ? 0 : 40 * DAY)), "name" + i, i % 5 == 0 ? null : i % 3 == 0));
+        }
+        SplitTableBatchWriter writer = new SplitTableBatchWriter(manager);
+        // remark未注册,不写入
+        Map<String, String> columns = new LinkedHashMap<String, String>();
+        columns.put("gmtModified", "gmt_modified");
+        columns.put("name", "name");
+        columns.put("isDeleted", "is_deleted");
+        writer.registerColumns(Record.class, columns);
+        writer.setBatchSize(4);
+        writer.setRowsPerStatement(3);
+        assertEquals(25, writer.write(connection, records));
+        assertEquals(13, count("SELECT COUNT(*) FROM t_0"));
+        assertEquals(12, count("SELECT COUNT(*) FROM t_1"));
+        // Boolean以1,0写入,null的列使用数据库默认值
+        assertEquals(1, count("SELECT is_deleted FROM t_0 WHERE name = 'name6'"));
+        assertEquals(0, count("SELECT is_deleted FROM t_0 WHERE name = 'name2'"));
+        assertEquals(9, count("SELECT is_deleted FROM t_0 WHERE name = 'name0'"));
+        assertEquals(0, writer.write(connection, new ArrayList<Record>()));
+    }
+
+    @Test
+    public void testWriteTableColumns() throws Exception {
+        SplitTableBatchWriter writer = new SplitTableBatchWriter(manager);
+        assertEquals(2, writer.write(connection, Arrays.asList(new TableRecord(new Date(now), "name0"), new TableRecord(new Date(now), "name1"))));
+        assertEquals(2, count("SELECT COUNT(*) FROM t_0 WHERE is_deleted = 9"));
+        try {
+            writer.write(connection, Arrays.asList(new Record(new Date(now), "name2", true)));
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("@Table"));
+        }
+    }
+
+    @Test
+    public void testRejectAllNullColumns() throws Exception {
+        SplitTableBatchWriter writer = new SplitTableBatchWriter(manager);
+        Map<String, String> columns = new LinkedHashMap<String, String>();
+        columns.put("name", "name");
+        columns.put("isDeleted", "is_deleted");
+        writer.registerColumns(Record.class, columns);
+        try {
+            writer.write(connection, Arrays.asList(new Record(new Date(now), "name0", true), new Record(new Date(now), null, null)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains(Record.class.getName()));
+        }
+        // 校验不通过时不写入任何记录
+        assertEquals(0, count("SELECT COUNT(*) FROM t_0"));
+    }
+
+    private void createTable(int order) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE t_" + order
+                + " (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(32), is_deleted INT DEFAULT 9, gmt_modified TIMESTAMP)");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static class Record {
+
+        private Date gmtModified;
+        private String name;
+        private Boolean isDeleted;
+        private String remark = "not a column";
+
+        Record(Date gmtModified, String name, Boolean isDeleted) {
+            this.gmtModified = gmtModified;
+            this.name = name;
+            this.isDeleted = isDeleted;
+        }
+    }
+
+    @Table(value = "t", key = "id")
+    private static class TableRecord {
+
+        private Integer id;
+        @Column
+        private Date gmtModified;
+        @Column
+        private String name;
+        private String remark = "not a column";
+
+        TableRecord(Date gmtModified, String name) {
+            this.gmtModified = gmtModified;
+            this.name = name;
+        }
+    }
+
+    private class SplittingService implements TableSplittingService {
+
+        @Override
+        public int getSplitIntervalInMonth() {
+            return 1;
+        }
+
+        @Override
+        public String getDateFormatPattern() {
+            return "yyyy-MM-dd HH:mm:ss";
+        }
+
+        @Override
+        public List<Date> selectTimeEndpoint(int order) {
+            if (order > 0) {
+                throw new IllegalStateException("分表不存在");
+            }
+            return Arrays.asList(new Date(now - 10 * DAY), new Date(now - DAY));
+        }
+
+        @Override
+        public String generateTableNameByOrder(int order) {
+            return "t_" + order;
+        }
+
+        @Override
+        public void createSplitTable(int order) {
+            createTable(order);
+        }
+
+        @Override
+        public Date extractInsertBasis(Object obj) {
+            return obj instanceof Record ? ((Record)obj).gmtModified : ((TableRecord)obj).gmtModified;
+        }
+
+        @Override
+        public List<Date> getQueryTimeInterval(Object obj) {
+            return Arrays.asList(null, null);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.bob.common.utils.tablesplit;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import com.bob.common.utils.tablesplit.TableSplittingManager.SplitTable;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 分表区间索引测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-16 11:00
+ */
+public class SplitTableIndexTest {
+
+    /**
+     * t_0:[0,100), t_1:[100,250)结束时间按实际数据延后, t_2:[200,300)
+     */
+    private final SplitTableIndex index = SplitTableIndex.of(Arrays.asList(
+        table(2, 200, 300), table(0, 0, 100), table(1, 100, 250)));
+
+    @Test
+    public void testFind() {
+        assertEquals("t_0", index.find(0).getTableName());
+        assertEquals("t_1", index.find(150).getTableName());
+        // 区间重叠时取起始时间最晚的分表
+        assertEquals("t_2", index.find(220).getTableName());
+        assertNull(index.find(-1));
+        assertNull(index.find(300));
+        assertNull(SplitTableIndex.EMPTY.find(0));
+    }
+
+    @Test
+    public void testFindTableNames() {
+        assertEquals(Arrays.asList("t_0", "t_1", "t_2"), index.findTableNames(null, null));
+        assertEquals(Arrays.asList("t_0", "t_1"), index.findTableNames(100L, 150L));
+        assertEquals(Arrays.asList("t_1", "t_2"), index.findTableNames(240L, null));
+        assertEquals(Collections.singletonList("t_0"), index.findTableNames(null, 99L));
+        assertEquals(Collections.emptyList(), index.findTableNames(301L, 400L));
+    }
+
+    @Test
+    public void testAppend() {
+        SplitTableIndex appended = index.append(table(3, 300, 400));
+        assertEquals(3, appended.getLatestOrder());
+        assertEquals(2, index.getLatestOrder());
+        assertEquals(3, index.size());
+        assertEquals("t_3", appended.find(350).getTableName());
+        assertSame(SplitTableIndex.EMPTY, SplitTableIndex.of(Collections.emptyList()));
+    }
+
+    private static SplitTable table(int order, long start, long end) {
+        return new SplitTable(order, "t_" + order, new Date(start), new Date(end));
+    }
+
+}
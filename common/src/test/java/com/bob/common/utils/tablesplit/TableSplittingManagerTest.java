@@ -0,0 +1,138 @@
+package com.bob.common.utils.tablesplit;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分表预创建及写入路由测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-17 10:00
+ */
+public class TableSplittingManagerTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final long now = System.currentTimeMillis();
+    private final List<Integer> createdOrders = new CopyOnWriteArrayList<Integer>();
+    /**
+     * 已存在的分表数量,t_0有数据,其余分表为空
+     */
+    private int existingTables = 1;
+    private TableSplittingManager manager;
+
+    @Before
+    public void doBefore() throws Exception {
+        manager = new TableSplittingManager();
+        manager.setSplittingService(new SplittingService());
+        manager.setPreCreateCount(2);
+        manager.afterPropertiesSet();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (createdOrders.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @After
+    public void doAfter() {
+        manager.destroy();
+    }
+
+    @Test
+    public void testPreCreate() {
+        assertEquals(Arrays.asList(1, 2), createdOrders);
+        assertEquals("t_0", manager.buildInsertParamMap(new Record(new Date(now))).get("table"));
+        // 下个月的数据写入预创建的分表,不再同步创建
+        assertEquals("t_1", manager.buildInsertParamMap(new Record(new Date(now + 30 * DAY))).get("table"));
+        assertEquals(Arrays.asList(1, 2), createdOrders);
+    }
+
+    @Test
+    public void testInlineCreateWhenBehind() {
+        assertEquals("t_4", manager.buildInsertParamMap(new Record(new Date(now + 130 * DAY))).get("table"));
+        assertEquals(Arrays.asList(1, 2, 3, 4), createdOrders);
+        // 早于所有分表的数据写入当前时间所在的分表
+        assertEquals("t_0", manager.buildInsertParamMap(new Record(new Date(now - 100 * DAY))).get("table"));
+        assertTrue(manager.buildQueryParamMap(new Record(null)).get("tables") instanceof List);
+    }
+
+    @Test
+    public void testRestartWithEmptyPreCreatedTable() throws Exception {
+        manager.destroy();
+        createdOrders.clear();
+        existingTables = 2;
+        manager = new TableSplittingManager();
+        manager.setSplittingService(new SplittingService());
+        manager.setPreCreateCount(1);
+        manager.afterPropertiesSet();
+        // 空的t_1紧接t_0,当前时间的数据仍写入t_0,不会因重启提前进入t_1
+        assertEquals("t_0", manager.buildInsertParamMap(new Record(new Date(now))).get("table"));
+        assertEquals("t_1", manager.buildInsertParamMap(new Record(new Date(now + 25 * DAY))).get("table"));
+        assertTrue(createdOrders.isEmpty());
+    }
+
+    private static class Record {
+
+        private Date gmtModified;
+
+        Record(Date gmtModified) {
+            this.gmtModified = gmtModified;
+        }
+    }
+
+    private class SplittingService implements TableSplittingService {
+
+        @Override
+        public int getSplitIntervalInMonth() {
+            return 1;
+        }
+
+        @Override
+        public String getDateFormatPattern() {
+            return "yyyy-MM-dd HH:mm:ss";
+        }
+
+        @Override
+        public List<Date> selectTimeEndpoint(int order) {
+            if (order >= existingTables) {
+                throw new IllegalStateException("分表不存在");
+            }
+            if (order > 0) {
+                return Collections.emptyList();
+            }
+            return Arrays.asList(new Date(now - 10 * DAY), new Date(now - DAY));
+        }
+
+        @Override
+        public String generateTableNameByOrder(int order) {
+            return "t_" + order;
+        }
+
+        @Override
+        public void createSplitTable(int order) {
+            createdOrders.add(order);
+        }
+
+        @Override
+        public Date extractInsertBasis(Object obj) {
+            return ((Record)obj).gmtModified;
+        }
+
+        @Override
+        public List<Date> getQueryTimeInterval(Object obj) {
+            return Arrays.asList(null, null);
+        }
+    }
+
+}
@@ -0,0 +1,246 @@
+package com.bob.common.utils.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 异步任务管理器去重及合并测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-21 14:30
+ */
+public class AsyncTaskManagerImplTest {
+
+    private static File journal;
+
+    private AnnotationConfigApplicationContext context;
+    private AsyncTaskManager taskManager;
+    private final List<String> executed = new CopyOnWriteArrayList<String>();
+    private final List<String> abandoned = new CopyOnWriteArrayList<String>();
+
+    @Before
+    public void doBefore() throws IOException {
+        journal = File.createTempFile("async-task", ".journal");
+        journal.delete();
+        context = new AnnotationConfigApplicationContext(TaskConfig.class);
+        taskManager = context.getBean(AsyncTaskManager.class);
+    }
+
+    @After
+    public void doAfter() throws IOException {
+        context.close();
+        Files.deleteIfExists(journal.toPath());
+        Files.deleteIfExists(new File(journal.getPath() + ".lock").toPath());
+    }
+
+    @Test
+    public void testCoalesceFollowUps() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch followUpDone = new CountDownLatch(1);
+        taskManager.submit(new TestTask("first", release, null), false);
+        for (int i = 0; i < 5; i++) {
+            taskManager.submit(new TestTask("duplicate-" + i, null, followUpDone), false);
+        }
+        release.countDown();
+        assertTrue(followUpDone.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        // 等待中的重复任务合并为一次,只执行最后提交的
+        assertEquals(2, executed.size());
+        assertEquals("duplicate-4", executed.get(1));
+        assertEquals(4, abandoned.size());
+        AsyncTaskMetrics.TaskTypeSnapshot stats = taskManager.getMetrics().getTaskTypes().get(0);
+        assertEquals(6, stats.getSubmitted());
+        assertEquals(5, stats.getDelayed());
+        assertEquals(4, stats.getAborted());
+        assertEquals(2, stats.getSucceeded());
+        assertEquals(0, stats.getInFlight());
+        assertTrue(stats.getRunMaxMillis() > 0);
+    }
+
+    @Test
+    public void testMetricsMBean() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        taskManager.submit(new TestTask("first", release, null), false);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(AsyncTaskMetrics.OBJECT_NAME);
+        assertEquals(1, server.getAttribute(name, "InFlightCount"));
+        CompositeData[] inFlight = (CompositeData[])server.getAttribute(name, "InFlightTasks");
+        assertEquals("same", inFlight[0].get("taskName"));
+        release.countDown();
+        Thread.sleep(200);
+        CompositeData[] taskTypes = (CompositeData[])server.getAttribute(name, "TaskTypes");
+        assertEquals(1L, taskTypes[0].get("succeeded"));
+    }
+
+    @Test
+    public void testAbortIfExists() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        taskManager.submit(new TestTask("first", release, null), true);
+        taskManager.submit(new TestTask("second", null, null), true);
+        release.countDown();
+        assertEquals(1, abandoned.size());
+    }
+
+    @Test
+    public void testTimeoutIgnoringInterrupt() throws Exception {
+        List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+        CountDownLatch errorReported = new CountDownLatch(1);
+        AsyncTask task = new AsyncTask(new TaskRecord("test", "timeout", 200), new AsyncTaskProcessesAdapter() {
+            @Override
+            public void onError(Throwable throwable) {
+                errors.add(throwable);
+                errorReported.countDown();
+            }
+        }, null) {
+            @Override
+            public Object process() throws Throwable {
+                long deadline = System.currentTimeMillis() + 1000;
+                while (System.currentTimeMillis() < deadline) {
+                    Thread.interrupted();
+                }
+                executed.add("timeout");
+                return null;
+            }
+        };
+        taskManager.submit(task, false);
+        // 任务不响应中断时也在超时后立即回调
+        assertTrue(errorReported.await(800, TimeUnit.MILLISECONDS));
+        Thread.sleep(1200);
+        assertEquals(1, errors.size());
+        assertEquals(1, executed.size());
+        assertTrue(abandoned.isEmpty());
+        AsyncTaskMetrics.TaskTypeSnapshot stats = taskManager.getMetrics().getTaskTypes().get(0);
+        assertEquals(1, stats.getTimeouts());
+        assertEquals(0, stats.getErrors());
+    }
+
+    @Test
+    public void testErrorThrown() throws Exception {
+        CountDownLatch errorReported = new CountDownLatch(1);
+        AsyncTask task = new AsyncTask(new TaskRecord("test", "error", 3000), new AsyncTaskProcessesAdapter() {
+            @Override
+            public void onError(Throwable throwable) {
+                errorReported.countDown();
+            }
+        }, null) {
+            @Override
+            public Object process() throws Throwable {
+                throw new AssertionError("error");
+            }
+        };
+        taskManager.submit(task, false);
+        // Error同样以失败结束,同种任务可以再次执行
+        assertTrue(errorReported.await(1, TimeUnit.SECONDS));
+        assertEquals(1, taskManager.getMetrics().getTaskTypes().get(0).getErrors());
+        assertEquals(0, taskManager.getMetrics().getInFlightCount());
+    }
+
+    @Test
+    public void testRestartWithDefaultStore() throws Exception {
+        File defaultJournal = File.createTempFile("async-task-default", ".journal");
+        defaultJournal.delete();
+        System.setProperty("async.task.journal", defaultJournal.getPath());
+        TimeoutWheel timeoutWheel = new TimeoutWheel(100, 512, Runnable::run);
+        TaskTypeFairExecutor taskExecutor = new TaskTypeFairExecutor(1);
+        try {
+            // 自行创建的任务记录存储在销毁时释放日志锁,同一进程内可以再次创建
+            for (int i = 0; i < 2; i++) {
+                AsyncTaskManagerImpl manager = new AsyncTaskManagerImpl();
+                manager.setTimeoutWheel(timeoutWheel);
+                manager.setTaskExecutor(taskExecutor);
+                manager.initTaskRecordStore();
+                manager.shutdown();
+            }
+        } finally {
+            System.clearProperty("async.task.journal");
+            timeoutWheel.stop();
+            taskExecutor.destroy();
+            Files.deleteIfExists(defaultJournal.toPath());
+            Files.deleteIfExists(new File(defaultJournal.getPath() + ".lock").toPath());
+        }
+    }
+
+    private class TestTask extends AsyncTask {
+
+        private final String name;
+        private final CountDownLatch await;
+        private final CountDownLatch done;
+
+        TestTask(String name, CountDownLatch await, CountDownLatch done) {
+            super(new TaskRecord("test", "same", 3000), null, null);
+            this.name = name;
+            this.await = await;
+            this.done = done;
+            setTaskProcesses(new AsyncTaskProcessesAdapter() {
+                @Override
+                public void onFinished(boolean success) {
+                    if (!success) {
+                        abandoned.add(TestTask.this.name);
+                    } else if (TestTask.this.done != null) {
+                        TestTask.this.done.countDown();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public Object process() throws Throwable {
+            if (await != null) {
+                await.await(5, TimeUnit.SECONDS);
+            }
+            executed.add(name);
+            return null;
+        }
+    }
+
+    @Configuration
+    static class TaskConfig {
+
+        @Bean
+        public ThreadPoolTaskExecutor executor() {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(4);
+            return executor;
+        }
+
+        @Bean
+        public ThreadPoolTaskScheduler scheduler() {
+            return new ThreadPoolTaskScheduler();
+        }
+
+        @Bean
+        public TaskRecordStore taskRecordStore() {
+            FileTaskRecordStore store = new FileTaskRecordStore(journal);
+            store.setSyncOnWrite(false);
+            return store;
+        }
+
+        @Bean
+        public AsyncTaskManager asyncTaskManager() {
+            return new AsyncTaskManagerImpl();
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.bob.common.utils.task;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 文件日志任务记录存储测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-21 14:00
+ */
+public class FileTaskRecordStoreTest {
+
+    private File journal;
+    private FileTaskRecordStore store;
+
+    @Before
+    public void doBefore() throws IOException {
+        journal = File.createTempFile("task-record", ".journal");
+        journal.delete();
+        store = new FileTaskRecordStore(journal);
+        store.setSyncOnWrite(false);
+    }
+
+    @After
+    public void doAfter() throws IOException {
+        store.destroy();
+        Files.deleteIfExists(journal.toPath());
+        Files.deleteIfExists(new File(journal.getPath() + ".lock").toPath());
+    }
+
+    @Test
+    public void testExclusiveJournal() {
+        try {
+            new FileTaskRecordStore(journal);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("已被其他实例使用"));
+        }
+        store.destroy();
+        // 释放锁后可以重新打开
+        store = new FileTaskRecordStore(journal);
+        assertTrue(store.tryStart(new TaskRecord("sync", "user", 1000)));
+    }
+
+    @Test
+    public void testCompactFailure() throws IOException {
+        store.setCompactThreshold(2);
+        // 临时文件位置被目录占用,重写日志失败
+        File temp = new File(journal.getPath() + ".tmp");
+        assertTrue(temp.mkdir());
+        try {
+            for (int i = 0; i < 5; i++) {
+                TaskRecord record = new TaskRecord("sync", "user", 1000);
+                assertTrue(store.tryStart(record));
+                store.updateWithSuccess(record.getId());
+            }
+        } finally {
+            temp.delete();
+        }
+        // 重写失败后继续追加到原日志
+        store.destroy();
+        store = new FileTaskRecordStore(journal);
+        TaskRecord record = new TaskRecord("sync", "user", 1000);
+        assertTrue(store.tryStart(record));
+        assertEquals(Long.valueOf(6), record.getId());
+    }
+
+    @Test
+    public void testConcurrentSync() throws Exception {
+        store.setSyncOnWrite(true);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            String name = "task-" + i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 50; j++) {
+                    TaskRecord record = new TaskRecord("sync", name, 1000);
+                    assertTrue(store.tryStart(record));
+                    store.updateWithSuccess(record.getId());
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(store.selectUnfinishedTasks().isEmpty());
+        store.destroy();
+        store = new FileTaskRecordStore(journal);
+        TaskRecord record = new TaskRecord("sync", "user", 1000);
+        store.tryStart(record);
+        assertEquals(Long.valueOf(401), record.getId());
+    }
+
+    @Test
+    public void testDeduplicate() {
+        TaskRecord first = new TaskRecord("sync", "user", 1000);
+        assertTrue(store.tryStart(first));
+        assertFalse(store.tryStart(new TaskRecord("sync", "user", 1000)));
+        assertTrue(store.tryStart(new TaskRecord("sync", "order", 1000)));
+        store.updateWithSuccess(first.getId());
+        assertTrue(store.tryStart(new TaskRecord("sync", "user", 1000)));
+        assertEquals(2, store.selectUnfinishedTasks().size());
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        TaskRecord running = new TaskRecord("sync", "user", 1000);
+        TaskRecord finished = new TaskRecord("sync", "order", 1000);
+        store.tryStart(running);
+        store.tryStart(finished);
+        store.updateWithError(finished.getId(), "失败");
+        store.destroy();
+        // 进程被杀时最后一行可能不完整
+        try (FileWriter writer = new FileWriter(journal, true)) {
+            writer.write("{\"id\":3,\"taskTy");
+        }
+        store = new FileTaskRecordStore(journal);
+        List<TaskRecord> unfinished = store.selectUnfinishedTasks();
+        assertEquals(1, unfinished.size());
+        assertEquals(running.getId(), unfinished.get(0).getId());
+        assertTrue(store.checkHavingUnfinishedTask("sync", "user"));
+        assertTrue(store.terminateTimeoutTaskIfApplicable(running.getId(), "超时"));
+        assertFalse(store.terminateTimeoutTaskIfApplicable(running.getId(), "超时"));
+        TaskRecord next = new TaskRecord("sync", "user", 1000);
+        assertTrue(store.tryStart(next));
+        assertEquals(Long.valueOf(3), next.getId());
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        store.setCompactThreshold(10);
+        for (int i = 0; i < 20; i++) {
+            TaskRecord record = new TaskRecord("sync", "user", 1000);
+            assertTrue(store.tryStart(record));
+            store.updateWithSuccess(record.getId());
+        }
+        assertTrue(Files.readAllLines(journal.toPath()).size() <= 10);
+        store.destroy();
+        store = new FileTaskRecordStore(journal);
+        TaskRecord record = new TaskRecord("sync", "user", 1000);
+        store.tryStart(record);
+        // 重写日志后任务ID仍然递增
+        assertEquals(Long.valueOf(21), record.getId());
+    }
+
+}
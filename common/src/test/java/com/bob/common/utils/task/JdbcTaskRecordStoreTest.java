@@ -0,0 +1,80 @@
+package com.bob.common.utils.task;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 数据库任务记录存储测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-21 15:00
+ */
+public class JdbcTaskRecordStoreTest {
+
+    private JdbcDataSource dataSource;
+    private JdbcTaskRecordStore store;
+
+    @Before
+    public void doBefore() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:task_record;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        execute("CREATE TABLE task_record (id BIGINT AUTO_INCREMENT PRIMARY KEY, gmt_create DATETIME, gmt_modified DATETIME, "
+            + "task_name VARCHAR(128), task_type VARCHAR(64), status BIGINT, execute_info VARCHAR(1024), timeout INT, "
+            + "running_key VARCHAR(200), UNIQUE KEY uk_running_key (running_key))");
+        store = new JdbcTaskRecordStore(dataSource);
+    }
+
+    @After
+    public void doAfter() throws SQLException {
+        execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    public void testDeduplicate() {
+        TaskRecord first = new TaskRecord("sync", "user", 1000);
+        assertTrue(store.tryStart(first));
+        assertFalse(store.tryStart(new TaskRecord("sync", "user", 1000)));
+        assertTrue(store.checkHavingUnfinishedTask("sync", "user"));
+        assertEquals(1, store.selectUnfinishedTasks().size());
+        assertTrue(store.terminateTimeoutTaskIfApplicable(first.getId(), "超时"));
+        assertFalse(store.terminateTimeoutTaskIfApplicable(first.getId(), "超时"));
+        TaskRecord second = new TaskRecord("sync", "user", 1000);
+        assertTrue(store.tryStart(second));
+        store.updateWithSuccess(second.getId());
+        assertTrue(store.selectUnfinishedTasks().isEmpty());
+    }
+
+    @Test
+    public void testTruncateExecuteInfo() throws SQLException {
+        TaskRecord record = new TaskRecord("sync", "user", 1000);
+        assertTrue(store.tryStart(record));
+        StringBuilder executeInfo = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            executeInfo.append('e');
+        }
+        store.updateWithError(record.getId(), executeInfo.toString());
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT execute_info FROM task_record")) {
+            assertTrue(resultSet.next());
+            assertEquals(1024, resultSet.getString(1).length());
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+}
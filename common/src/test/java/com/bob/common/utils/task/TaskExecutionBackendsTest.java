@@ -0,0 +1,68 @@
+package com.bob.common.utils.task;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 执行后端选择及取消测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-24 11:00
+ */
+public class TaskExecutionBackendsTest {
+
+    @Test
+    public void testDetect() {
+        TaskExecutionBackend backend = TaskExecutionBackends.detect();
+        try {
+            String expected = TaskExecutionBackends.isVirtualThreadSupported() ? TaskExecutionBackends.VIRTUAL : TaskExecutionBackends.ELASTIC;
+            assertEquals(expected, backend.getName());
+        } finally {
+            backend.shutdown();
+        }
+        System.setProperty(TaskExecutionBackends.BACKEND_PROPERTY, TaskExecutionBackends.ELASTIC);
+        try {
+            backend = TaskExecutionBackends.detect();
+            assertEquals(TaskExecutionBackends.ELASTIC, backend.getName());
+            backend.shutdown();
+        } finally {
+            System.clearProperty(TaskExecutionBackends.BACKEND_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testElasticConcurrencyAndCancel() throws Exception {
+        TaskTypeFairExecutor executor = new TaskTypeFairExecutor(TaskExecutionBackends.elastic(8));
+        try {
+            // 阻塞型任务同时执行,线程按需创建
+            CountDownLatch started = new CountDownLatch(8);
+            CountDownLatch interrupted = new CountDownLatch(8);
+            Future<?>[] futures = new Future<?>[8];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit("blocking", 0, () -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(5000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                });
+            }
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            // 取消时中断执行线程,与超时处理的行为一致
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        } finally {
+            executor.destroy();
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.bob.common.utils.task;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 按任务类型公平调度测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-23 11:00
+ */
+public class TaskTypeFairExecutorTest {
+
+    private TaskTypeFairExecutor executor;
+
+    @After
+    public void doAfter() {
+        executor.destroy();
+    }
+
+    @Test
+    public void testFairAndPriority() throws Exception {
+        executor = new TaskTypeFairExecutor(1);
+        List<String> order = new CopyOnWriteArrayList<String>();
+        CountDownLatch gate = new CountDownLatch(1);
+        executor.submit("bulk", 0, () -> await(gate));
+        for (int i = 0; i < 3; i++) {
+            executor.submit("bulk", 0, record(order, "bulk-" + i));
+        }
+        executor.submit("fast", 0, record(order, "fast-low"));
+        Future<?> last = executor.submit("fast", 9, record(order, "fast-high"));
+        gate.countDown();
+        last.get(2, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        // 大量积压的类型不会饿死后来的类型,类型内按优先级执行
+        assertEquals(Arrays.asList("fast-high", "bulk-0", "fast-low", "bulk-1", "bulk-2"), order);
+    }
+
+    @Test
+    public void testConcurrencyLimitAndRejection() throws Exception {
+        executor = new TaskTypeFairExecutor(4);
+        executor.setTypeConcurrencyLimit("bulk", 1);
+        executor.setQueueCapacity(2);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        Runnable bulk = () -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            await(gate);
+            concurrent.decrementAndGet();
+        };
+        executor.submit("bulk", 0, bulk);
+        executor.submit("bulk", 0, bulk);
+        executor.submit("bulk", 0, bulk);
+        try {
+            executor.submit("bulk", 0, bulk);
+            fail();
+        } catch (RejectedExecutionException e) {
+            // 队列已满
+        }
+        // 其他类型不受影响
+        executor.submit("fast", 0, () -> { }).get(1, TimeUnit.SECONDS);
+        TaskTypeFairExecutor.TaskTypeStats stats = executor.getTaskTypeStats().get(0);
+        assertEquals("bulk", stats.getTaskType());
+        assertEquals(2, stats.getQueueDepth());
+        assertEquals(1, stats.getRunning());
+        assertEquals(1, stats.getRejected());
+        gate.countDown();
+        Thread.sleep(200);
+        assertEquals(1, maxConcurrent.get());
+        stats = executor.getTaskTypeStats().get(0);
+        assertEquals(3, stats.getCompleted());
+        assertTrue(stats.getMaxWaitMillis() > 0);
+    }
+
+    @Test
+    public void testCancelQueued() throws Exception {
+        executor = new TaskTypeFairExecutor(1);
+        executor.setQueueCapacity(2);
+        List<String> order = new CopyOnWriteArrayList<String>();
+        CountDownLatch gate = new CountDownLatch(1);
+        executor.submit("bulk", 0, () -> await(gate));
+        Future<?> cancelled = executor.submit("bulk", 0, record(order, "cancelled"));
+        executor.submit("bulk", 0, record(order, "bulk-0"));
+        assertTrue(cancelled.cancel(false));
+        // 取消的任务立即移出队列,腾出的容量可以提交新任务
+        assertEquals(1, executor.getTaskTypeStats().get(0).getQueueDepth());
+        Future<?> last = executor.submit("bulk", 0, record(order, "bulk-1"));
+        gate.countDown();
+        last.get(2, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("bulk-0", "bulk-1"), order);
+    }
+
+    private static Runnable record(List<String> order, String name) {
+        return () -> order.add(name);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
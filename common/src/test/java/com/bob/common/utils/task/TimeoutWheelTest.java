@@ -0,0 +1,75 @@
+package com.bob.common.utils.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 时间轮超时及取消测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-22 11:00
+ */
+public class TimeoutWheelTest {
+
+    private TimeoutWheel timeoutWheel;
+
+    @Before
+    public void doBefore() {
+        // 槽位很少,超时需要绕多圈
+        timeoutWheel = new TimeoutWheel(10, 8, null);
+    }
+
+    @After
+    public void doAfter() {
+        timeoutWheel.stop();
+    }
+
+    @Test
+    public void testExpireAndCancel() throws Exception {
+        int total = 10000;
+        CountDownLatch expired = new CountDownLatch(total / 2);
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        List<TimeoutWheel.Timeout> timeouts = new ArrayList<TimeoutWheel.Timeout>();
+        for (int i = 0; i < total; i++) {
+            Runnable task = i % 2 == 0 ? expired::countDown : cancelledRuns::incrementAndGet;
+            timeouts.add(timeoutWheel.newTimeout(task, 100 + i % 200, TimeUnit.MILLISECONDS));
+        }
+        for (int i = 1; i < total; i += 2) {
+            assertTrue(timeouts.get(i).cancel());
+        }
+        assertEquals(total / 2, timeoutWheel.getActiveCount());
+        assertTrue(expired.await(2, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(0, cancelledRuns.get());
+        assertEquals(0, timeoutWheel.getActiveCount());
+        assertEquals(total / 2, timeoutWheel.getExpiredCount());
+        // 已到期的无法取消
+        assertTrue(timeouts.get(0).isExpired());
+        assertFalse(timeouts.get(0).cancel());
+    }
+
+    @Test
+    public void testNotExpiredEarly() throws Exception {
+        long start = System.nanoTime();
+        CountDownLatch expired = new CountDownLatch(1);
+        long[] elapsed = new long[1];
+        timeoutWheel.newTimeout(() -> {
+            elapsed[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            expired.countDown();
+        }, 250, TimeUnit.MILLISECONDS);
+        assertTrue(expired.await(1, TimeUnit.SECONDS));
+        assertTrue(elapsed[0] >= 250);
+    }
+
+}
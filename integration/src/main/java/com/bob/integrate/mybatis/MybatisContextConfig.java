@@ -1,11 +1,15 @@
 package com.bob.integrate.mybatis;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.sql.DataSource;
 
 import com.bob.common.entity.base.BaseMapper;
+import com.bob.integrate.mybatis.pool.AdaptivePoolSizer;
+import com.bob.integrate.mybatis.pool.PoolMetricsRegistry;
 import com.bob.integrate.mybatis.readasepwrite.DataSourceTransactionManagerAdapter;
 import com.bob.integrate.mybatis.readasepwrite.DynamicDataSource;
 import com.bob.integrate.mybatis.typehandler.StringList2VarcharHandler;
@@ -54,6 +58,13 @@ public class MybatisContextConfig {
     @Value("${mysql.writeUrl}")
     private String writeUrl;
 
+    @Value("${mysql.pool.adaptive:false}")
+    private boolean adaptivePoolSizing;
+    @Value("${mysql.pool.lowerMaxTotal:10}")
+    private int lowerMaxTotal;
+    @Value("${mysql.pool.upperMaxTotal:100}")
+    private int upperMaxTotal;
+
     /**
      * 读数据源
      *
@@ -75,14 +86,44 @@ public class MybatisContextConfig {
     }
 
     /**
-     * 动态数据源
+     * 连接池监控指标
+     *
+     * @return
+     */
+    @Bean
+    public PoolMetricsRegistry poolMetricsRegistry() {
+        return new PoolMetricsRegistry();
+    }
+
+    /**
+     * 连接池大小的自适应调整,mysql.pool.adaptive为true时开启
+     *
+     * @param poolMetricsRegistry
+     * @return
+     */
+    @Bean
+    public AdaptivePoolSizer adaptivePoolSizer(PoolMetricsRegistry poolMetricsRegistry) {
+        AdaptivePoolSizer poolSizer = new AdaptivePoolSizer(poolMetricsRegistry);
+        poolSizer.setEnabled(adaptivePoolSizing);
+        poolSizer.setLowerMaxTotal(lowerMaxTotal);
+        poolSizer.setUpperMaxTotal(upperMaxTotal);
+        return poolSizer;
+    }
+
+    /**
+     * 动态数据源,每个目标数据源包装为记录监控指标的数据源
      *
      * @param dataSources
+     * @param poolMetricsRegistry
      * @return
      */
     @Bean
-    public DataSource dataSource(Map<String, DataSource> dataSources) {
-        return new DynamicDataSource(dataSources);
+    public DataSource dataSource(Map<String, DataSource> dataSources, PoolMetricsRegistry poolMetricsRegistry) {
+        Map<String, DataSource> instrumented = new LinkedHashMap<String, DataSource>();
+        for (Entry<String, DataSource> entry : dataSources.entrySet()) {
+            instrumented.put(entry.getKey(), poolMetricsRegistry.instrument(entry.getKey(), entry.getValue()));
+        }
+        return new DynamicDataSource(instrumented);
     }
 
     /**
@@ -0,0 +1,160 @@
+package com.bob.integrate.mybatis.pool;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * 连接池大小的自适应调整
+ * 定期读取每个DBCP连接池在统计窗口内的活跃连接峰值及等待线程数峰值:有线程等待或活跃连接接近上限时扩大maxTotal,
+ * 长时间使用率很低时逐步缩小;maxIdle,minIdle跟随观测到的峰值调整,所有调整都限制在配置的上下界内
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-20 11:20
+ */
+public class AdaptivePoolSizer implements InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    private static final double HIGH_WATERMARK = 0.8;
+    private static final double LOW_WATERMARK = 0.3;
+
+    private final PoolMetricsRegistry registry;
+    private boolean enabled;
+    private long intervalMillis = 30000;
+    private int lowerMaxTotal = 10;
+    private int upperMaxTotal = 100;
+    private int minIdleFloor = 2;
+    private ScheduledExecutorService scheduler;
+
+    public AdaptivePoolSizer(PoolMetricsRegistry registry) {
+        Assert.notNull(registry, "监控指标的注册中心不能为空");
+        this.registry = registry;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Assert.isTrue(lowerMaxTotal <= upperMaxTotal, "最大连接数的下界不能大于上界");
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "adaptive-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::resizeAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void resizeAll() {
+        for (PoolMetrics metrics : registry.getAllMetrics()) {
+            try {
+                resize(metrics);
+            } catch (Exception e) {
+                LOGGER.error("调整连接池[{}]大小失败", metrics.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 按上一个统计窗口的峰值调整连接池大小
+     *
+     * @param metrics
+     */
+    void resize(PoolMetrics metrics) {
+        BasicDataSource pool = metrics.getPool();
+        int peakActive = metrics.resetWindowPeakActive();
+        int peakPending = metrics.resetWindowPeakPending();
+        if (pool == null) {
+            return;
+        }
+        resize(metrics.getName(), pool, peakActive, peakPending);
+    }
+
+    /**
+     * 按统计窗口内的峰值调整连接池大小
+     *
+     * @param name        连接池名称
+     * @param pool
+     * @param peakActive  窗口内的活跃连接峰值
+     * @param peakPending 窗口内等待获取连接的线程数峰值
+     */
+    void resize(String name, BasicDataSource pool, int peakActive, int peakPending) {
+        int maxTotal = pool.getMaxTotal();
+        int newMaxTotal = maxTotal;
+        if (peakPending > 0 || peakActive >= maxTotal * HIGH_WATERMARK) {
+            newMaxTotal = Math.max(maxTotal + 1, (int)Math.ceil(maxTotal * 1.5));
+        } else if (peakActive < maxTotal * LOW_WATERMARK) {
+            // 逐步缩小,避免流量短暂下降后立刻回升时连接数不足
+            newMaxTotal = Math.max(peakActive * 2, (int)Math.ceil(maxTotal * 0.75));
+        }
+        newMaxTotal = clamp(newMaxTotal, lowerMaxTotal, upperMaxTotal);
+        int newMaxIdle = clamp(peakActive + peakPending, minIdleFloor, newMaxTotal);
+        int newMinIdle = clamp(peakActive / 2, Math.min(minIdleFloor, newMaxIdle), newMaxIdle);
+        if (newMaxTotal != maxTotal || newMaxIdle != pool.getMaxIdle() || newMinIdle != pool.getMinIdle()) {
+            LOGGER.info("调整连接池[{}]: maxTotal {} -> {}, maxIdle {} -> {}, minIdle {} -> {}, 窗口内活跃峰值{}, 等待峰值{}", name,
+                maxTotal, newMaxTotal, pool.getMaxIdle(), newMaxIdle, pool.getMinIdle(), newMinIdle, peakActive, peakPending);
+            pool.setMaxTotal(newMaxTotal);
+            pool.setMaxIdle(newMaxIdle);
+            pool.setMinIdle(newMinIdle);
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * @param enabled 是否开启自适应调整,默认关闭
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param intervalMillis 统计窗口及调整的间隔,默认30秒
+     */
+    public void setIntervalMillis(long intervalMillis) {
+        Assert.isTrue(intervalMillis > 0, "调整间隔必须大于0");
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @param lowerMaxTotal 最大连接数的下界,默认10
+     */
+    public void setLowerMaxTotal(int lowerMaxTotal) {
+        Assert.isTrue(lowerMaxTotal > 0, "最大连接数的下界必须大于0");
+        this.lowerMaxTotal = lowerMaxTotal;
+    }
+
+    /**
+     * @param upperMaxTotal 最大连接数的上界,默认100
+     */
+    public void setUpperMaxTotal(int upperMaxTotal) {
+        Assert.isTrue(upperMaxTotal > 0, "最大连接数的上界必须大于0");
+        this.upperMaxTotal = upperMaxTotal;
+    }
+
+    /**
+     * @param minIdleFloor 空闲连接数的下界,默认2
+     */
+    public void setMinIdleFloor(int minIdleFloor) {
+        Assert.isTrue(minIdleFloor >= 0, "空闲连接数的下界不能小于0");
+        this.minIdleFloor = minIdleFloor;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.bob.integrate.mybatis.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * 记录监控指标的数据源包装
+ * 获取连接时记录等待时长及等待线程数,连接创建的Statement执行时记录语句耗时
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-20 10:40
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private final PoolMetrics metrics;
+
+    public InstrumentedDataSource(String name, DataSource targetDataSource) {
+        super(targetDataSource);
+        this.metrics = new PoolMetrics(name, targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return instrument(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return instrument(username, password);
+    }
+
+    private Connection instrument(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        metrics.onBorrowStart();
+        boolean success = false;
+        Connection connection;
+        try {
+            connection = username == null ? getTargetDataSource().getConnection() : getTargetDataSource().getConnection(username, password);
+            success = true;
+        } finally {
+            metrics.onBorrowEnd(System.nanoTime() - start, success);
+        }
+        return (Connection)Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[] {Connection.class},
+            new ConnectionHandler(connection, metrics));
+    }
+
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 将Connection创建的Statement包装为记录耗时的代理
+     */
+    private static class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final PoolMetrics metrics;
+
+        ConnectionHandler(Connection target, PoolMetrics metrics) {
+            this.target = target;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[] {method.getReturnType()},
+                    new StatementHandler(result, metrics));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 记录execute*方法的耗时
+     */
+    private static class StatementHandler implements InvocationHandler {
+
+        private final Object target;
+        private final PoolMetrics metrics;
+
+        StatementHandler(Object target, PoolMetrics metrics) {
+            this.target = target;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return invokeTarget(target, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return invokeTarget(target, method, args);
+            } finally {
+                metrics.onStatement(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+}
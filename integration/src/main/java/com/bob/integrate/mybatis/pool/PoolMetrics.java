@@ -0,0 +1,142 @@
+package com.bob.integrate.mybatis.pool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import com.bob.common.utils.LatencyHistogram;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * 单个数据源的连接池监控指标
+ * 包含获取连接及执行语句的延迟直方图,正在等待获取连接的线程数,以及DBCP连接池的活跃,空闲连接数
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-20 10:20
+ */
+public class PoolMetrics {
+
+    private final String name;
+    private final BasicDataSource pool;
+
+    private final LatencyHistogram borrowLatency = new LatencyHistogram();
+    private final LatencyHistogram statementLatency = new LatencyHistogram();
+    private final AtomicInteger pendingBorrows = new AtomicInteger();
+    private final AtomicLong borrowFailures = new AtomicLong();
+    /**
+     * 当前统计窗口内的峰值,由{@link AdaptivePoolSizer}定期重置
+     */
+    private final AtomicInteger windowPeakActive = new AtomicInteger();
+    private final AtomicInteger windowPeakPending = new AtomicInteger();
+
+    /**
+     * @param name
+     * @param dataSource 为{@link BasicDataSource}时可获取连接池的活跃,空闲连接数
+     */
+    PoolMetrics(String name, DataSource dataSource) {
+        this.name = name;
+        this.pool = dataSource instanceof BasicDataSource ? (BasicDataSource)dataSource : null;
+    }
+
+    void onBorrowStart() {
+        int pending = pendingBorrows.incrementAndGet();
+        // 有空闲连接或未达到上限时可立即获取,不计入等待峰值,否则每次获取连接都会触发扩容
+        if (pool == null || (pool.getNumIdle() == 0 && pool.getNumActive() >= pool.getMaxTotal())) {
+            windowPeakPending.accumulateAndGet(pending, Math::max);
+        }
+    }
+
+    void onBorrowEnd(long nanos, boolean success) {
+        pendingBorrows.decrementAndGet();
+        borrowLatency.record(nanos);
+        if (!success) {
+            borrowFailures.incrementAndGet();
+        } else if (pool != null) {
+            windowPeakActive.accumulateAndGet(pool.getNumActive(), Math::max);
+        }
+    }
+
+    void onStatement(long nanos) {
+        statementLatency.record(nanos);
+    }
+
+    /**
+     * 读取并重置窗口内的活跃连接峰值
+     *
+     * @return
+     */
+    int resetWindowPeakActive() {
+        return windowPeakActive.getAndSet(pool == null ? 0 : pool.getNumActive());
+    }
+
+    /**
+     * 读取并重置窗口内等待获取连接的线程数峰值
+     *
+     * @return
+     */
+    int resetWindowPeakPending() {
+        return windowPeakPending.getAndSet(pendingBorrows.get());
+    }
+
+    BasicDataSource getPool() {
+        return pool;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 获取连接的延迟
+     */
+    public LatencyHistogram getBorrowLatency() {
+        return borrowLatency;
+    }
+
+    /**
+     * @return 执行语句的延迟
+     */
+    public LatencyHistogram getStatementLatency() {
+        return statementLatency;
+    }
+
+    /**
+     * @return 正在等待获取连接的线程数
+     */
+    public int getPendingBorrows() {
+        return pendingBorrows.get();
+    }
+
+    public long getBorrowFailures() {
+        return borrowFailures.get();
+    }
+
+    /**
+     * @return 活跃连接数, 非DBCP连接池时为-1
+     */
+    public int getNumActive() {
+        return pool == null ? -1 : pool.getNumActive();
+    }
+
+    /**
+     * @return 空闲连接数, 非DBCP连接池时为-1
+     */
+    public int getNumIdle() {
+        return pool == null ? -1 : pool.getNumIdle();
+    }
+
+    /**
+     * @return 最大连接数, 非DBCP连接池时为-1
+     */
+    public int getMaxTotal() {
+        return pool == null ? -1 : pool.getMaxTotal();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[active=%d, idle=%d, maxTotal=%d, pending=%d, borrowFailures=%d, borrow={%s}, statement={%s}]",
+            name, getNumActive(), getNumIdle(), getMaxTotal(), getPendingBorrows(), getBorrowFailures(), borrowLatency, statementLatency);
+    }
+
+}
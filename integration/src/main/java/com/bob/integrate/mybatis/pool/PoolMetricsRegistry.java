@@ -0,0 +1,57 @@
+package com.bob.integrate.mybatis.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.util.Assert;
+
+/**
+ * 连接池监控指标的注册中心,以数据源名称区分
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-20 11:00
+ */
+public class PoolMetricsRegistry {
+
+    private final Map<String, InstrumentedDataSource> dataSources = new ConcurrentHashMap<String, InstrumentedDataSource>();
+
+    /**
+     * 包装数据源并注册其监控指标
+     *
+     * @param name
+     * @param dataSource
+     * @return
+     */
+    public InstrumentedDataSource instrument(String name, DataSource dataSource) {
+        Assert.hasText(name, "数据源名称不能为空");
+        Assert.notNull(dataSource, "数据源不能为空");
+        InstrumentedDataSource instrumented = new InstrumentedDataSource(name, dataSource);
+        Assert.state(dataSources.putIfAbsent(name, instrumented) == null, "数据源[" + name + "]已注册");
+        return instrumented;
+    }
+
+    /**
+     * @param name
+     * @return 数据源的监控指标, 未注册时为null
+     */
+    public PoolMetrics getMetrics(String name) {
+        InstrumentedDataSource dataSource = dataSources.get(name);
+        return dataSource == null ? null : dataSource.getMetrics();
+    }
+
+    /**
+     * @return 所有数据源的监控指标
+     */
+    public List<PoolMetrics> getAllMetrics() {
+        List<PoolMetrics> metrics = new ArrayList<PoolMetrics>(dataSources.size());
+        for (InstrumentedDataSource dataSource : dataSources.values()) {
+            metrics.add(dataSource.getMetrics());
+        }
+        return metrics;
+    }
+
+}
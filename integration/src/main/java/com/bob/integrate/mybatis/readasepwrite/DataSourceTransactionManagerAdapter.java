@@ -36,6 +36,19 @@ public class DataSourceTransactionManagerAdapter extends DataSourceTransactionMa
         super.prepareForCommit(status);
     }
 
+    /**
+     * 写事务提交后标记当前线程,之后一段时间内的读操作不读取可能尚未同步的从库
+     *
+     * @param status
+     */
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        super.doCommit(status);
+        if (!status.isReadOnly()) {
+            ReadYourWritesContext.markWritten();
+        }
+    }
+
     @Override
     protected void doRollback(DefaultTransactionStatus status) {
         DATA_MANIPULATION_TYPE.remove();
@@ -1,35 +1,65 @@
 package com.bob.integrate.mybatis.readasepwrite;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 import org.springframework.util.Assert;
 
 /**
  * 动态数据源配置
+ * 读操作按{@link LoadBalanceStrategy}在可用的读数据源中选择,后台定时探测读数据源的健康状态,
+ * 连续失败的读数据源暂时摘除,冷却期过后探测成功再恢复;没有可用的读数据源时从写数据源读取;
+ * 写事务提交后的读己之写窗口内,只读取复制延迟低于阈值的读数据源,没有时读取写数据源
  *
  * @author wb-jjb318191
  * @create 2018-01-16 9:56
  */
-public class DynamicDataSource extends AbstractRoutingDataSource {
+public class DynamicDataSource extends AbstractRoutingDataSource implements DisposableBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DynamicDataSource.class);
 
-    private final AtomicLong readRequestedTime = new AtomicLong(0);
+    private static final int WRITE_KEY = 0;
 
     private DataSource writeDataSource;
-    private List<DataSource> readDataSources = new ArrayList<DataSource>();
+    private List<ReadDataSourceNode> readNodes = new ArrayList<ReadDataSourceNode>();
+    /**
+     * 在轮换中的读数据源,摘除或恢复时整体替换
+     */
+    private volatile List<ReadDataSourceNode> availableNodes = Collections.emptyList();
+    private final AtomicLong writeFallbackCount = new AtomicLong();
+    private final AtomicLong stickyWriteReadCount = new AtomicLong();
+
+    private LoadBalanceStrategy loadBalanceStrategy = new EwmaLatencyStrategy();
+    private long probeIntervalMillis = 5000;
+    private int probeTimeoutSeconds = 2;
+    private int failureThreshold = 2;
+    private long coolDownMillis = 30000;
+    private ReplicationLagProber replicationLagProber;
+    private long readYourWritesWindowMillis = 3000;
+    private long maxStickyLagMillis = 500;
+    private ScheduledExecutorService probeScheduler;
 
     public DynamicDataSource(Map<String, DataSource> dataSources) {
         Assert.notEmpty(dataSources, "至少需要定义一个数据源");
@@ -48,7 +78,7 @@ public class DynamicDataSource extends AbstractRoutingDataSource {
                 continue;
             }
             //若数据源名称不含write,则默认为读数据源
-            readDataSources.add(entry.getValue());
+            readNodes.add(new ReadDataSourceNode(entry.getKey(), entry.getValue()));
         }
         if (writeDataSource == null) {
             throw new IllegalStateException("至少需要定义一个写数据源");
@@ -56,64 +86,330 @@ public class DynamicDataSource extends AbstractRoutingDataSource {
     }
 
     /**
-     * 当前数据操作类型时写时或只有一个写数据源时,直接返回此数据源;
-     * 当有多个读数据源时,轮询读数据源
+     * 当前数据操作类型是写或没有可用的读数据源时,返回写数据源的序号;
+     * 否则按负载均衡策略选择读数据源
      *
-     * @return
+     * @return 0为写数据源, 之后为读数据源
      */
     @Override
     protected Object determineCurrentLookupKey() {
-        DataManipulationType manipulationType = DataSourceTransactionManagerAdapter.getCurrentManipulationType();
-        if (manipulationType == DataManipulationType.WRITE || readDataSources.isEmpty()) {
-            return (long)-1;
-        }
-        long times = readRequestedTime.getAndIncrement();
-        return times % readDataSources.size();
+        ReadDataSourceNode node = selectReadNode();
+        return node == null ? WRITE_KEY : readNodes.indexOf(node) + 1;
     }
 
     @Override
     public void afterPropertiesSet() {
         HashMap<Integer, DataSource> dataSources = new HashMap<Integer, DataSource>();
         //按序号设置数据源，0为写数据源,之后为读数据源,方便多个读数据源时负载均衡
-        dataSources.put(0, writeDataSource);
-        for (int i = 0; i < readDataSources.size(); i++) {
-            dataSources.put(i + 1, readDataSources.get(i));
+        dataSources.put(WRITE_KEY, writeDataSource);
+        for (int i = 0; i < readNodes.size(); i++) {
+            dataSources.put(i + 1, readNodes.get(i).getDataSource());
         }
         setDefaultTargetDataSource(writeDataSource);
         setTargetDataSources(new HashMap<Object, Object>(dataSources));
         super.afterPropertiesSet();
+        refreshAvailableNodes();
+        startProbing();
     }
 
     @Override
     protected DataSource determineTargetDataSource() {
-        DataSource dataSource;
-        int key = ((Long)determineCurrentLookupKey()).intValue();
-        if (key == -1) {
-            LOGGER.info("获取写数据源");
-            dataSource = writeDataSource;
-        } else {
-            LOGGER.info("获取读数据源");
-            dataSource = readDataSources.get(key);
-        }
-        return dataSource;
+        ReadDataSourceNode node = selectReadNode();
+        return node == null ? writeDataSource : node.getDataSource();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
     }
 
     /**
-     * 如果从库宕机,则从主库读取
+     * 从选中的读数据源获取连接并跟踪其归还;如果读数据源获取连接失败,则记录失败并从写数据源读取
      *
+     * @param username 为null时使用数据源默认的用户
+     * @param password
      * @return
      * @throws SQLException
      */
     @Override
-    public Connection getConnection() throws SQLException {
+    public Connection getConnection(String username, String password) throws SQLException {
+        ReadDataSourceNode node = selectReadNode();
+        if (node == null) {
+            LOGGER.debug("获取写数据源");
+            return doGetConnection(writeDataSource, username, password);
+        }
+        LOGGER.debug("获取读数据源[{}]", node.getName());
+        long start = System.nanoTime();
+        node.onAcquire();
+        Connection connection;
+        try {
+            connection = doGetConnection(node.getDataSource(), username, password);
+        } catch (SQLException | RuntimeException e) {
+            node.onAcquireFailure();
+            onFailure(node, e);
+            writeFallbackCount.incrementAndGet();
+            return doGetConnection(writeDataSource, username, password);
+        }
+        long acquired = System.nanoTime();
+        node.onAcquired(acquired - start);
+        node.recordSuccess();
+        return (Connection)Proxy.newProxyInstance(DynamicDataSource.class.getClassLoader(), new Class<?>[] {Connection.class},
+            new TrackedConnectionHandler(connection, node, acquired));
+    }
+
+    private static Connection doGetConnection(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+
+    /**
+     * @return 选中的读数据源, 当前为写操作或没有可用的读数据源时为null
+     */
+    private ReadDataSourceNode selectReadNode() {
+        if (DataSourceTransactionManagerAdapter.getCurrentManipulationType() == DataManipulationType.WRITE) {
+            return null;
+        }
+        List<ReadDataSourceNode> nodes = availableNodes;
+        if (nodes.isEmpty()) {
+            if (!readNodes.isEmpty()) {
+                writeFallbackCount.incrementAndGet();
+            }
+            return null;
+        }
+        if (readYourWritesWindowMillis > 0 && ReadYourWritesContext.isWithinWindow(readYourWritesWindowMillis)) {
+            nodes = filterFreshNodes(nodes);
+            if (nodes.isEmpty()) {
+                stickyWriteReadCount.incrementAndGet();
+                return null;
+            }
+        }
+        return nodes.size() == 1 ? nodes.get(0) : loadBalanceStrategy.select(nodes);
+    }
+
+    /**
+     * @param nodes
+     * @return 复制延迟已知且低于阈值的读数据源
+     */
+    private List<ReadDataSourceNode> filterFreshNodes(List<ReadDataSourceNode> nodes) {
+        List<ReadDataSourceNode> fresh = new ArrayList<ReadDataSourceNode>(nodes.size());
+        for (ReadDataSourceNode node : nodes) {
+            long lagMillis = node.getLagMillis();
+            if (lagMillis >= 0 && lagMillis < maxStickyLagMillis) {
+                fresh.add(node);
+            }
+        }
+        return fresh;
+    }
+
+    private void onFailure(ReadDataSourceNode node, Exception e) {
+        if (node.recordFailure(failureThreshold, coolDownMillis)) {
+            LOGGER.warn("读数据源[{}]连续失败{}次,摘除{}ms", node.getName(), failureThreshold, coolDownMillis, e);
+            refreshAvailableNodes();
+        } else {
+            LOGGER.warn("尝试从读数据源[{}]生成连接失败", node.getName(), e);
+        }
+    }
+
+    private synchronized void refreshAvailableNodes() {
+        List<ReadDataSourceNode> nodes = new ArrayList<ReadDataSourceNode>(readNodes.size());
+        for (ReadDataSourceNode node : readNodes) {
+            if (node.isAvailable()) {
+                nodes.add(node);
+            }
+        }
+        availableNodes = Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * 每个读数据源单独定时探测,一个从库卡住不影响其他从库的探测
+     */
+    private void startProbing() {
+        if (readNodes.isEmpty() || probeScheduler != null) {
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        probeScheduler = Executors.newScheduledThreadPool(readNodes.size(), runnable -> {
+            Thread thread = new Thread(runnable, "read-datasource-probe-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (ReadDataSourceNode node : readNodes) {
+            probeScheduler.scheduleWithFixedDelay(() -> probe(node), probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 探测读数据源,摘除中的读数据源冷却期过后才探测
+     *
+     * @param node
+     */
+    void probe(ReadDataSourceNode node) {
+        if (!node.isAvailable() && !node.isCoolDownElapsed()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (Connection connection = node.getDataSource().getConnection()) {
+            if (!connection.isValid(probeTimeoutSeconds)) {
+                throw new SQLException("连接校验未通过");
+            }
+        } catch (Exception e) {
+            onFailure(node, e);
+            return;
+        }
+        node.recordLatency(System.nanoTime() - start);
+        node.recordSuccess();
+        probeLag(node);
+        if (!node.isAvailable()) {
+            node.restore();
+            LOGGER.info("读数据源[{}]探测成功,恢复轮换", node.getName());
+            refreshAvailableNodes();
+        }
+    }
+
+    /**
+     * 探测复制延迟,失败时延迟视为未知,读己之写窗口内不会读取此读数据源
+     *
+     * @param node
+     */
+    private void probeLag(ReadDataSourceNode node) {
+        if (replicationLagProber == null) {
+            return;
+        }
         try {
-            return super.getConnection();
-        } catch (SQLException e) {
-            if (DataSourceTransactionManagerAdapter.getCurrentManipulationType() == DataManipulationType.READ) {
-                LOGGER.warn("尝试从读数据源生成连接失败", e);
-                return writeDataSource.getConnection();
+            node.setLagMillis(replicationLagProber.probeLagMillis(node.getName(), node.getDataSource()));
+        } catch (Exception e) {
+            LOGGER.warn("探测读数据源[{}]的复制延迟失败", node.getName(), e);
+            node.setLagMillis(-1);
+        }
+    }
+
+    /**
+     * @return 各读数据源的状态及监控指标
+     */
+    public List<ReadDataSourceNode> getReadDataSourceNodes() {
+        return Collections.unmodifiableList(readNodes);
+    }
+
+    /**
+     * @return 读操作改从写数据源读取的次数
+     */
+    public long getWriteFallbackCount() {
+        return writeFallbackCount.get();
+    }
+
+    /**
+     * @return 读己之写窗口内因没有延迟足够低的读数据源而读取写数据源的次数
+     */
+    public long getStickyWriteReadCount() {
+        return stickyWriteReadCount.get();
+    }
+
+    /**
+     * @param replicationLagProber 复制延迟的探测器,未设置时延迟未知,读己之写窗口内的读操作都读取写数据源
+     */
+    public void setReplicationLagProber(ReplicationLagProber replicationLagProber) {
+        this.replicationLagProber = replicationLagProber;
+    }
+
+    /**
+     * @param readYourWritesWindowMillis 写事务提交后读己之写的时间窗口,默认3秒,为0时关闭
+     */
+    public void setReadYourWritesWindowMillis(long readYourWritesWindowMillis) {
+        Assert.isTrue(readYourWritesWindowMillis >= 0, "读己之写的时间窗口不能小于0");
+        this.readYourWritesWindowMillis = readYourWritesWindowMillis;
+    }
+
+    /**
+     * @param maxStickyLagMillis 读己之写窗口内可读取的读数据源的最大复制延迟,默认500毫秒
+     */
+    public void setMaxStickyLagMillis(long maxStickyLagMillis) {
+        Assert.isTrue(maxStickyLagMillis > 0, "最大复制延迟必须大于0");
+        this.maxStickyLagMillis = maxStickyLagMillis;
+    }
+
+    /**
+     * @param loadBalanceStrategy 读数据源的负载均衡策略,默认{@link EwmaLatencyStrategy}
+     */
+    public void setLoadBalanceStrategy(LoadBalanceStrategy loadBalanceStrategy) {
+        Assert.notNull(loadBalanceStrategy, "负载均衡策略不能为空");
+        this.loadBalanceStrategy = loadBalanceStrategy;
+    }
+
+    /**
+     * @param probeIntervalMillis 健康探测的间隔,默认5秒
+     */
+    public void setProbeIntervalMillis(long probeIntervalMillis) {
+        Assert.isTrue(probeIntervalMillis > 0, "探测间隔必须大于0");
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    /**
+     * @param probeTimeoutSeconds 探测时校验连接的超时时间,默认2秒
+     */
+    public void setProbeTimeoutSeconds(int probeTimeoutSeconds) {
+        Assert.isTrue(probeTimeoutSeconds > 0, "探测超时时间必须大于0");
+        this.probeTimeoutSeconds = probeTimeoutSeconds;
+    }
+
+    /**
+     * @param failureThreshold 连续失败多少次后摘除读数据源,默认2次
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        Assert.isTrue(failureThreshold > 0, "失败阈值必须大于0");
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @param coolDownMillis 读数据源摘除后重新探测前的冷却时长,默认30秒
+     */
+    public void setCoolDownMillis(long coolDownMillis) {
+        Assert.isTrue(coolDownMillis >= 0, "冷却时长不能小于0");
+        this.coolDownMillis = coolDownMillis;
+    }
+
+    @Override
+    public void destroy() {
+        if (probeScheduler != null) {
+            probeScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 跟踪读连接的归还,归还时更新读数据源的在用连接数及持有时长
+     */
+    private static class TrackedConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final ReadDataSourceNode node;
+        private final long acquired;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        TrackedConnectionHandler(Connection target, ReadDataSourceNode node, long acquired) {
+            this.target = target;
+            this.node = node;
+            this.acquired = acquired;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        node.onRelease(System.nanoTime() - acquired);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
             }
-            throw e;
         }
     }
+
 }
@@ -0,0 +1,35 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 延迟加权策略,以获取连接的EWMA延迟乘以(在用连接数 + 1)作为代价,选择代价最小的读数据源
+ * 变慢的从库代价升高后流量自然减少,健康探测的延迟也会计入EWMA,流量很少的从库恢复后仍能被重新选中;
+ * 连接的持有时长反映的是调用方的业务耗时,不计入代价
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 10:35
+ */
+public class EwmaLatencyStrategy implements LoadBalanceStrategy {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public ReadDataSourceNode select(List<ReadDataSourceNode> nodes) {
+        int size = nodes.size();
+        int start = (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+        ReadDataSourceNode selected = null;
+        double minCost = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ReadDataSourceNode node = nodes.get((start + i) % size);
+            double cost = node.getEwmaLatencyNanos() * (node.getOutstanding() + 1);
+            if (selected == null || cost < minCost) {
+                selected = node;
+                minCost = cost;
+            }
+        }
+        return selected;
+    }
+
+}
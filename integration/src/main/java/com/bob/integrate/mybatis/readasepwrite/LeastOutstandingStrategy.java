@@ -0,0 +1,30 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 最少在用连接策略,选择未归还连接最少的读数据源,相同时从轮询的起点开始选择,避免总是落在第一个
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 10:30
+ */
+public class LeastOutstandingStrategy implements LoadBalanceStrategy {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public ReadDataSourceNode select(List<ReadDataSourceNode> nodes) {
+        int size = nodes.size();
+        int start = (counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+        ReadDataSourceNode selected = null;
+        for (int i = 0; i < size; i++) {
+            ReadDataSourceNode node = nodes.get((start + i) % size);
+            if (selected == null || node.getOutstanding() < selected.getOutstanding()) {
+                selected = node;
+            }
+        }
+        return selected;
+    }
+
+}
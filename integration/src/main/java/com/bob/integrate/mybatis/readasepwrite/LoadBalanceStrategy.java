@@ -0,0 +1,21 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.util.List;
+
+/**
+ * 读数据源的负载均衡策略
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 10:20
+ */
+public interface LoadBalanceStrategy {
+
+    /**
+     * 从可用的读数据源中选择一个
+     *
+     * @param nodes 在轮换中的读数据源,不为空
+     * @return
+     */
+    ReadDataSourceNode select(List<ReadDataSourceNode> nodes);
+
+}
@@ -0,0 +1,32 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+/**
+ * 通过MySQL从库的SHOW SLAVE STATUS获取复制延迟,Seconds_Behind_Master为null时复制已中断,返回-1
+ * 精度为秒,连接所用的账号需要REPLICATION CLIENT权限
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 15:10
+ */
+public class MysqlSlaveStatusLagProber implements ReplicationLagProber {
+
+    @Override
+    public long probeLagMillis(String name, DataSource dataSource) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SHOW SLAVE STATUS")) {
+            if (!resultSet.next()) {
+                return -1;
+            }
+            long seconds = resultSet.getLong("Seconds_Behind_Master");
+            return resultSet.wasNull() ? -1 : TimeUnit.SECONDS.toMillis(seconds);
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * 读数据源节点,记录负载均衡所需的状态及监控指标
+ * 在用连接数在获取,归还连接时更新;延迟的指数加权移动平均值(EWMA)只取获取连接及健康探测的耗时,
+ * 连接的持有时长取决于调用方的业务逻辑而非从库负载,单独统计,不计入延迟;
+ * 节点连续失败达到阈值后被摘除,冷却期过后由健康探测恢复
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 10:00
+ */
+public class ReadDataSourceNode {
+
+    /**
+     * EWMA的平滑系数,越大越偏向最近的延迟
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final String name;
+    private final DataSource dataSource;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private volatile double ewmaLatencyNanos;
+    private volatile double ewmaHoldNanos;
+    private volatile long lagMillis = -1;
+    private volatile boolean available = true;
+    private volatile long unavailableUntil;
+
+    ReadDataSourceNode(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 开始获取连接
+     */
+    void onAcquire() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * 已获取到连接
+     *
+     * @param acquireNanos 获取连接的耗时
+     */
+    void onAcquired(long acquireNanos) {
+        recordLatency(acquireNanos);
+    }
+
+    /**
+     * 连接已归还
+     *
+     * @param holdNanos 从获取到归还连接的持有时长,不计入延迟
+     */
+    void onRelease(long holdNanos) {
+        outstanding.decrementAndGet();
+        acquiredCount.incrementAndGet();
+        double ewma = ewmaHoldNanos;
+        ewmaHoldNanos = ewma == 0 ? holdNanos : ewma + EWMA_ALPHA * (holdNanos - ewma);
+    }
+
+    /**
+     * 获取连接失败
+     */
+    void onAcquireFailure() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * 记录一次延迟,并发更新时可能丢失个别样本,对平均值影响可忽略
+     *
+     * @param latencyNanos
+     */
+    void recordLatency(long latencyNanos) {
+        double ewma = ewmaLatencyNanos;
+        ewmaLatencyNanos = ewma == 0 ? latencyNanos : ewma + EWMA_ALPHA * (latencyNanos - ewma);
+    }
+
+    /**
+     * 记录一次成功,清空连续失败次数
+     */
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @param failureThreshold 连续失败多少次后摘除
+     * @param coolDownMillis   摘除后的冷却时长
+     * @return 本次失败是否导致节点被摘除
+     */
+    boolean recordFailure(int failureThreshold, long coolDownMillis) {
+        failureCount.incrementAndGet();
+        if (consecutiveFailures.incrementAndGet() < failureThreshold) {
+            return false;
+        }
+        unavailableUntil = System.currentTimeMillis() + coolDownMillis;
+        if (available) {
+            available = false;
+            evictedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 恢复节点
+     */
+    void restore() {
+        consecutiveFailures.set(0);
+        available = true;
+    }
+
+    /**
+     * @return 冷却期是否已过,可以重新探测
+     */
+    boolean isCoolDownElapsed() {
+        return System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    void setLagMillis(long lagMillis) {
+        this.lagMillis = lagMillis;
+    }
+
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 是否在轮换中
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * @return 当前未归还的连接数
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return 获取连接及健康探测延迟的指数加权移动平均值,单位毫秒
+     */
+    public double getEwmaLatencyMillis() {
+        return ewmaLatencyNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return 连接持有时长的指数加权移动平均值,单位毫秒
+     */
+    public double getEwmaHoldMillis() {
+        return ewmaHoldNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    double getEwmaLatencyNanos() {
+        return ewmaLatencyNanos;
+    }
+
+    /**
+     * @return 最近一次探测的复制延迟毫秒数,未探测或无法确定时为-1
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * @return 已归还的连接总数
+     */
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    /**
+     * @return 获取连接及健康探测失败的总次数
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return 被摘除的次数
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[available=%s, outstanding=%d, ewma=%.2fms, hold=%.2fms, lag=%dms, acquired=%d, failures=%d, evicted=%d]",
+            name, available, getOutstanding(), getEwmaLatencyMillis(), getEwmaHoldMillis(), lagMillis, getAcquiredCount(), getFailureCount(),
+            getEvictedCount());
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+/**
+ * 读己之写的上下文,记录当前线程最近一次写事务提交的时间
+ * 默认按线程生效;需要按会话生效时,可在请求结束时将{@link #getLastWriteTime()}保存到会话,下次请求开始时以{@link #setLastWriteTime(Long)}恢复
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 15:30
+ */
+public final class ReadYourWritesContext {
+
+    private static final ThreadLocal<Long> LAST_WRITE_TIME = new ThreadLocal<Long>();
+
+    private ReadYourWritesContext() {
+    }
+
+    /**
+     * 标记当前线程刚提交了写事务
+     */
+    public static void markWritten() {
+        LAST_WRITE_TIME.set(System.currentTimeMillis());
+    }
+
+    /**
+     * @return 最近一次写事务提交的时间, 没有时为null
+     */
+    public static Long getLastWriteTime() {
+        return LAST_WRITE_TIME.get();
+    }
+
+    /**
+     * 恢复最近一次写事务提交的时间,如从会话中恢复
+     *
+     * @param lastWriteTime 为null时清空
+     */
+    public static void setLastWriteTime(Long lastWriteTime) {
+        if (lastWriteTime == null) {
+            LAST_WRITE_TIME.remove();
+        } else {
+            LAST_WRITE_TIME.set(lastWriteTime);
+        }
+    }
+
+    /**
+     * @param windowMillis 读己之写的时间窗口
+     * @return 当前线程是否在写事务提交后的时间窗口内
+     */
+    public static boolean isWithinWindow(long windowMillis) {
+        Long lastWriteTime = LAST_WRITE_TIME.get();
+        if (lastWriteTime == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastWriteTime < windowMillis) {
+            return true;
+        }
+        LAST_WRITE_TIME.remove();
+        return false;
+    }
+
+    public static void clear() {
+        LAST_WRITE_TIME.remove();
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import javax.sql.DataSource;
+
+/**
+ * 读数据源复制延迟的探测器,由{@link DynamicDataSource}在健康探测时调用
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 15:00
+ */
+public interface ReplicationLagProber {
+
+    /**
+     * 探测读数据源相对写数据源的复制延迟
+     *
+     * @param name       读数据源名称
+     * @param dataSource 读数据源
+     * @return 延迟毫秒数, 无法确定时(如复制中断)返回-1
+     * @throws Exception
+     */
+    long probeLagMillis(String name, DataSource dataSource) throws Exception;
+
+}
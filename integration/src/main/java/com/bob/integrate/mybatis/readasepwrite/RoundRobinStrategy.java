@@ -0,0 +1,21 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轮询策略
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 10:25
+ */
+public class RoundRobinStrategy implements LoadBalanceStrategy {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public ReadDataSourceNode select(List<ReadDataSourceNode> nodes) {
+        return nodes.get((counter.getAndIncrement() & Integer.MAX_VALUE) % nodes.size());
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+/**
+ * 手动指定复制延迟的探测器,用于本地环境及测试,未指定的读数据源延迟为-1
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-19 15:20
+ */
+public class StaticLagProber implements ReplicationLagProber {
+
+    private final Map<String, Long> lagMillis = new ConcurrentHashMap<String, Long>();
+
+    @Override
+    public long probeLagMillis(String name, DataSource dataSource) {
+        return lagMillis.getOrDefault(name, -1L);
+    }
+
+    /**
+     * @param name      读数据源名称
+     * @param lagMillis 延迟毫秒数
+     */
+    public void setLagMillis(String name, long lagMillis) {
+        this.lagMillis.put(name, lagMillis);
+    }
+
+}
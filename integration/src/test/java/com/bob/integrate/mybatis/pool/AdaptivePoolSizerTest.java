@@ -0,0 +1,173 @@
+package com.bob.integrate.mybatis.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 连接池自适应调整及监控指标测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-27 14:00
+ */
+public class AdaptivePoolSizerTest {
+
+    private AdaptivePoolSizer sizer;
+    private BasicDataSource pool;
+
+    @Before
+    public void doBefore() {
+        sizer = new AdaptivePoolSizer(new PoolMetricsRegistry());
+        sizer.setLowerMaxTotal(10);
+        sizer.setUpperMaxTotal(40);
+        sizer.setMinIdleFloor(2);
+        pool = new BasicDataSource();
+        pool.setMaxTotal(20);
+    }
+
+    @Test
+    public void testGrowWithinUpperBound() {
+        // 活跃连接接近上限时扩大
+        resize(17, 0);
+        assertEquals(30, pool.getMaxTotal());
+        // 有线程等待时扩大,不超过上界
+        resize(10, 5);
+        assertEquals(40, pool.getMaxTotal());
+        assertEquals(15, pool.getMaxIdle());
+        resize(40, 20);
+        assertEquals(40, pool.getMaxTotal());
+        assertEquals(40, pool.getMaxIdle());
+        assertBounded();
+    }
+
+    @Test
+    public void testShrinkWithinLowerBound() {
+        int[] expected = {15, 12, 10, 10};
+        for (int maxTotal : expected) {
+            resize(1, 0);
+            // 每次最多缩小到3/4,不低于下界
+            assertEquals(maxTotal, pool.getMaxTotal());
+            assertBounded();
+        }
+        assertEquals(2, pool.getMaxIdle());
+        assertEquals(2, pool.getMinIdle());
+    }
+
+    @Test
+    public void testHysteresis() {
+        // 使用率在低水位与高水位之间时不调整最大连接数
+        for (int peakActive = 6; peakActive < 16; peakActive++) {
+            resize(peakActive, 0);
+            assertEquals(20, pool.getMaxTotal());
+            assertEquals(peakActive, pool.getMaxIdle());
+            assertEquals(peakActive / 2, pool.getMinIdle());
+        }
+        // 扩大后活跃连接数不变时同样保持
+        resize(16, 0);
+        assertEquals(30, pool.getMaxTotal());
+        resize(16, 0);
+        assertEquals(30, pool.getMaxTotal());
+    }
+
+    @Test
+    public void testResizeFromWindowPeaks() throws Exception {
+        pool.setDriverClassName("org.h2.Driver");
+        pool.setUrl("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1");
+        InstrumentedDataSource dataSource = new InstrumentedDataSource("pool", pool);
+        PoolMetrics metrics = dataSource.getMetrics();
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            assertEquals(2, metrics.getNumActive());
+        }
+        sizer.resize(metrics);
+        // 窗口峰值读取后重置为当前值
+        assertEquals(15, pool.getMaxTotal());
+        assertEquals(2, pool.getMaxIdle());
+        assertEquals(0, metrics.resetWindowPeakActive());
+        assertEquals(0, metrics.resetWindowPeakPending());
+        pool.close();
+    }
+
+    @Test
+    public void testWaitingBorrow() throws Exception {
+        pool.setDriverClassName("org.h2.Driver");
+        pool.setUrl("jdbc:h2:mem:waiting;DB_CLOSE_DELAY=-1");
+        pool.setMaxTotal(1);
+        pool.setMaxWaitMillis(50);
+        InstrumentedDataSource dataSource = new InstrumentedDataSource("waiting", pool);
+        PoolMetrics metrics = dataSource.getMetrics();
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(0, metrics.resetWindowPeakPending());
+            // 连接池已满时获取连接需要等待
+            try {
+                dataSource.getConnection();
+                fail();
+            } catch (SQLException e) {
+                // 等待超时
+            }
+        }
+        assertEquals(1, metrics.resetWindowPeakPending());
+        assertEquals(1, metrics.getBorrowFailures());
+        pool.close();
+    }
+
+    @Test
+    public void testMetrics() throws SQLException {
+        pool.setDriverClassName("org.h2.Driver");
+        pool.setUrl("jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1");
+        InstrumentedDataSource dataSource = new InstrumentedDataSource("metrics", pool);
+        PoolMetrics metrics = dataSource.getMetrics();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            assertEquals(0, metrics.getPendingBorrows());
+            statement.execute("SELECT 1");
+            statement.executeQuery("SELECT 1").close();
+            statement.getUpdateCount();
+        }
+        assertEquals(1, metrics.getBorrowLatency().getCount());
+        // 只记录execute*方法
+        assertEquals(2, metrics.getStatementLatency().getCount());
+        assertEquals(0, metrics.getBorrowFailures());
+        pool.close();
+
+        InstrumentedDataSource failing = new InstrumentedDataSource("failing", new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("获取连接失败");
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return getConnection();
+            }
+        });
+        try {
+            failing.getConnection();
+            fail();
+        } catch (SQLException e) {
+            // 获取失败同样记录等待时长
+        }
+        assertEquals(1, failing.getMetrics().getBorrowFailures());
+        assertEquals(1, failing.getMetrics().getBorrowLatency().getCount());
+        assertEquals(0, failing.getMetrics().getPendingBorrows());
+        assertEquals(-1, failing.getMetrics().getNumActive());
+    }
+
+    private void resize(int peakActive, int peakPending) {
+        sizer.resize("pool", pool, peakActive, peakPending);
+    }
+
+    private void assertBounded() {
+        assertTrue(pool.getMaxTotal() >= 10 && pool.getMaxTotal() <= 40);
+        assertTrue(pool.getMaxIdle() <= pool.getMaxTotal());
+        assertTrue(pool.getMinIdle() <= pool.getMaxIdle());
+    }
+
+}
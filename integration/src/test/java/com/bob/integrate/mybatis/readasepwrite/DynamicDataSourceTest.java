@@ -0,0 +1,178 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 读数据源摘除,恢复,回退写数据源及负载均衡策略测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-27 10:10
+ */
+public class DynamicDataSourceTest {
+
+    private SwitchableDataSource write;
+    private SwitchableDataSource read1;
+    private SwitchableDataSource read2;
+    private DynamicDataSource dynamicDataSource;
+
+    @Before
+    public void doBefore() {
+        write = new SwitchableDataSource("write");
+        read1 = new SwitchableDataSource("read1");
+        read2 = new SwitchableDataSource("read2");
+        Map<String, DataSource> dataSources = new LinkedHashMap<String, DataSource>();
+        dataSources.put("write", write);
+        dataSources.put("read1", read1);
+        dataSources.put("read2", read2);
+        dynamicDataSource = new DynamicDataSource(dataSources);
+        // 总是选择第一个可用的读数据源,由测试手动探测
+        dynamicDataSource.setLoadBalanceStrategy(nodes -> nodes.get(0));
+        dynamicDataSource.setProbeIntervalMillis(TimeUnit.HOURS.toMillis(1));
+        dynamicDataSource.setFailureThreshold(2);
+        dynamicDataSource.setReadYourWritesWindowMillis(0);
+    }
+
+    @After
+    public void doAfter() {
+        dynamicDataSource.destroy();
+    }
+
+    @Test
+    public void testEvictAndFallback() throws SQLException {
+        dynamicDataSource.setCoolDownMillis(TimeUnit.HOURS.toMillis(1));
+        dynamicDataSource.afterPropertiesSet();
+        assertEquals("read1", read());
+        read1.setDown(true);
+        // 获取连接失败时从写数据源读取,连续失败达到阈值后摘除
+        assertEquals("write", read());
+        assertEquals("write", read());
+        ReadDataSourceNode node = node("read1");
+        assertFalse(node.isAvailable());
+        assertEquals(1, node.getEvictedCount());
+        assertEquals(2, node.getFailureCount());
+        assertEquals(2, dynamicDataSource.getWriteFallbackCount());
+        assertEquals("read2", read());
+        // 冷却期内不探测,即使已经恢复也不重新加入轮换
+        read1.setDown(false);
+        dynamicDataSource.probe(node);
+        assertFalse(node.isAvailable());
+        assertEquals("read2", read());
+    }
+
+    @Test
+    public void testRestoreAfterCoolDown() throws SQLException {
+        dynamicDataSource.setCoolDownMillis(0);
+        dynamicDataSource.afterPropertiesSet();
+        ReadDataSourceNode node1 = node("read1");
+        ReadDataSourceNode node2 = node("read2");
+        read1.setDown(true);
+        read2.setDown(true);
+        for (int i = 0; i < 2; i++) {
+            dynamicDataSource.probe(node1);
+            dynamicDataSource.probe(node2);
+        }
+        assertFalse(node1.isAvailable());
+        assertFalse(node2.isAvailable());
+        // 没有可用的读数据源时读取写数据源
+        assertEquals("write", read());
+        assertEquals(1, dynamicDataSource.getWriteFallbackCount());
+        read1.setDown(false);
+        dynamicDataSource.probe(node1);
+        assertTrue(node1.isAvailable());
+        assertTrue(node1.getEwmaLatencyMillis() > 0);
+        assertEquals("read1", read());
+        assertFalse(node2.isAvailable());
+    }
+
+    @Test
+    public void testWriteTransactionUsesWriteSource() throws SQLException {
+        dynamicDataSource.afterPropertiesSet();
+        DataSourceTransactionManagerAdapter.DATA_MANIPULATION_TYPE.set(DataManipulationType.WRITE);
+        try {
+            assertEquals("write", read());
+        } finally {
+            DataSourceTransactionManagerAdapter.DATA_MANIPULATION_TYPE.remove();
+        }
+        assertEquals(0, dynamicDataSource.getWriteFallbackCount());
+    }
+
+    @Test
+    public void testConnectionRelease() throws SQLException {
+        dynamicDataSource.afterPropertiesSet();
+        ReadDataSourceNode node = node("read1");
+        Connection connection = dynamicDataSource.getConnection();
+        assertEquals(1, node.getOutstanding());
+        connection.close();
+        connection.close();
+        // 重复归还只记录一次
+        assertEquals(0, node.getOutstanding());
+        assertEquals(1, node.getAcquiredCount());
+    }
+
+    @Test
+    public void testEwmaLatencyStrategy() {
+        ReadDataSourceNode slow = new ReadDataSourceNode("slow", null);
+        ReadDataSourceNode fast = new ReadDataSourceNode("fast", null);
+        slow.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        fast.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        LoadBalanceStrategy strategy = new EwmaLatencyStrategy();
+        for (int i = 0; i < 4; i++) {
+            assertSame(fast, strategy.select(Arrays.asList(slow, fast)));
+        }
+        // 代价为延迟乘以(在用连接数 + 1),快的读数据源积压过多时改选慢的
+        for (int i = 0; i < 10; i++) {
+            fast.onAcquire();
+        }
+        assertSame(slow, strategy.select(Arrays.asList(slow, fast)));
+        // 连接的持有时长不计入代价
+        slow.onAcquire();
+        slow.onRelease(TimeUnit.SECONDS.toNanos(10));
+        assertSame(slow, strategy.select(Arrays.asList(slow, fast)));
+    }
+
+    @Test
+    public void testLeastOutstandingStrategy() {
+        ReadDataSourceNode busy = new ReadDataSourceNode("busy", null);
+        ReadDataSourceNode idle = new ReadDataSourceNode("idle", null);
+        busy.onAcquire();
+        LoadBalanceStrategy strategy = new LeastOutstandingStrategy();
+        for (int i = 0; i < 4; i++) {
+            assertSame(idle, strategy.select(Arrays.asList(busy, idle)));
+        }
+        busy.onAcquireFailure();
+        // 在用连接数相同时轮流选择
+        assertTrue(strategy.select(Arrays.asList(busy, idle)) != strategy.select(Arrays.asList(busy, idle)));
+    }
+
+    private String read() throws SQLException {
+        try (Connection connection = dynamicDataSource.getConnection()) {
+            return SwitchableDataSource.nameOf(connection);
+        }
+    }
+
+    private ReadDataSourceNode node(String name) {
+        for (ReadDataSourceNode node : dynamicDataSource.getReadDataSourceNodes()) {
+            if (node.getName().equals(name)) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 读己之写测试
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-27 11:00
+ */
+public class ReadYourWritesTest {
+
+    private SwitchableDataSource write;
+    private DynamicDataSource dynamicDataSource;
+    private StaticLagProber lagProber;
+
+    @Before
+    public void doBefore() {
+        write = new SwitchableDataSource("write");
+        Map<String, DataSource> dataSources = new LinkedHashMap<String, DataSource>();
+        dataSources.put("write", write);
+        dataSources.put("read1", new SwitchableDataSource("read1"));
+        dataSources.put("read2", new SwitchableDataSource("read2"));
+        dynamicDataSource = new DynamicDataSource(dataSources);
+        // 总是选择最后一个候选的读数据源,便于观察过滤结果
+        dynamicDataSource.setLoadBalanceStrategy(nodes -> nodes.get(nodes.size() - 1));
+        dynamicDataSource.setProbeIntervalMillis(TimeUnit.HOURS.toMillis(1));
+        dynamicDataSource.setReadYourWritesWindowMillis(3000);
+        dynamicDataSource.setMaxStickyLagMillis(500);
+        lagProber = new StaticLagProber();
+    }
+
+    @After
+    public void doAfter() {
+        dynamicDataSource.destroy();
+        ReadYourWritesContext.clear();
+    }
+
+    @Test
+    public void testReadPrimaryWithinWindow() throws SQLException {
+        dynamicDataSource.afterPropertiesSet();
+        assertEquals("read2", read());
+        ReadYourWritesContext.markWritten();
+        // 未设置延迟探测器时延迟未知,窗口内读取写数据源
+        assertEquals("write", read());
+        assertEquals(1, dynamicDataSource.getStickyWriteReadCount());
+        // 窗口过后恢复读取读数据源
+        ReadYourWritesContext.setLastWriteTime(System.currentTimeMillis() - 5000);
+        assertEquals("read2", read());
+        assertNull(ReadYourWritesContext.getLastWriteTime());
+    }
+
+    @Test
+    public void testReadCaughtUpReplicas() throws SQLException {
+        lagProber.setLagMillis("read1", 100);
+        lagProber.setLagMillis("read2", 2000);
+        dynamicDataSource.setReplicationLagProber(lagProber);
+        dynamicDataSource.afterPropertiesSet();
+        probeAll();
+        ReadYourWritesContext.markWritten();
+        // 窗口内只读取延迟低于阈值的读数据源
+        assertEquals("read1", read());
+        assertEquals(0, dynamicDataSource.getStickyWriteReadCount());
+        // 所有读数据源都落后时读取写数据源
+        lagProber.setLagMillis("read1", 800);
+        probeAll();
+        assertEquals("write", read());
+        assertEquals(1, dynamicDataSource.getStickyWriteReadCount());
+        ReadYourWritesContext.clear();
+        assertEquals("read2", read());
+    }
+
+    @Test
+    public void testCommitMarksWritten() {
+        TransactionTemplate template = new TransactionTemplate(new DataSourceTransactionManagerAdapter(write));
+        template.setReadOnly(true);
+        template.execute(status -> null);
+        // 只读事务提交后不标记
+        assertNull(ReadYourWritesContext.getLastWriteTime());
+        template.setReadOnly(false);
+        template.execute(status -> null);
+        assertNotNull(ReadYourWritesContext.getLastWriteTime());
+        assertNull(DataSourceTransactionManagerAdapter.getCurrentManipulationType());
+    }
+
+    private void probeAll() {
+        for (ReadDataSourceNode node : dynamicDataSource.getReadDataSourceNodes()) {
+            dynamicDataSource.probe(node);
+        }
+    }
+
+    private String read() throws SQLException {
+        try (Connection connection = dynamicDataSource.getConnection()) {
+            return SwitchableDataSource.nameOf(connection);
+        }
+    }
+
+}
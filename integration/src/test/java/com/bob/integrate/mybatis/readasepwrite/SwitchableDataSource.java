@@ -0,0 +1,47 @@
+package com.bob.integrate.mybatis.readasepwrite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+/**
+ * 可模拟宕机的H2内存数据源,通过连接的URL区分连接来自哪个数据源
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-27 10:00
+ */
+class SwitchableDataSource extends JdbcDataSource {
+
+    private final String name;
+    private volatile boolean down;
+
+    SwitchableDataSource(String name) {
+        this.name = name;
+        setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (down) {
+            throw new SQLException("数据源[" + name + "]不可用");
+        }
+        return super.getConnection();
+    }
+
+    void setDown(boolean down) {
+        this.down = down;
+    }
+
+    /**
+     * @param connection
+     * @return 连接所属的数据源名称
+     * @throws SQLException
+     */
+    static String nameOf(Connection connection) throws SQLException {
+        String url = connection.getMetaData().getURL().substring("jdbc:h2:mem:".length());
+        int end = url.indexOf(';');
+        return end < 0 ? url : url.substring(0, end);
+    }
+
+}
@@ -4,7 +4,13 @@
 package com.bob.web.config.formatter;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
 import java.util.Date;
 import java.util.Locale;
 
@@ -19,7 +25,13 @@ import org.springframework.format.Formatter;
 public class String2DateFormatter implements Formatter<Date> {
 
     private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
-    private static final String DATE_FORMAT = "yyyy-MM-dd";
+
+    /**
+     * 与原SimpleDateFormat的解析行为一致:月,日,时,分,秒可以是一位数字,忽略末尾多余的字符
+     * DateTimeFormatter线程安全,可以共享
+     */
+    private static final DateTimeFormatter DATE_TIME_PARSER = DateTimeFormatter.ofPattern("yyyy-M-d H:m:s");
+    private static final DateTimeFormatter DATE_PARSER = DateTimeFormatter.ofPattern("yyyy-M-d");
 
     @Override
     public String print(Date object, Locale locale) {
@@ -28,11 +40,16 @@ public class String2DateFormatter implements Formatter<Date> {
 
     @Override
     public Date parse(String text, Locale locale) throws ParseException {
-        if (text.length() > 10) {
-            return new SimpleDateFormat(DATE_TIME_FORMAT).parse(text);
-        } else {
-            return new SimpleDateFormat(DATE_FORMAT).parse(text);
+        boolean dateTime = text.length() > 10;
+        ParsePosition position = new ParsePosition(0);
+        LocalDateTime localDateTime;
+        try {
+            TemporalAccessor parsed = (dateTime ? DATE_TIME_PARSER : DATE_PARSER).parse(text, position);
+            localDateTime = dateTime ? LocalDateTime.from(parsed) : LocalDate.from(parsed).atStartOfDay();
+        } catch (DateTimeException e) {
+            throw new ParseException("Unparseable date: \"" + text + "\"", Math.max(position.getErrorIndex(), 0));
         }
+        return Date.from(localDateTime.atZone(ZoneId.systemDefault()).toInstant());
     }
 
 }
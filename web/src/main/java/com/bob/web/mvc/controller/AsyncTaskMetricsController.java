@@ -0,0 +1,60 @@
+package com.bob.web.mvc.controller;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.bob.common.utils.task.AsyncTaskManager;
+import com.bob.common.utils.task.AsyncTaskMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 异步任务指标,未启用异步任务时返回空数据
+ *
+ * @author wb-jjb318191
+ * @create 2018-08-25 14:00
+ */
+@RestController
+@RequestMapping("/metrics/async-tasks")
+public class AsyncTaskMetricsController {
+
+    @Autowired(required = false)
+    private AsyncTaskManager asyncTaskManager;
+
+    /**
+     * 各任务类型的统计及未结束的任务数
+     *
+     * @return
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        if (asyncTaskManager == null) {
+            result.put("inFlightCount", 0);
+            result.put("taskTypes", Collections.emptyList());
+            return result;
+        }
+        AsyncTaskMetrics metrics = asyncTaskManager.getMetrics();
+        result.put("inFlightCount", metrics.getInFlightCount());
+        result.put("taskTypes", metrics.getTaskTypes());
+        return result;
+    }
+
+    /**
+     * 未结束的任务明细
+     *
+     * @return
+     */
+    @RequestMapping(value = "/in-flight", method = RequestMethod.GET)
+    public List<AsyncTaskMetrics.InFlightTask> getInFlightTasks() {
+        if (asyncTaskManager == null) {
+            return Collections.emptyList();
+        }
+        return asyncTaskManager.getMetrics().getInFlightTasks();
+    }
+
+}